@@ -2,12 +2,19 @@ package com.backend.eventmarketplace;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.Map;
 
 @SpringBootApplication
+@EnableScheduling
 public class EventmarketplaceApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(EventmarketplaceApplication.class, args);
+		SpringApplication application = new SpringApplication(EventmarketplaceApplication.class);
+		// Tomcat workers and the application task executor run on virtual threads unless overridden
+		application.setDefaultProperties(Map.of("spring.threads.virtual.enabled", "true"));
+		application.run(args);
 	}
 
 }
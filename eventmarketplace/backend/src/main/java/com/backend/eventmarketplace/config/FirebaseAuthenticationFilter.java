@@ -0,0 +1,87 @@
+package com.backend.eventmarketplace.config;
+
+import com.backend.eventmarketplace.dto.AuthenticatedUser;
+import com.backend.eventmarketplace.service.TokenVerifier;
+import com.google.firebase.auth.FirebaseAuthException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Verifies the Authorization bearer token, when there is one, and puts the caller in
+ * the {@link AuthenticatedUser#ATTRIBUTE} request attribute. A bad token is answered
+ * with 401, and so is a request without one under eventmarketplace.auth.protected-paths.
+ * Setting eventmarketplace.auth.require-token=false lets tokenless requests through
+ * there too, but the controllers still refuse them wherever the caller has to be a
+ * particular user or an admin.
+ */
+@Component
+public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    private final TokenVerifier tokenVerifier;
+    private final boolean requireToken;
+    private final List<String> protectedPaths;
+
+    public FirebaseAuthenticationFilter(TokenVerifier tokenVerifier,
+                                        @Value("${eventmarketplace.auth.require-token:true}") boolean requireToken,
+                                        @Value("${eventmarketplace.auth.protected-paths:/api/bookings,/api/payments,/api/exports}") List<String> protectedPaths) {
+        this.tokenVerifier = tokenVerifier;
+        this.requireToken = requireToken;
+        this.protectedPaths = protectedPaths;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // CORS preflights carry no credentials
+        return HttpMethod.OPTIONS.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.startsWith(BEARER)) {
+            if (requireToken && isProtected(request)) {
+                unauthorized(response, "Missing token");
+                return;
+            }
+            chain.doFilter(request, response);
+            return;
+        }
+
+        try {
+            request.setAttribute(AuthenticatedUser.ATTRIBUTE,
+                    tokenVerifier.authenticate(header.substring(BEARER.length()).trim()));
+        } catch (FirebaseAuthException | IllegalArgumentException e) {
+            unauthorized(response, "Invalid token");
+            return;
+        } catch (ExecutionException | InterruptedException e) {
+            throw new ServletException("Could not load the authenticated user", e);
+        }
+        chain.doFilter(request, response);
+    }
+
+    private boolean isProtected(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return protectedPaths.stream().anyMatch(prefix -> path.equals(prefix) || path.startsWith(prefix + "/"));
+    }
+
+    private static void unauthorized(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
+    }
+}
@@ -2,6 +2,8 @@ package com.backend.eventmarketplace.config;
 
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.firestore.Firestore;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import com.google.firebase.auth.FirebaseAuth;
@@ -16,14 +18,20 @@ import java.io.InputStream;
 @Configuration
 public class FirebaseConfig {
 
+    private static final String PROJECT_ID = "eventmareketplace";
+
     @Bean
-    public FirebaseApp firebaseApp() throws IOException {
-        ClassPathResource resource = new ClassPathResource("serviceAccountKey.json");
-        InputStream serviceAccount = resource.getInputStream();
+    public GoogleCredentials googleCredentials() throws IOException {
+        try (InputStream serviceAccount = new ClassPathResource("serviceAccountKey.json").getInputStream()) {
+            return GoogleCredentials.fromStream(serviceAccount);
+        }
+    }
 
+    @Bean
+    public FirebaseApp firebaseApp(GoogleCredentials googleCredentials) {
         FirebaseOptions options = FirebaseOptions.builder()
-                .setCredentials(GoogleCredentials.fromStream(serviceAccount))
-                .setProjectId("eventmareketplace")
+                .setCredentials(googleCredentials)
+                .setProjectId(PROJECT_ID)
                 .setStorageBucket("eventmareketplace.firebasestorage.app")
                 .build();
 
@@ -39,6 +47,19 @@ public class FirebaseConfig {
         return FirebaseAuth.getInstance(firebaseApp);
     }
 
+    /**
+     * One Cloud Storage client for the app; objects are addressed by bucket name, so no
+     * bucket lookup is needed per upload.
+     */
+    @Bean
+    public Storage storage(GoogleCredentials googleCredentials) {
+        return StorageOptions.newBuilder()
+                .setProjectId(PROJECT_ID)
+                .setCredentials(googleCredentials)
+                .build()
+                .getService();
+    }
+
     @Bean
     public Firestore firestore(FirebaseApp firebaseApp) {
         return FirestoreClient.getFirestore(firebaseApp);
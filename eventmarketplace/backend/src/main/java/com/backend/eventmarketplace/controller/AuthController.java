@@ -1,11 +1,11 @@
 package com.backend.eventmarketplace.controller;
 
 
+import com.backend.eventmarketplace.dto.AuthenticatedUser;
 import com.backend.eventmarketplace.dto.LoginResponse;
 import com.backend.eventmarketplace.dto.RegisterRequest;
 import com.backend.eventmarketplace.model.User;
 import com.backend.eventmarketplace.service.AuthService;
-import com.google.firebase.auth.FirebaseToken;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -32,21 +32,19 @@ public class AuthController {
         }
     }
 
+    /**
+     * The token was verified and the user loaded by the authentication filter.
+     */
     @PostMapping("/verify")
-    public ResponseEntity<?> verifyToken(@RequestHeader("Authorization") String token) {
-        try {
-            String idToken = token.replace("Bearer ", "");
-            FirebaseToken firebaseToken = authService.verifyToken(idToken);
-            User user = authService.getUserById(firebaseToken.getUid());
-
-            LoginResponse response = new LoginResponse();
-            response.setFirebaseToken(idToken);
-            response.setUser(user);
-
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
+    public ResponseEntity<?> verifyToken(@RequestHeader("Authorization") String token,
+                                         @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (principal == null) {
             return ResponseEntity.status(401).body("Invalid token");
         }
+        LoginResponse response = new LoginResponse();
+        response.setFirebaseToken(token.replace("Bearer ", ""));
+        response.setUser(principal.getUser());
+        return ResponseEntity.ok(response);
     }
 
     @PutMapping(value = "/user/{uid}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
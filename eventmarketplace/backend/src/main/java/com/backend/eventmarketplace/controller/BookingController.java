@@ -1,5 +1,6 @@
 package com.backend.eventmarketplace.controller;
 
+import com.backend.eventmarketplace.dto.AuthenticatedUser;
 import com.backend.eventmarketplace.dto.BookingRequest;
 import com.backend.eventmarketplace.dto.BookingResponse;
 import com.backend.eventmarketplace.model.Booking;
@@ -7,12 +8,11 @@ import com.backend.eventmarketplace.service.BookingService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.awt.print.Book;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/bookings")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = Responses.NEXT_PAGE_TOKEN)
 public class BookingController {
 
     private final BookingService bookingService;
@@ -21,9 +21,22 @@ public class BookingController {
         this.bookingService = bookingService;
     }
 
+    /**
+     * Books for the authenticated caller; userId, if given, must be theirs.
+     */
     @PostMapping
-    public ResponseEntity<?> createBooking(@RequestParam String userId,
-                                           @RequestBody BookingRequest request) {
+    public ResponseEntity<?> createBooking(@RequestParam(required = false) String userId,
+                                           @RequestBody BookingRequest request,
+                                           @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (principal == null) {
+            return Responses.unauthorized();
+        }
+        if (userId == null) {
+            userId = principal.getUid();
+        }
+        if (!Responses.actsAs(principal, userId)) {
+            return Responses.forbidden();
+        }
         try {
             BookingResponse response = bookingService.createBooking(userId, request);
             return ResponseEntity.ok(response);
@@ -32,48 +45,126 @@ public class BookingController {
         }
     }
 
+    /**
+     * A booking, for its own user or an admin.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getBooking(@PathVariable String id) {
-        try {
-            Booking booking = bookingService.getBookingById(id);
-            return booking != null ? ResponseEntity.ok(booking) : ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
+    public CompletableFuture<ResponseEntity<?>> getBooking(@PathVariable String id,
+                                                           @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (principal == null) {
+            return CompletableFuture.completedFuture(Responses.unauthorized());
         }
+        return bookingService.getBookingByIdAsync(id)
+                .<ResponseEntity<?>>thenApply(booking -> {
+                    if (booking == null) {
+                        return ResponseEntity.notFound().build();
+                    }
+                    return Responses.mayRead(principal, booking.getUserId()) ? ResponseEntity.ok(booking) : Responses.forbidden();
+                })
+                .exceptionally(Responses::badRequest);
     }
 
+    /**
+     * The booking with the given reference number, as printed on confirmations, for its
+     * own user only. References issued close together are easy to guess, so this always
+     * takes a token, even when eventmarketplace.auth.require-token is off.
+     */
+    @GetMapping("/by-reference/{ref}")
+    public CompletableFuture<ResponseEntity<?>> getBookingByReference(@PathVariable String ref,
+                                                                      @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (principal == null) {
+            return CompletableFuture.completedFuture(Responses.unauthorized());
+        }
+        return bookingService.getBookingByReferenceAsync(ref)
+                .<ResponseEntity<?>>thenApply(booking -> {
+                    if (booking == null) {
+                        return ResponseEntity.notFound().build();
+                    }
+                    return Responses.actsAs(principal, booking.getUserId()) ? ResponseEntity.ok(booking) : Responses.forbidden();
+                })
+                .exceptionally(Responses::badRequest);
+    }
+
+    /**
+     * Every user's bookings, for admins only. One page when pageSize or pageToken is
+     * given. Otherwise the first PageTokens.MAX_UNPAGED_ITEMS as a plain list, with the
+     * token for the rest in the X-Next-Page-Token header.
+     */
     @GetMapping()
-    public ResponseEntity<?> getAllBookings() {
-        try {
-            List<Booking> booking = bookingService.getAllBookings();
-            return booking != null ? ResponseEntity.ok(booking) : ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
+    public CompletableFuture<ResponseEntity<?>> getAllBookings(@RequestParam(required = false) Integer pageSize,
+                                                               @RequestParam(required = false) String pageToken,
+                                                               @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (principal == null) {
+            return CompletableFuture.completedFuture(Responses.unauthorized());
+        }
+        if (!Responses.isAdmin(principal)) {
+            return CompletableFuture.completedFuture(Responses.forbidden());
         }
+        if (pageSize != null || pageToken != null) {
+            return bookingService.getBookingsPageAsync(pageSize, pageToken)
+                    .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                    .exceptionally(Responses::badRequest);
+        }
+        return bookingService.getAllBookingsAsync()
+                .<ResponseEntity<?>>thenApply(Responses::items)
+                .exceptionally(Responses::badRequest);
+    }
+
+    @GetMapping("/user/{userId}")
+    public CompletableFuture<ResponseEntity<?>> getUserBookings(@PathVariable String userId,
+                                                                @RequestParam(required = false) Integer pageSize,
+                                                                @RequestParam(required = false) String pageToken,
+                                                                @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (!Responses.actsAs(principal, userId)) {
+            return CompletableFuture.completedFuture(Responses.forbidden());
+        }
+        return bookingService.getUserBookingsPageAsync(userId, pageSize, pageToken)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(Responses::badRequest);
     }
 
     @GetMapping("/user/{userId}/upcoming")
-    public ResponseEntity<?> getUserUpcomingBookings(@PathVariable String userId) {
-        try {
-            List<Booking> bookings = bookingService.getUserUpcomingBookings(userId);
-            return ResponseEntity.ok(bookings);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
+    public CompletableFuture<ResponseEntity<?>> getUserUpcomingBookings(@PathVariable String userId,
+                                                                  @RequestParam(required = false) Integer pageSize,
+                                                                  @RequestParam(required = false) String pageToken,
+                                                                  @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (!Responses.actsAs(principal, userId)) {
+            return CompletableFuture.completedFuture(Responses.forbidden());
         }
+        if (pageSize != null || pageToken != null) {
+            return bookingService.getUserUpcomingBookingsPageAsync(userId, pageSize, pageToken)
+                    .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                    .exceptionally(Responses::badRequest);
+        }
+        return bookingService.getUserUpcomingBookingsAsync(userId)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(Responses::badRequest);
     }
 
     @GetMapping("/user/{userId}/past")
-    public ResponseEntity<?> getUserPastBookings(@PathVariable String userId) {
-        try {
-            List<Booking> bookings = bookingService.getUserPastBookings(userId);
-            return ResponseEntity.ok(bookings);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
+    public CompletableFuture<ResponseEntity<?>> getUserPastBookings(@PathVariable String userId,
+                                                              @RequestParam(required = false) Integer pageSize,
+                                                              @RequestParam(required = false) String pageToken,
+                                                              @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (!Responses.actsAs(principal, userId)) {
+            return CompletableFuture.completedFuture(Responses.forbidden());
+        }
+        if (pageSize != null || pageToken != null) {
+            return bookingService.getUserPastBookingsPageAsync(userId, pageSize, pageToken)
+                    .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                    .exceptionally(Responses::badRequest);
         }
+        return bookingService.getUserPastBookingsAsync(userId)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(Responses::badRequest);
     }
 
     @PutMapping("/{id}/cancel")
-    public ResponseEntity<?> cancelBooking(@PathVariable String id, @RequestParam String userId) {
+    public ResponseEntity<?> cancelBooking(@PathVariable String id, @RequestParam String userId,
+                                           @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (!Responses.actsAs(principal, userId)) {
+            return Responses.forbidden();
+        }
         try {
             Booking booking = bookingService.cancelBooking(id, userId);
             return ResponseEntity.ok(booking);
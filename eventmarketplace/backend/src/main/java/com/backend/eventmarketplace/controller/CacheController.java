@@ -0,0 +1,38 @@
+package com.backend.eventmarketplace.controller;
+
+import com.backend.eventmarketplace.repository.CacheStats;
+import com.backend.eventmarketplace.repository.EntityCaches;
+import com.backend.eventmarketplace.service.TokenVerifier;
+import com.backend.eventmarketplace.service.UserBookingsCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+@CrossOrigin(origins = "*")
+public class CacheController {
+
+    private final EntityCaches entityCaches;
+    private final UserBookingsCache userBookingsCache;
+    private final TokenVerifier tokenVerifier;
+
+    public CacheController(EntityCaches entityCaches, UserBookingsCache userBookingsCache, TokenVerifier tokenVerifier) {
+        this.entityCaches = entityCaches;
+        this.userBookingsCache = userBookingsCache;
+        this.tokenVerifier = tokenVerifier;
+    }
+
+    /**
+     * Hits, misses, evictions, invalidations and size of each near cache and of the
+     * per-user bookings and verified-token caches.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats() {
+        Map<String, CacheStats> stats = entityCaches.stats();
+        stats.put("user-bookings", userBookingsCache.stats());
+        stats.put("auth-tokens", tokenVerifier.stats());
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -1,9 +1,10 @@
 package com.backend.eventmarketplace.controller;
 
 import com.backend.eventmarketplace.service.DashboardService;
+import com.backend.eventmarketplace.service.RollupService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/dashboard")
@@ -11,15 +12,25 @@ import java.util.concurrent.ExecutionException;
 public class DashboardController {
 
     private final DashboardService dashboardService;
+    private final RollupService rollupService;
 
-    public DashboardController(DashboardService dashboardService) {
+    public DashboardController(DashboardService dashboardService, RollupService rollupService) {
         this.dashboardService = dashboardService;
+        this.rollupService = rollupService;
     }
 
     @GetMapping("/organization")
-    public ResponseEntity<?> getOrganizationDashboard() throws ExecutionException, InterruptedException {
-        return ResponseEntity.ok(
-                dashboardService.getOrganizationDashboard()
-        );
+    public CompletableFuture<ResponseEntity<?>> getOrganizationDashboard() {
+        return dashboardService.getOrganizationDashboardAsync()
+                .thenApply(ResponseEntity::ok);
     }
-}
\ No newline at end of file
+
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<?> rebuildRollups() {
+        try {
+            return ResponseEntity.ok(rollupService.rebuild());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -1,21 +1,37 @@
 package com.backend.eventmarketplace.controller;
 
 import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.service.EventCatalogService;
+import com.backend.eventmarketplace.service.EventSearchIndex;
+import com.backend.eventmarketplace.service.EventSearchService;
 import com.backend.eventmarketplace.service.EventService;
-import org.springframework.http.ResponseEntity;
+import com.backend.eventmarketplace.service.NearbyService;
+import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import java.util.List;
-import java.util.concurrent.ExecutionException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/events")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = Responses.NEXT_PAGE_TOKEN)
 public class EventController {
 
     private final EventService eventService;
+    private final EventCatalogService eventCatalogService;
+    private final EventSearchService eventSearchService;
+    private final NearbyService nearbyService;
 
-    public EventController(EventService eventService) {
+    public EventController(EventService eventService, EventCatalogService eventCatalogService,
+                           EventSearchService eventSearchService, NearbyService nearbyService) {
         this.eventService = eventService;
+        this.eventCatalogService = eventCatalogService;
+        this.eventSearchService = eventSearchService;
+        this.nearbyService = nearbyService;
     }
 
     @PostMapping
@@ -28,25 +44,153 @@ public class EventController {
         }
     }
 
-    @GetMapping("/{id}")
-    public ResponseEntity<?> getEvent(@PathVariable String id) {
+    /**
+     * Progress of cancelling the bookings of a cancelled or deleted event.
+     */
+    @GetMapping("/{id}/cancellation")
+    public CompletableFuture<ResponseEntity<?>> getCancellation(@PathVariable String id) {
+        return eventService.getCancellationAsync(id)
+                .<ResponseEntity<?>>thenApply(job -> job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build())
+                .exceptionally(Responses::badRequest);
+    }
+
+    /**
+     * Full-text search over title, description, location and city, best match first,
+     * narrowed by the optional filters. Dates are ISO-8601 instants. Without q, lists
+     * the events passing the filters soonest first.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchEvents(@RequestParam(required = false) String q,
+                                          @RequestParam(required = false) String eventType,
+                                          @RequestParam(required = false) String status,
+                                          @RequestParam(required = false) Boolean bookingEnabled,
+                                          @RequestParam(required = false) Double minPrice,
+                                          @RequestParam(required = false) Double maxPrice,
+                                          @RequestParam(required = false) String from,
+                                          @RequestParam(required = false) String to,
+                                          @RequestParam(required = false) Integer pageSize,
+                                          @RequestParam(required = false) String pageToken) {
         try {
-            Event event = eventService.getEventById(id);
-            return event != null ? ResponseEntity.ok(event) : ResponseEntity.notFound().build();
+            EventSearchIndex.Query query = new EventSearchIndex.Query(q,
+                    eventType == null ? null : Event.EventType.valueOf(eventType.toUpperCase(Locale.ROOT)),
+                    status == null ? null : Event.EventStatus.valueOf(status.toUpperCase(Locale.ROOT)),
+                    bookingEnabled, minPrice, maxPrice, instant(from), instant(to));
+            return ResponseEntity.ok(eventSearchService.search(query, pageSize, pageToken));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
-    @GetMapping
-    public ResponseEntity<?> getAllEvents() {
+
+    /**
+     * Active events with a position within radiusKm of lat/lng, nearest first, each
+     * with its distance.
+     */
+    @GetMapping("/near")
+    public ResponseEntity<?> eventsNear(@RequestParam double lat,
+                                        @RequestParam double lng,
+                                        @RequestParam double radiusKm,
+                                        @RequestParam(required = false) String eventType,
+                                        @RequestParam(required = false) String from,
+                                        @RequestParam(required = false) String to,
+                                        @RequestParam(required = false) Integer pageSize,
+                                        @RequestParam(required = false) String pageToken) {
+        try {
+            return ResponseEntity.ok(nearbyService.eventsNear(lat, lng, radiusKm, filter(eventType, from, to),
+                    pageSize, pageToken));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Active events inside a bounding box, nearest to lat/lng first, or to the middle of
+     * the box without them. A box with west greater than east crosses the antimeridian.
+     */
+    @GetMapping("/within")
+    public ResponseEntity<?> eventsWithin(@RequestParam double south,
+                                          @RequestParam double west,
+                                          @RequestParam double north,
+                                          @RequestParam double east,
+                                          @RequestParam(required = false) Double lat,
+                                          @RequestParam(required = false) Double lng,
+                                          @RequestParam(required = false) String eventType,
+                                          @RequestParam(required = false) String from,
+                                          @RequestParam(required = false) String to,
+                                          @RequestParam(required = false) Integer pageSize,
+                                          @RequestParam(required = false) String pageToken) {
         try {
-            List<Event> events = eventService.getAllEvents();
-            return ResponseEntity.ok(events);
+            return ResponseEntity.ok(nearbyService.eventsWithin(south, west, north, east, lat, lng,
+                    filter(eventType, from, to), pageSize, pageToken));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
+    @GetMapping("/{id}")
+    public CompletableFuture<ResponseEntity<?>> getEvent(@PathVariable String id) {
+        return eventService.getEventByIdAsync(id)
+                .<ResponseEntity<?>>thenApply(event -> event != null ? ResponseEntity.ok(event) : ResponseEntity.notFound().build())
+                .exceptionally(Responses::badRequest);
+    }
+    /**
+     * The first PageTokens.MAX_UNPAGED_ITEMS events, with the token for the rest in the
+     * X-Next-Page-Token header. Served from the in-memory catalog when it is ready:
+     * pre-serialised (gzip when the client accepts it) with a strong ETag, and 304 when
+     * the client's copy is current. With pageSize or pageToken, returns one page of
+     * events instead.
+     */
+    @GetMapping
+    public CompletableFuture<ResponseEntity<?>> getAllEvents(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestParam(required = false) Integer pageSize,
+            @RequestParam(required = false) String pageToken) {
+        if (pageSize != null || pageToken != null) {
+            return eventService.getEventsPageAsync(pageSize, pageToken)
+                    .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                    .exceptionally(Responses::badRequest);
+        }
+        Optional<EventCatalogService.Listing> listing = eventCatalogService.listing();
+        if (listing.isPresent()) {
+            return CompletableFuture.completedFuture(listingResponse(listing.get(), ifNoneMatch, acceptEncoding));
+        }
+        return eventService.getAllEventsAsync()
+                .<ResponseEntity<?>>thenApply(Responses::items)
+                .exceptionally(Responses::badRequest);
+    }
+
+    private ResponseEntity<?> listingResponse(EventCatalogService.Listing listing, String ifNoneMatch,
+                                              String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        // Each encoding is a different representation, so each has its own strong ETag
+        String etag = gzip ? listing.gzipEtag() : listing.etag();
+        if (ifNoneMatch != null && Arrays.stream(ifNoneMatch.split(","))
+                .map(tag -> tag.trim().replaceFirst("^W/", ""))
+                .anyMatch(tag -> tag.equals(etag) || tag.equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (listing.nextPageToken() != null) {
+            response.header(Responses.NEXT_PAGE_TOKEN, listing.nextPageToken());
+        }
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(listing.gzip());
+        }
+        return response.body(listing.json());
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<?> updateEvent(@PathVariable String id, @RequestBody Event event) {
         try {
@@ -57,6 +201,16 @@ public class EventController {
         }
     }
 
+    @PostMapping(value = "/{id}/images", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> addImage(@PathVariable String id, @RequestPart("file") MultipartFile file) {
+        try {
+            Event updated = eventService.addImage(id, file);
+            return ResponseEntity.ok(updated);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PutMapping("/{id}/toggle-booking")
     public ResponseEntity<?> toggleBooking(@PathVariable String id) {
         try {
@@ -76,4 +230,14 @@ public class EventController {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static NearbyService.EventFilter filter(String eventType, String from, String to) {
+        return new NearbyService.EventFilter(
+                eventType == null ? null : Event.EventType.valueOf(eventType.toUpperCase(Locale.ROOT)),
+                instant(from), instant(to));
+    }
+
+    private static Instant instant(String value) {
+        return value == null || value.isEmpty() ? null : Instant.parse(value);
+    }
+}
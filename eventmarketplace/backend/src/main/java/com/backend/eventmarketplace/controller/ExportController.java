@@ -0,0 +1,78 @@
+package com.backend.eventmarketplace.controller;
+
+import com.backend.eventmarketplace.dto.AuthenticatedUser;
+import com.backend.eventmarketplace.dto.ExportFilter;
+import com.backend.eventmarketplace.service.ExportService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+
+/**
+ * Streaming exports for accounting, for admins only since rows carry every user's
+ * contact details. Dates are ISO-8601 instants; format is ndjson (default) or csv.
+ */
+@RestController
+@RequestMapping("/api/exports")
+@CrossOrigin(origins = "*")
+public class ExportController {
+
+    private final ExportService exportService;
+
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @GetMapping("/bookings")
+    public ResponseEntity<?> exportBookings(@RequestParam(required = false) String format,
+                                            @RequestParam(required = false) String from,
+                                            @RequestParam(required = false) String to,
+                                            @RequestParam(required = false) String eventId,
+                                            @RequestParam(required = false) String status,
+                                            @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (!Responses.isAdmin(principal)) {
+            return principal == null ? Responses.unauthorized() : Responses.forbidden();
+        }
+        try {
+            ExportService.Format exportFormat = ExportService.Format.parse(format);
+            ExportFilter filter = exportService.bookingFilter(instant(from), instant(to), eventId, status);
+            return stream("bookings", exportFormat, out -> exportService.exportBookings(filter, exportFormat, out));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/payments")
+    public ResponseEntity<?> exportPayments(@RequestParam(required = false) String format,
+                                            @RequestParam(required = false) String from,
+                                            @RequestParam(required = false) String to,
+                                            @RequestParam(required = false) String eventId,
+                                            @RequestParam(required = false) String status,
+                                            @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (!Responses.isAdmin(principal)) {
+            return principal == null ? Responses.unauthorized() : Responses.forbidden();
+        }
+        try {
+            ExportService.Format exportFormat = ExportService.Format.parse(format);
+            ExportFilter filter = exportService.paymentFilter(instant(from), instant(to), eventId, status);
+            return stream("payments", exportFormat, out -> exportService.exportPayments(filter, exportFormat, out));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String name, ExportService.Format format,
+                                                         StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "." + format.extension() + "\"")
+                .body(body);
+    }
+
+    private static Instant instant(String value) {
+        return value == null || value.isEmpty() ? null : Instant.parse(value);
+    }
+}
@@ -0,0 +1,52 @@
+package com.backend.eventmarketplace.controller;
+
+import com.backend.eventmarketplace.dto.AuthenticatedUser;
+import com.backend.eventmarketplace.service.PaymentService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/payments")
+@CrossOrigin(origins = "*")
+public class PaymentController {
+
+    private final PaymentService paymentService;
+
+    public PaymentController(PaymentService paymentService) {
+        this.paymentService = paymentService;
+    }
+
+    /**
+     * A payment, for its own user or an admin.
+     */
+    @GetMapping("/{id}")
+    public CompletableFuture<ResponseEntity<?>> getPayment(@PathVariable String id,
+                                                           @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (principal == null) {
+            return CompletableFuture.completedFuture(Responses.unauthorized());
+        }
+        return paymentService.getPaymentByIdAsync(id)
+                .<ResponseEntity<?>>thenApply(payment -> {
+                    if (payment == null) {
+                        return ResponseEntity.notFound().build();
+                    }
+                    return Responses.mayRead(principal, payment.getUserId()) ? ResponseEntity.ok(payment) : Responses.forbidden();
+                })
+                .exceptionally(Responses::badRequest);
+    }
+
+    @GetMapping("/user/{userId}")
+    public CompletableFuture<ResponseEntity<?>> getUserPayments(@PathVariable String userId,
+                                                                @RequestParam(required = false) Integer pageSize,
+                                                                @RequestParam(required = false) String pageToken,
+                                                                @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (!Responses.actsAs(principal, userId)) {
+            return CompletableFuture.completedFuture(Responses.forbidden());
+        }
+        return paymentService.getUserPaymentsPageAsync(userId, pageSize, pageToken)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(Responses::badRequest);
+    }
+}
@@ -0,0 +1,74 @@
+package com.backend.eventmarketplace.controller;
+
+import com.backend.eventmarketplace.dto.AuthenticatedUser;
+import com.backend.eventmarketplace.dto.Page;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+final class Responses {
+
+    static final String NEXT_PAGE_TOKEN = "X-Next-Page-Token";
+
+    private Responses() {
+    }
+
+    /**
+     * A page as the plain list that requests without paging parameters have always had,
+     * with the token for the rest, if any, in the X-Next-Page-Token header.
+     */
+    static ResponseEntity<?> items(Page<?> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextPageToken() != null) {
+            response.header(NEXT_PAGE_TOKEN, page.getNextPageToken());
+        }
+        return response.body(page.getItems());
+    }
+
+    /**
+     * Same 400 body the synchronous handlers return, for a failed CompletableFuture.
+     */
+    static ResponseEntity<?> badRequest(Throwable error) {
+        return ResponseEntity.badRequest().body(unwrap(error).getMessage());
+    }
+
+    /**
+     * True only when the request carries a verified token for userId.
+     */
+    static boolean actsAs(AuthenticatedUser principal, String userId) {
+        return principal != null && principal.getUid().equals(userId);
+    }
+
+    /**
+     * True when the request carries a verified token with the admin claim.
+     */
+    static boolean isAdmin(AuthenticatedUser principal) {
+        return principal != null && principal.isAdmin();
+    }
+
+    /**
+     * Whether the caller may read a record belonging to userId: its owner or an admin.
+     */
+    static boolean mayRead(AuthenticatedUser principal, String userId) {
+        return actsAs(principal, userId) || isAdmin(principal);
+    }
+
+    static ResponseEntity<?> unauthorized() {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Missing token");
+    }
+
+    static ResponseEntity<?> forbidden() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body("User not allowed");
+    }
+
+    static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,113 @@
+package com.backend.eventmarketplace.controller;
+
+import com.backend.eventmarketplace.dto.AuthenticatedUser;
+import com.backend.eventmarketplace.model.Review;
+import com.backend.eventmarketplace.repository.ReviewRepository;
+import com.backend.eventmarketplace.service.ReviewService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/reviews")
+@CrossOrigin(origins = "*")
+public class ReviewController {
+
+    private final ReviewService reviewService;
+
+    public ReviewController(ReviewService reviewService) {
+        this.reviewService = reviewService;
+    }
+
+    /**
+     * Reviews as the authenticated caller; userId, if given, must be theirs.
+     */
+    @PostMapping
+    public ResponseEntity<?> createReview(@RequestBody Review review,
+                                          @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (principal == null) {
+            return Responses.unauthorized();
+        }
+        if (review.getUserId() == null) {
+            review.setUserId(principal.getUid());
+        }
+        if (!Responses.actsAs(principal, review.getUserId())) {
+            return Responses.forbidden();
+        }
+        try {
+            return ResponseEntity.ok(reviewService.createReview(review));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public CompletableFuture<ResponseEntity<?>> getReview(@PathVariable String id) {
+        return reviewService.getReviewAsync(id)
+                .<ResponseEntity<?>>thenApply(review -> review != null ? ResponseEntity.ok(review) : ResponseEntity.notFound().build())
+                .exceptionally(Responses::badRequest);
+    }
+
+    /**
+     * One page of an event's reviews, newest first.
+     */
+    @GetMapping("/event/{eventId}")
+    public CompletableFuture<ResponseEntity<?>> getEventReviews(@PathVariable String eventId,
+                                                                @RequestParam(required = false) Integer pageSize,
+                                                                @RequestParam(required = false) String pageToken) {
+        return reviewService.getEventReviewsAsync(eventId, pageSize, pageToken)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(Responses::badRequest);
+    }
+
+    /**
+     * One page of a supplier's reviews, newest first.
+     */
+    @GetMapping("/supplier/{supplierId}")
+    public CompletableFuture<ResponseEntity<?>> getSupplierReviews(@PathVariable String supplierId,
+                                                                   @RequestParam(required = false) Integer pageSize,
+                                                                   @RequestParam(required = false) String pageToken) {
+        return reviewService.getSupplierReviewsAsync(supplierId, pageSize, pageToken)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(Responses::badRequest);
+    }
+
+    /**
+     * Review count, average and 1 to 5 star histogram of an event.
+     */
+    @GetMapping("/rating/event/{eventId}")
+    public CompletableFuture<ResponseEntity<?>> getEventRating(@PathVariable String eventId) {
+        return reviewService.getRatingSummaryAsync(ReviewRepository.EVENT, eventId)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(Responses::badRequest);
+    }
+
+    /**
+     * Review count, average and 1 to 5 star histogram of a supplier.
+     */
+    @GetMapping("/rating/supplier/{supplierId}")
+    public CompletableFuture<ResponseEntity<?>> getSupplierRating(@PathVariable String supplierId) {
+        return reviewService.getRatingSummaryAsync(ReviewRepository.SUPPLIER, supplierId)
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(Responses::badRequest);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteReview(@PathVariable String id,
+                                          @RequestAttribute(name = AuthenticatedUser.ATTRIBUTE, required = false) AuthenticatedUser principal) {
+        if (principal == null) {
+            return Responses.unauthorized();
+        }
+        try {
+            Review review = reviewService.getReviewAsync(id).get();
+            if (review != null && !Responses.actsAs(principal, review.getUserId())) {
+                return Responses.forbidden();
+            }
+            reviewService.deleteReview(id);
+            return ResponseEntity.ok("Review deleted");
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Responses.unwrap(e).getMessage());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.backend.eventmarketplace.controller;
+
+import com.backend.eventmarketplace.service.TypeaheadService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/suggestions")
+@CrossOrigin(origins = "*")
+public class SuggestionController {
+
+    private final TypeaheadService typeaheadService;
+
+    public SuggestionController(TypeaheadService typeaheadService) {
+        this.typeaheadService = typeaheadService;
+    }
+
+    /**
+     * Up to ten event titles, cities and supplier names with a word starting with q,
+     * most booked first. Answered from memory, so it can run on every keystroke.
+     */
+    @GetMapping
+    public ResponseEntity<?> suggest(@RequestParam String q, @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(typeaheadService.suggest(q, limit));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -1,20 +1,31 @@
 package com.backend.eventmarketplace.controller;
 
 import com.backend.eventmarketplace.model.Supplier;
+import com.backend.eventmarketplace.service.NearbyService;
+import com.backend.eventmarketplace.service.SupplierDirectoryIndex;
+import com.backend.eventmarketplace.service.SupplierDirectoryService;
 import com.backend.eventmarketplace.service.SupplierService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.util.List;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/suppliers")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = Responses.NEXT_PAGE_TOKEN)
 public class SupplierController {
 
     private final SupplierService supplierService;
+    private final NearbyService nearbyService;
+    private final SupplierDirectoryService supplierDirectoryService;
 
-    public SupplierController(SupplierService supplierService) {
+    public SupplierController(SupplierService supplierService, NearbyService nearbyService,
+                              SupplierDirectoryService supplierDirectoryService) {
         this.supplierService = supplierService;
+        this.nearbyService = nearbyService;
+        this.supplierDirectoryService = supplierDirectoryService;
     }
 
     @PostMapping
@@ -28,20 +39,63 @@ public class SupplierController {
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<?> getSupplierByUser(@PathVariable String userId) {
+    public CompletableFuture<ResponseEntity<?>> getSupplierByUser(@PathVariable String userId) {
+        return supplierService.getSupplierByUserIdAsync(userId)
+                .<ResponseEntity<?>>thenApply(supplier -> supplier != null ? ResponseEntity.ok(supplier) : ResponseEntity.notFound().build())
+                .exceptionally(Responses::badRequest);
+    }
+
+    /**
+     * Every supplier, or one page of them when pageSize or pageToken is given. With
+     * serviceType, city or q, returns a page of the matching suppliers by name from the
+     * in-memory directory, with counts per service type and per city.
+     */
+    @GetMapping
+    public CompletableFuture<ResponseEntity<?>> getAllSuppliers(@RequestParam(required = false) String serviceType,
+                                                                @RequestParam(required = false) String city,
+                                                                @RequestParam(required = false) String q,
+                                                                @RequestParam(required = false) Integer pageSize,
+                                                                @RequestParam(required = false) String pageToken) {
+        if (serviceType != null || city != null || q != null) {
+            return CompletableFuture.completedFuture(directory(serviceType, city, q, pageSize, pageToken));
+        }
+        if (pageSize != null || pageToken != null) {
+            return supplierService.getSuppliersPageAsync(pageSize, pageToken)
+                    .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                    .exceptionally(Responses::badRequest);
+        }
+        return supplierService.getAllSupplierAsync()
+                .<ResponseEntity<?>>thenApply(Responses::items)
+                .exceptionally(Responses::badRequest);
+    }
+
+    private ResponseEntity<?> directory(String serviceType, String city, String q, Integer pageSize,
+                                        String pageToken) {
         try {
-            Supplier supplier = supplierService.getSupplierByUserId(userId);
-            return supplier != null ? ResponseEntity.ok(supplier) : ResponseEntity.notFound().build();
+            SupplierDirectoryIndex.Query query = new SupplierDirectoryIndex.Query(q,
+                    serviceType == null ? null : Supplier.ServiceType.valueOf(serviceType.toUpperCase(Locale.ROOT)),
+                    city);
+            return ResponseEntity.ok(supplierDirectoryService.search(query, pageSize, pageToken));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
-    @GetMapping
-    public ResponseEntity<?> getAllSuppliers() {
+    /**
+     * Suppliers with a position within radiusKm of lat/lng, nearest first.
+     */
+    @GetMapping("/near")
+    public ResponseEntity<?> suppliersNear(@RequestParam double lat,
+                                           @RequestParam double lng,
+                                           @RequestParam double radiusKm,
+                                           @RequestParam(required = false) Integer pageSize,
+                                           @RequestParam(required = false) String pageToken) {
         try {
-            List<Supplier> suppliers = supplierService.getAllSupplier();
-            return ResponseEntity.ok(suppliers);
+            return ResponseEntity.ok(nearbyService.suppliersNear(lat, lng, radiusKm, pageSize, pageToken));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -0,0 +1,29 @@
+package com.backend.eventmarketplace.dto;
+
+import com.backend.eventmarketplace.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The caller behind a verified bearer token. Set as a request attribute by the
+ * authentication filter; user is null when the account has no profile document.
+ * admin comes from the token's admin custom claim, which only the Admin SDK can set,
+ * unlike the self-chosen profile role.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthenticatedUser {
+
+    public static final String ATTRIBUTE = "authenticatedUser";
+
+    private String uid;
+    private String email;
+    private User user;
+    private boolean admin;
+
+    public AuthenticatedUser(String uid, String email, User user) {
+        this(uid, email, user, false);
+    }
+}
@@ -1,10 +1,12 @@
 package com.backend.eventmarketplace.dto;
 
 import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Rollup;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -14,4 +16,7 @@ public class DashboardStats {
     private Integer totalBookings;
     private Double totalRevenue;
     private List<Booking> recentBookings;
+    private Map<String, Rollup> eventTypeStats;
+    private List<Rollup> hourlyStats;
+    private List<Rollup> dailyStats;
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.backend.eventmarketplace.dto;
+
+import com.backend.eventmarketplace.model.Event;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of search results, best match first, with the number of events that
+ * matched in all. nextPageToken is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventSearchResults {
+    private List<Event> items;
+    private String nextPageToken;
+    private int total;
+}
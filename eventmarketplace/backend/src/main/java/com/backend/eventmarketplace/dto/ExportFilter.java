@@ -0,0 +1,20 @@
+package com.backend.eventmarketplace.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Filters for an export; null fields are not applied. from is inclusive, to exclusive.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportFilter {
+    private Instant from;
+    private Instant to;
+    private String eventId;
+    private String status;
+}
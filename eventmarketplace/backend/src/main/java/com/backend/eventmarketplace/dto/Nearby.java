@@ -0,0 +1,16 @@
+package com.backend.eventmarketplace.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A result of a location query with its great-circle distance from the query point.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Nearby<T> {
+    private T item;
+    private double distanceKm;
+}
@@ -0,0 +1,13 @@
+package com.backend.eventmarketplace.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupRebuildResult {
+    private Integer bookingsScanned;
+    private Integer rollupsWritten;
+}
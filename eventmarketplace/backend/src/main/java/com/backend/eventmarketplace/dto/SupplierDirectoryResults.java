@@ -0,0 +1,25 @@
+package com.backend.eventmarketplace.dto;
+
+import com.backend.eventmarketplace.model.Supplier;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a filtered supplier listing, by name, with the number of suppliers that
+ * matched in all and how many match per service type and per city. nextPageToken is
+ * null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SupplierDirectoryResults {
+    private List<Supplier> items;
+    private String nextPageToken;
+    private int total;
+    private Map<Supplier.ServiceType, Integer> serviceTypes;
+    private Map<String, Integer> cities;
+}
@@ -28,6 +28,7 @@ public class Booking {
     private String userEmail;
     private String userPhone;
     private String eventTitle;
+    private Event.EventType eventType;
     private Instant eventDateTime;
     private String eventLocation;
 
@@ -20,11 +20,14 @@ public class Event {
     private EventType eventType;
     private String location;
     private String city;
+    private Double latitude;
+    private Double longitude;
     private Instant eventDateTime;
     private Double ticketPrice;
     private Integer capacity;
     private Integer availableSeats;
     private List<String> imageUrls;
+    private List<ImageVariants> imageVariants;
     private String supplierNotes;
     private EventStatus status;
     private Boolean bookingEnabled;
@@ -32,6 +35,7 @@ public class Event {
     private Instant updatedAt;
     private Integer totalBookings;
     private Double totalRevenue;
+    private Integer counterShards;
 
     public enum EventType {
         PUBLIC_EVENT,
@@ -0,0 +1,56 @@
+package com.backend.eventmarketplace.model;
+
+import com.google.cloud.firestore.annotation.DocumentId;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Progress of cancelling every booking of a cancelled or deleted event, keyed by the
+ * event id. The cursor is the last booking processed (bookings go in user order) and is
+ * written in the same commit as the batch it ends, so a resumed run picks up exactly
+ * where the last commit left off. owner names the worker holding the lease and changes
+ * with every start or claim; each batch commits only while it is still the same.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventCancellation {
+
+    @DocumentId
+    private String id;
+    private String eventId;
+    private String eventTitle;
+    private Event.EventType eventType;
+    private Reason reason;
+    private Status status;
+    private String cursorUserId;
+    private String cursorBookingId;
+    private Integer bookingsCanceled;
+    private Long seatsReleased;
+    private Double amountRefunded;
+    private Integer notificationsQueued;
+    private Instant startedAt;
+    private Instant updatedAt;
+    private Instant completedAt;
+    private Instant leaseUntil;
+    private String owner;
+    private String lastError;
+
+    public enum Reason {
+        CANCELED,
+        DELETED
+    }
+
+    public enum Status {
+        RUNNING,
+        COMPLETED
+    }
+
+    public static EventCancellation start(Event event, Reason reason, Instant now) {
+        return new EventCancellation(event.getId(), event.getId(), event.getTitle(), event.getEventType(), reason,
+                Status.RUNNING, null, null, 0, 0L, 0.0, 0, now, now, null, null, null, null);
+    }
+}
@@ -0,0 +1,35 @@
+package com.backend.eventmarketplace.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventCounters {
+
+    private String eventId;
+    private Integer availableSeats;
+    private Integer totalBookings;
+    private Double totalRevenue;
+
+    public void applyTo(Event event) {
+        event.setAvailableSeats(availableSeats);
+        event.setTotalBookings(totalBookings);
+        event.setTotalRevenue(totalRevenue);
+    }
+
+    public static List<Event> applyAll(List<Event> events, Map<String, EventCounters> counters) {
+        events.forEach(event -> {
+            EventCounters eventCounters = counters.get(event.getId());
+            if (eventCounters != null) {
+                eventCounters.applyTo(event);
+            }
+        });
+        return events;
+    }
+}
@@ -0,0 +1,20 @@
+package com.backend.eventmarketplace.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resized JPEG copies of an uploaded image, stored next to it. Lists should show the
+ * thumbnail or card and only detail pages the full variant.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageVariants {
+
+    private String original;
+    private String thumbnail;
+    private String card;
+    private String full;
+}
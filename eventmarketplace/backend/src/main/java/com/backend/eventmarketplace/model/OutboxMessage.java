@@ -0,0 +1,41 @@
+package com.backend.eventmarketplace.model;
+
+import com.google.cloud.firestore.annotation.DocumentId;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * An email waiting in the outbox. It is written in the same commit as the change that
+ * triggers it and sent later by the dispatcher.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxMessage {
+
+    @DocumentId
+    private String id;
+    private String to;
+    private String subject;
+    private String body;
+    private OutboxStatus status;
+    private Integer attempts;
+    private Instant nextAttemptAt;
+    private Instant createdAt;
+    private Instant sentAt;
+    private String lastError;
+
+    public enum OutboxStatus {
+        PENDING,
+        SENT,
+        DEAD
+    }
+
+    public static OutboxMessage email(String to, String subject, String body) {
+        Instant now = Instant.now();
+        return new OutboxMessage(null, to, subject, body, OutboxStatus.PENDING, 0, now, now, null, null);
+    }
+}
@@ -0,0 +1,53 @@
+package com.backend.eventmarketplace.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import com.google.cloud.firestore.annotation.DocumentId;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Running totals of the reviews of one event or supplier, keyed by its type and id.
+ * histogram holds the number of 1 to 5 star reviews in that order. Kept in step with
+ * the reviews in the same transaction, so the average is one document read.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingSummary {
+
+    public static final int MAX_RATING = 5;
+
+    @DocumentId
+    private String id;
+    private String entityType;
+    private String entityId;
+    private Long count;
+    private Long sum;
+    private Double average;
+    private List<Long> histogram;
+    private Instant updatedAt;
+
+    public static RatingSummary empty(String id, String entityType, String entityId) {
+        return new RatingSummary(id, entityType, entityId, 0L, 0L, null,
+                new ArrayList<>(Collections.nCopies(MAX_RATING, 0L)), null);
+    }
+
+    /**
+     * Adds a review of the given rating, or takes one away with a negative delta.
+     */
+    public void add(int rating, int delta) {
+        count = (count != null ? count : 0L) + delta;
+        sum = (sum != null ? sum : 0L) + (long) rating * delta;
+        // A fresh list, so a copy read in a transaction never shares it with the original
+        List<Long> next = new ArrayList<>(histogram != null ? histogram : Collections.nCopies(MAX_RATING, 0L));
+        next.set(rating - 1, next.get(rating - 1) + delta);
+        histogram = next;
+        average = count > 0 ? (double) sum / count : null;
+        updatedAt = Instant.now();
+    }
+}
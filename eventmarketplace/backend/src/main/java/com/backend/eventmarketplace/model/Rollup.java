@@ -0,0 +1,44 @@
+package com.backend.eventmarketplace.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * Materialised booking totals for one dimension: everything ("global"), an event type,
+ * or an hourly/daily bucket. Cancelled bookings are taken back out of bookings, seats
+ * and revenue and counted under cancellations.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Rollup {
+
+    private String key;
+    private String scope;
+    private String bucket;
+    private Long bookings;
+    private Long seats;
+    private Double revenue;
+    private Long cancellations;
+
+    public static Rollup empty(String key, String scope, String bucket) {
+        return new Rollup(key, scope, bucket, 0L, 0L, 0.0, 0L);
+    }
+
+    public void add(long bookings, long seats, double revenue, long cancellations) {
+        this.bookings = (this.bookings != null ? this.bookings : 0L) + bookings;
+        this.seats = (this.seats != null ? this.seats : 0L) + seats;
+        this.revenue = (this.revenue != null ? this.revenue : 0.0) + revenue;
+        this.cancellations = (this.cancellations != null ? this.cancellations : 0L) + cancellations;
+    }
+
+    public void add(Rollup other) {
+        add(value(other.bookings), value(other.seats), other.revenue != null ? other.revenue : 0.0,
+                value(other.cancellations));
+    }
+
+    private static long value(Long value) {
+        return value != null ? value : 0L;
+    }
+}
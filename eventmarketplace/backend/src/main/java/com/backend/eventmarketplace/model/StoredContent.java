@@ -0,0 +1,29 @@
+package com.backend.eventmarketplace.model;
+
+import com.google.cloud.firestore.annotation.DocumentId;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A content-addressed object in the storage bucket, keyed by the SHA-256 of its bytes,
+ * with the number of users and events that point at it. The generation is the upload
+ * this entry owns, so a delete never removes a newer upload of the same content. It is
+ * null until the first upload has finished, so the object may not exist yet.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredContent {
+
+    @DocumentId
+    private String id;
+    private String objectName;
+    private String contentType;
+    private Long size;
+    private Long references;
+    private Long generation;
+    private Instant createdAt;
+}
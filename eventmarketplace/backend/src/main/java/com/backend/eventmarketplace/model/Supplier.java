@@ -20,6 +20,8 @@ public class Supplier {
     private String description;
     private ServiceType serviceType;
     private String city;
+    private Double latitude;
+    private Double longitude;
     private Instant createdAt;
     private Instant updatedAt;
 
@@ -18,6 +18,7 @@ public class User {
     private String email;
     private String phoneNumber;
     private String profilePictureUrl;
+    private ImageVariants profilePictureVariants;
     private UserRole role;
     private Instant createdAt;
     private Instant updatedAt;
@@ -1,21 +1,64 @@
 package com.backend.eventmarketplace.repository;
 
-import com.google.api.core.ApiFuture;
+import com.backend.eventmarketplace.dto.Page;
 import com.google.cloud.firestore.*;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.backend.eventmarketplace.repository.Futures.toCompletable;
 
+/**
+ * Each operation has a non-blocking *Async form returning a CompletableFuture; the
+ * blocking forms simply wait on it. getById reads through the repository's near cache,
+ * and concurrent misses for one document share a single Firestore read. Writes and
+ * deletes through the repository invalidate both, including a read still in flight.
+ */
 @Repository
 public class BaseFirestoreRepository<T> {
 
     protected final Firestore firestore;
+    protected final EntityCache<T> cache;
+    protected final SingleFlight<T> reads;
 
+    @Autowired
     public BaseFirestoreRepository(Firestore firestore) {
+        this(firestore, EntityCache.none(), new SingleFlight<>(Duration.ZERO));
+    }
+
+    public BaseFirestoreRepository(Firestore firestore, EntityCache<T> cache, SingleFlight<T> reads) {
         this.firestore = firestore;
+        this.cache = cache;
+        this.reads = reads;
+    }
+
+    protected T save(String collectionName, String id, T entity)
+            throws ExecutionException, InterruptedException {
+        return write(collectionName, id, entity).getEntity();
     }
 
-    protected T save(String collectionName, String id, T entity, Class<T> clazz)
+    protected CompletableFuture<T> saveAsync(String collectionName, String id, T entity) {
+        return writeAsync(collectionName, id, entity).thenApply(WriteReceipt::getEntity);
+    }
+
+    protected WriteReceipt<T> write(String collectionName, String id, T entity)
             throws ExecutionException, InterruptedException {
+        return writeAsync(collectionName, id, entity).get();
+    }
+
+    /**
+     * Writes the entity in a single round trip. The generated document id is set on the
+     * entity and the server update time comes from the WriteResult, so there is no re-read.
+     */
+    protected CompletableFuture<WriteReceipt<T>> writeAsync(String collectionName, String id, T entity) {
         CollectionReference collection = firestore.collection(collectionName);
         DocumentReference docRef;
 
@@ -25,27 +68,149 @@ public class BaseFirestoreRepository<T> {
             docRef = collection.document(id);
         }
 
-        ApiFuture<WriteResult> future = docRef.set(entity);
-        future.get();
-        return getById(collectionName, docRef.getId(), clazz);
+        return toCompletable(docRef.set(entity)).thenApply(result -> {
+            invalidate(collectionName, docRef.getId());
+            DocumentIds.assign(entity, docRef.getId());
+            return new WriteReceipt<>(entity, docRef.getId(), result.getUpdateTime());
+        });
+    }
+
+    protected T save(UnitOfWork work, String collectionName, String id, T entity) {
+        return work.set(collectionName, id, entity);
     }
 
     protected T getById(String collectionName, String id, Class<T> clazz)
             throws ExecutionException, InterruptedException {
-        DocumentSnapshot snapshot = firestore.collection(collectionName)
-                .document(id)
-                .get()
-                .get();
-        if (!snapshot.exists()) return null;
-        T entity = snapshot.toObject(clazz);
-        return entity;
+        return getByIdAsync(collectionName, id, clazz).get();
+    }
+
+    protected CompletableFuture<T> getByIdAsync(String collectionName, String id, Class<T> clazz) {
+        T cached = cache.get(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(copy(cached));
+        }
+
+        // The loaded entity is shared, so every caller gets its own copy
+        return reads.load(collectionName + "/" + id, () -> {
+                    long version = cache.version(id);
+                    return toCompletable(firestore.collection(collectionName).document(id).get()).thenApply(snapshot -> {
+                        if (!snapshot.exists()) {
+                            return null;
+                        }
+                        T entity = snapshot.toObject(clazz);
+                        // Skipped when a write invalidated the id while we were reading
+                        cache.put(id, entity, version);
+                        return entity;
+                    });
+                })
+                .thenApply(entity -> entity != null ? copy(entity) : null);
+    }
+
+    protected CompletableFuture<List<T>> queryAsync(Query query, Class<T> clazz) {
+        return toCompletable(query.get()).thenApply(snapshot -> snapshot.getDocuments()
+                .stream()
+                .map(doc -> doc.toObject(clazz))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * One page of a query ordered by document id.
+     */
+    protected CompletableFuture<Page<T>> pageAsync(Query query, Integer pageSize, String pageToken, Class<T> clazz) {
+        return pageAsync(query.orderBy(FieldPath.documentId()), pageSize, pageToken, clazz,
+                doc -> new Object[]{doc.getId()});
+    }
+
+    /**
+     * One page of an ordered query. The ordering must end on the document id so cursors
+     * are unique, and {@code cursor} returns a document's value for each orderBy in turn.
+     * One document past the page is read to tell whether there is a next page.
+     */
+    protected CompletableFuture<Page<T>> pageAsync(Query ordered, Integer pageSize, String pageToken, Class<T> clazz,
+                                                   Function<DocumentSnapshot, Object[]> cursor) {
+        return pageOfSizeAsync(ordered, PageTokens.pageSize(pageSize), pageToken, clazz, cursor);
+    }
+
+    /**
+     * The first {@code limit} documents of a query in id order, for requests without
+     * paging parameters. The page token continues where a pageAsync on the same query
+     * would.
+     */
+    protected CompletableFuture<Page<T>> firstAsync(Query query, int limit, Class<T> clazz) {
+        return pageOfSizeAsync(query.orderBy(FieldPath.documentId()), limit, null, clazz,
+                doc -> new Object[]{doc.getId()});
+    }
+
+    private CompletableFuture<Page<T>> pageOfSizeAsync(Query ordered, int size, String pageToken, Class<T> clazz,
+                                                       Function<DocumentSnapshot, Object[]> cursor) {
+        Query query = ordered;
+        if (pageToken != null && !pageToken.isEmpty()) {
+            try {
+                query = query.startAfter(PageTokens.decode(pageToken));
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        return toCompletable(query.limit(size + 1).get()).thenApply(snapshot -> {
+            List<QueryDocumentSnapshot> docs = snapshot.getDocuments();
+            List<T> items = docs.stream()
+                    .limit(size)
+                    .map(doc -> doc.toObject(clazz))
+                    .collect(Collectors.toList());
+            String next = docs.size() > size ? PageTokens.encode(cursor.apply(docs.get(size - 1))) : null;
+            return new Page<>(items, next);
+        });
+    }
+
+    /**
+     * Walks an ordered query a page at a time, handing each page to {@code sink} before
+     * the next is read, so only one page is ever held in memory. The ordering and cursor
+     * follow the same rules as {@link #pageAsync(Query, Integer, String, Class, Function)}.
+     */
+    protected void forEachPage(Query ordered, int pageSize, Class<T> clazz, Function<DocumentSnapshot, Object[]> cursor,
+                               Consumer<List<T>> sink) throws ExecutionException, InterruptedException {
+        Query query = ordered.limit(pageSize);
+        while (true) {
+            List<QueryDocumentSnapshot> docs = query.get().get().getDocuments();
+            if (docs.isEmpty()) {
+                return;
+            }
+            sink.accept(docs.stream().map(doc -> doc.toObject(clazz)).collect(Collectors.toList()));
+            if (docs.size() < pageSize) {
+                return;
+            }
+            query = ordered.startAfter(cursor.apply(docs.getLast())).limit(pageSize);
+        }
     }
 
     protected void deleteById(String collectionName, String id)
             throws ExecutionException, InterruptedException {
-        firestore.collection(collectionName)
+        deleteByIdAsync(collectionName, id).get();
+    }
+
+    protected CompletableFuture<Void> deleteByIdAsync(String collectionName, String id) {
+        return toCompletable(firestore.collection(collectionName)
                 .document(id)
-                .delete()
-                .get();
+                .delete())
+                .thenApply(result -> {
+                    invalidate(collectionName, id);
+                    return null;
+                });
+    }
+
+    /**
+     * Drops the cached document and stops sharing any read of it, after a write.
+     */
+    protected void invalidate(String collectionName, String id) {
+        cache.invalidate(id);
+        reads.forget(collectionName + "/" + id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T copy(T entity) {
+        T copy = (T) BeanUtils.instantiateClass(entity.getClass());
+        BeanUtils.copyProperties(entity, copy);
+        return copy;
     }
-}
\ No newline at end of file
+}
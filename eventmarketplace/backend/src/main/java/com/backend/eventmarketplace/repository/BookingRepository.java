@@ -1,61 +1,246 @@
 package com.backend.eventmarketplace.repository;
 
 
+import com.backend.eventmarketplace.dto.ExportFilter;
+import com.backend.eventmarketplace.dto.Page;
 import com.backend.eventmarketplace.model.Booking;
 import com.google.cloud.firestore.*;
 import org.springframework.stereotype.Repository;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Repository
 public class BookingRepository extends BaseFirestoreRepository<Booking> {
 
     private static final String COLLECTION = "bookings";
+    // booking_refs/{referenceNumber} holds the bookingId, written with the booking
+    static final String REFERENCES = "booking_refs";
+    private static final List<String> ACTIVE_STATUSES = List.of(
+            Booking.BookingStatus.PENDING.name(), Booking.BookingStatus.CONFIRMED.name());
 
     public BookingRepository(Firestore firestore) {
         super(firestore);
     }
 
     public Booking save(Booking booking) throws ExecutionException, InterruptedException {
-        return super.save(COLLECTION, booking.getId(), booking, Booking.class);
+        return super.save(COLLECTION, booking.getId(), booking);
+    }
+
+    public Booking save(UnitOfWork work, Booking booking) {
+        return super.save(work, COLLECTION, booking.getId(), booking);
     }
 
     public Booking findById(String id) throws ExecutionException, InterruptedException {
-        return super.getById(COLLECTION, id, Booking.class);
+        return findByIdAsync(id).get();
+    }
+
+    /**
+     * Reads the booking in the transaction, so the transaction's writes commit only if
+     * it has not changed since.
+     */
+    public Booking findById(Transaction transaction, String id) throws ExecutionException, InterruptedException {
+        DocumentSnapshot snapshot = transaction.get(firestore.collection(COLLECTION).document(id)).get();
+        return snapshot.exists() ? snapshot.toObject(Booking.class) : null;
+    }
+
+    public CompletableFuture<Booking> findByIdAsync(String id) {
+        return super.getByIdAsync(COLLECTION, id, Booking.class);
+    }
+
+    /**
+     * The booking with the given canonical reference number, or null: two document
+     * reads, however many bookings there are.
+     */
+    public CompletableFuture<Booking> findByReferenceAsync(String referenceNumber) {
+        return Futures.toCompletable(firestore.collection(REFERENCES).document(referenceNumber).get())
+                .thenCompose(snapshot -> snapshot.exists() && snapshot.getString("bookingId") != null
+                        ? findByIdAsync(snapshot.getString("bookingId"))
+                        : CompletableFuture.completedFuture(null));
     }
 
     public List<Booking> findAll() throws ExecutionException, InterruptedException {
-        return firestore.collection(COLLECTION)
-                .get()
-                .get()
-                .getDocuments()
-                .stream()
-                .map(doc -> doc.toObject(Booking.class))
-                .collect(Collectors.toList());
+        return findAllAsync().get();
+    }
+
+    public CompletableFuture<List<Booking>> findAllAsync() {
+        return queryAsync(firestore.collection(COLLECTION), Booking.class);
+    }
+
+    public CompletableFuture<Page<Booking>> findFirstAsync(int limit) {
+        return firstAsync(firestore.collection(COLLECTION), limit, Booking.class);
     }
 
+    public CompletableFuture<Page<Booking>> findPageAsync(Integer pageSize, String pageToken) {
+        return pageAsync(firestore.collection(COLLECTION), pageSize, pageToken, Booking.class);
+    }
+
+    /**
+     * The newest bookings across all events, newest first. Firestore sorts and limits
+     * on the server, so only {@code limit} documents are read.
+     */
+    public CompletableFuture<List<Booking>> findRecentAsync(int limit) {
+        return queryAsync(firestore.collection(COLLECTION)
+                .orderBy("bookingDate", Query.Direction.DESCENDING)
+                .limit(limit), Booking.class);
+    }
+
+    /**
+     * One page of bookings in document id order, starting after {@code afterId}.
+     */
+    public List<Booking> findPage(String afterId, int size) throws ExecutionException, InterruptedException {
+        Query query = firestore.collection(COLLECTION).orderBy(FieldPath.documentId()).limit(size);
+        if (afterId != null) {
+            query = query.whereGreaterThan(FieldPath.documentId(), afterId);
+        }
+        return queryAsync(query, Booking.class).get();
+    }
 
     public List<Booking> findByUserId(String userId) throws ExecutionException, InterruptedException {
-        return firestore.collection(COLLECTION)
+        return findByUserIdAsync(userId).get();
+    }
+
+    public CompletableFuture<List<Booking>> findByUserIdAsync(String userId) {
+        return queryAsync(firestore.collection(COLLECTION)
                 .whereEqualTo("userId", userId)
-                .orderBy("bookingDate", com.google.cloud.firestore.Query.Direction.DESCENDING)
-                .get()
-                .get()
-                .getDocuments()
-                .stream()
-                .map(doc -> doc.toObject(Booking.class))
-                .collect(Collectors.toList());
+                .orderBy("bookingDate", com.google.cloud.firestore.Query.Direction.DESCENDING), Booking.class);
     }
 
-    public List<Booking> findByEventId(String eventId) throws ExecutionException, InterruptedException {
-        return firestore.collection(COLLECTION)
+    /**
+     * One page of a user's bookings, newest first.
+     */
+    public CompletableFuture<Page<Booking>> findByUserIdPageAsync(String userId, Integer pageSize, String pageToken) {
+        return pageAsync(firestore.collection(COLLECTION)
+                        .whereEqualTo("userId", userId)
+                        .orderBy("bookingDate", Query.Direction.DESCENDING)
+                        .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING),
+                pageSize, pageToken, Booking.class,
+                doc -> new Object[]{doc.get("bookingDate"), doc.getId()});
+    }
+
+    /**
+     * A user's bookings for events that have not started yet and are not canceled,
+     * soonest first.
+     */
+    public CompletableFuture<List<Booking>> findUpcomingByUserIdAsync(String userId, Instant now) {
+        return queryAsync(timeline(userId, now, true), Booking.class);
+    }
+
+    public CompletableFuture<Page<Booking>> findUpcomingByUserIdPageAsync(String userId, Instant now,
+                                                                          Integer pageSize, String pageToken) {
+        return pageAsync(timeline(userId, now, true), pageSize, pageToken, Booking.class, BookingRepository::eventTimeCursor);
+    }
+
+    /**
+     * A user's bookings for events that have already started and were not canceled,
+     * most recent first.
+     */
+    public CompletableFuture<List<Booking>> findPastByUserIdAsync(String userId, Instant now) {
+        return queryAsync(timeline(userId, now, false), Booking.class);
+    }
+
+    public CompletableFuture<Page<Booking>> findPastByUserIdPageAsync(String userId, Instant now,
+                                                                      Integer pageSize, String pageToken) {
+        return pageAsync(timeline(userId, now, false), pageSize, pageToken, Booking.class, BookingRepository::eventTimeCursor);
+    }
+
+    // Served by the (userId, status, eventDateTime, __name__) indexes in firestore.indexes.json
+    private Query timeline(String userId, Instant now, boolean upcoming) {
+        Query query = firestore.collection(COLLECTION)
+                .whereEqualTo("userId", userId)
+                .whereIn("status", ACTIVE_STATUSES);
+        if (upcoming) {
+            return query.whereGreaterThan("eventDateTime", Timestamps.of(now))
+                    .orderBy("eventDateTime")
+                    .orderBy(FieldPath.documentId());
+        }
+        return query.whereLessThan("eventDateTime", Timestamps.of(now))
+                .orderBy("eventDateTime", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+    }
+
+    private static Object[] eventTimeCursor(DocumentSnapshot doc) {
+        return new Object[]{doc.get("eventDateTime"), doc.getId()};
+    }
+
+    /**
+     * One page of an event's active bookings ordered by user, so all of a user's
+     * bookings are adjacent, starting after the given (userId, bookingId) cursor.
+     */
+    public List<Booking> findActiveByEventId(String eventId, String afterUserId, String afterId, int limit)
+            throws ExecutionException, InterruptedException {
+        Query query = firestore.collection(COLLECTION)
                 .whereEqualTo("eventId", eventId)
-                .get()
-                .get()
-                .getDocuments()
-                .stream()
-                .map(doc -> doc.toObject(Booking.class))
-                .collect(Collectors.toList());
-    }
-}
\ No newline at end of file
+                .whereIn("status", ACTIVE_STATUSES)
+                .orderBy("userId")
+                .orderBy(FieldPath.documentId());
+        if (afterId != null) {
+            query = query.startAfter(afterUserId, afterId);
+        }
+        return queryAsync(query.limit(limit), Booking.class).get();
+    }
+
+    /**
+     * Reads the bookings in the transaction and returns those still pending or confirmed,
+     * in the order given, so writes staged for them commit only if they stay that way.
+     */
+    public List<Booking> findStillActive(Transaction transaction, List<String> bookingIds)
+            throws ExecutionException, InterruptedException {
+        if (bookingIds.isEmpty()) {
+            return List.of();
+        }
+        DocumentReference[] refs = bookingIds.stream()
+                .map(id -> firestore.collection(COLLECTION).document(id))
+                .toArray(DocumentReference[]::new);
+        List<Booking> active = new ArrayList<>();
+        for (DocumentSnapshot snapshot : transaction.getAll(refs).get()) {
+            Booking booking = snapshot.exists() ? snapshot.toObject(Booking.class) : null;
+            if (booking != null && booking.getStatus() != null && ACTIVE_STATUSES.contains(booking.getStatus().name())) {
+                active.add(booking);
+            }
+        }
+        return active;
+    }
+
+    public void markCanceled(UnitOfWork work, String bookingId) {
+        work.update(COLLECTION, bookingId, Map.of(
+                "status", Booking.BookingStatus.CANCELED.name(),
+                "paymentStatus", Booking.PaymentStatus.REFUNDED.name()));
+    }
+
+    public List<Booking> findByEventId(String eventId) throws ExecutionException, InterruptedException {
+        return findByEventIdAsync(eventId).get();
+    }
+
+    public CompletableFuture<List<Booking>> findByEventIdAsync(String eventId) {
+        return queryAsync(firestore.collection(COLLECTION)
+                .whereEqualTo("eventId", eventId), Booking.class);
+    }
+
+    /**
+     * Every booking matching the filter, a page at a time, in bookingDate order. Bookings
+     * without a bookingDate are left out, as Firestore does for an ordered field.
+     */
+    public void forEachPage(ExportFilter filter, int pageSize, Consumer<List<Booking>> sink)
+            throws ExecutionException, InterruptedException {
+        Query query = firestore.collection(COLLECTION);
+        if (filter.getEventId() != null) {
+            query = query.whereEqualTo("eventId", filter.getEventId());
+        }
+        if (filter.getStatus() != null) {
+            query = query.whereEqualTo("status", filter.getStatus());
+        }
+        if (filter.getFrom() != null) {
+            query = query.whereGreaterThanOrEqualTo("bookingDate", Timestamps.of(filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            query = query.whereLessThan("bookingDate", Timestamps.of(filter.getTo()));
+        }
+        forEachPage(query.orderBy("bookingDate").orderBy(FieldPath.documentId()), pageSize, Booking.class,
+                doc -> new Object[]{doc.get("bookingDate"), doc.getId()}, sink);
+    }
+}
@@ -0,0 +1,118 @@
+package com.backend.eventmarketplace.repository;
+
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the near caches of several nodes coherent: a snapshot listener per cached
+ * collection drops an entry whenever its document changes, whichever node (or the
+ * console) wrote it. Each listener reads its collection once when it starts; turn it
+ * off with eventmarketplace.cache.broadcast=false on a single node. A listener that
+ * fails is subscribed again with backoff, and its collection is not cached meanwhile.
+ */
+@Component
+public class CacheInvalidationListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidationListener.class);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private final Firestore firestore;
+    private final EntityCaches entityCaches;
+    private final boolean enabled;
+    private final Duration resubscribeBackoff;
+    private final Map<String, ListenerRegistration> registrations = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+    private volatile boolean stopped;
+
+    public CacheInvalidationListener(Firestore firestore, EntityCaches entityCaches, boolean enabled) {
+        this(firestore, entityCaches, enabled, 1_000);
+    }
+
+    @Autowired
+    public CacheInvalidationListener(Firestore firestore, EntityCaches entityCaches,
+                                     @Value("${eventmarketplace.cache.broadcast:true}") boolean enabled,
+                                     @Value("${eventmarketplace.cache.resubscribe-backoff-ms:1000}") long resubscribeBackoffMillis) {
+        this.firestore = firestore;
+        this.entityCaches = entityCaches;
+        this.enabled = enabled;
+        this.resubscribeBackoff = Duration.ofMillis(resubscribeBackoffMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        stopped = false;
+        for (String collection : entityCaches.collections()) {
+            failures.put(collection, new AtomicInteger());
+            listen(collection);
+        }
+    }
+
+    private void listen(String collection) {
+        if (stopped) {
+            return;
+        }
+        AtomicBoolean initial = new AtomicBoolean(true);
+        registrations.put(collection, firestore.collection(collection).addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                // Writes made elsewhere go unseen until the listener is back
+                entityCaches.suspend(collection);
+                log.error("Cache invalidation listener on {} failed", collection, error);
+                resubscribe(collection, failures.get(collection).incrementAndGet());
+                return;
+            }
+            if (initial.getAndSet(false)) {
+                // Also drops what was read while the listener was down
+                entityCaches.resume(collection);
+                failures.get(collection).set(0);
+                return;
+            }
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                entityCaches.invalidate(collection, change.getDocument().getId());
+            }
+        }));
+    }
+
+    /**
+     * Subscribes to the collection again after its failures-th consecutive error, waiting
+     * twice as long after each one up to a minute.
+     */
+    private void resubscribe(String collection, int failures) {
+        if (stopped) {
+            return;
+        }
+        long delay = Math.min(resubscribeBackoff.toMillis() << Math.min(failures - 1, 16), MAX_BACKOFF.toMillis());
+        CompletableFuture.runAsync(() -> listen(collection),
+                        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                .exceptionally(e -> {
+                    log.error("Could not resubscribe the cache invalidation listener on {}", collection, e);
+                    resubscribe(collection, failures + 1);
+                    return null;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        registrations.values().forEach(ListenerRegistration::remove);
+        registrations.clear();
+    }
+}
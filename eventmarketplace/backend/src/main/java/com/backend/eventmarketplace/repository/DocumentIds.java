@@ -0,0 +1,40 @@
+package com.backend.eventmarketplace.repository;
+
+import com.google.cloud.firestore.annotation.DocumentId;
+
+import java.lang.reflect.Field;
+
+/**
+ * Copies a document id into the entity's {@link DocumentId} field, which Firestore only
+ * fills in when reading, so writes can hand back the entity without reading it again.
+ */
+final class DocumentIds {
+
+    private static final ClassValue<Field> ID_FIELDS = new ClassValue<>() {
+        @Override
+        protected Field computeValue(Class<?> type) {
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(DocumentId.class)) {
+                        field.setAccessible(true);
+                        return field;
+                    }
+                }
+            }
+            return null;
+        }
+    };
+
+    private DocumentIds() {
+    }
+
+    static void assign(Object entity, String id) {
+        Field field = ID_FIELDS.get(entity.getClass());
+        if (field == null) return;
+        try {
+            field.set(entity, id);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot set document id on " + entity.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.backend.eventmarketplace.repository;
+
+import java.time.Duration;
+
+/**
+ * Near cache for documents of one collection, keyed by document id.
+ * {@link BaseFirestoreRepository} only hands out copies of cached entities, so callers
+ * may mutate what they get back.
+ */
+public interface EntityCache<T> {
+
+    /**
+     * The cached entity, or null on a miss.
+     */
+    T get(String id);
+
+    /**
+     * Stores the entity; the caller must not modify it afterwards.
+     */
+    void put(String id, T entity);
+
+    /**
+     * A token that changes whenever the entry for the id is invalidated. Take it before
+     * loading the entity to cache.
+     */
+    long version(String id);
+
+    /**
+     * Stores the entity unless the id was invalidated after {@code version} was taken, so
+     * a load that raced a write cannot cache what it read before the write.
+     */
+    void put(String id, T entity, long version);
+
+    void invalidate(String id);
+
+    void invalidateAll();
+
+    /**
+     * Drops every entry and stops holding new ones until {@link #resume()}, for while
+     * writes made elsewhere can no longer be seen.
+     */
+    void suspend();
+
+    /**
+     * Drops whatever was read while suspended and starts holding entries again.
+     */
+    void resume();
+
+    CacheStats stats();
+
+    /**
+     * False when the cache never holds anything, so callers can skip copying.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * A cache that never holds anything.
+     */
+    static <T> EntityCache<T> none() {
+        return new LruEntityCache<>(0, Duration.ZERO);
+    }
+}
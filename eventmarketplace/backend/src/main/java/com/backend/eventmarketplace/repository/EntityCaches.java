@@ -0,0 +1,115 @@
+package com.backend.eventmarketplace.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One near cache per cached collection. Sizes and time to live default to
+ * eventmarketplace.cache.max-size / ttl-seconds and can be set per collection, e.g.
+ * eventmarketplace.cache.users.max-size. Collections that are not listed get a cache
+ * that holds nothing. Reads that miss go through the collection's {@link SingleFlight}.
+ */
+@Component
+public class EntityCaches {
+
+    private final Set<String> collections;
+    private final int defaultMaxSize;
+    private final long defaultTtlSeconds;
+    private final long coalesceWindowMillis;
+    private final Environment environment;
+    private final Map<String, EntityCache<?>> caches = new ConcurrentHashMap<>();
+    private final Map<String, SingleFlight<?>> flights = new ConcurrentHashMap<>();
+
+    public EntityCaches(@Value("${eventmarketplace.cache.collections:events,users,suppliers}") List<String> collections,
+                        @Value("${eventmarketplace.cache.max-size:10000}") int defaultMaxSize,
+                        @Value("${eventmarketplace.cache.ttl-seconds:60}") long defaultTtlSeconds,
+                        @Value("${eventmarketplace.cache.coalesce-window-ms:20}") long coalesceWindowMillis,
+                        Environment environment) {
+        this.collections = new LinkedHashSet<>(collections);
+        this.defaultMaxSize = defaultMaxSize;
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        this.coalesceWindowMillis = coalesceWindowMillis;
+        this.environment = environment;
+    }
+
+    /**
+     * No caching at all, for tools and tests. Concurrent reads are still coalesced
+     * while in flight.
+     */
+    public static EntityCaches none() {
+        return new EntityCaches(List.of(), 0, 0, 0, new StandardEnvironment());
+    }
+
+    public Set<String> collections() {
+        return Collections.unmodifiableSet(collections);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> EntityCache<T> forCollection(String collection) {
+        return (EntityCache<T>) caches.computeIfAbsent(collection, name -> {
+            if (!collections.contains(name)) {
+                return EntityCache.none();
+            }
+            String prefix = "eventmarketplace.cache." + name + ".";
+            int maxSize = environment.getProperty(prefix + "max-size", Integer.class, defaultMaxSize);
+            long ttlSeconds = environment.getProperty(prefix + "ttl-seconds", Long.class, defaultTtlSeconds);
+            return new LruEntityCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
+        });
+    }
+
+    /**
+     * Single-flight reads for the collection. Results are shared for
+     * eventmarketplace.cache.coalesce-window-ms after they arrive (per collection:
+     * eventmarketplace.cache.{collection}.coalesce-window-ms).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> SingleFlight<T> singleFlight(String collection) {
+        return (SingleFlight<T>) flights.computeIfAbsent(collection, name -> new SingleFlight<>(Duration.ofMillis(
+                environment.getProperty("eventmarketplace.cache." + name + ".coalesce-window-ms", Long.class,
+                        coalesceWindowMillis))));
+    }
+
+    public void invalidate(String collection, String id) {
+        EntityCache<?> cache = caches.get(collection);
+        if (cache != null) {
+            cache.invalidate(id);
+        }
+        SingleFlight<?> flight = flights.get(collection);
+        if (flight != null) {
+            flight.forget(collection + "/" + id);
+        }
+    }
+
+    /**
+     * Stops caching the collection while its invalidations cannot be received.
+     */
+    public void suspend(String collection) {
+        forCollection(collection).suspend();
+    }
+
+    public void resume(String collection) {
+        forCollection(collection).resume();
+    }
+
+    public Map<String, CacheStats> stats() {
+        Map<String, CacheStats> stats = new TreeMap<>();
+        caches.forEach((collection, cache) -> {
+            if (collections.contains(collection)) {
+                CacheStats cacheStats = cache.stats();
+                SingleFlight<?> flight = flights.get(collection);
+                if (flight != null) {
+                    cacheStats.setLoads(flight.loads());
+                    cacheStats.setCoalesced(flight.shared());
+                }
+                stats.put(collection, cacheStats);
+            }
+        });
+        return stats;
+    }
+}
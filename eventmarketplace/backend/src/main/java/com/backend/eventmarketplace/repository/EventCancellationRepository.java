@@ -0,0 +1,154 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.model.EventCancellation;
+import com.google.cloud.firestore.*;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bulk cancellation jobs, one per event. A job is worked on by whoever holds its lease;
+ * the lease is renewed with every checkpoint, so a job whose worker died is picked up
+ * again once it runs out. Taking the lease gives the job a new owner, and a worker's
+ * commits check the owner in the same transaction, so one that lost its lease stops
+ * instead of repeating the new owner's work.
+ */
+@Repository
+public class EventCancellationRepository extends BaseFirestoreRepository<EventCancellation> {
+
+    private static final String COLLECTION = "event_cancellations";
+
+    private final AsyncTaskExecutor taskExecutor;
+
+    public EventCancellationRepository(Firestore firestore, AsyncTaskExecutor taskExecutor) {
+        super(firestore);
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Starts the job, or restarts it if an earlier run for the event has completed, and
+     * takes its lease. Returns null when another worker holds the lease.
+     */
+    public EventCancellation start(EventCancellation job, Duration lease)
+            throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(COLLECTION).document(job.getEventId());
+        return transaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            EventCancellation existing = snapshot.exists() ? snapshot.toObject(EventCancellation.class) : null;
+            if (existing != null && existing.getStatus() == EventCancellation.Status.RUNNING) {
+                return leased(existing, job.getStartedAt()) ? null : lease(transaction, ref, existing, job.getStartedAt(), lease);
+            }
+            job.setLeaseUntil(job.getStartedAt().plus(lease));
+            job.setOwner(UUID.randomUUID().toString());
+            transaction.set(ref, job);
+            return job;
+        });
+    }
+
+    /**
+     * Takes the lease of a running job whose last worker let it run out.
+     */
+    public EventCancellation claim(String eventId, Instant now, Duration lease)
+            throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(COLLECTION).document(eventId);
+        return transaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            EventCancellation job = snapshot.exists() ? snapshot.toObject(EventCancellation.class) : null;
+            if (job == null || job.getStatus() != EventCancellation.Status.RUNNING || leased(job, now)) {
+                return null;
+            }
+            return lease(transaction, ref, job, now, lease);
+        });
+    }
+
+    public List<EventCancellation> findStale(Instant now, int limit) throws ExecutionException, InterruptedException {
+        return queryAsync(firestore.collection(COLLECTION)
+                .whereEqualTo("status", EventCancellation.Status.RUNNING.name())
+                .whereLessThanOrEqualTo("leaseUntil", Timestamps.of(now))
+                .limit(limit), EventCancellation.class).get();
+    }
+
+    public CompletableFuture<EventCancellation> findByIdAsync(String eventId) {
+        return super.getByIdAsync(COLLECTION, eventId, EventCancellation.class);
+    }
+
+    /**
+     * Reads the job in the transaction and fails it unless the lease still belongs to
+     * the given run of the job.
+     *
+     * @throws IllegalStateException when another worker has claimed the job since
+     */
+    public void requireLease(Transaction transaction, EventCancellation job)
+            throws ExecutionException, InterruptedException {
+        DocumentSnapshot snapshot = transaction.get(firestore.collection(COLLECTION).document(job.getId())).get();
+        EventCancellation current = snapshot.exists() ? snapshot.toObject(EventCancellation.class) : null;
+        if (current == null || current.getStatus() != EventCancellation.Status.RUNNING
+                || !Objects.equals(current.getOwner(), job.getOwner())) {
+            throw new IllegalStateException("Lost the lease of the cancellation of event " + job.getEventId());
+        }
+    }
+
+    /**
+     * Stages the job's progress into the batch it describes.
+     */
+    public void checkpoint(UnitOfWork work, EventCancellation job) {
+        work.set(COLLECTION, job.getId(), job);
+    }
+
+    /**
+     * Records why a run stopped and gives up its lease, so the job is retried. Does
+     * nothing when the run no longer holds the lease.
+     */
+    public void recordError(EventCancellation job, String error) throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(COLLECTION).document(job.getId());
+        transaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            EventCancellation current = snapshot.exists() ? snapshot.toObject(EventCancellation.class) : null;
+            if (current == null || !Objects.equals(current.getOwner(), job.getOwner())) {
+                return null;
+            }
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("lastError", error);
+            fields.put("leaseUntil", Timestamps.of(Instant.now()));
+            fields.put("updatedAt", Timestamps.of(Instant.now()));
+            transaction.update(ref, fields);
+            return current;
+        });
+    }
+
+    private static boolean leased(EventCancellation job, Instant now) {
+        return job.getLeaseUntil() != null && job.getLeaseUntil().isAfter(now);
+    }
+
+    private static EventCancellation lease(Transaction transaction, DocumentReference ref, EventCancellation job,
+                                           Instant now, Duration lease) {
+        job.setLeaseUntil(now.plus(lease));
+        job.setOwner(UUID.randomUUID().toString());
+        transaction.update(ref, Map.of("leaseUntil", Timestamps.of(job.getLeaseUntil()), "owner", job.getOwner()));
+        return job;
+    }
+
+    private EventCancellation transaction(Transaction.Function<EventCancellation> function)
+            throws ExecutionException, InterruptedException {
+        try {
+            TransactionOptions options = TransactionOptions.createReadWriteOptionsBuilder()
+                    .setExecutor(taskExecutor)
+                    .build();
+            return firestore.runTransaction(function, options).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.EventCounters;
+import com.google.cloud.firestore.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.backend.eventmarketplace.repository.Futures.toCompletable;
+
+/**
+ * Sharded counters for an event's availableSeats, totalBookings and totalRevenue.
+ * Each event owns N shard documents under events/{id}/counter_shards; a booking only
+ * writes the shard(s) it draws seats from, so bookings on a popular event no longer
+ * queue behind a single document. Reads sum the shards.
+ */
+@Repository
+public class EventCounterRepository {
+
+    private static final String EVENTS = "events";
+    private static final String SHARDS = "counter_shards";
+
+    private final Firestore firestore;
+    private final int defaultShards;
+
+    public EventCounterRepository(Firestore firestore,
+                                  @Value("${eventmarketplace.counters.default-shards:4}") int defaultShards) {
+        this.firestore = firestore;
+        this.defaultShards = defaultShards;
+    }
+
+    public int shardCount(Event event) {
+        Integer shards = event.getCounterShards();
+        return shards != null && shards > 0 ? shards : defaultShards;
+    }
+
+    public void initialize(UnitOfWork work, Event event) {
+        DocumentReference[] refs = shardRefs(event.getId(), shardCount(event));
+        List<Map<String, Object>> shards = split(event, refs.length);
+        for (int i = 0; i < refs.length; i++) {
+            work.set(refs[i], shards.get(i));
+        }
+    }
+
+    /**
+     * Takes seats from the shards inside the caller's transaction, starting at a random
+     * shard and moving on to the next ones only when it runs dry. Only when the start
+     * shard is missing are all of them read: for an event that predates sharding they
+     * are seeded from the event document, otherwise only the missing ones are created,
+     * empty, since the existing ones already hold the counts.
+     */
+    public void reserve(Transaction transaction, Event event, int seats, double revenue)
+            throws ExecutionException, InterruptedException {
+        DocumentReference[] refs = shardRefs(event.getId(), shardCount(event));
+        int start = ThreadLocalRandom.current().nextInt(refs.length);
+        DocumentSnapshot first = transaction.get(refs[start]).get();
+
+        if (!first.exists()) {
+            List<DocumentSnapshot> snapshots = transaction.getAll(refs).get();
+            boolean unseeded = snapshots.stream().noneMatch(DocumentSnapshot::exists);
+            List<Map<String, Object>> seeds = unseeded ? split(event, refs.length) : null;
+            long[] available = new long[refs.length];
+            for (int i = 0; i < refs.length; i++) {
+                DocumentSnapshot snapshot = snapshots.get(i);
+                available[i] = snapshot.exists() ? longValue(snapshot.getLong("availableSeats"))
+                        : unseeded ? (Long) seeds.get(i).get("availableSeats") : 0L;
+            }
+            long[] taken = take(available, start, seats);
+            for (int i = 0; i < refs.length; i++) {
+                if (snapshots.get(i).exists()) {
+                    update(transaction, refs[i], taken[i], i == start, seats, revenue);
+                    continue;
+                }
+                Map<String, Object> shard = unseeded ? seeds.get(i) : emptyShard(event.getId());
+                shard.put("availableSeats", available[i] - taken[i]);
+                if (i == start) {
+                    shard.put("totalBookings", (Long) shard.get("totalBookings") + seats);
+                    shard.put("totalRevenue", (Double) shard.get("totalRevenue") + revenue);
+                }
+                transaction.set(refs[i], shard);
+            }
+            return;
+        }
+
+        // A missing shard has no seats to give, so it is never written here
+        long[] available = new long[refs.length];
+        long needed = seats;
+        for (int i = 0; i < refs.length && needed > 0; i++) {
+            int shard = (start + i) % refs.length;
+            DocumentSnapshot snapshot = i == 0 ? first : transaction.get(refs[shard]).get();
+            available[shard] = Math.max(0, longValue(snapshot.getLong("availableSeats")));
+            needed -= available[shard];
+        }
+        long[] taken = take(available, start, seats);
+        for (int shard = 0; shard < refs.length; shard++) {
+            update(transaction, refs[shard], taken[shard], shard == start, seats, revenue);
+        }
+    }
+
+    // Seats drawn from each shard, going round from start
+    private static long[] take(long[] available, int start, long seats) {
+        long[] taken = new long[available.length];
+        long remaining = seats;
+        for (int i = 0; i < available.length && remaining > 0; i++) {
+            int shard = (start + i) % available.length;
+            taken[shard] = Math.max(0, Math.min(available[shard], remaining));
+            remaining -= taken[shard];
+        }
+        if (remaining > 0) {
+            throw new IllegalStateException("Not enough seats available");
+        }
+        return taken;
+    }
+
+    private static void update(Transaction transaction, DocumentReference ref, long taken, boolean start,
+                               int seats, double revenue) {
+        Map<String, Object> fields = new HashMap<>();
+        if (taken > 0) {
+            fields.put("availableSeats", FieldValue.increment(-taken));
+        }
+        if (start) {
+            fields.put("totalBookings", FieldValue.increment(seats));
+            fields.put("totalRevenue", FieldValue.increment(revenue));
+        }
+        if (!fields.isEmpty()) {
+            transaction.update(ref, fields);
+        }
+    }
+
+    /**
+     * Applies a capacity change to the shards in the caller's transaction. Seats are
+     * added to a random shard and removed from whichever shards still have them, so no
+     * shard goes negative. This reads, so call it before the transaction's first write.
+     *
+     * @return false when the event has no shards yet, so the change belongs on the event
+     */
+    public boolean adjustSeats(Transaction transaction, UnitOfWork work, Event event, int delta)
+            throws ExecutionException, InterruptedException {
+        DocumentReference[] refs = shardRefs(event.getId(), shardCount(event));
+        List<DocumentSnapshot> shards = transaction.getAll(refs).get();
+        List<Integer> existing = new ArrayList<>();
+        for (int i = 0; i < refs.length; i++) {
+            if (shards.get(i).exists()) {
+                existing.add(i);
+            }
+        }
+        if (existing.isEmpty()) {
+            return false;
+        }
+        if (delta > 0) {
+            int shard = existing.get(ThreadLocalRandom.current().nextInt(existing.size()));
+            work.update(refs[shard], Map.of("availableSeats", FieldValue.increment(delta)));
+            return true;
+        }
+
+        long remaining = -delta;
+        for (int i = 0; i < refs.length && remaining > 0; i++) {
+            long take = Math.max(0, Math.min(longValue(shards.get(i).getLong("availableSeats")), remaining));
+            if (take > 0) {
+                work.update(refs[i], Map.of("availableSeats", FieldValue.increment(-take)));
+                remaining -= take;
+            }
+        }
+        if (remaining > 0) {
+            throw new IllegalStateException("Capacity is lower than the seats already booked");
+        }
+        return true;
+    }
+
+    /**
+     * Gives back the seats and revenue of cancelled bookings in the caller's transaction.
+     * The release lands on the first shard; reads sum the shards, so which one does not
+     * matter. An event that has never been booked since sharding has no shards yet, so
+     * its release goes to the event document, which they will be seeded from. This
+     * reads, so call it before the transaction's first write.
+     */
+    public void release(Transaction transaction, UnitOfWork work, String eventId, long seats, double revenue)
+            throws ExecutionException, InterruptedException {
+        if (seats == 0 && revenue == 0.0) return;
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("availableSeats", FieldValue.increment(seats));
+        fields.put("totalBookings", FieldValue.increment(-seats));
+        fields.put("totalRevenue", FieldValue.increment(-revenue));
+        DocumentReference first = shardRefs(eventId, 1)[0];
+        // Seeding writes every shard, so the first one exists exactly when the event is seeded
+        if (transaction.get(first).get().exists()) {
+            work.update(first, fields);
+        } else {
+            work.update(EVENTS, eventId, fields);
+        }
+    }
+
+    /**
+     * Deletes the event's shards in the caller's batch, so they stop turning up in
+     * collection group reads once the event is gone.
+     */
+    public void delete(UnitOfWork work, Event event) {
+        for (DocumentReference ref : shardRefs(event.getId(), shardCount(event))) {
+            work.delete(ref);
+        }
+    }
+
+    public EventCounters findByEventId(String eventId) throws ExecutionException, InterruptedException {
+        return findByEventIdAsync(eventId).get();
+    }
+
+    public CompletableFuture<EventCounters> findByEventIdAsync(String eventId) {
+        return toCompletable(firestore.collection(EVENTS)
+                .document(eventId)
+                .collection(SHARDS)
+                .get())
+                .thenApply(snapshot -> snapshot.isEmpty() ? null : sum(eventId, snapshot.getDocuments()));
+    }
+
+    public Map<String, EventCounters> findAll() throws ExecutionException, InterruptedException {
+        return findAllAsync().get();
+    }
+
+    public CompletableFuture<Map<String, EventCounters>> findAllAsync() {
+        return toCompletable(firestore.collectionGroup(SHARDS).get()).thenApply(snapshot -> {
+            Map<String, List<QueryDocumentSnapshot>> byEvent = new HashMap<>();
+            for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+                byEvent.computeIfAbsent(doc.getString("eventId"), id -> new ArrayList<>()).add(doc);
+            }
+
+            Map<String, EventCounters> result = new HashMap<>();
+            byEvent.forEach((eventId, shards) -> result.put(eventId, sum(eventId, shards)));
+            return result;
+        });
+    }
+
+    private EventCounters sum(String eventId, List<? extends DocumentSnapshot> shards) {
+        long availableSeats = 0;
+        long totalBookings = 0;
+        double totalRevenue = 0.0;
+        for (DocumentSnapshot shard : shards) {
+            availableSeats += longValue(shard.getLong("availableSeats"));
+            totalBookings += longValue(shard.getLong("totalBookings"));
+            Double revenue = shard.getDouble("totalRevenue");
+            totalRevenue += revenue != null ? revenue : 0.0;
+        }
+        return new EventCounters(eventId, (int) availableSeats, (int) totalBookings, totalRevenue);
+    }
+
+    private List<Map<String, Object>> split(Event event, int shardCount) {
+        int capacity = event.getCapacity() != null ? event.getCapacity() : 0;
+        long available = event.getAvailableSeats() != null ? event.getAvailableSeats() : capacity;
+
+        List<Map<String, Object>> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            Map<String, Object> shard = new HashMap<>();
+            shard.put("eventId", event.getId());
+            shard.put("availableSeats", available / shardCount + (i < available % shardCount ? 1 : 0));
+            shard.put("totalBookings", i == 0 && event.getTotalBookings() != null ? (long) event.getTotalBookings() : 0L);
+            shard.put("totalRevenue", i == 0 && event.getTotalRevenue() != null ? event.getTotalRevenue() : 0.0);
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+    private static Map<String, Object> emptyShard(String eventId) {
+        Map<String, Object> shard = new HashMap<>();
+        shard.put("eventId", eventId);
+        shard.put("availableSeats", 0L);
+        shard.put("totalBookings", 0L);
+        shard.put("totalRevenue", 0.0);
+        return shard;
+    }
+
+    private DocumentReference[] shardRefs(String eventId, int shardCount) {
+        CollectionReference shards = firestore.collection(EVENTS).document(eventId).collection(SHARDS);
+        DocumentReference[] refs = new DocumentReference[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            refs[i] = shards.document(String.valueOf(i));
+        }
+        return refs;
+    }
+
+    private static long longValue(Long value) {
+        return value != null ? value : 0L;
+    }
+}
@@ -1,42 +1,110 @@
 package com.backend.eventmarketplace.repository;
 
+import com.backend.eventmarketplace.dto.Page;
 import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.ImageVariants;
 import com.google.cloud.firestore.*;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
 
 @Repository
 public class EventRepository extends BaseFirestoreRepository<Event> {
 
     private static final String COLLECTION = "events";
 
-    public EventRepository(Firestore firestore) {
-        super(firestore);
+    public EventRepository(Firestore firestore, EntityCaches entityCaches) {
+        super(firestore, entityCaches.forCollection(COLLECTION), entityCaches.singleFlight(COLLECTION));
     }
 
     public Event save(Event event) throws ExecutionException, InterruptedException {
-        return super.save(COLLECTION, event.getId(), event, Event.class);
+        return super.save(COLLECTION, event.getId(), event);
+    }
+
+    public Event save(UnitOfWork work, Event event) {
+        return super.save(work, COLLECTION, event.getId(), event);
     }
 
     public Event findById(String id) throws ExecutionException, InterruptedException {
-        return super.getById(COLLECTION, id, Event.class);
+        return findByIdAsync(id).get();
+    }
+
+    /**
+     * Reads the event in the transaction, so the transaction's writes commit only if it
+     * has not changed since.
+     */
+    public Event findById(Transaction transaction, String id) throws ExecutionException, InterruptedException {
+        DocumentSnapshot snapshot = transaction.get(firestore.collection(COLLECTION).document(id)).get();
+        return snapshot.exists() ? snapshot.toObject(Event.class) : null;
+    }
+
+    public CompletableFuture<Event> findByIdAsync(String id) {
+        return super.getByIdAsync(COLLECTION, id, Event.class);
     }
 
     public void deleteById(String id) throws ExecutionException, InterruptedException {
         super.deleteById(COLLECTION, id);
     }
 
+    public void delete(UnitOfWork work, String id) {
+        work.delete(COLLECTION, id);
+    }
+
+    /**
+     * Appends an image URL without reading the event, so it cannot undo a concurrent edit.
+     */
+    public void addImageUrl(UnitOfWork work, String eventId, String url) {
+        work.update(COLLECTION, eventId, Map.of(
+                "imageUrls", FieldValue.arrayUnion(url),
+                "updatedAt", Timestamps.of(Instant.now())));
+    }
+
+    /**
+     * Records the variants of one of the event's images, unless the image was removed
+     * from the event in the meantime.
+     */
+    public boolean addImageVariants(String eventId, ImageVariants variants) throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(COLLECTION).document(eventId);
+        boolean updated = firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            Event event = snapshot.exists() ? snapshot.toObject(Event.class) : null;
+            if (event == null || event.getImageUrls() == null || !event.getImageUrls().contains(variants.getOriginal())) {
+                return false;
+            }
+            List<ImageVariants> all = new ArrayList<>();
+            if (event.getImageVariants() != null) {
+                event.getImageVariants().stream()
+                        .filter(existing -> !variants.getOriginal().equals(existing.getOriginal()))
+                        .forEach(all::add);
+            }
+            all.add(variants);
+            event.setImageVariants(all);
+            transaction.set(ref, event);
+            return true;
+        }).get();
+        invalidate(COLLECTION, eventId);
+        return updated;
+    }
+
     public List<Event> findAll() throws ExecutionException, InterruptedException {
-        return firestore.collection(COLLECTION)
-                .get()
-                .get()
-                .getDocuments()
-                .stream()
-                .map(doc -> doc.toObject(Event.class))
-                .collect(Collectors.toList());
+        return findAllAsync().get();
+    }
+
+    public CompletableFuture<List<Event>> findAllAsync() {
+        return queryAsync(firestore.collection(COLLECTION), Event.class);
+    }
+
+    public CompletableFuture<Page<Event>> findFirstAsync(int limit) {
+        return firstAsync(firestore.collection(COLLECTION), limit, Event.class);
+    }
+
+    public CompletableFuture<Page<Event>> findPageAsync(Integer pageSize, String pageToken) {
+        return pageAsync(firestore.collection(COLLECTION), pageSize, pageToken, Event.class);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package com.backend.eventmarketplace.repository;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bridges Firestore's ApiFuture to CompletableFuture without parking a thread on get().
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    public static <V> CompletableFuture<V> toCompletable(ApiFuture<V> future) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        ApiFutures.addCallback(future, new ApiFutureCallback<>() {
+            @Override
+            public void onSuccess(V value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, Runnable::run);
+        return result;
+    }
+}
@@ -0,0 +1,130 @@
+package com.backend.eventmarketplace.repository;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Size-bounded LRU cache whose entries also expire after a fixed time to live.
+ * Invalidation versions are kept per stripe of ids rather than per id, so they take no
+ * memory per entry; ids sharing a stripe only cost each other the odd skipped put.
+ */
+public class LruEntityCache<T> implements EntityCache<T> {
+
+    private record Entry<T>(T value, long expiresAt) {
+    }
+
+    private static final int VERSION_STRIPES = 256;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+    private final LinkedHashMap<String, Entry<T>> entries;
+    private final long[] versions = new long[VERSION_STRIPES];
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    private boolean suspended;
+
+    public LruEntityCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    LruEntityCache(int maxSize, Duration ttl, LongSupplier ticker) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.ticker = ticker;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+                if (size() > LruEntityCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public synchronized T get(String id) {
+        Entry<T> entry = entries.get(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (ticker.getAsLong() - entry.expiresAt() >= 0) {
+            entries.remove(id);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    @Override
+    public synchronized void put(String id, T entity) {
+        if (isEnabled() && !suspended) {
+            entries.put(id, new Entry<>(entity, ticker.getAsLong() + ttlNanos));
+        }
+    }
+
+    @Override
+    public synchronized long version(String id) {
+        return versions[stripe(id)];
+    }
+
+    @Override
+    public synchronized void put(String id, T entity, long version) {
+        if (versions[stripe(id)] == version) {
+            put(id, entity);
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(String id) {
+        // Bumped even without an entry, as a load of the id may be in flight
+        versions[stripe(id)]++;
+        if (entries.remove(id) != null) {
+            invalidations++;
+        }
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < versions.length; i++) {
+            versions[i]++;
+        }
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    @Override
+    public synchronized void suspend() {
+        suspended = true;
+        invalidateAll();
+    }
+
+    @Override
+    public synchronized void resume() {
+        invalidateAll();
+        suspended = false;
+    }
+
+    private static int stripe(String id) {
+        return Math.floorMod(id.hashCode(), VERSION_STRIPES);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return maxSize > 0 && ttlNanos > 0;
+    }
+
+    @Override
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions, invalidations, entries.size(), 0, 0);
+    }
+}
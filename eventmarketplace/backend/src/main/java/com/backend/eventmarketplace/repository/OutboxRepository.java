@@ -0,0 +1,120 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.model.OutboxMessage;
+import com.google.cloud.firestore.*;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static com.backend.eventmarketplace.repository.Futures.toCompletable;
+
+/**
+ * The email outbox. Messages are enqueued in the same transaction or batch as the
+ * write that triggers them, so an email exists exactly when its booking does, and are
+ * claimed in batches by the dispatcher with a lease so two instances never send the
+ * same message at once.
+ */
+@Repository
+public class OutboxRepository {
+
+    private static final String COLLECTION = "email_outbox";
+
+    private final Firestore firestore;
+    private final AsyncTaskExecutor taskExecutor;
+
+    public OutboxRepository(Firestore firestore, AsyncTaskExecutor taskExecutor) {
+        this.firestore = firestore;
+        this.taskExecutor = taskExecutor;
+    }
+
+    public void enqueue(Transaction transaction, OutboxMessage message) {
+        DocumentReference ref = firestore.collection(COLLECTION).document();
+        message.setId(ref.getId());
+        transaction.create(ref, message);
+    }
+
+    public void enqueue(UnitOfWork work, OutboxMessage message) {
+        work.set(COLLECTION, null, message);
+    }
+
+    public CompletableFuture<Void> enqueueAsync(OutboxMessage message) {
+        DocumentReference ref = firestore.collection(COLLECTION).document();
+        message.setId(ref.getId());
+        return toCompletable(ref.create(message)).thenApply(result -> null);
+    }
+
+    /**
+     * Claims up to {@code limit} pending messages that are due, pushing their next
+     * attempt out by {@code lease} so other dispatchers skip them while they are sent.
+     * A dispatcher that dies mid-batch leaves them to be retried once the lease runs out.
+     */
+    public List<OutboxMessage> claimDue(Instant now, int limit, Duration lease)
+            throws ExecutionException, InterruptedException {
+        List<QueryDocumentSnapshot> due = firestore.collection(COLLECTION)
+                .whereEqualTo("status", OutboxMessage.OutboxStatus.PENDING.name())
+                .whereLessThanOrEqualTo("nextAttemptAt", Timestamps.of(now))
+                .orderBy("nextAttemptAt")
+                .limit(limit)
+                .get().get()
+                .getDocuments();
+        if (due.isEmpty()) {
+            return List.of();
+        }
+
+        DocumentReference[] refs = due.stream().map(DocumentSnapshot::getReference).toArray(DocumentReference[]::new);
+        try {
+            return firestore.runTransaction(transaction -> {
+                List<OutboxMessage> claimed = new ArrayList<>();
+                for (DocumentSnapshot snapshot : transaction.getAll(refs).get()) {
+                    OutboxMessage message = snapshot.exists() ? snapshot.toObject(OutboxMessage.class) : null;
+                    // Someone else claimed or finished it since the query
+                    if (message == null || message.getStatus() != OutboxMessage.OutboxStatus.PENDING
+                            || message.getNextAttemptAt().isAfter(now)) {
+                        continue;
+                    }
+                    transaction.update(snapshot.getReference(), "nextAttemptAt", Timestamps.of(now.plus(lease)));
+                    claimed.add(message);
+                }
+                return claimed;
+            }, TransactionOptions.createReadWriteOptionsBuilder().setExecutor(taskExecutor).build()).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public void markSent(UnitOfWork work, OutboxMessage message, Instant sentAt) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("status", OutboxMessage.OutboxStatus.SENT.name());
+        fields.put("attempts", message.getAttempts() + 1);
+        fields.put("sentAt", Timestamps.of(sentAt));
+        fields.put("lastError", null);
+        work.update(COLLECTION, message.getId(), fields);
+    }
+
+    public void markRetry(UnitOfWork work, OutboxMessage message, Instant nextAttemptAt, String error) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("attempts", message.getAttempts() + 1);
+        fields.put("nextAttemptAt", Timestamps.of(nextAttemptAt));
+        fields.put("lastError", error);
+        work.update(COLLECTION, message.getId(), fields);
+    }
+
+    public void markDead(UnitOfWork work, OutboxMessage message, String error) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("status", OutboxMessage.OutboxStatus.DEAD.name());
+        fields.put("attempts", message.getAttempts() + 1);
+        fields.put("lastError", error);
+        work.update(COLLECTION, message.getId(), fields);
+    }
+}
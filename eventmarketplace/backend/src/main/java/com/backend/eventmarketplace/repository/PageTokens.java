@@ -0,0 +1,105 @@
+package com.backend.eventmarketplace.repository;
+
+import com.google.cloud.Timestamp;
+
+import java.io.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Opaque keyset cursors for paged queries. A token carries the orderBy values of the
+ * last document on a page, ending with its id, so the next page is a startAfter on the
+ * same ordering instead of an offset and costs the same reads however deep it is.
+ */
+public final class PageTokens {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    /**
+     * Most items a list endpoint returns to a request without paging parameters; the
+     * rest are reached with the page token it hands back alongside.
+     */
+    public static final int MAX_UNPAGED_ITEMS = 1_000;
+
+    private static final byte STRING = 's';
+    private static final byte TIMESTAMP = 't';
+    private static final byte LONG = 'l';
+    private static final byte DOUBLE = 'd';
+
+    private PageTokens() {
+    }
+
+    /**
+     * The page size to use for a request: the default when none is given, never more
+     * than {@link #MAX_PAGE_SIZE}.
+     */
+    public static int pageSize(Integer requested) {
+        if (requested == null || requested < 1) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+
+    public static String encode(Object... values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (Object value : values) {
+                switch (value) {
+                    case String string -> {
+                        out.writeByte(STRING);
+                        out.writeUTF(string);
+                    }
+                    case Timestamp timestamp -> writeTimestamp(out, timestamp.getSeconds(), timestamp.getNanos());
+                    case Instant instant -> writeTimestamp(out, instant.getEpochSecond(), instant.getNano());
+                    case Long number -> {
+                        out.writeByte(LONG);
+                        out.writeLong(number);
+                    }
+                    case Double number -> {
+                        out.writeByte(DOUBLE);
+                        out.writeDouble(number);
+                    }
+                    case null, default -> throw new IllegalArgumentException("Unsupported cursor value: " + value);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * The cursor values in a token, as startAfter expects them.
+     *
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode}
+     */
+    public static Object[] decode(String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            List<Object> values = new ArrayList<>();
+            while (in.available() > 0) {
+                byte type = in.readByte();
+                values.add(switch (type) {
+                    case STRING -> in.readUTF();
+                    case TIMESTAMP -> Timestamp.ofTimeSecondsAndNanos(in.readLong(), in.readInt());
+                    case LONG -> in.readLong();
+                    case DOUBLE -> in.readDouble();
+                    default -> throw new IllegalArgumentException("Invalid page token");
+                });
+            }
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("Invalid page token");
+            }
+            return values.toArray();
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+    }
+
+    private static void writeTimestamp(DataOutputStream out, long seconds, int nanos) throws IOException {
+        out.writeByte(TIMESTAMP);
+        out.writeLong(seconds);
+        out.writeInt(nanos);
+    }
+}
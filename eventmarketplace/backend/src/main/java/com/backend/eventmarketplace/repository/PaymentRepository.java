@@ -1,13 +1,17 @@
 package com.backend.eventmarketplace.repository;
 
 
+import com.backend.eventmarketplace.dto.ExportFilter;
+import com.backend.eventmarketplace.dto.Page;
 import com.backend.eventmarketplace.model.Payment;
 import com.google.cloud.firestore.*;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 @Repository
 public class PaymentRepository extends BaseFirestoreRepository<Payment> {
@@ -19,24 +23,66 @@ public class PaymentRepository extends BaseFirestoreRepository<Payment> {
     }
 
     public Payment save(Payment payment) throws ExecutionException, InterruptedException {
-        return super.save(COLLECTION, payment.getId(), payment, Payment.class);
+        return super.save(COLLECTION, payment.getId(), payment);
+    }
+
+    public Payment save(UnitOfWork work, Payment payment) {
+        return super.save(work, COLLECTION, payment.getId(), payment);
+    }
+
+    public void updateStatus(UnitOfWork work, String paymentId, Payment.PaymentStatus status) {
+        work.update(COLLECTION, paymentId, Map.of("status", status));
     }
 
     public Payment findById(String id) throws ExecutionException, InterruptedException {
-        return super.getById(COLLECTION, id, Payment.class);
+        return findByIdAsync(id).get();
+    }
+
+    public CompletableFuture<Payment> findByIdAsync(String id) {
+        return super.getByIdAsync(COLLECTION, id, Payment.class);
     }
 
     public List<Payment> findByUser(String userId) throws ExecutionException, InterruptedException {
-        QuerySnapshot snapshot = firestore.collection(COLLECTION)
-                .whereEqualTo("userId", userId)
-                .get()
-                .get();
-
-        List<Payment> result = new ArrayList<>();
-        for (DocumentSnapshot doc : snapshot.getDocuments()) {
-            Payment p = doc.toObject(Payment.class);
-            result.add(p);
+        return findByUserAsync(userId).get();
+    }
+
+    public CompletableFuture<List<Payment>> findByUserAsync(String userId) {
+        return queryAsync(firestore.collection(COLLECTION)
+                .whereEqualTo("userId", userId), Payment.class);
+    }
+
+    /**
+     * One page of a user's payments, newest first.
+     */
+    public CompletableFuture<Page<Payment>> findByUserPageAsync(String userId, Integer pageSize, String pageToken) {
+        return pageAsync(firestore.collection(COLLECTION)
+                        .whereEqualTo("userId", userId)
+                        .orderBy("createdAt", Query.Direction.DESCENDING)
+                        .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING),
+                pageSize, pageToken, Payment.class,
+                doc -> new Object[]{doc.get("createdAt"), doc.getId()});
+    }
+
+    /**
+     * Every payment matching the filter, a page at a time, in createdAt order. Payments
+     * without a createdAt are left out, as Firestore does for an ordered field.
+     */
+    public void forEachPage(ExportFilter filter, int pageSize, Consumer<List<Payment>> sink)
+            throws ExecutionException, InterruptedException {
+        Query query = firestore.collection(COLLECTION);
+        if (filter.getEventId() != null) {
+            query = query.whereEqualTo("eventId", filter.getEventId());
+        }
+        if (filter.getStatus() != null) {
+            query = query.whereEqualTo("status", filter.getStatus());
+        }
+        if (filter.getFrom() != null) {
+            query = query.whereGreaterThanOrEqualTo("createdAt", Timestamps.of(filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            query = query.whereLessThan("createdAt", Timestamps.of(filter.getTo()));
         }
-        return result;
+        forEachPage(query.orderBy("createdAt").orderBy(FieldPath.documentId()), pageSize, Payment.class,
+                doc -> new Object[]{doc.get("createdAt"), doc.getId()}, sink);
     }
 }
@@ -0,0 +1,183 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.dto.Page;
+import com.backend.eventmarketplace.model.RatingSummary;
+import com.backend.eventmarketplace.model.Review;
+import com.google.cloud.firestore.*;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static com.backend.eventmarketplace.repository.Futures.toCompletable;
+
+/**
+ * Reviews and the {@link RatingSummary} of each reviewed event and supplier. A review
+ * and the summaries it counts towards are written in one transaction. Summaries are
+ * keyed by entity type and id, e.g. event_abc and supplier_abc, as event and supplier
+ * ids come from different collections and may be equal.
+ */
+@Repository
+public class ReviewRepository extends BaseFirestoreRepository<Review> {
+
+    private static final String COLLECTION = "reviews";
+    private static final String SUMMARIES = "rating_summaries";
+
+    public static final String EVENT = "event";
+    public static final String SUPPLIER = "supplier";
+
+    private final AsyncTaskExecutor taskExecutor;
+
+    public ReviewRepository(Firestore firestore, AsyncTaskExecutor taskExecutor) {
+        super(firestore);
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * An event or supplier that a review counts towards.
+     */
+    private record Target(String entityType, String entityId) {
+
+        String summaryId() {
+            return ReviewRepository.summaryId(entityType, entityId);
+        }
+    }
+
+    /**
+     * The id of the rating summary of an {@link #EVENT} or {@link #SUPPLIER}.
+     */
+    public static String summaryId(String entityType, String entityId) {
+        return entityType + "_" + entityId;
+    }
+
+    /**
+     * Stores a new review and counts it in the summaries of its event and supplier.
+     */
+    public Review create(Review review) throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(COLLECTION).document();
+        List<Target> targets = targets(review);
+        firestore.runTransaction(transaction -> {
+            List<RatingSummary> summaries = readSummaries(transaction, targets);
+            for (RatingSummary summary : summaries) {
+                summary.add(review.getRating(), 1);
+                transaction.set(summaryRef(summary.getId()), summary);
+            }
+            transaction.create(ref, review);
+            return null;
+        }, transactionOptions()).get();
+        review.setId(ref.getId());
+        return review;
+    }
+
+    /**
+     * Deletes a review and takes it back out of its summaries. A summary left with no
+     * reviews is deleted.
+     *
+     * @return the deleted review, or null when there was none
+     */
+    public Review delete(String reviewId) throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(COLLECTION).document(reviewId);
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            Review review = snapshot.exists() ? snapshot.toObject(Review.class) : null;
+            if (review == null) {
+                return null;
+            }
+            List<RatingSummary> summaries = readSummaries(transaction, targets(review));
+            for (RatingSummary summary : summaries) {
+                summary.add(review.getRating(), -1);
+                if (summary.getCount() <= 0) {
+                    transaction.delete(summaryRef(summary.getId()));
+                } else {
+                    transaction.set(summaryRef(summary.getId()), summary);
+                }
+            }
+            transaction.delete(ref);
+            return review;
+        }, transactionOptions()).get();
+    }
+
+    public CompletableFuture<Review> findByIdAsync(String id) {
+        return super.getByIdAsync(COLLECTION, id, Review.class);
+    }
+
+    /**
+     * The summary of the reviews of an {@link #EVENT} or {@link #SUPPLIER}, or null when
+     * it has none.
+     */
+    public CompletableFuture<RatingSummary> findSummaryAsync(String entityType, String entityId) {
+        return toCompletable(summaryRef(summaryId(entityType, entityId)).get())
+                .thenApply(snapshot -> snapshot.exists() ? snapshot.toObject(RatingSummary.class) : null);
+    }
+
+    /**
+     * One page of an event's reviews, newest first.
+     */
+    public CompletableFuture<Page<Review>> findByEventIdPageAsync(String eventId, Integer pageSize, String pageToken) {
+        return newestFirst("eventId", eventId, pageSize, pageToken);
+    }
+
+    /**
+     * One page of a supplier's reviews, newest first.
+     */
+    public CompletableFuture<Page<Review>> findBySupplierIdPageAsync(String supplierId, Integer pageSize,
+                                                                     String pageToken) {
+        return newestFirst("supplierId", supplierId, pageSize, pageToken);
+    }
+
+    private CompletableFuture<Page<Review>> newestFirst(String field, String value, Integer pageSize,
+                                                        String pageToken) {
+        return pageAsync(firestore.collection(COLLECTION)
+                        .whereEqualTo(field, value)
+                        .orderBy("createdAt", Query.Direction.DESCENDING)
+                        .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING),
+                pageSize, pageToken, Review.class,
+                doc -> new Object[]{doc.get("createdAt"), doc.getId()});
+    }
+
+    // All reads come before any write, as Firestore transactions require
+    private List<RatingSummary> readSummaries(Transaction transaction, List<Target> targets)
+            throws ExecutionException, InterruptedException {
+        List<RatingSummary> summaries = new ArrayList<>();
+        if (targets.isEmpty()) {
+            return summaries;
+        }
+        DocumentReference[] refs = targets.stream().map(target -> summaryRef(target.summaryId()))
+                .toArray(DocumentReference[]::new);
+        List<DocumentSnapshot> snapshots = transaction.getAll(refs).get();
+        for (int i = 0; i < targets.size(); i++) {
+            DocumentSnapshot snapshot = snapshots.get(i);
+            RatingSummary summary = snapshot.exists() ? snapshot.toObject(RatingSummary.class) : null;
+            if (summary == null) {
+                Target target = targets.get(i);
+                summary = RatingSummary.empty(target.summaryId(), target.entityType(), target.entityId());
+            }
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    // The event and supplier the review is about
+    private static List<Target> targets(Review review) {
+        List<Target> targets = new ArrayList<>(2);
+        if (review.getEventId() != null) {
+            targets.add(new Target(EVENT, review.getEventId()));
+        }
+        if (review.getSupplierId() != null) {
+            targets.add(new Target(SUPPLIER, review.getSupplierId()));
+        }
+        return targets;
+    }
+
+    // The transaction's reads block, so it runs on the (virtual-thread) task executor
+    private TransactionOptions transactionOptions() {
+        return TransactionOptions.createReadWriteOptionsBuilder().setExecutor(taskExecutor).build();
+    }
+
+    private DocumentReference summaryRef(String entityId) {
+        return firestore.collection(SUMMARIES).document(entityId);
+    }
+}
@@ -0,0 +1,218 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.Rollup;
+import com.google.cloud.firestore.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.backend.eventmarketplace.repository.Futures.toCompletable;
+
+/**
+ * Dashboard rollups in the rollups collection. Every rollup key is spread over N shard
+ * documents ({key}_{n}) like the event counters, and writes are blind merge-increments,
+ * so recording a booking adds no reads to its transaction. Document ids sort by key,
+ * which lets a time range of buckets be read with one document-id range query.
+ */
+@Repository
+public class RollupRepository {
+
+    private static final String COLLECTION = "rollups";
+    private static final int IDS_PER_QUERY = 30;
+
+    public static final String GLOBAL = "global";
+    public static final String EVENT_TYPE = "type";
+    public static final String HOUR = "hour";
+    public static final String DAY = "day";
+
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHH").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    private final Firestore firestore;
+    private final int shards;
+
+    public RollupRepository(Firestore firestore, @Value("${eventmarketplace.rollups.shards:4}") int shards) {
+        this.firestore = firestore;
+        this.shards = shards;
+    }
+
+    /**
+     * The rollups a booking counts towards: global, its event type and the hour and day
+     * it was made in (UTC).
+     */
+    public static List<Rollup> dimensions(Booking booking, Event.EventType eventType) {
+        List<Rollup> dimensions = new ArrayList<>();
+        dimensions.add(Rollup.empty(GLOBAL, GLOBAL, null));
+        if (eventType != null) {
+            dimensions.add(Rollup.empty(typeKey(eventType), EVENT_TYPE, eventType.name()));
+        }
+        if (booking.getBookingDate() != null) {
+            String hour = HOUR_FORMAT.format(booking.getBookingDate());
+            String day = DAY_FORMAT.format(booking.getBookingDate());
+            dimensions.add(Rollup.empty(HOUR + "_" + hour, HOUR, hour));
+            dimensions.add(Rollup.empty(DAY + "_" + day, DAY, day));
+        }
+        return dimensions;
+    }
+
+    public static String typeKey(Event.EventType eventType) {
+        return EVENT_TYPE + "_" + eventType.name();
+    }
+
+    public void recordBooking(Transaction transaction, Booking booking, Event.EventType eventType) {
+        for (Rollup dimension : dimensions(booking, eventType)) {
+            transaction.set(shardRef(dimension.getKey()), increments(dimension, booking, 1), SetOptions.merge());
+        }
+    }
+
+    public void recordCancellation(UnitOfWork work, Booking booking, Event.EventType eventType) {
+        for (Rollup dimension : dimensions(booking, eventType)) {
+            work.merge(shardRef(dimension.getKey()), increments(dimension, booking, -1));
+        }
+    }
+
+    /**
+     * Adds a cancelled booking to {@code deltas}, one entry per dimension, so a batch of
+     * cancellations can be written with {@link #recordDeltas} as one merge per dimension.
+     */
+    public static void addCancellation(Map<String, Rollup> deltas, Booking booking, Event.EventType eventType) {
+        long seats = booking.getNumberOfSeats() != null ? booking.getNumberOfSeats() : 0;
+        double revenue = booking.getTotalPrice() != null ? booking.getTotalPrice() : 0.0;
+        for (Rollup dimension : dimensions(booking, eventType)) {
+            deltas.computeIfAbsent(dimension.getKey(), key -> dimension).add(-1, -seats, -revenue, 1);
+        }
+    }
+
+    public void recordDeltas(UnitOfWork work, Collection<Rollup> deltas) {
+        for (Rollup delta : deltas) {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("key", delta.getKey());
+            fields.put("scope", delta.getScope());
+            fields.put("bucket", delta.getBucket());
+            fields.put("bookings", FieldValue.increment(delta.getBookings()));
+            fields.put("seats", FieldValue.increment(delta.getSeats()));
+            fields.put("revenue", FieldValue.increment(delta.getRevenue()));
+            fields.put("cancellations", FieldValue.increment(delta.getCancellations()));
+            work.merge(shardRef(delta.getKey()), fields);
+        }
+    }
+
+    public CompletableFuture<Map<String, Rollup>> findByKeysAsync(List<String> keys) {
+        List<String> ids = new ArrayList<>();
+        for (String key : keys) {
+            for (int shard = 0; shard < shards; shard++) {
+                ids.add(key + "_" + shard);
+            }
+        }
+
+        List<CompletableFuture<QuerySnapshot>> queries = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IDS_PER_QUERY) {
+            queries.add(toCompletable(firestore.collection(COLLECTION)
+                    .whereIn(FieldPath.documentId(), ids.subList(from, Math.min(from + IDS_PER_QUERY, ids.size())))
+                    .get()));
+        }
+        return CompletableFuture.allOf(queries.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            Map<String, Rollup> rollups = new HashMap<>();
+            queries.forEach(query -> sum(rollups, query.join().getDocuments()));
+            return rollups;
+        });
+    }
+
+    /**
+     * Hourly or daily buckets from {@code from} up to, but excluding, {@code to}, oldest
+     * first. Buckets without bookings are returned as zeros so the series has no gaps.
+     */
+    public CompletableFuture<List<Rollup>> findBucketsAsync(String scope, Instant from, Instant to) {
+        ChronoUnit unit = HOUR.equals(scope) ? ChronoUnit.HOURS : ChronoUnit.DAYS;
+        DateTimeFormatter format = HOUR.equals(scope) ? HOUR_FORMAT : DAY_FORMAT;
+        Instant start = from.truncatedTo(unit);
+
+        return toCompletable(firestore.collection(COLLECTION)
+                .whereGreaterThanOrEqualTo(FieldPath.documentId(), scope + "_" + format.format(start))
+                .whereLessThan(FieldPath.documentId(), scope + "_" + format.format(to.truncatedTo(unit)))
+                .get())
+                .thenApply(snapshot -> {
+                    Map<String, Rollup> rollups = new HashMap<>();
+                    sum(rollups, snapshot.getDocuments());
+
+                    List<Rollup> series = new ArrayList<>();
+                    for (Instant bucket = start; bucket.isBefore(to.truncatedTo(unit)); bucket = bucket.plus(1, unit)) {
+                        String name = format.format(bucket);
+                        series.add(rollups.getOrDefault(scope + "_" + name, Rollup.empty(scope + "_" + name, scope, name)));
+                    }
+                    return series;
+                });
+    }
+
+    /**
+     * Replaces every rollup with the given totals, written to shard 0. Used by the
+     * rebuild job; the deletes and writes go out in batches, not atomically.
+     */
+    public int replaceAll(Collection<Rollup> rollups) throws ExecutionException, InterruptedException {
+        CollectionReference collection = firestore.collection(COLLECTION);
+        String after = null;
+        while (true) {
+            Query page = collection.orderBy(FieldPath.documentId()).limit(UnitOfWork.MAX_WRITES);
+            if (after != null) {
+                page = page.whereGreaterThan(FieldPath.documentId(), after);
+            }
+            List<QueryDocumentSnapshot> docs = page.get().get().getDocuments();
+            if (docs.isEmpty()) {
+                break;
+            }
+            UnitOfWork work = new UnitOfWork(firestore);
+            docs.forEach(doc -> work.delete(COLLECTION, doc.getId()));
+            work.commit();
+            after = docs.getLast().getId();
+        }
+
+        UnitOfWork work = new UnitOfWork(firestore);
+        for (Rollup rollup : rollups) {
+            if (work.size() == UnitOfWork.MAX_WRITES) {
+                work.commit();
+                work = new UnitOfWork(firestore);
+            }
+            work.set(COLLECTION, rollup.getKey() + "_0", rollup);
+        }
+        work.commit();
+        return rollups.size();
+    }
+
+    private Map<String, Object> increments(Rollup dimension, Booking booking, int sign) {
+        long seats = booking.getNumberOfSeats() != null ? booking.getNumberOfSeats() : 0;
+        double revenue = booking.getTotalPrice() != null ? booking.getTotalPrice() : 0.0;
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("key", dimension.getKey());
+        fields.put("scope", dimension.getScope());
+        fields.put("bucket", dimension.getBucket());
+        fields.put("bookings", FieldValue.increment(sign));
+        fields.put("seats", FieldValue.increment(sign * seats));
+        fields.put("revenue", FieldValue.increment(sign * revenue));
+        fields.put("cancellations", FieldValue.increment(sign < 0 ? 1 : 0));
+        return fields;
+    }
+
+    private void sum(Map<String, Rollup> rollups, List<QueryDocumentSnapshot> shards) {
+        for (QueryDocumentSnapshot doc : shards) {
+            Rollup shard = doc.toObject(Rollup.class);
+            rollups.computeIfAbsent(shard.getKey(), key -> Rollup.empty(key, shard.getScope(), shard.getBucket()))
+                    .add(shard);
+        }
+    }
+
+    private DocumentReference shardRef(String key) {
+        int shard = ThreadLocalRandom.current().nextInt(shards);
+        return firestore.collection(COLLECTION).document(key + "_" + shard);
+    }
+}
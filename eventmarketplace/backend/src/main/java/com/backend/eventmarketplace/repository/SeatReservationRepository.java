@@ -0,0 +1,115 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.dto.BookingResponse;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.OutboxMessage;
+import com.backend.eventmarketplace.model.Payment;
+import com.google.cloud.firestore.*;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Reserves seats on an event and records the booking in one Firestore transaction:
+ * the seat check against the event's counter shards, the booking, reference index and
+ * payment inserts, the counter and dashboard rollup updates and the confirmation email
+ * in the outbox either all commit or none do, so concurrent bookings can never oversell
+ * an event.
+ */
+@Repository
+public class SeatReservationRepository {
+
+    private static final String EVENTS = "events";
+    private static final String BOOKINGS = "bookings";
+    private static final String PAYMENTS = "payments";
+
+    static final int MAX_ATTEMPTS = 5;
+
+    private final Firestore firestore;
+    private final EventCounterRepository eventCounterRepository;
+    private final RollupRepository rollupRepository;
+    private final OutboxRepository outboxRepository;
+    private final AsyncTaskExecutor taskExecutor;
+
+    public SeatReservationRepository(Firestore firestore, EventCounterRepository eventCounterRepository,
+                                     RollupRepository rollupRepository, OutboxRepository outboxRepository,
+                                     AsyncTaskExecutor taskExecutor) {
+        this.firestore = firestore;
+        this.eventCounterRepository = eventCounterRepository;
+        this.rollupRepository = rollupRepository;
+        this.outboxRepository = outboxRepository;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Builds the booking and payment for a reservation. Called inside the transaction,
+     * possibly more than once when Firestore retries, so it must not have side effects.
+     */
+    @FunctionalInterface
+    public interface BookingFactory {
+        BookingResponse create(Event event, String bookingId, String paymentId);
+    }
+
+    public BookingResponse reserve(String eventId, int seats, BookingFactory factory)
+            throws ExecutionException, InterruptedException {
+        return reserve(eventId, seats, factory, booking -> null);
+    }
+
+    /**
+     * Also queues {@code notification}'s message for the booking, if it returns one, in
+     * the same transaction.
+     */
+    public BookingResponse reserve(String eventId, int seats, BookingFactory factory,
+                                   Function<Booking, OutboxMessage> notification)
+            throws ExecutionException, InterruptedException {
+        DocumentReference eventRef = firestore.collection(EVENTS).document(eventId);
+        DocumentReference bookingRef = firestore.collection(BOOKINGS).document();
+        DocumentReference paymentRef = firestore.collection(PAYMENTS).document();
+
+        // The callback blocks on its reads, so run it on the (virtual-thread) task executor
+        TransactionOptions options = TransactionOptions.createReadWriteOptionsBuilder()
+                .setNumberOfAttempts(MAX_ATTEMPTS)
+                .setExecutor(taskExecutor)
+                .build();
+
+        try {
+            return firestore.runTransaction(transaction -> {
+                DocumentSnapshot snapshot = transaction.get(eventRef).get();
+                Event event = snapshot.exists() ? snapshot.toObject(Event.class) : null;
+                // Events saved before status existed have none and count as active
+                if (event == null || !Boolean.TRUE.equals(event.getBookingEnabled())
+                        || (event.getStatus() != null && event.getStatus() != Event.EventStatus.ACTIVE)) {
+                    throw new IllegalArgumentException("Event not available for booking");
+                }
+
+                BookingResponse response = factory.create(event, bookingRef.getId(), paymentRef.getId());
+                Booking booking = response.getBooking();
+                Payment payment = response.getPayment();
+
+                eventCounterRepository.reserve(transaction, event, seats, booking.getTotalPrice());
+                rollupRepository.recordBooking(transaction, booking, event.getEventType());
+                transaction.create(bookingRef, booking);
+                // Fails the commit rather than let two bookings share a reference
+                if (booking.getReferenceNumber() != null) {
+                    transaction.create(firestore.collection(BookingRepository.REFERENCES)
+                            .document(booking.getReferenceNumber()), Map.of("bookingId", bookingRef.getId()));
+                }
+                transaction.create(paymentRef, payment);
+                OutboxMessage message = notification.apply(booking);
+                if (message != null) {
+                    outboxRepository.enqueue(transaction, message);
+                }
+                return response;
+            }, options).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
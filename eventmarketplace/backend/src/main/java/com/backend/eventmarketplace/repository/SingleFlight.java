@@ -0,0 +1,82 @@
+package com.backend.eventmarketplace.repository;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller starts the load and
+ * everyone who asks for the key while it is in flight, or within the coalescing window
+ * after it completes, shares its future. Failures are never shared beyond the callers
+ * already waiting.
+ */
+public class SingleFlight<V> {
+
+    private static final class Flight<V> {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final AtomicBoolean started = new AtomicBoolean();
+    }
+
+    private final long windowMillis;
+    private final ConcurrentHashMap<String, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    public SingleFlight(Duration window) {
+        this.windowMillis = window.toMillis();
+    }
+
+    public CompletableFuture<V> load(String key, Supplier<CompletableFuture<V>> loader) {
+        Flight<V> flight = flights.computeIfAbsent(key, k -> new Flight<>());
+        if (!flight.started.compareAndSet(false, true)) {
+            shared.increment();
+            return flight.future;
+        }
+
+        loads.increment();
+        CompletableFuture<V> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((value, error) -> {
+            if (error != null || windowMillis <= 0) {
+                flights.remove(key, flight);
+            } else {
+                CompletableFuture.delayedExecutor(windowMillis, TimeUnit.MILLISECONDS)
+                        .execute(() -> flights.remove(key, flight));
+            }
+            if (error != null) {
+                flight.future.completeExceptionally(error);
+            } else {
+                flight.future.complete(value);
+            }
+        });
+        return flight.future;
+    }
+
+    /**
+     * Stops sharing the current result for the key, e.g. after the document was written.
+     * A load still in flight may have read the old document, so later callers start a
+     * new one; those already waiting keep theirs.
+     */
+    public void forget(String key) {
+        Flight<V> flight = flights.get(key);
+        if (flight != null) {
+            flights.remove(key, flight);
+        }
+    }
+
+    public long loads() {
+        return loads.sum();
+    }
+
+    public long shared() {
+        return shared.sum();
+    }
+}
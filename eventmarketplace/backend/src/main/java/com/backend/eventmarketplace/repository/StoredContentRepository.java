@@ -0,0 +1,107 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.model.StoredContent;
+import com.google.cloud.firestore.*;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Reference counts for content-addressed storage objects.
+ */
+@Repository
+public class StoredContentRepository extends BaseFirestoreRepository<StoredContent> {
+
+    private static final String COLLECTION = "stored_content";
+
+    private final AsyncTaskExecutor taskExecutor;
+
+    public StoredContentRepository(Firestore firestore, AsyncTaskExecutor taskExecutor) {
+        super(firestore);
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Adds a reference, creating the entry for content not stored yet. The new entry has
+     * no generation until {@link #recordGeneration} is called for its upload.
+     *
+     * @return the entry as it was before this reference, or null when it was created and
+     * the caller has to upload the content
+     */
+    public StoredContent acquire(String hash, String objectName, String contentType, long size)
+            throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(COLLECTION).document(hash);
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            StoredContent existing = snapshot.exists() ? snapshot.toObject(StoredContent.class) : null;
+            if (existing != null) {
+                transaction.update(ref, "references", FieldValue.increment(1));
+                return existing;
+            }
+            transaction.create(ref, new StoredContent(null, objectName, contentType, size, 1L, null, Instant.now()));
+            return null;
+        }, transactionOptions()).get();
+    }
+
+    /**
+     * Adds a reference to content that is already stored.
+     *
+     * @return false when there is no such content
+     */
+    public boolean retain(String hash) throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(COLLECTION).document(hash);
+        return firestore.runTransaction(transaction -> {
+            if (!transaction.get(ref).get().exists()) {
+                return false;
+            }
+            transaction.update(ref, "references", FieldValue.increment(1));
+            return true;
+        }, transactionOptions()).get();
+    }
+
+    /**
+     * Records the generation of a finished upload. When the same bytes were uploaded
+     * more than once, the newest generation is the one that stays.
+     */
+    public void recordGeneration(String hash, long generation) throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(COLLECTION).document(hash);
+        firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            StoredContent content = snapshot.exists() ? snapshot.toObject(StoredContent.class) : null;
+            if (content != null && (content.getGeneration() == null || content.getGeneration() < generation)) {
+                transaction.update(ref, Map.of("generation", generation));
+            }
+            return null;
+        }, transactionOptions()).get();
+    }
+
+    /**
+     * Drops a reference.
+     *
+     * @return the removed entry when that was the last reference, otherwise null
+     */
+    public StoredContent release(String hash) throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(COLLECTION).document(hash);
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            StoredContent content = snapshot.exists() ? snapshot.toObject(StoredContent.class) : null;
+            if (content == null) {
+                return null;
+            }
+            if (content.getReferences() == null || content.getReferences() <= 1) {
+                transaction.delete(ref);
+                return content;
+            }
+            transaction.update(ref, "references", FieldValue.increment(-1));
+            return null;
+        }, transactionOptions()).get();
+    }
+
+    // The callbacks block on their reads, so run them on the (virtual-thread) task executor
+    private TransactionOptions transactionOptions() {
+        return TransactionOptions.createReadWriteOptionsBuilder().setExecutor(taskExecutor).build();
+    }
+}
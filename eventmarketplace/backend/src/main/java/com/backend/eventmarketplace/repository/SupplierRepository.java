@@ -1,11 +1,12 @@
 package com.backend.eventmarketplace.repository;
 
+import com.backend.eventmarketplace.dto.Page;
 import com.backend.eventmarketplace.model.Supplier;
 import com.google.cloud.firestore.*;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 @Repository
@@ -13,42 +14,50 @@ public class SupplierRepository extends BaseFirestoreRepository<Supplier> {
 
     private static final String COLLECTION = "suppliers";
 
-    public SupplierRepository(Firestore firestore) {
-        super(firestore);
+    public SupplierRepository(Firestore firestore, EntityCaches entityCaches) {
+        super(firestore, entityCaches.forCollection(COLLECTION), entityCaches.singleFlight(COLLECTION));
     }
 
     public Supplier save(Supplier supplier) throws ExecutionException, InterruptedException {
-        return super.save(COLLECTION, supplier.getId(), supplier, Supplier.class);
+        return super.save(COLLECTION, supplier.getId(), supplier);
     }
 
     public Supplier findById(String id) throws ExecutionException, InterruptedException {
-        return super.getById(COLLECTION, id, Supplier.class);
+        return findByIdAsync(id).get();
+    }
+
+    public CompletableFuture<Supplier> findByIdAsync(String id) {
+        return super.getByIdAsync(COLLECTION, id, Supplier.class);
     }
 
     public Supplier findByUserId(String userId) throws ExecutionException, InterruptedException {
-        QuerySnapshot snapshot = firestore.collection(COLLECTION)
-                .whereEqualTo("userId", userId)
-                .limit(1)
-                .get().get();
+        return findByUserIdAsync(userId).get();
+    }
 
-        if (snapshot.isEmpty()) return null;
-        return snapshot.getDocuments().get(0).toObject(Supplier.class);
+    public CompletableFuture<Supplier> findByUserIdAsync(String userId) {
+        return queryAsync(firestore.collection(COLLECTION)
+                .whereEqualTo("userId", userId)
+                .limit(1), Supplier.class)
+                .thenApply(result -> result.isEmpty() ? null : result.get(0));
     }
 
     public List<Supplier> findAll() throws ExecutionException, InterruptedException {
-        QuerySnapshot snapshot = firestore.collection(COLLECTION)
-                .get().get();
-        List<Supplier> result = new ArrayList<>();
-        for (DocumentSnapshot doc : snapshot.getDocuments()) {
-            result.add(doc.toObject(Supplier.class));
-        }
-        return result;
+        return findAllAsync().get();
+    }
+
+    public CompletableFuture<List<Supplier>> findAllAsync() {
+        return queryAsync(firestore.collection(COLLECTION), Supplier.class);
+    }
+
+    public CompletableFuture<Page<Supplier>> findFirstAsync(int limit) {
+        return firstAsync(firestore.collection(COLLECTION), limit, Supplier.class);
+    }
+
+    public CompletableFuture<Page<Supplier>> findPageAsync(Integer pageSize, String pageToken) {
+        return pageAsync(firestore.collection(COLLECTION), pageSize, pageToken, Supplier.class);
     }
 
     public void delete(String id) throws ExecutionException, InterruptedException {
-        firestore.collection(COLLECTION)
-                .document(id)
-                .delete()
-                .get();
+        super.deleteById(COLLECTION, id);
     }
 }
@@ -0,0 +1,18 @@
+package com.backend.eventmarketplace.repository;
+
+import com.google.cloud.Timestamp;
+
+import java.time.Instant;
+
+final class Timestamps {
+
+    private Timestamps() {
+    }
+
+    /**
+     * The Firestore value for an instant, for query bounds and field updates.
+     */
+    static Timestamp of(Instant instant) {
+        return Timestamp.ofTimeSecondsAndNanos(instant.getEpochSecond(), instant.getNano());
+    }
+}
@@ -0,0 +1,113 @@
+package com.backend.eventmarketplace.repository;
+
+import com.google.cloud.firestore.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Collects writes to several documents into one WriteBatch so they are committed
+ * atomically in a single round trip. Obtain one from {@link UnitOfWorkFactory}. Documents
+ * written by collection and id are dropped from the near caches once the batch commits.
+ * One made by {@link UnitOfWorkFactory#inTransaction} stages into the transaction
+ * instead, which commits when its function returns.
+ */
+public class UnitOfWork {
+
+    public static final int MAX_WRITES = 500;
+
+    private final Firestore firestore;
+    private final EntityCaches entityCaches;
+    // A WriteBatch, or the Transaction this unit of work belongs to
+    private final UpdateBuilder<?> batch;
+    private final List<String[]> written = new ArrayList<>();
+    private int writes;
+
+    UnitOfWork(Firestore firestore) {
+        this(firestore, EntityCaches.none());
+    }
+
+    UnitOfWork(Firestore firestore, EntityCaches entityCaches) {
+        this.firestore = firestore;
+        this.entityCaches = entityCaches;
+        this.batch = firestore.batch();
+    }
+
+    UnitOfWork(Firestore firestore, EntityCaches entityCaches, Transaction transaction) {
+        this.firestore = firestore;
+        this.entityCaches = entityCaches;
+        this.batch = transaction;
+    }
+
+    /**
+     * Stages the entity and returns it with its (possibly generated) document id set.
+     */
+    public <E> E set(String collectionName, String id, E entity) {
+        CollectionReference collection = firestore.collection(collectionName);
+        DocumentReference docRef = id == null || id.isEmpty() ? collection.document() : collection.document(id);
+        DocumentIds.assign(entity, docRef.getId());
+        count();
+        batch.set(docRef, entity);
+        written.add(new String[]{collectionName, docRef.getId()});
+        return entity;
+    }
+
+    public void set(DocumentReference docRef, Map<String, Object> data) {
+        count();
+        batch.set(docRef, data);
+    }
+
+    /**
+     * Updates the fields, creating the document first if it does not exist.
+     */
+    public void merge(DocumentReference docRef, Map<String, Object> fields) {
+        count();
+        batch.set(docRef, fields, SetOptions.merge());
+    }
+
+    public void update(String collectionName, String id, Map<String, Object> fields) {
+        update(firestore.collection(collectionName).document(id), fields);
+        written.add(new String[]{collectionName, id});
+    }
+
+    public void update(DocumentReference docRef, Map<String, Object> fields) {
+        count();
+        batch.update(docRef, fields);
+    }
+
+    public void delete(String collectionName, String id) {
+        count();
+        batch.delete(firestore.collection(collectionName).document(id));
+        written.add(new String[]{collectionName, id});
+    }
+
+    public void delete(DocumentReference docRef) {
+        count();
+        batch.delete(docRef);
+    }
+
+    public int size() {
+        return writes;
+    }
+
+    public List<WriteResult> commit() throws ExecutionException, InterruptedException {
+        if (!(batch instanceof WriteBatch writeBatch)) {
+            throw new IllegalStateException("A unit of work in a transaction commits with the transaction");
+        }
+        List<WriteResult> results = writeBatch.commit().get();
+        invalidateCaches();
+        return results;
+    }
+
+    void invalidateCaches() {
+        written.forEach(doc -> entityCaches.invalidate(doc[0], doc[1]));
+    }
+
+    private void count() {
+        if (++writes > MAX_WRITES) {
+            throw new IllegalStateException("A unit of work holds at most " + MAX_WRITES + " writes");
+        }
+    }
+}
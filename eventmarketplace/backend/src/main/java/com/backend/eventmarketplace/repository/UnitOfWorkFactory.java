@@ -0,0 +1,67 @@
+package com.backend.eventmarketplace.repository;
+
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Transaction;
+import com.google.cloud.firestore.TransactionOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Repository;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Repository
+public class UnitOfWorkFactory {
+
+    private final Firestore firestore;
+    private final EntityCaches entityCaches;
+    private final AsyncTaskExecutor taskExecutor;
+
+    public UnitOfWorkFactory(Firestore firestore, EntityCaches entityCaches) {
+        this(firestore, entityCaches, null);
+    }
+
+    @Autowired
+    public UnitOfWorkFactory(Firestore firestore, EntityCaches entityCaches, AsyncTaskExecutor taskExecutor) {
+        this.firestore = firestore;
+        this.entityCaches = entityCaches;
+        this.taskExecutor = taskExecutor;
+    }
+
+    public UnitOfWork begin() {
+        return new UnitOfWork(firestore, entityCaches);
+    }
+
+    /**
+     * Reads and writes inside a Firestore transaction: the function does its reads on
+     * the transaction, then stages its writes into the unit of work. Called again when
+     * Firestore retries, so it must not have side effects of its own.
+     */
+    @FunctionalInterface
+    public interface TransactionalWork<T> {
+        T run(Transaction transaction, UnitOfWork work) throws Exception;
+    }
+
+    public <T> T inTransaction(TransactionalWork<T> work) throws ExecutionException, InterruptedException {
+        TransactionOptions.ReadWriteOptionsBuilder options = TransactionOptions.createReadWriteOptionsBuilder();
+        // The function blocks on its reads, so run it on the (virtual-thread) task executor
+        if (taskExecutor != null) {
+            options.setExecutor(taskExecutor);
+        }
+        AtomicReference<UnitOfWork> attempt = new AtomicReference<>();
+        try {
+            T result = firestore.runTransaction(transaction -> {
+                UnitOfWork unit = new UnitOfWork(firestore, entityCaches, transaction);
+                attempt.set(unit);
+                return work.run(transaction, unit);
+            }, options.build()).get();
+            attempt.get().invalidateCaches();
+            return result;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
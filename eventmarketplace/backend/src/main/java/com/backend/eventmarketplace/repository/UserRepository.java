@@ -1,9 +1,11 @@
 package com.backend.eventmarketplace.repository;
 
+import com.backend.eventmarketplace.model.ImageVariants;
 import com.backend.eventmarketplace.model.User;
 import com.google.cloud.firestore.*;
 import org.springframework.stereotype.Repository;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 @Repository
@@ -11,16 +13,45 @@ public class UserRepository extends BaseFirestoreRepository<User> {
 
     private static final String COLLECTION = "users";
 
-    public UserRepository(Firestore firestore) {
-        super(firestore);
+    public UserRepository(Firestore firestore, EntityCaches entityCaches) {
+        super(firestore, entityCaches.forCollection(COLLECTION), entityCaches.singleFlight(COLLECTION));
     }
 
     public User save(User user) throws ExecutionException, InterruptedException {
-        return super.save(COLLECTION, user.getId(), user, User.class);
+        return super.save(COLLECTION, user.getId(), user);
+    }
+
+    public User save(UnitOfWork work, User user) {
+        return super.save(work, COLLECTION, user.getId(), user);
     }
 
     public User findById(String id) throws ExecutionException, InterruptedException {
-        return super.getById(COLLECTION, id, User.class);
+        return findByIdAsync(id).get();
+    }
+
+    public CompletableFuture<User> findByIdAsync(String id) {
+        return super.getByIdAsync(COLLECTION, id, User.class);
+    }
+
+    /**
+     * Records the variants of the user's profile picture, unless it has been replaced
+     * or removed in the meantime.
+     */
+    public boolean setProfilePictureVariants(String userId, ImageVariants variants)
+            throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(COLLECTION).document(userId);
+        boolean updated = firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            User user = snapshot.exists() ? snapshot.toObject(User.class) : null;
+            if (user == null || !variants.getOriginal().equals(user.getProfilePictureUrl())) {
+                return false;
+            }
+            user.setProfilePictureVariants(variants);
+            transaction.set(ref, user);
+            return true;
+        }).get();
+        invalidate(COLLECTION, userId);
+        return updated;
     }
 
     public void deleteById(String id) throws ExecutionException, InterruptedException {
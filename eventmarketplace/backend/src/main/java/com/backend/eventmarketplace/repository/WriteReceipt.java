@@ -0,0 +1,13 @@
+package com.backend.eventmarketplace.repository;
+
+import com.google.cloud.Timestamp;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class WriteReceipt<T> {
+    private T entity;
+    private String id;
+    private Timestamp updateTime;
+}
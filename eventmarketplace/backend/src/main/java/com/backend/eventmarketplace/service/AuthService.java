@@ -2,12 +2,16 @@ package com.backend.eventmarketplace.service;
 
 import com.backend.eventmarketplace.dto.RegisterRequest;
 import com.backend.eventmarketplace.model.User;
+import com.backend.eventmarketplace.repository.Futures;
+import com.backend.eventmarketplace.repository.UnitOfWork;
+import com.backend.eventmarketplace.repository.UnitOfWorkFactory;
 import com.backend.eventmarketplace.repository.UserRepository;
 import com.google.firebase.auth.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 @Service
@@ -17,12 +21,18 @@ public class AuthService {
     private final UserRepository userRepository;
     private final StorageService storageService;
     private final EmailService emailService;
+    private final UnitOfWorkFactory unitOfWorkFactory;
+    private final ImageDerivativeService imageDerivativeService;
 
-    public AuthService(FirebaseAuth firebaseAuth, UserRepository userRepository, StorageService storageService, EmailService emailService) {
+    public AuthService(FirebaseAuth firebaseAuth, UserRepository userRepository, StorageService storageService,
+                       EmailService emailService, UnitOfWorkFactory unitOfWorkFactory,
+                       ImageDerivativeService imageDerivativeService) {
         this.firebaseAuth = firebaseAuth;
         this.userRepository = userRepository;
         this.storageService = storageService;
         this.emailService = emailService;
+        this.unitOfWorkFactory = unitOfWorkFactory;
+        this.imageDerivativeService = imageDerivativeService;
     }
 
     public User registerUser(RegisterRequest request) throws Exception {
@@ -46,13 +56,11 @@ public class AuthService {
         user.setCreatedAt(Instant.now());
         user.setUpdatedAt(Instant.now());
 
-        User savedUser = userRepository.save(user);
-
-        try {
-            this.emailService.sendWelcomeEmail(user.getEmail(), user.getName());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        // The welcome email is queued in the outbox with the profile write
+        UnitOfWork work = unitOfWorkFactory.begin();
+        User savedUser = userRepository.save(work, user);
+        emailService.queueWelcomeEmail(work, user.getEmail(), user.getName());
+        work.commit();
         return savedUser;
     }
 
@@ -60,8 +68,16 @@ public class AuthService {
         return firebaseAuth.verifyIdToken(idToken);
     }
 
+    public CompletableFuture<FirebaseToken> verifyTokenAsync(String idToken) {
+        return Futures.toCompletable(firebaseAuth.verifyIdTokenAsync(idToken));
+    }
+
     public User getUserById(String uid) throws ExecutionException, InterruptedException {
-        return userRepository.findById(uid);
+        return getUserByIdAsync(uid).get();
+    }
+
+    public CompletableFuture<User> getUserByIdAsync(String uid) {
+        return userRepository.findByIdAsync(uid);
     }
 
     public User updateUserProfile(String userId, User user, MultipartFile file) throws Exception {
@@ -71,16 +87,15 @@ public class AuthService {
             throw new RuntimeException("User not found");
         }
 
+        String previous = storageService.objectName(existing.getProfilePictureUrl());
+        String uploaded = null;
         if (file != null && !file.isEmpty()) {
-            String safeFilename = file.getOriginalFilename() == null ? "photo" :
-                    file.getOriginalFilename().replaceAll("\\s+", "_");
-            String objectName = String.format("profile_pictures/%s_%d_%s",
-                    userId, System.currentTimeMillis(), safeFilename);
-
-            String downloadUrl = storageService.uploadFile(file.getBytes(), file.getContentType(), objectName);
-            user.setProfilePictureUrl(downloadUrl);
+            uploaded = storageService.storeContent(file, file.getContentType());
+            user.setProfilePictureUrl(storageService.publicUrl(uploaded));
+            user.setProfilePictureVariants(uploaded.equals(previous) ? existing.getProfilePictureVariants() : null);
         } else {
             user.setProfilePictureUrl(existing.getProfilePictureUrl());
+            user.setProfilePictureVariants(existing.getProfilePictureVariants());
         }
 
         if (user.getEmail() != null && !user.getEmail().equals(existing.getEmail())) {
@@ -96,7 +111,18 @@ public class AuthService {
         user.setId(userId);
         user.setCreatedAt(existing.getCreatedAt());
         user.setUpdatedAt(Instant.now());
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        if (uploaded != null) {
+            // The same picture again holds two references to it, the old picture one it no longer needs
+            if (previous != null) {
+                imageDerivativeService.release(previous);
+            }
+            // Variants are only recorded while this is still the user's picture, so start after the save
+            if (!uploaded.equals(previous)) {
+                imageDerivativeService.forProfilePicture(userId, uploaded);
+            }
+        }
+        return saved;
     }
 
     public User deleteProfilePicture(String uid) throws Exception {
@@ -111,23 +137,27 @@ public class AuthService {
             throw new RuntimeException("No profile picture to delete");
         }
 
-        String bucketName = "eventmareketplace.firebasestorage.app";
-        String prefix = "https://storage.googleapis.com/" + bucketName + "/";
-
-        if (!imageUrl.startsWith(prefix)) {
+        String objectName = storageService.objectName(imageUrl);
+        if (objectName == null) {
             throw new RuntimeException("Invalid profile picture URL format");
         }
 
-        String objectName = imageUrl.substring(prefix.length());
-        storageService.deleteFile(objectName);
         user.setProfilePictureUrl(null);
+        user.setProfilePictureVariants(null);
         user.setUpdatedAt(Instant.now());
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        imageDerivativeService.release(objectName);
+        return saved;
     }
 
 
     public void deleteUserAccount(String uid) throws Exception {
+        User user = userRepository.findById(uid);
         firebaseAuth.deleteUser(uid);
         userRepository.deleteById(uid);
+        String picture = user != null ? storageService.objectName(user.getProfilePictureUrl()) : null;
+        if (picture != null) {
+            imageDerivativeService.release(picture);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.backend.eventmarketplace.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Booking references like {@code BK-06JN4HP000C0HG}: 42 bits of milliseconds since 2025,
+ * a 10 bit node id and a 12 bit per-millisecond sequence, written as 13 Crockford
+ * base32 characters and a mod 37 check symbol. References from one node never repeat
+ * and sort in the order they were issued; nodes with different ids never collide.
+ * Issuing one is a single compare-and-set, with no lock and no random draw.
+ */
+@Component
+public class BookingReferences {
+
+    public static final String PREFIX = "BK-";
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    static final long EPOCH_MILLIS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+
+    private static final int LENGTH = 13;
+    private static final String SYMBOLS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    private static final String CHECK_SYMBOLS = SYMBOLS + "*~$=U";
+
+    private final long node;
+    private final LongSupplier clock;
+    // The last millisecond and sequence issued, packed as (millis << SEQUENCE_BITS) | sequence
+    private final AtomicLong last = new AtomicLong();
+
+    @Autowired
+    public BookingReferences(@Value("${eventmarketplace.booking-references.node-id:-1}") int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    /**
+     * A negative nodeId picks one at random, which is only safe while a single instance
+     * is running; give each instance its own id when there are more.
+     */
+    BookingReferences(int nodeId, LongSupplier clock) {
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be at most " + MAX_NODE_ID);
+        }
+        this.node = nodeId >= 0 ? nodeId : new SecureRandom().nextInt(MAX_NODE_ID + 1);
+        this.clock = clock;
+    }
+
+    public String next() {
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            // A clock that steps back, or a full millisecond, carries on from the last one
+            next = Math.max((clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS, previous + 1);
+        } while (!last.compareAndSet(previous, next));
+
+        long millis = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return format((millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence);
+    }
+
+    /**
+     * The canonical form of a reference as typed by a person: case, hyphens and the
+     * look-alikes O, I and L are forgiven, the prefix is optional.
+     *
+     * @throws IllegalArgumentException when it is not a reference or its check symbol
+     *                                  does not match
+     */
+    public static String canonical(String reference) {
+        String body = reference == null ? "" : reference.trim().toUpperCase(Locale.ROOT);
+        // The prefix goes first, so an old BK-yyyy-xxxxxxxx reference cannot pass for a bare one
+        if (body.startsWith(PREFIX)) {
+            body = body.substring(PREFIX.length());
+        }
+        body = body.replace("-", "");
+        if (body.length() == LENGTH + 3 && body.startsWith("BK")) {
+            body = body.substring(2);
+        }
+        if (body.length() != LENGTH + 1) {
+            throw new IllegalArgumentException("Invalid booking reference");
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            int digit = SYMBOLS.indexOf(alias(body.charAt(i)));
+            // The first symbol only has room for the top four bits
+            if (digit < 0 || (i == 0 && digit > 15)) {
+                throw new IllegalArgumentException("Invalid booking reference");
+            }
+            value = (value << 5) | digit;
+        }
+        if (CHECK_SYMBOLS.indexOf(alias(body.charAt(LENGTH))) != Long.remainderUnsigned(value, 37)) {
+            throw new IllegalArgumentException("Invalid booking reference");
+        }
+        return format(value);
+    }
+
+    private static String format(long value) {
+        char[] chars = new char[PREFIX.length() + LENGTH + 1];
+        PREFIX.getChars(0, PREFIX.length(), chars, 0);
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[PREFIX.length() + i] = SYMBOLS.charAt((int) ((value >>> (5 * (LENGTH - 1 - i))) & 31));
+        }
+        chars[chars.length - 1] = CHECK_SYMBOLS.charAt((int) Long.remainderUnsigned(value, 37));
+        return new String(chars);
+    }
+
+    private static char alias(char c) {
+        return switch (c) {
+            case 'O' -> '0';
+            case 'I', 'L' -> '1';
+            default -> c;
+        };
+    }
+}
@@ -3,162 +3,256 @@ package com.backend.eventmarketplace.service;
 
 import com.backend.eventmarketplace.dto.BookingRequest;
 import com.backend.eventmarketplace.dto.BookingResponse;
+import com.backend.eventmarketplace.dto.Page;
 import com.backend.eventmarketplace.model.Booking;
 import com.backend.eventmarketplace.model.Event;
 import com.backend.eventmarketplace.model.Payment;
 import com.backend.eventmarketplace.model.User;
 import com.backend.eventmarketplace.repository.BookingRepository;
+import com.backend.eventmarketplace.repository.EventCounterRepository;
 import com.backend.eventmarketplace.repository.EventRepository;
+import com.backend.eventmarketplace.repository.PageTokens;
+import com.backend.eventmarketplace.repository.RollupRepository;
+import com.backend.eventmarketplace.repository.SeatReservationRepository;
+import com.backend.eventmarketplace.repository.UnitOfWorkFactory;
 import org.springframework.stereotype.Service;
 
-import java.time.Year;
 import java.time.Instant;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
 
 @Service
 public class BookingService {
 
     private final BookingRepository bookingRepository;
     private final EventRepository eventRepository;
+    private final SeatReservationRepository seatReservationRepository;
+    private final RollupRepository rollupRepository;
+    private final EventCounterRepository eventCounterRepository;
     private final PaymentService paymentService;
     private final AuthService authService;
     private final EmailService emailService;
+    private final UnitOfWorkFactory unitOfWorkFactory;
+    private final UserBookingsCache userBookingsCache;
+    private final BookingReferences bookingReferences;
 
     public BookingService(BookingRepository bookingRepository,
                           EventRepository eventRepository,
+                          SeatReservationRepository seatReservationRepository,
+                          RollupRepository rollupRepository,
+                          EventCounterRepository eventCounterRepository,
                           PaymentService paymentService,
                           AuthService authService,
-                          EmailService emailService) {
+                          EmailService emailService,
+                          UnitOfWorkFactory unitOfWorkFactory,
+                          UserBookingsCache userBookingsCache,
+                          BookingReferences bookingReferences) {
         this.bookingRepository = bookingRepository;
         this.eventRepository = eventRepository;
+        this.seatReservationRepository = seatReservationRepository;
+        this.rollupRepository = rollupRepository;
+        this.eventCounterRepository = eventCounterRepository;
         this.paymentService = paymentService;
         this.authService = authService;
         this.emailService = emailService;
+        this.unitOfWorkFactory = unitOfWorkFactory;
+        this.userBookingsCache = userBookingsCache;
+        this.bookingReferences = bookingReferences;
     }
 
     public BookingResponse createBooking(String userId, BookingRequest request) throws Exception {
-        Event event = eventRepository.findById(request.getEventId());
-        if (event == null || !Boolean.TRUE.equals(event.getBookingEnabled())) {
-            throw new IllegalArgumentException("Event not available for booking");
-        }
-
         int seats = request.getNumberOfSeats();
         if (seats <= 0) {
             throw new IllegalArgumentException("Invalid number of seats");
         }
-        if (event.getAvailableSeats() < seats) {
-            throw new IllegalStateException("Not enough seats available");
-        }
-        User user = authService.getUserById(userId);
-
-        double totalPrice = event.getTicketPrice() * seats;
-
-        Booking booking = new Booking();
-        booking.setId(null);
-        booking.setReferenceNumber(generateBookingReference());
-        booking.setUserId(userId);
-        booking.setEventId(event.getId());
-        booking.setNumberOfSeats(seats);
-        booking.setTotalPrice(totalPrice);
-        booking.setStatus(Booking.BookingStatus.CONFIRMED);
-        booking.setBookingDate(Instant.now());
-        booking.setCreatedAt(Instant.now());
-        booking.setPaymentStatus(Booking.PaymentStatus.COMPLETED);
-        booking.setEventTitle(event.getTitle());
-        booking.setEventDateTime(event.getEventDateTime());
-        booking.setEventLocation(event.getLocation());
-        booking.setUserName(user.getName());
-        booking.setUserEmail(user.getEmail());
-        booking.setUserPhone(user.getPhoneNumber());
-        booking = bookingRepository.save(booking);
-
-        // Create a stub payment record (no real gateway)
-        Payment payment = paymentService.createPayment(
-                booking.getId(),
-                userId,
-                event.getId(),
-                totalPrice,
-                request.getPaymentMethod()
-        );
-
-        booking.setPaymentId(payment.getId());
-        booking.setPaymentStatus(Booking.PaymentStatus.COMPLETED);
-        booking = bookingRepository.save(booking);
-        eventServiceUpdateEventStats(event, seats, totalPrice);
-
-        BookingResponse response = new BookingResponse();
-        response.setBooking(booking);
-        response.setPayment(payment);
-        response.setMessage("Booking successful");
+        // The user lookup runs while the transaction reads the event and its counters
+        CompletableFuture<User> userFuture = authService.getUserByIdAsync(userId);
+
+        // Seat check, booking + payment inserts and event stats commit together
+        BookingResponse response = seatReservationRepository.reserve(request.getEventId(), seats,
+                (event, bookingId, paymentId) -> {
+                    User user = joinUser(userFuture);
+                    double totalPrice = event.getTicketPrice() * seats;
+
+                    Booking booking = new Booking();
+                    booking.setId(bookingId);
+                    booking.setReferenceNumber(generateBookingReference());
+                    booking.setUserId(userId);
+                    booking.setEventId(event.getId());
+                    booking.setNumberOfSeats(seats);
+                    booking.setTotalPrice(totalPrice);
+                    booking.setStatus(Booking.BookingStatus.CONFIRMED);
+                    booking.setBookingDate(Instant.now());
+                    booking.setCreatedAt(Instant.now());
+                    booking.setPaymentId(paymentId);
+                    booking.setPaymentStatus(Booking.PaymentStatus.COMPLETED);
+                    booking.setEventTitle(event.getTitle());
+                    booking.setEventType(event.getEventType());
+                    booking.setEventDateTime(event.getEventDateTime());
+                    booking.setEventLocation(event.getLocation());
+                    booking.setUserName(user.getName());
+                    booking.setUserEmail(user.getEmail());
+                    booking.setUserPhone(user.getPhoneNumber());
+
+                    // Create a stub payment record (no real gateway)
+                    Payment payment = paymentService.buildPayment(
+                            paymentId,
+                            bookingId,
+                            userId,
+                            event.getId(),
+                            totalPrice,
+                            request.getPaymentMethod()
+                    );
+
+                    return new BookingResponse(booking, payment, "Booking successful");
+                },
+                // Sent by the outbox dispatcher once the booking has committed
+                booking -> emailService.confirmationEmail(booking.getUserEmail(), booking.getUserName(),
+                        booking.getReferenceNumber()));
+        userBookingsCache.invalidate(userId);
+        return response;
+    }
 
+    private User joinUser(CompletableFuture<User> userFuture) {
+        User user;
         try {
-            this.emailService.sendConfirmationEmail(user.getEmail(), user.getName(), booking.getReferenceNumber());
-        } catch (Exception e) {
-            e.printStackTrace();
+            user = userFuture.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("User lookup failed: " + e.getCause().getMessage(), e.getCause());
         }
-        return response;
+        if (user == null) {
+            throw new IllegalArgumentException("User not found");
+        }
+        return user;
     }
 
-    private void eventServiceUpdateEventStats(Event event, int seats, double revenue) throws ExecutionException, InterruptedException {
-        int currentBookings = event.getTotalBookings() != null ? event.getTotalBookings() : 0;
-        double currentRevenue = event.getTotalRevenue() != null ? event.getTotalRevenue() : 0.0;
-        int currentAvailable = event.getAvailableSeats() != null ? event.getAvailableSeats() : event.getCapacity();
+    public Booking getBookingById(String bookingId) throws ExecutionException, InterruptedException {
+        return getBookingByIdAsync(bookingId).get();
+    }
 
-        event.setTotalBookings(currentBookings + seats);
-        event.setTotalRevenue(currentRevenue + revenue);
-        event.setAvailableSeats(currentAvailable - seats);
-        event.setUpdatedAt(Instant.now());
+    public CompletableFuture<Booking> getBookingByIdAsync(String bookingId) {
+        return bookingRepository.findByIdAsync(bookingId);
+    }
 
-        eventRepository.save(event);
+    public Page<Booking> getAllBookings() throws ExecutionException, InterruptedException {
+        return getAllBookingsAsync().get();
     }
 
-    public Booking getBookingById(String bookingId) throws ExecutionException, InterruptedException {
-        return bookingRepository.findById(bookingId);
+    /**
+     * Looks a booking up by its reference number through the booking_refs index.
+     * Fails with IllegalArgumentException, before any read, for a malformed reference.
+     */
+    public CompletableFuture<Booking> getBookingByReferenceAsync(String reference) {
+        return CompletableFuture.completedFuture(reference)
+                .thenApply(BookingReferences::canonical)
+                .thenCompose(bookingRepository::findByReferenceAsync);
+    }
+
+    /**
+     * The bookings for a request without paging parameters: the first
+     * {@link PageTokens#MAX_UNPAGED_ITEMS} in id order, with a token for the rest.
+     */
+    public CompletableFuture<Page<Booking>> getAllBookingsAsync() {
+        return bookingRepository.findFirstAsync(PageTokens.MAX_UNPAGED_ITEMS);
     }
 
-    public List<Booking> getAllBookings() throws ExecutionException, InterruptedException {
-        return bookingRepository.findAll();
+    public CompletableFuture<Page<Booking>> getBookingsPageAsync(Integer pageSize, String pageToken) {
+        return bookingRepository.findPageAsync(pageSize, pageToken);
+    }
+
+    public CompletableFuture<Page<Booking>> getUserBookingsPageAsync(String userId, Integer pageSize, String pageToken) {
+        return bookingRepository.findByUserIdPageAsync(userId, pageSize, pageToken);
     }
 
     public List<Booking> getUserUpcomingBookings(String userId) throws ExecutionException, InterruptedException {
-        Instant now = Instant.now();
-        return bookingRepository.findByUserId(userId).stream()
-                .filter(b -> b.getEventDateTime() != null)
-                .filter(b -> b.getEventDateTime().isAfter(now))
-                .filter(b -> b.getStatus() != Booking.BookingStatus.CANCELED)
-                .collect(Collectors.toList());
+        return getUserUpcomingBookingsAsync(userId).get();
+    }
+
+    public CompletableFuture<List<Booking>> getUserUpcomingBookingsAsync(String userId) {
+        return userBookingsCache.get(userId, "upcoming", () ->
+                        bookingRepository.findUpcomingByUserIdAsync(userId, Instant.now()).thenApply(this::all))
+                .thenApply(Page::getItems);
+    }
+
+    public CompletableFuture<Page<Booking>> getUserUpcomingBookingsPageAsync(String userId, Integer pageSize,
+                                                                             String pageToken) {
+        return userBookingsCache.get(userId, view("upcoming", pageSize, pageToken), () ->
+                bookingRepository.findUpcomingByUserIdPageAsync(userId, Instant.now(), pageSize, pageToken));
     }
 
     public List<Booking> getUserPastBookings(String userId) throws ExecutionException, InterruptedException {
-            Instant now = Instant.now();
-            return bookingRepository.findByUserId(userId).stream()
-                    .filter(b -> b.getEventDateTime() != null)
-                    .filter(b -> b.getEventDateTime().isBefore(now))
-                    .filter(b -> b.getStatus() != Booking.BookingStatus.CANCELED)
-                    .collect(Collectors.toList());
+        return getUserPastBookingsAsync(userId).get();
+    }
+
+    public CompletableFuture<List<Booking>> getUserPastBookingsAsync(String userId) {
+        return userBookingsCache.get(userId, "past", () ->
+                        bookingRepository.findPastByUserIdAsync(userId, Instant.now()).thenApply(this::all))
+                .thenApply(Page::getItems);
+    }
+
+    public CompletableFuture<Page<Booking>> getUserPastBookingsPageAsync(String userId, Integer pageSize,
+                                                                         String pageToken) {
+        return userBookingsCache.get(userId, view("past", pageSize, pageToken), () ->
+                bookingRepository.findPastByUserIdPageAsync(userId, Instant.now(), pageSize, pageToken));
+    }
+
+    private Page<Booking> all(List<Booking> bookings) {
+        return new Page<>(bookings, null);
+    }
+
+    private static String view(String name, Integer pageSize, String pageToken) {
+        return name + "|" + PageTokens.pageSize(pageSize) + "|" + (pageToken != null ? pageToken : "");
     }
 
     public Booking cancelBooking(String bookingId, String userId) throws Exception {
-        Booking booking = bookingRepository.findById(bookingId);
-        if (booking == null) {
-            throw new IllegalArgumentException("Booking not found");
-        }
-        if (!booking.getUserId().equals(userId)) {
-            throw new IllegalStateException("User not allowed to cancel this booking");
-        }
+        // The status check and the writes are one transaction, so a booking cancelled
+        // twice at once, or by the attendee and a bulk cancellation, counts once
+        Booking canceled = unitOfWorkFactory.inTransaction((transaction, work) -> {
+            Booking booking = bookingRepository.findById(transaction, bookingId);
+            if (booking == null) {
+                throw new IllegalArgumentException("Booking not found");
+            }
+            if (!booking.getUserId().equals(userId)) {
+                throw new IllegalStateException("User not allowed to cancel this booking");
+            }
+            if (booking.getStatus() == Booking.BookingStatus.CANCELED) {
+                throw new IllegalStateException("Booking already canceled");
+            }
+
+            // All reads go before the first write. Bookings made before eventType was
+            // copied onto them take it from the event.
+            Event event = eventRepository.findById(transaction, booking.getEventId());
+            Event.EventType eventType = booking.getEventType();
+            if (eventType == null && event != null) {
+                eventType = event.getEventType();
+            }
+            // A deleted event has no counters left to give the seats back to
+            if (event != null) {
+                long seats = booking.getNumberOfSeats() != null ? booking.getNumberOfSeats() : 0;
+                double revenue = booking.getTotalPrice() != null ? booking.getTotalPrice() : 0.0;
+                eventCounterRepository.release(transaction, work, booking.getEventId(), seats, revenue);
+            }
+
+            booking.setStatus(Booking.BookingStatus.CANCELED);
+            booking.setPaymentStatus(Booking.PaymentStatus.REFUNDED);
 
-        booking.setStatus(Booking.BookingStatus.CANCELED);
-        booking.setPaymentStatus(Booking.PaymentStatus.REFUNDED);
-        booking = bookingRepository.save(booking);
+            // Booking and payment status change together with the event's counters and
+            // the dashboard rollups
+            booking = bookingRepository.save(work, booking);
+            if (booking.getPaymentId() != null) {
+                paymentService.markRefunded(work, booking.getPaymentId());
+            }
+            rollupRepository.recordCancellation(work, booking, eventType);
+            return booking;
+        });
+        userBookingsCache.invalidate(canceled.getUserId());
 
-        return booking;
+        return canceled;
     }
 
     public String generateBookingReference() {
-        return "BK-" + Year.now().getValue() + "-" +
-                UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        return bookingReferences.next();
     }
 }
\ No newline at end of file
@@ -4,65 +4,106 @@ import com.backend.eventmarketplace.dto.DashboardStats;
 import com.backend.eventmarketplace.dto.EventStatsDTO;
 import com.backend.eventmarketplace.model.Booking;
 import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.EventCounters;
+import com.backend.eventmarketplace.model.Rollup;
 import com.backend.eventmarketplace.repository.BookingRepository;
+import com.backend.eventmarketplace.repository.EventCounterRepository;
 import com.backend.eventmarketplace.repository.EventRepository;
+import com.backend.eventmarketplace.repository.RollupRepository;
 import org.springframework.stereotype.Service;
 
-import java.util.Comparator;
-import java.util.List;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 @Service
 public class DashboardService {
 
+    private static final int RECENT_BOOKINGS = 10;
+    private static final int HOURLY_BUCKETS = 24;
+    private static final int DAILY_BUCKETS = 30;
+
     private final BookingRepository bookingRepository;
     private final EventRepository eventRepository;
+    private final EventCounterRepository eventCounterRepository;
+    private final RollupRepository rollupRepository;
+    private final EventCatalogService eventCatalogService;
 
-    public DashboardService(BookingRepository bookingRepository, EventRepository eventRepository) {
+    public DashboardService(BookingRepository bookingRepository, EventRepository eventRepository,
+                            EventCounterRepository eventCounterRepository, RollupRepository rollupRepository,
+                            EventCatalogService eventCatalogService) {
         this.bookingRepository = bookingRepository;
         this.eventRepository = eventRepository;
+        this.eventCounterRepository = eventCounterRepository;
+        this.rollupRepository = rollupRepository;
+        this.eventCatalogService = eventCatalogService;
     }
 
     public DashboardStats getOrganizationDashboard() throws ExecutionException, InterruptedException {
-        List<Event> events = eventRepository.findAll();
+        return getOrganizationDashboardAsync().get();
+    }
+
+    public CompletableFuture<DashboardStats> getOrganizationDashboardAsync() {
+        Instant now = Instant.now();
+        List<String> totalKeys = new ArrayList<>();
+        totalKeys.add(RollupRepository.GLOBAL);
+        for (Event.EventType type : Event.EventType.values()) {
+            totalKeys.add(RollupRepository.typeKey(type));
+        }
 
-        List<EventStatsDTO> eventStats = events.stream().map(event -> {
-            int totalBookings = event.getTotalBookings() != null ? event.getTotalBookings() : 0;
-            int totalCapacity = event.getCapacity() != null ? event.getCapacity() : 0;
-            int availableSeats = totalCapacity - totalBookings;
-            double totalRevenue = event.getTotalRevenue() != null ? event.getTotalRevenue() : 0.0;
+        // The catalog replica makes the per-event stats free of Firestore reads
+        CompletableFuture<List<Event>> eventsFuture = eventCatalogService.isReady()
+                ? CompletableFuture.completedFuture(eventCatalogService.events())
+                : eventRepository.findAllAsync().thenCombine(eventCounterRepository.findAllAsync(), EventCounters::applyAll);
+        CompletableFuture<List<Booking>> recentFuture = bookingRepository.findRecentAsync(RECENT_BOOKINGS);
+        CompletableFuture<Map<String, Rollup>> totalsFuture = rollupRepository.findByKeysAsync(totalKeys);
+        CompletableFuture<List<Rollup>> hourlyFuture = rollupRepository.findBucketsAsync(RollupRepository.HOUR,
+                now.minus(HOURLY_BUCKETS - 1, ChronoUnit.HOURS), now.plus(1, ChronoUnit.HOURS));
+        CompletableFuture<List<Rollup>> dailyFuture = rollupRepository.findBucketsAsync(RollupRepository.DAY,
+                now.minus(DAILY_BUCKETS - 1, ChronoUnit.DAYS), now.plus(1, ChronoUnit.DAYS));
 
-            return new EventStatsDTO(
-                    event.getId(),
-                    event.getTitle(),
-                    totalBookings,
-                    totalCapacity,
-                    availableSeats,
-                    totalRevenue
-            );
-        }).toList();
+        return CompletableFuture.allOf(eventsFuture, recentFuture, totalsFuture, hourlyFuture, dailyFuture).thenApply(done -> {
+            List<EventStatsDTO> eventStats = eventsFuture.join().stream().map(event -> {
+                int totalBookings = event.getTotalBookings() != null ? event.getTotalBookings() : 0;
+                int totalCapacity = event.getCapacity() != null ? event.getCapacity() : 0;
+                int availableSeats = totalCapacity - totalBookings;
+                double totalRevenue = event.getTotalRevenue() != null ? event.getTotalRevenue() : 0.0;
 
-        int overallBookings = eventStats.stream()
-                .mapToInt(EventStatsDTO::getTotalBookings)
-                .sum();
+                return new EventStatsDTO(
+                        event.getId(),
+                        event.getTitle(),
+                        totalBookings,
+                        totalCapacity,
+                        availableSeats,
+                        totalRevenue
+                );
+            }).toList();
 
-        double overallRevenue = eventStats.stream()
-                .mapToDouble(EventStatsDTO::getTotalRevenue)
-                .sum();
+            Map<String, Rollup> totals = totalsFuture.join();
+            Rollup global = totals.remove(RollupRepository.GLOBAL);
+            Map<String, Rollup> eventTypeStats = new HashMap<>();
+            totals.values().forEach(rollup -> eventTypeStats.put(rollup.getBucket(), rollup));
 
-        List<Booking> recentBookings = events.stream()
-                .flatMap(e -> {
-                    try {
-                        return bookingRepository.findByEventId(e.getId()).stream();
-                    } catch (ExecutionException | InterruptedException ex) {
-                        throw new RuntimeException(ex);
-                    }
-                })
-                .sorted(Comparator.comparing(Booking::getBookingDate).reversed())
-                .limit(10)
-                .toList();
+            int overallBookings;
+            double overallRevenue;
+            if (global != null) {
+                overallBookings = global.getSeats().intValue();
+                overallRevenue = global.getRevenue();
+            } else {
+                // Rollups not built yet
+                overallBookings = eventStats.stream()
+                        .mapToInt(EventStatsDTO::getTotalBookings)
+                        .sum();
+                overallRevenue = eventStats.stream()
+                        .mapToDouble(EventStatsDTO::getTotalRevenue)
+                        .sum();
+            }
 
-        return new DashboardStats(eventStats, overallBookings, overallRevenue, recentBookings);
+            return new DashboardStats(eventStats, overallBookings, overallRevenue, recentFuture.join(),
+                    eventTypeStats, hourlyFuture.join(), dailyFuture.join());
+        });
     }
 
-}
\ No newline at end of file
+}
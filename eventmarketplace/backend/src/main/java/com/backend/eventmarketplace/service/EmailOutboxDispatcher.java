@@ -0,0 +1,188 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.OutboxMessage;
+import com.backend.eventmarketplace.repository.OutboxRepository;
+import com.backend.eventmarketplace.repository.UnitOfWork;
+import com.backend.eventmarketplace.repository.UnitOfWorkFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Drains the email outbox. Each batch of due messages goes out over one SMTP
+ * connection; a message that fails is retried with exponential backoff and
+ * dead-lettered (status DEAD, with the last error) after maxAttempts. A backlog is
+ * drained at no more than ratePerSecond messages, so a burst such as a cancelled event's
+ * notifications does not trip the SMTP provider's sending limits.
+ */
+@Component
+public class EmailOutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+
+    private final OutboxRepository outboxRepository;
+    private final UnitOfWorkFactory unitOfWorkFactory;
+    private final JavaMailSender mailSender;
+    private final String fromAddress;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration lease;
+    private final int ratePerSecond;
+
+    public EmailOutboxDispatcher(OutboxRepository outboxRepository, UnitOfWorkFactory unitOfWorkFactory,
+                                 JavaMailSender mailSender,
+                                 @Value("${spring.mail.from}") String fromAddress,
+                                 @Value("${eventmarketplace.outbox.enabled:true}") boolean enabled,
+                                 @Value("${eventmarketplace.outbox.batch-size:50}") int batchSize,
+                                 @Value("${eventmarketplace.outbox.max-attempts:6}") int maxAttempts,
+                                 @Value("${eventmarketplace.outbox.backoff-seconds:30}") long backoffSeconds,
+                                 @Value("${eventmarketplace.outbox.lease-seconds:120}") long leaseSeconds,
+                                 @Value("${eventmarketplace.outbox.rate-per-second:20}") int ratePerSecond) {
+        this.outboxRepository = outboxRepository;
+        this.unitOfWorkFactory = unitOfWorkFactory;
+        this.mailSender = mailSender;
+        this.fromAddress = fromAddress;
+        this.enabled = enabled;
+        this.batchSize = Math.min(batchSize, UnitOfWork.MAX_WRITES);
+        this.maxAttempts = maxAttempts;
+        this.backoff = Duration.ofSeconds(backoffSeconds);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    @Scheduled(fixedDelayString = "${eventmarketplace.outbox.poll-interval-ms:2000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            // Keep going while batches come back full, so a backlog drains in one poll
+            while (true) {
+                long started = System.nanoTime();
+                if (dispatchBatch() < batchSize) {
+                    break;
+                }
+                pace(started);
+            }
+        } catch (Exception e) {
+            log.error("Email outbox dispatch failed", e);
+        }
+    }
+
+    /**
+     * Sends one batch of due messages and records the outcome of each.
+     *
+     * @return how many messages were claimed
+     */
+    public int dispatchBatch() throws ExecutionException, InterruptedException {
+        Instant now = Instant.now();
+        List<OutboxMessage> batch = outboxRepository.claimDue(now, batchSize, lease);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        SimpleMailMessage[] mails = new SimpleMailMessage[batch.size()];
+        for (int i = 0; i < mails.length; i++) {
+            OutboxMessage message = batch.get(i);
+            mails[i] = new SimpleMailMessage();
+            mails[i].setFrom(fromAddress);
+            mails[i].setTo(message.getTo());
+            mails[i].setSubject(message.getSubject());
+            mails[i].setText(message.getBody());
+        }
+        Map<Object, Exception> failures = send(mails);
+
+        UnitOfWork work = unitOfWorkFactory.begin();
+        Instant done = Instant.now();
+        for (int i = 0; i < mails.length; i++) {
+            OutboxMessage message = batch.get(i);
+            Exception failure = failures.get(mails[i]);
+            if (failure == null) {
+                outboxRepository.markSent(work, message, done);
+            } else if (message.getAttempts() + 1 >= maxAttempts) {
+                outboxRepository.markDead(work, message, describe(failure));
+            } else {
+                outboxRepository.markRetry(work, message, done.plus(backoff(message.getAttempts() + 1)),
+                        describe(failure));
+            }
+        }
+        work.commit();
+        return batch.size();
+    }
+
+    /**
+     * Waits until a full batch started at {@code started} is within the rate limit;
+     * zero or less means no limit.
+     */
+    private void pace(long started) throws InterruptedException {
+        if (ratePerSecond <= 0) {
+            return;
+        }
+        long remaining = batchSize * 1_000_000_000L / ratePerSecond - (System.nanoTime() - started);
+        if (remaining > 0) {
+            Thread.sleep(Duration.ofNanos(remaining));
+        }
+    }
+
+    /**
+     * Sends the batch over a single connection and returns the messages that failed.
+     */
+    private Map<Object, Exception> send(SimpleMailMessage[] mails) {
+        try {
+            mailSender.send(mails);
+            return Map.of();
+        } catch (MailSendException e) {
+            if (!e.getFailedMessages().isEmpty()) {
+                return e.getFailedMessages();
+            }
+            return allFailed(mails, e);
+        } catch (MailException e) {
+            // Could not connect or authenticate: nothing in the batch went out
+            return allFailed(mails, e);
+        }
+    }
+
+    private static Map<Object, Exception> allFailed(SimpleMailMessage[] mails, Exception e) {
+        Map<Object, Exception> failures = new HashMap<>();
+        for (SimpleMailMessage mail : mails) {
+            failures.put(mail, e);
+        }
+        return failures;
+    }
+
+    // "Invalid Addresses" alone is no use; the server's reply is further down the chain
+    private static String describe(Throwable failure) {
+        StringBuilder description = new StringBuilder();
+        for (Throwable cause = failure; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null && description.indexOf(message.trim()) < 0) {
+                if (!description.isEmpty()) {
+                    description.append(": ");
+                }
+                description.append(message.trim());
+            }
+        }
+        return description.toString();
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = backoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+}
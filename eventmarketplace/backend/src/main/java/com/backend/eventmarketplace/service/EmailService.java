@@ -1,47 +1,44 @@
 package com.backend.eventmarketplace.service;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.MailException;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import com.backend.eventmarketplace.model.OutboxMessage;
+import com.backend.eventmarketplace.repository.OutboxRepository;
+import com.backend.eventmarketplace.repository.UnitOfWork;
 import org.springframework.stereotype.Service;
 
+/**
+ * Builds the marketplace's emails and queues them in the outbox with the write that
+ * triggers them; {@link EmailOutboxDispatcher} sends them. Nothing here talks to SMTP,
+ * so a slow mail server never holds up a booking or a registration.
+ */
 @Service
 public class EmailService {
-    private final JavaMailSender mailSender;
 
-    @Value("${spring.mail.from}")
-    private String fromAddress;
+    private final OutboxRepository outboxRepository;
 
-    public EmailService(JavaMailSender mailSender) {
-        this.mailSender = mailSender;
+    public EmailService(OutboxRepository outboxRepository) {
+        this.outboxRepository = outboxRepository;
     }
 
-    public void sendWelcomeEmail(String email, String name) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom(fromAddress);
-            message.setTo(email);
-            message.setSubject("Welcome to Event Marketplace");
-            message.setText("Hi " + name + ",\n\nYour Registration was Successful! \n\nThank you for registering at Event Marketplace.\n\nBest regards,\nEvent Marketplace Team");
-            mailSender.send(message);
-        } catch (MailException e) {
-            System.err.println("Failed to send welcome email: " + e.getMessage());
-            e.printStackTrace();
-        }
+    public void queueWelcomeEmail(UnitOfWork work, String email, String name) {
+        outboxRepository.enqueue(work, welcomeEmail(email, name));
     }
 
-    public void sendConfirmationEmail(String email, String name, String confirmation) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom(fromAddress);
-            message.setTo(email);
-            message.setSubject("Booking Confirmation");
-            message.setText("Hi " + name + ",\n\nYour Booking is confirmed with the following booking Number:" + confirmation +".\n\nBest regards,\nEvent Marketplace Team");
-            mailSender.send(message);
-        } catch (MailException e) {
-            System.err.println("Failed to send Confirmation email: " + e.getMessage());
-            e.printStackTrace();
-        }
+    public OutboxMessage welcomeEmail(String email, String name) {
+        return OutboxMessage.email(email, "Welcome to Event Marketplace",
+                "Hi " + name + ",\n\nYour Registration was Successful! \n\nThank you for registering at Event Marketplace.\n\nBest regards,\nEvent Marketplace Team");
+    }
+
+    public void queueCancellationEmail(UnitOfWork work, String email, String name, String eventTitle) {
+        outboxRepository.enqueue(work, cancellationEmail(email, name, eventTitle));
+    }
+
+    public OutboxMessage cancellationEmail(String email, String name, String eventTitle) {
+        return OutboxMessage.email(email, "Event Cancelled",
+                "Hi " + name + ",\n\nWe are sorry to tell you that " + eventTitle + " has been cancelled. Your booking has been cancelled and your payment refunded.\n\nBest regards,\nEvent Marketplace Team");
+    }
+
+    public OutboxMessage confirmationEmail(String email, String name, String confirmation) {
+        return OutboxMessage.email(email, "Booking Confirmation",
+                "Hi " + name + ",\n\nYour Booking is confirmed with the following booking Number:" + confirmation + ".\n\nBest regards,\nEvent Marketplace Team");
     }
 }
@@ -0,0 +1,282 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.EventCancellation;
+import com.backend.eventmarketplace.model.Rollup;
+import com.backend.eventmarketplace.repository.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cancels every active booking of an event that was cancelled or deleted. Bookings are
+ * read a page at a time in user order and written in batches of at most
+ * {@link UnitOfWork#MAX_WRITES}: each batch cancels its bookings, refunds their
+ * payments, queues one email per attendee, takes the bookings out of the rollups, gives
+ * the seats back to the event counters and checkpoints the job, all in one transaction
+ * that first checks the run still holds the job's lease and which bookings are still
+ * active. The emails go out through the outbox at the dispatcher's rate. Runs in the
+ * background; a job whose worker stops is resumed from its last checkpoint by
+ * {@link #resumeStale()}.
+ */
+@Service
+public class EventCancellationService {
+
+    private static final Logger log = LoggerFactory.getLogger(EventCancellationService.class);
+    private static final int STALE_JOBS_PER_SWEEP = 10;
+
+    private final BookingRepository bookingRepository;
+    private final PaymentService paymentService;
+    private final EventCounterRepository eventCounterRepository;
+    private final RollupRepository rollupRepository;
+    private final EmailService emailService;
+    private final EventCancellationRepository cancellationRepository;
+    private final UnitOfWorkFactory unitOfWorkFactory;
+    private final UserBookingsCache userBookingsCache;
+    private final AsyncTaskExecutor taskExecutor;
+    private final int pageSize;
+    private final Duration batchPause;
+    private final Duration lease;
+
+    public EventCancellationService(BookingRepository bookingRepository, PaymentService paymentService,
+                                    EventCounterRepository eventCounterRepository, RollupRepository rollupRepository,
+                                    EmailService emailService, EventCancellationRepository cancellationRepository,
+                                    UnitOfWorkFactory unitOfWorkFactory, UserBookingsCache userBookingsCache,
+                                    AsyncTaskExecutor taskExecutor,
+                                    @Value("${eventmarketplace.cancellations.page-size:300}") int pageSize,
+                                    @Value("${eventmarketplace.cancellations.batch-pause-ms:200}") long batchPauseMillis,
+                                    @Value("${eventmarketplace.cancellations.lease-seconds:120}") long leaseSeconds) {
+        this.bookingRepository = bookingRepository;
+        this.paymentService = paymentService;
+        this.eventCounterRepository = eventCounterRepository;
+        this.rollupRepository = rollupRepository;
+        this.emailService = emailService;
+        this.cancellationRepository = cancellationRepository;
+        this.unitOfWorkFactory = unitOfWorkFactory;
+        this.userBookingsCache = userBookingsCache;
+        this.taskExecutor = taskExecutor;
+        this.pageSize = pageSize;
+        this.batchPause = Duration.ofMillis(batchPauseMillis);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+    }
+
+    /**
+     * Starts cancelling the event's bookings in the background. Returns the job, or null
+     * when a run for this event is already in progress elsewhere.
+     */
+    public EventCancellation start(Event event, EventCancellation.Reason reason)
+            throws ExecutionException, InterruptedException {
+        EventCancellation job = cancellationRepository.start(EventCancellation.start(event, reason, Instant.now()), lease);
+        if (job != null) {
+            taskExecutor.execute(() -> runQuietly(job));
+        }
+        return job;
+    }
+
+    public CompletableFuture<EventCancellation> getProgressAsync(String eventId) {
+        return cancellationRepository.findByIdAsync(eventId);
+    }
+
+    @Scheduled(fixedDelayString = "${eventmarketplace.cancellations.resume-interval-ms:60000}")
+    public void resumeStale() {
+        try {
+            Instant now = Instant.now();
+            for (EventCancellation stale : cancellationRepository.findStale(now, STALE_JOBS_PER_SWEEP)) {
+                EventCancellation job = cancellationRepository.claim(stale.getId(), now, lease);
+                if (job != null) {
+                    runQuietly(job);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Resuming event cancellations failed", e);
+        }
+    }
+
+    /**
+     * Works through the job from its cursor to the end. The caller must hold its lease.
+     */
+    public EventCancellation run(EventCancellation job) throws ExecutionException, InterruptedException {
+        while (true) {
+            List<Booking> page = bookingRepository.findActiveByEventId(job.getEventId(), job.getCursorUserId(),
+                    job.getCursorBookingId(), pageSize);
+            Batch batch = new Batch(job);
+            for (Booking booking : page) {
+                if (!batch.fits(booking)) {
+                    job = commit(batch);
+                    pause();
+                    batch = new Batch(job);
+                }
+                batch.add(booking);
+            }
+            if (!batch.bookings.isEmpty()) {
+                job = commit(batch);
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+            pause();
+        }
+
+        EventCancellation running = job;
+        return unitOfWorkFactory.inTransaction((transaction, work) -> {
+            cancellationRepository.requireLease(transaction, running);
+            EventCancellation completed = copy(running);
+            Instant now = Instant.now();
+            completed.setStatus(EventCancellation.Status.COMPLETED);
+            completed.setCompletedAt(now);
+            completed.setUpdatedAt(now);
+            completed.setLeaseUntil(null);
+            completed.setLastError(null);
+            cancellationRepository.checkpoint(work, completed);
+            return completed;
+        });
+    }
+
+    private void runQuietly(EventCancellation job) {
+        try {
+            run(job);
+        } catch (Exception e) {
+            log.error("Cancelling bookings of event {} failed", job.getEventId(), e);
+            try {
+                cancellationRepository.recordError(job, e.getMessage());
+            } catch (Exception recordFailure) {
+                log.error("Recording the failure of event {}'s cancellation failed", job.getEventId(), recordFailure);
+            }
+        }
+    }
+
+    /**
+     * Commits the batch and returns the job as checkpointed with it. Fails, writing
+     * nothing, when another worker has claimed the job since.
+     */
+    private EventCancellation commit(Batch batch) throws ExecutionException, InterruptedException {
+        EventCancellation job = batch.job;
+        List<String> ids = batch.bookings.stream().map(Booking::getId).toList();
+        // The users of the bookings the last attempt cancelled
+        List<String> users = new ArrayList<>();
+        EventCancellation next = unitOfWorkFactory.inTransaction((transaction, work) -> {
+            cancellationRepository.requireLease(transaction, job);
+            // Bookings cancelled since the page was read are left alone
+            Batch live = new Batch(job);
+            bookingRepository.findStillActive(transaction, ids).forEach(live::add);
+            // Reads the counters, so it goes before the first write
+            if (live.releasesSeats() && !live.bookings.isEmpty()) {
+                eventCounterRepository.release(transaction, work, job.getEventId(), live.seats, live.revenue);
+            }
+            for (Booking booking : live.bookings) {
+                bookingRepository.markCanceled(work, booking.getId());
+                if (booking.getPaymentId() != null) {
+                    paymentService.markRefunded(work, booking.getPaymentId());
+                }
+            }
+            for (Booking attendee : live.attendees) {
+                emailService.queueCancellationEmail(work, attendee.getUserEmail(), attendee.getUserName(),
+                        job.getEventTitle());
+            }
+            rollupRepository.recordDeltas(work, live.rollups.values());
+
+            // The cursor moves past the whole page, skipped bookings included
+            Booking last = batch.bookings.getLast();
+            Instant now = Instant.now();
+            EventCancellation progress = copy(job);
+            progress.setCursorUserId(last.getUserId());
+            progress.setCursorBookingId(last.getId());
+            progress.setBookingsCanceled(job.getBookingsCanceled() + live.bookings.size());
+            progress.setSeatsReleased(job.getSeatsReleased() + live.seats);
+            progress.setAmountRefunded(job.getAmountRefunded() + live.revenue);
+            progress.setNotificationsQueued(job.getNotificationsQueued() + live.attendees.size());
+            progress.setUpdatedAt(now);
+            progress.setLeaseUntil(now.plus(lease));
+            cancellationRepository.checkpoint(work, progress);
+            users.clear();
+            live.bookings.stream().map(Booking::getUserId).distinct().forEach(users::add);
+            return progress;
+        });
+
+        users.forEach(userBookingsCache::invalidate);
+        return next;
+    }
+
+    private static EventCancellation copy(EventCancellation job) {
+        EventCancellation copy = new EventCancellation();
+        BeanUtils.copyProperties(job, copy);
+        return copy;
+    }
+
+    // Spreads the writes out so a large event does not saturate Firestore for everyone else
+    private void pause() throws InterruptedException {
+        if (!batchPause.isZero()) {
+            Thread.sleep(batchPause);
+        }
+    }
+
+    /**
+     * One commit's worth of cancellations, sized by the writes it will take.
+     */
+    private static final class Batch {
+
+        private final EventCancellation job;
+        private final List<Booking> bookings = new ArrayList<>();
+        private final List<Booking> attendees = new ArrayList<>();
+        private final Map<String, Rollup> rollups = new LinkedHashMap<>();
+        private String lastUserId;
+        private long seats;
+        private double revenue;
+        private int writes;
+
+        private Batch(EventCancellation job) {
+            this.job = job;
+            this.lastUserId = job.getCursorUserId();
+        }
+
+        private boolean fits(Booking booking) {
+            int needed = 1 + (booking.getPaymentId() != null ? 1 : 0) + (notifies(booking) ? 1 : 0);
+            for (Rollup dimension : RollupRepository.dimensions(booking, eventType(booking))) {
+                if (!rollups.containsKey(dimension.getKey())) {
+                    needed++;
+                }
+            }
+            // The checkpoint and the counter release are written once per batch
+            int fixed = 1 + (releasesSeats() ? 1 : 0);
+            return writes + rollups.size() + needed + fixed <= UnitOfWork.MAX_WRITES;
+        }
+
+        private void add(Booking booking) {
+            writes += 1 + (booking.getPaymentId() != null ? 1 : 0);
+            // Bookings come in user order, so a user's first booking here is their first overall
+            if (notifies(booking)) {
+                attendees.add(booking);
+                writes++;
+            }
+            RollupRepository.addCancellation(rollups, booking, eventType(booking));
+            bookings.add(booking);
+            lastUserId = booking.getUserId();
+            seats += booking.getNumberOfSeats() != null ? booking.getNumberOfSeats() : 0;
+            revenue += booking.getTotalPrice() != null ? booking.getTotalPrice() : 0.0;
+        }
+
+        // A deleted event's counters are never read again
+        private boolean releasesSeats() {
+            return job.getReason() != EventCancellation.Reason.DELETED;
+        }
+
+        private boolean notifies(Booking booking) {
+            return booking.getUserEmail() != null && !Objects.equals(booking.getUserId(), lastUserId);
+        }
+
+        private Event.EventType eventType(Booking booking) {
+            return booking.getEventType() != null ? booking.getEventType() : job.getEventType();
+        }
+    }
+}
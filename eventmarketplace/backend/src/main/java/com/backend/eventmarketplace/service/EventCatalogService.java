@@ -0,0 +1,405 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.EventCounters;
+import com.backend.eventmarketplace.repository.PageTokens;
+import com.google.cloud.firestore.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local replica of the events collection and its counter shards, kept current by
+ * Firestore snapshot listeners. The event listing is serialised and gzipped once per
+ * change instead of once per request, and is served with a strong ETag. Until both
+ * listeners have delivered their first snapshot the catalog is not ready and callers
+ * fall back to querying Firestore; a listener that fails is subscribed again with
+ * backoff.
+ */
+@Service
+public class EventCatalogService {
+
+    private static final String EVENTS = "events";
+    private static final String SHARDS = "counter_shards";
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private static final Logger log = LoggerFactory.getLogger(EventCatalogService.class);
+
+    /**
+     * The serialised listing: plain and gzip-compressed JSON, the ETag of the plain
+     * JSON and, when the catalog holds more than {@link PageTokens#MAX_UNPAGED_ITEMS}
+     * events, the page token for the rest.
+     */
+    public record Listing(byte[] json, byte[] gzip, String etag, String nextPageToken) {
+
+        /**
+         * The ETag of the gzip-compressed body: the plain one with -gz inside the quotes.
+         */
+        public String gzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
+    }
+
+    /**
+     * Told about every change to the replicated events, on the listener thread. The
+     * event is null when it was removed.
+     */
+    public interface ChangeListener {
+        void eventChanged(String id, Event event);
+
+        /**
+         * An event's summed counters after one of its shards changed.
+         */
+        default void countersChanged(String eventId, EventCounters counters) {
+        }
+    }
+
+    private final Firestore firestore;
+    private final JsonMapper jsonMapper;
+    private final boolean enabled;
+
+    // Sorted by id, so a page is a tailMap walk rather than a scan of the catalog
+    private final ConcurrentNavigableMap<String, Event> events = new ConcurrentSkipListMap<>();
+    private final Map<String, EventCounters> shards = new ConcurrentHashMap<>();
+    private final Map<String, EventCounters> totals = new ConcurrentHashMap<>();
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private final Object changeLock = new Object();
+    private final AtomicInteger eventsFailures = new AtomicInteger();
+    private final AtomicInteger shardsFailures = new AtomicInteger();
+    private final Duration resubscribeBackoff;
+    private volatile ListenerRegistration eventsRegistration;
+    private volatile ListenerRegistration shardsRegistration;
+    private volatile boolean stopped;
+    private volatile boolean eventsLoaded;
+    private volatile boolean shardsLoaded;
+    private volatile boolean dirty = true;
+    private volatile Listing listing;
+
+    public EventCatalogService(Firestore firestore, JsonMapper jsonMapper, boolean enabled) {
+        this(firestore, jsonMapper, enabled, 1_000);
+    }
+
+    @Autowired
+    public EventCatalogService(Firestore firestore, JsonMapper jsonMapper,
+                               @Value("${eventmarketplace.catalog.enabled:true}") boolean enabled,
+                               @Value("${eventmarketplace.catalog.resubscribe-backoff-ms:1000}") long resubscribeBackoffMillis) {
+        this.firestore = firestore;
+        this.jsonMapper = jsonMapper;
+        this.enabled = enabled;
+        this.resubscribeBackoff = Duration.ofMillis(resubscribeBackoffMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        stopped = false;
+        listenToEvents();
+        listenToShards();
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        for (ListenerRegistration registration : List.of(eventsRegistration, shardsRegistration)) {
+            if (registration != null) {
+                registration.remove();
+            }
+        }
+        eventsRegistration = null;
+        shardsRegistration = null;
+    }
+
+    private void listenToEvents() {
+        if (stopped) {
+            return;
+        }
+        eventsRegistration = firestore.collection(EVENTS).addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                // The listener is finished after an error; serve from Firestore until it is back
+                eventsLoaded = false;
+                log.error("Events listener failed", error);
+                resubscribe(this::listenToEvents, eventsFailures.incrementAndGet());
+                return;
+            }
+            synchronized (changeLock) {
+                // The first snapshot after a resubscribe does not report what was removed meanwhile
+                if (!eventsLoaded) {
+                    for (String id : missingFrom(snapshot, events.keySet(), DocumentSnapshot::getId)) {
+                        events.remove(id);
+                        for (ChangeListener listener : changeListeners) {
+                            listener.eventChanged(id, null);
+                        }
+                    }
+                }
+                for (DocumentChange change : snapshot.getDocumentChanges()) {
+                    QueryDocumentSnapshot doc = change.getDocument();
+                    Event event = null;
+                    if (change.getType() == DocumentChange.Type.REMOVED) {
+                        events.remove(doc.getId());
+                    } else {
+                        event = doc.toObject(Event.class);
+                        events.put(doc.getId(), event);
+                    }
+                    for (ChangeListener listener : changeListeners) {
+                        listener.eventChanged(doc.getId(), event);
+                    }
+                }
+            }
+            eventsFailures.set(0);
+            eventsLoaded = true;
+            dirty = true;
+        });
+    }
+
+    private void listenToShards() {
+        if (stopped) {
+            return;
+        }
+        shardsRegistration = firestore.collectionGroup(SHARDS).addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                shardsLoaded = false;
+                log.error("Counter shards listener failed", error);
+                resubscribe(this::listenToShards, shardsFailures.incrementAndGet());
+                return;
+            }
+            if (!shardsLoaded) {
+                for (String path : missingFrom(snapshot, shards.keySet(), doc -> doc.getReference().getPath())) {
+                    EventCounters previous = shards.remove(path);
+                    if (previous != null) {
+                        addToTotals(previous, -1);
+                        notifyCounters(previous.getEventId());
+                    }
+                }
+            }
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                QueryDocumentSnapshot doc = change.getDocument();
+                String path = doc.getReference().getPath();
+                EventCounters previous;
+                if (change.getType() == DocumentChange.Type.REMOVED) {
+                    previous = shards.remove(path);
+                } else {
+                    EventCounters shard = new EventCounters(doc.getString("eventId"),
+                            intValue(doc.getLong("availableSeats")),
+                            intValue(doc.getLong("totalBookings")),
+                            doc.getDouble("totalRevenue") != null ? doc.getDouble("totalRevenue") : 0.0);
+                    previous = shards.put(path, shard);
+                    addToTotals(shard, 1);
+                }
+                if (previous != null) {
+                    addToTotals(previous, -1);
+                }
+                notifyCounters(previous != null ? previous.getEventId() : doc.getString("eventId"));
+            }
+            shardsFailures.set(0);
+            shardsLoaded = true;
+            dirty = true;
+        });
+    }
+
+    /**
+     * Subscribes again after the failures-th consecutive error, waiting twice as long
+     * after each one up to a minute.
+     */
+    private void resubscribe(Runnable listen, int failures) {
+        if (stopped) {
+            return;
+        }
+        long delay = Math.min(resubscribeBackoff.toMillis() << Math.min(failures - 1, 16), MAX_BACKOFF.toMillis());
+        CompletableFuture.runAsync(listen, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                .exceptionally(e -> {
+                    log.error("Could not resubscribe to the catalog", e);
+                    resubscribe(listen, failures + 1);
+                    return null;
+                });
+    }
+
+    private static Set<String> missingFrom(QuerySnapshot snapshot, Set<String> replicated,
+                                           Function<QueryDocumentSnapshot, String> key) {
+        Set<String> missing = new HashSet<>(replicated);
+        for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+            missing.remove(key.apply(doc));
+        }
+        return missing;
+    }
+
+    private void notifyCounters(String eventId) {
+        EventCounters sum = eventId != null ? counters(eventId) : null;
+        if (sum != null) {
+            for (ChangeListener listener : changeListeners) {
+                listener.countersChanged(eventId, sum);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener and replays the events already replicated to it, so it sees
+     * every event exactly once before any later change.
+     */
+    public void addChangeListener(ChangeListener listener) {
+        synchronized (changeLock) {
+            changeListeners.add(listener);
+            events.forEach(listener::eventChanged);
+        }
+    }
+
+    /**
+     * The summed counter shards of one event, or null when it has none replicated.
+     */
+    public EventCounters counters(String eventId) {
+        EventCounters sum = totals.get(eventId);
+        return sum != null ? copy(sum) : null;
+    }
+
+    /**
+     * A copy of a replicated event, as a change listener was given it, with its live
+     * counters applied.
+     */
+    public Event withCounters(Event replicated) {
+        Event event = new Event();
+        BeanUtils.copyProperties(replicated, event);
+        EventCounters counters = counters(event.getId());
+        if (counters != null) {
+            counters.applyTo(event);
+        }
+        return event;
+    }
+
+    public boolean isReady() {
+        return eventsLoaded && shardsLoaded;
+    }
+
+    /**
+     * Copies of the replicated events with their counters applied, ordered by id like
+     * a collection scan. Empty until the catalog is ready.
+     */
+    public List<Event> events() {
+        if (!isReady()) {
+            return List.of();
+        }
+        // The listeners keep the per-event totals, so nothing is summed here
+        List<Event> result = new ArrayList<>(events.size());
+        for (Event event : events.values()) {
+            result.add(withCounters(event));
+        }
+        return result;
+    }
+
+    /**
+     * Copies of at most {@code limit} replicated events with ids after {@code afterId},
+     * or from the first when it is null, in id order and with their counters applied.
+     * Only the events returned are copied. Empty until the catalog is ready.
+     */
+    public List<Event> eventsAfter(String afterId, int limit) {
+        if (!isReady()) {
+            return new ArrayList<>();
+        }
+        Map<String, Event> tail = afterId == null ? events : events.tailMap(afterId, false);
+        List<Event> result = new ArrayList<>();
+        for (Event event : tail.values()) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(withCounters(event));
+        }
+        return result;
+    }
+
+    /**
+     * The serialised listing of the first {@link PageTokens#MAX_UNPAGED_ITEMS} events,
+     * rebuilt at most once per batch of changes. Empty until the catalog is ready.
+     */
+    public Optional<Listing> listing() {
+        if (!isReady()) {
+            return Optional.empty();
+        }
+        Listing current = listing;
+        // Null until the first rebuild has finished, even if another caller cleared dirty
+        if (dirty || current == null) {
+            current = rebuild();
+        }
+        return Optional.of(current);
+    }
+
+    private synchronized Listing rebuild() {
+        if (!dirty && listing != null) {
+            return listing;
+        }
+        // Cleared first, so a change that lands while we serialise triggers another rebuild
+        dirty = false;
+        List<Event> first = eventsAfter(null, PageTokens.MAX_UNPAGED_ITEMS + 1);
+        String next = null;
+        if (first.size() > PageTokens.MAX_UNPAGED_ITEMS) {
+            first.removeLast();
+            next = PageTokens.encode(first.getLast().getId());
+        }
+        byte[] json = jsonMapper.writeValueAsBytes(first);
+        listing = new Listing(json, gzip(json), etag(json), next);
+        return listing;
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String etag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void addToTotals(EventCounters shard, int sign) {
+        if (shard.getEventId() == null) {
+            return;
+        }
+        totals.compute(shard.getEventId(), (id, sum) -> {
+            EventCounters next = sum != null ? copy(sum) : new EventCounters(id, 0, 0, 0.0);
+            next.setAvailableSeats(next.getAvailableSeats() + sign * shard.getAvailableSeats());
+            next.setTotalBookings(next.getTotalBookings() + sign * shard.getTotalBookings());
+            next.setTotalRevenue(next.getTotalRevenue() + sign * shard.getTotalRevenue());
+            return next;
+        });
+    }
+
+    private static EventCounters copy(EventCounters counters) {
+        return new EventCounters(counters.getEventId(), counters.getAvailableSeats(),
+                counters.getTotalBookings(), counters.getTotalRevenue());
+    }
+
+    private static int intValue(Long value) {
+        return value != null ? value.intValue() : 0;
+    }
+}
@@ -0,0 +1,379 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.repository.PageTokens;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the title, description, location and city of events,
+ * ranked with BM25. Each event gets an ordinal and each term a postings list of
+ * (ordinal, weighted term frequency) in ordinal order; a title word counts for more
+ * than one in the description. Updates append the new version under a fresh ordinal
+ * and leave the old one dead until enough have built up to be worth compacting, so a
+ * change never rewrites postings. Queries score term at a time into a per-thread
+ * scratch array and keep only one page plus one in a bounded heap.
+ */
+public class EventSearchIndex {
+
+    public record Query(String text, Event.EventType eventType, Event.EventStatus status, Boolean bookingEnabled,
+                        Double minPrice, Double maxPrice, Instant from, Instant to) {
+    }
+
+    /**
+     * One page of matches, best first, and how many events matched in all.
+     */
+    public record Hits(List<Event> events, String nextPageToken, int total) {
+    }
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float PLACE_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final int MIN_DEAD_TO_COMPACT = 1024;
+
+    // Best first: score, then soonest, then id. Undated events sort last.
+    private static final Comparator<Hit> ORDER = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparingLong(Hit::date)
+            .thenComparing(Hit::id);
+
+    private record Hit(int doc, float score, long date, String id) {
+    }
+
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private float[] frequencies = new float[4];
+        private int size;
+        private int liveDocuments;
+
+        private void add(int doc, float frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+            liveDocuments++;
+        }
+    }
+
+    /**
+     * Score accumulators, pooled so a broad query allocates nothing in proportion to its
+     * matches. Every score is back to zero when one is released.
+     */
+    private static final class Scratch {
+        private float[] scores = new float[0];
+        private int[] touched = new int[1024];
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScratchPool<Scratch> scratchPool = new ScratchPool<>(Scratch::new);
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final BitSet live = new BitSet();
+    // Per-ordinal columns
+    private Event[] events = new Event[0];
+    private Postings[][] termsOf = new Postings[0][];
+    private float[] lengths = new float[0];
+    private byte[] eventTypes = new byte[0];
+    private byte[] statuses = new byte[0];
+    private byte[] bookingFlags = new byte[0];
+    private double[] prices = new double[0];
+    private long[] dates = new long[0];
+    private int size;
+    private int liveCount;
+    private double totalLength;
+
+    public EventSearchIndex() {
+        grow(1024);
+    }
+
+    /**
+     * Adds the event, or replaces the version indexed under the same id.
+     */
+    public void put(Event event) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(event.getId());
+            addLocked(event);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One page of events matching the query. Without text, every event that passes the
+     * filters matches and they come soonest first. The events are the indexed instances
+     * and must not be modified.
+     *
+     * @throws IllegalArgumentException if the page token was not issued by this index
+     */
+    public Hits search(Query query, int pageSize, String pageToken) {
+        Hit after = pageToken == null || pageToken.isEmpty() ? null : cursor(pageToken);
+        List<String> terms = TextAnalyzer.terms(query.text()).stream().distinct().toList();
+        Filter filter = Filter.of(query);
+        PriorityQueue<Hit> page = new PriorityQueue<>(pageSize + 2, ORDER.reversed());
+        int total = 0;
+
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty()) {
+                if (query.text() != null && !query.text().isBlank()) {
+                    // Only stop words: nothing to rank on
+                    return new Hits(List.of(), null, 0);
+                }
+                for (int doc = live.nextSetBit(0); doc >= 0; doc = live.nextSetBit(doc + 1)) {
+                    if (matches(doc, filter)) {
+                        total++;
+                        offer(page, doc, 0f, after, pageSize);
+                    }
+                }
+            } else {
+                total = score(terms, filter, page, after, pageSize);
+            }
+
+            List<Hit> hits = new ArrayList<>(page);
+            hits.sort(ORDER);
+            String next = null;
+            if (hits.size() > pageSize) {
+                hits = hits.subList(0, pageSize);
+                Hit last = hits.getLast();
+                next = PageTokens.encode((double) last.score(), last.date(), last.id());
+            }
+            List<Event> result = new ArrayList<>(hits.size());
+            for (Hit hit : hits) {
+                result.add(events[hit.doc()]);
+            }
+            return new Hits(result, next, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int score(List<String> terms, Filter filter, PriorityQueue<Hit> page, Hit after, int pageSize) {
+        Scratch scratch = scratchPool.borrow();
+        if (scratch.scores.length < size) {
+            scratch.scores = new float[Math.max(size, scratch.scores.length * 2)];
+        }
+        float[] scores = scratch.scores;
+        float averageLength = liveCount > 0 ? (float) (totalLength / liveCount) : 1f;
+        int[] touched = scratch.touched;
+        int touchedCount = 0;
+        for (String term : terms) {
+            Postings list = postings.get(term);
+            if (list == null || list.liveDocuments == 0) {
+                continue;
+            }
+            float idf = (float) Math.log(1 + (liveCount - list.liveDocuments + 0.5) / (list.liveDocuments + 0.5));
+            for (int i = 0; i < list.size; i++) {
+                int doc = list.docs[i];
+                if (!live.get(doc)) {
+                    continue;
+                }
+                float frequency = list.frequencies[i];
+                float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+                if (scores[doc] == 0f) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                        scratch.touched = touched;
+                    }
+                    touched[touchedCount++] = doc;
+                }
+                scores[doc] += idf * frequency * (K1 + 1) / (frequency + norm);
+            }
+        }
+
+        int total = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = touched[i];
+            float score = scores[doc];
+            scores[doc] = 0f;
+            if (matches(doc, filter)) {
+                total++;
+                offer(page, doc, score, after, pageSize);
+            }
+        }
+        // Not released if anything above threw, as its scores may not be cleared
+        scratchPool.release(scratch);
+        return total;
+    }
+
+    private void offer(PriorityQueue<Hit> page, int doc, float score, Hit after, int pageSize) {
+        // Most matches rank below a full page and are dropped without building a hit
+        if (page.size() > pageSize) {
+            Hit worst = page.peek();
+            if (score < worst.score() || (score == worst.score() && dates[doc] > worst.date())) {
+                return;
+            }
+        }
+        Hit hit = new Hit(doc, score, dates[doc], events[doc].getId());
+        if (after != null && ORDER.compare(hit, after) <= 0) {
+            return;
+        }
+        // One more than a page, to know whether there is a next one
+        if (page.size() <= pageSize) {
+            page.add(hit);
+        } else if (ORDER.compare(hit, page.peek()) < 0) {
+            page.poll();
+            page.add(hit);
+        }
+    }
+
+    /**
+     * The query's filters over the column arrays, with absent bounds left wide open.
+     */
+    private record Filter(int eventType, int status, int bookingEnabled, double minPrice, double maxPrice,
+                          boolean priced, long from, long to, boolean dated) {
+
+        static Filter of(Query query) {
+            return new Filter(
+                    query.eventType() != null ? query.eventType().ordinal() + 1 : -1,
+                    query.status() != null ? query.status().ordinal() + 1 : -1,
+                    query.bookingEnabled() != null ? flag(query.bookingEnabled()) : -1,
+                    query.minPrice() != null ? query.minPrice() : Double.NEGATIVE_INFINITY,
+                    query.maxPrice() != null ? query.maxPrice() : Double.POSITIVE_INFINITY,
+                    query.minPrice() != null || query.maxPrice() != null,
+                    query.from() != null ? query.from().toEpochMilli() : Long.MIN_VALUE,
+                    query.to() != null ? query.to().toEpochMilli() : Long.MAX_VALUE - 1,
+                    query.from() != null || query.to() != null);
+        }
+    }
+
+    // Reads only the primitive columns, never the event itself, so filtering stays in cache
+    private boolean matches(int doc, Filter filter) {
+        return (filter.eventType() < 0 || eventTypes[doc] == filter.eventType())
+                && (filter.status() < 0 || statuses[doc] == filter.status())
+                && (filter.bookingEnabled() < 0 || bookingFlags[doc] == filter.bookingEnabled())
+                // A missing price is NaN and a missing date sorts after every bound
+                && (!filter.priced() || (prices[doc] >= filter.minPrice() && prices[doc] <= filter.maxPrice()))
+                && (!filter.dated() || (dates[doc] >= filter.from() && dates[doc] <= filter.to()));
+    }
+
+    private static int flag(Boolean value) {
+        return value == null ? 0 : value ? 2 : 1;
+    }
+
+    private void addLocked(Event event) {
+        Map<String, Float> frequencies = new HashMap<>();
+        float length = addTerms(frequencies, event.getTitle(), TITLE_WEIGHT)
+                + addTerms(frequencies, event.getLocation(), PLACE_WEIGHT)
+                + addTerms(frequencies, event.getCity(), PLACE_WEIGHT)
+                + addTerms(frequencies, event.getDescription(), DESCRIPTION_WEIGHT);
+
+        int doc = size++;
+        if (doc == events.length) {
+            grow(doc * 2);
+        }
+        Postings[] terms = new Postings[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<String, Float> entry : frequencies.entrySet()) {
+            Postings list = postings.computeIfAbsent(entry.getKey(), term -> new Postings());
+            list.add(doc, entry.getValue());
+            terms[i++] = list;
+        }
+        events[doc] = event;
+        termsOf[doc] = terms;
+        lengths[doc] = length;
+        eventTypes[doc] = (byte) (event.getEventType() != null ? event.getEventType().ordinal() + 1 : 0);
+        statuses[doc] = (byte) (event.getStatus() != null ? event.getStatus().ordinal() + 1 : 0);
+        bookingFlags[doc] = (byte) flag(event.getBookingEnabled());
+        prices[doc] = event.getTicketPrice() != null ? event.getTicketPrice() : Double.NaN;
+        dates[doc] = date(event);
+        live.set(doc);
+        ordinals.put(event.getId(), doc);
+        liveCount++;
+        totalLength += length;
+    }
+
+    private void removeLocked(String id) {
+        Integer doc = ordinals.remove(id);
+        if (doc == null) {
+            return;
+        }
+        live.clear(doc);
+        for (Postings list : termsOf[doc]) {
+            list.liveDocuments--;
+        }
+        events[doc] = null;
+        termsOf[doc] = null;
+        liveCount--;
+        totalLength -= lengths[doc];
+    }
+
+    // Rebuilds from the live events once dead ordinals outnumber them
+    private void compactIfNeeded() {
+        int dead = size - liveCount;
+        if (dead < MIN_DEAD_TO_COMPACT || dead < liveCount) {
+            return;
+        }
+        List<Event> current = new ArrayList<>(liveCount);
+        for (int doc = live.nextSetBit(0); doc >= 0; doc = live.nextSetBit(doc + 1)) {
+            current.add(events[doc]);
+        }
+        ordinals.clear();
+        postings.clear();
+        live.clear();
+        events = new Event[0];
+        grow(Math.max(1024, current.size()));
+        size = 0;
+        liveCount = 0;
+        totalLength = 0;
+        current.forEach(this::addLocked);
+    }
+
+    private void grow(int capacity) {
+        events = Arrays.copyOf(events, capacity);
+        termsOf = Arrays.copyOf(termsOf, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        eventTypes = Arrays.copyOf(eventTypes, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        bookingFlags = Arrays.copyOf(bookingFlags, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+    }
+
+    private static float addTerms(Map<String, Float> frequencies, String text, float weight) {
+        List<String> terms = TextAnalyzer.terms(text);
+        for (String term : terms) {
+            frequencies.merge(term, weight, Float::sum);
+        }
+        return terms.size() * weight;
+    }
+
+    private static long date(Event event) {
+        return event.getEventDateTime() != null ? event.getEventDateTime().toEpochMilli() : Long.MAX_VALUE;
+    }
+
+    private static Hit cursor(String pageToken) {
+        Object[] cursor = PageTokens.decode(pageToken);
+        if (cursor.length != 3 || !(cursor[0] instanceof Double score) || !(cursor[1] instanceof Long date)
+                || !(cursor[2] instanceof String id)) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+        return new Hit(-1, score.floatValue(), date, id);
+    }
+}
@@ -0,0 +1,49 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.EventSearchResults;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.repository.PageTokens;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Full-text event search over an {@link EventSearchIndex} that follows the event
+ * catalog replica, so searching costs no Firestore reads. Results carry the live
+ * seat and booking counters.
+ */
+@Service
+public class EventSearchService {
+
+    private final EventCatalogService eventCatalogService;
+    private final EventSearchIndex index = new EventSearchIndex();
+
+    public EventSearchService(EventCatalogService eventCatalogService) {
+        this.eventCatalogService = eventCatalogService;
+    }
+
+    @PostConstruct
+    public void start() {
+        eventCatalogService.addChangeListener((id, event) -> {
+            if (event == null) {
+                index.remove(id);
+            } else {
+                index.put(event);
+            }
+        });
+    }
+
+    /**
+     * @throws IllegalStateException while the catalog has not loaded
+     * @throws IllegalArgumentException for an invalid page token
+     */
+    public EventSearchResults search(EventSearchIndex.Query query, Integer pageSize, String pageToken) {
+        if (!eventCatalogService.isReady()) {
+            throw new IllegalStateException("Search is not available yet");
+        }
+        EventSearchIndex.Hits hits = index.search(query, PageTokens.pageSize(pageSize), pageToken);
+        List<Event> events = hits.events().stream().map(eventCatalogService::withCounters).toList();
+        return new EventSearchResults(events, hits.nextPageToken(), hits.total());
+    }
+}
@@ -1,22 +1,54 @@
 package com.backend.eventmarketplace.service;
 
+import com.backend.eventmarketplace.dto.Page;
 import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.EventCancellation;
+import com.backend.eventmarketplace.model.EventCounters;
+import com.backend.eventmarketplace.repository.EventCounterRepository;
 import com.backend.eventmarketplace.repository.EventRepository;
+import com.backend.eventmarketplace.repository.PageTokens;
+import com.backend.eventmarketplace.repository.UnitOfWork;
+import com.backend.eventmarketplace.repository.UnitOfWorkFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class EventService {
 
+    private static final Logger log = LoggerFactory.getLogger(EventService.class);
+
     private final EventRepository eventRepository;
+    private final EventCounterRepository eventCounterRepository;
+    private final UnitOfWorkFactory unitOfWorkFactory;
+    private final EventCatalogService eventCatalogService;
+    private final EventCancellationService eventCancellationService;
+    private final StorageService storageService;
+    private final ImageDerivativeService imageDerivativeService;
 
-    public EventService(EventRepository eventRepository) {
+    public EventService(EventRepository eventRepository, EventCounterRepository eventCounterRepository,
+                        UnitOfWorkFactory unitOfWorkFactory, EventCatalogService eventCatalogService,
+                        EventCancellationService eventCancellationService, StorageService storageService,
+                        ImageDerivativeService imageDerivativeService) {
         this.eventRepository = eventRepository;
+        this.eventCounterRepository = eventCounterRepository;
+        this.unitOfWorkFactory = unitOfWorkFactory;
+        this.eventCatalogService = eventCatalogService;
+        this.eventCancellationService = eventCancellationService;
+        this.storageService = storageService;
+        this.imageDerivativeService = imageDerivativeService;
     }
 
     public Event createEvent(Event event) throws ExecutionException, InterruptedException {
+        GeoCellIndex.checkCoordinates(event.getLatitude(), event.getLongitude());
         event.setId(null);
         event.setStatus(Event.EventStatus.ACTIVE);
         event.setCreatedAt(Instant.now());
@@ -25,43 +57,261 @@ public class EventService {
         event.setTotalBookings(0);
         event.setTotalRevenue(0.0);
         event.setBookingEnabled(event.getBookingEnabled());
-        return eventRepository.save(event);
+        event.setCounterShards(eventCounterRepository.shardCount(event));
+        retainImages(event.getImageUrls(), null);
+
+        // Event and its counter shards go out in one commit
+        UnitOfWork work = unitOfWorkFactory.begin();
+        Event saved = eventRepository.save(work, event);
+        eventCounterRepository.initialize(work, saved);
+        work.commit();
+        return saved;
     }
 
+    /**
+     * Reads, checks and writes the event and its seat shards in one transaction, so a
+     * concurrent image upload or booking switch is not overwritten.
+     */
     public Event updateEvent(String eventId, Event updated) throws ExecutionException, InterruptedException {
-        Event existing = eventRepository.findById(eventId);
-        if (existing == null) {
+        GeoCellIndex.checkCoordinates(updated.getLatitude(), updated.getLongitude());
+        Event current = eventRepository.findById(eventId);
+        if (current == null) {
             throw new IllegalArgumentException("Event not found");
         }
+        // New images are referenced before the event points at them, which a retried transaction must not repeat
+        List<String> retained = retainImages(updated.getImageUrls(), current.getImageUrls());
 
-        existing.setTitle(updated.getTitle());
-        existing.setDescription(updated.getDescription());
-        existing.setEventDateTime(updated.getEventDateTime());
-        existing.setLocation(updated.getLocation());
-        existing.setCity(updated.getCity());
-        existing.setTicketPrice(updated.getTicketPrice());
-        existing.setCapacity(updated.getCapacity());
-        existing.setAvailableSeats(updated.getAvailableSeats());
-        existing.setEventType(updated.getEventType());
-        existing.setImageUrls(updated.getImageUrls());
-        existing.setSupplierNotes(updated.getSupplierNotes());
-        existing.setBookingEnabled(updated.getBookingEnabled());
-        existing.setStatus(updated.getStatus());
-        existing.setUpdatedAt(Instant.now());
+        AtomicReference<Event> previous = new AtomicReference<>();
+        Event saved;
+        try {
+            saved = unitOfWorkFactory.inTransaction((transaction, work) -> {
+                Event existing = eventRepository.findById(transaction, eventId);
+                if (existing == null) {
+                    throw new IllegalArgumentException("Event not found");
+                }
+                Event before = new Event();
+                before.setStatus(existing.getStatus());
+                before.setImageUrls(existing.getImageUrls());
+                previous.set(before);
+
+                if (updated.getCapacity() != null && existing.getCapacity() != null) {
+                    int delta = updated.getCapacity() - existing.getCapacity();
+                    if (delta != 0 && !eventCounterRepository.adjustSeats(transaction, work, existing, delta)) {
+                        // Not sharded yet: the event's own count is what the shards get seeded from
+                        int seats = (existing.getAvailableSeats() != null ? existing.getAvailableSeats() : 0) + delta;
+                        if (seats < 0) {
+                            throw new IllegalStateException("Capacity is lower than the seats already booked");
+                        }
+                        existing.setAvailableSeats(seats);
+                    }
+                }
+
+                existing.setTitle(updated.getTitle());
+                existing.setDescription(updated.getDescription());
+                existing.setEventDateTime(updated.getEventDateTime());
+                existing.setLocation(updated.getLocation());
+                existing.setCity(updated.getCity());
+                existing.setLatitude(updated.getLatitude());
+                existing.setLongitude(updated.getLongitude());
+                existing.setTicketPrice(updated.getTicketPrice());
+                existing.setCapacity(updated.getCapacity());
+                existing.setEventType(updated.getEventType());
+                existing.setImageUrls(updated.getImageUrls());
+                if (existing.getImageVariants() != null) {
+                    List<String> kept = updated.getImageUrls() != null ? updated.getImageUrls() : List.of();
+                    existing.setImageVariants(existing.getImageVariants().stream()
+                            .filter(variants -> kept.contains(variants.getOriginal()))
+                            .toList());
+                }
+                existing.setSupplierNotes(updated.getSupplierNotes());
+                existing.setStatus(updated.getStatus());
+                // Only an active event takes bookings, whatever the client sent
+                existing.setBookingEnabled(updated.getStatus() == null || updated.getStatus() == Event.EventStatus.ACTIVE
+                        ? updated.getBookingEnabled() : Boolean.FALSE);
+                existing.setUpdatedAt(Instant.now());
+                return eventRepository.save(work, existing);
+            });
+        } catch (ExecutionException | InterruptedException | RuntimeException e) {
+            releaseImages(retained, List.of());
+            throw e;
+        }
 
-        return eventRepository.save(existing);
+        // The images may have changed between the two reads; square the references with what was replaced
+        List<String> previousImages = previous.get().getImageUrls() != null ? previous.get().getImageUrls() : List.of();
+        releaseImages(retained.stream().filter(previousImages::contains).toList(), List.of());
+        if (saved.getImageUrls() != null) {
+            retainImages(saved.getImageUrls().stream().filter(url -> !retained.contains(url)).toList(), previousImages);
+        }
+        releaseImages(previousImages, saved.getImageUrls());
+        if (saved.getStatus() == Event.EventStatus.CANCELED && previous.get().getStatus() != Event.EventStatus.CANCELED) {
+            eventCancellationService.start(saved, EventCancellation.Reason.CANCELED);
+        }
+        return saved;
     }
 
+    /**
+     * Uploads an image for the event and starts making its variants.
+     */
+    public Event addImage(String eventId, MultipartFile file) throws Exception {
+        Event event = eventRepository.findById(eventId);
+        if (event == null) {
+            throw new IllegalArgumentException("Event not found");
+        }
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("No image uploaded");
+        }
+        String objectName = storageService.storeContent(file, file.getContentType());
+        String url = storageService.publicUrl(objectName);
+        if (event.getImageUrls() != null && event.getImageUrls().contains(url)) {
+            // Already on the event, which holds one reference per image
+            imageDerivativeService.release(objectName);
+            return getEventById(eventId);
+        }
+
+        UnitOfWork work = unitOfWorkFactory.begin();
+        eventRepository.addImageUrl(work, eventId, url);
+        work.commit();
+        imageDerivativeService.forEventImage(eventId, objectName);
+        return getEventById(eventId);
+    }
+
+    /**
+     * Deletes the event with its counter shards, lets go of its images and cancels its
+     * bookings in the background.
+     */
     public void deleteEvent(String eventId) throws ExecutionException, InterruptedException {
-        eventRepository.deleteById(eventId);
+        Event event = eventRepository.findById(eventId);
+        if (event == null) {
+            return;
+        }
+        // Left behind, the shards would still turn up in collection group reads
+        UnitOfWork work = unitOfWorkFactory.begin();
+        eventRepository.delete(work, eventId);
+        eventCounterRepository.delete(work, event);
+        work.commit();
+        releaseImages(event.getImageUrls(), List.of());
+        eventCancellationService.start(event, EventCancellation.Reason.DELETED);
+    }
+
+    // Each stored image the event newly points at counts as one more reference to it
+    private List<String> retainImages(List<String> urls, List<String> previous) throws ExecutionException, InterruptedException {
+        List<String> retained = new ArrayList<>();
+        if (urls == null) {
+            return retained;
+        }
+        for (String url : urls.stream().distinct().toList()) {
+            if ((previous == null || !previous.contains(url))
+                    && storageService.retainContent(storageService.objectName(url))) {
+                retained.add(url);
+            }
+        }
+        return retained;
+    }
+
+    private void releaseImages(List<String> urls, List<String> kept) {
+        if (urls == null) {
+            return;
+        }
+        for (String url : urls.stream().distinct().toList()) {
+            String objectName = storageService.objectName(url);
+            if (objectName == null || (kept != null && kept.contains(url))) {
+                continue;
+            }
+            // The event no longer points at it either way, so a failure only leaves an orphan
+            try {
+                imageDerivativeService.release(objectName);
+            } catch (Exception e) {
+                log.warn("Releasing image {} failed", objectName, e);
+            }
+        }
+    }
+
+    public CompletableFuture<EventCancellation> getCancellationAsync(String eventId) {
+        return eventCancellationService.getProgressAsync(eventId);
     }
 
     public Event getEventById(String eventId) throws ExecutionException, InterruptedException {
-        return eventRepository.findById(eventId);
+        return getEventByIdAsync(eventId).get();
+    }
+
+    public CompletableFuture<Event> getEventByIdAsync(String eventId) {
+        return eventRepository.findByIdAsync(eventId)
+                .thenCombine(eventCounterRepository.findByEventIdAsync(eventId), (event, counters) -> {
+                    if (event != null && counters != null) {
+                        counters.applyTo(event);
+                    }
+                    return event;
+                });
+    }
+
+    public Page<Event> getAllEvents() throws ExecutionException, InterruptedException {
+        return getAllEventsAsync().get();
+    }
+
+    /**
+     * The events for a request without paging parameters: the first
+     * {@link PageTokens#MAX_UNPAGED_ITEMS} in id order, with a token for the rest.
+     */
+    public CompletableFuture<Page<Event>> getAllEventsAsync() {
+        if (eventCatalogService.isReady()) {
+            return CompletableFuture.completedFuture(catalogPage(PageTokens.MAX_UNPAGED_ITEMS, null));
+        }
+        return withCounters(eventRepository.findFirstAsync(PageTokens.MAX_UNPAGED_ITEMS));
+    }
+
+    /**
+     * One page of events in id order. Served from the catalog replica when it is ready,
+     * otherwise one page query plus the counters of just the events on it. Page tokens
+     * are the same either way.
+     */
+    public CompletableFuture<Page<Event>> getEventsPageAsync(Integer pageSize, String pageToken) {
+        if (eventCatalogService.isReady()) {
+            try {
+                return CompletableFuture.completedFuture(catalogPage(PageTokens.pageSize(pageSize), pageToken));
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return withCounters(eventRepository.findPageAsync(pageSize, pageToken));
+    }
+
+    private CompletableFuture<Page<Event>> withCounters(CompletableFuture<Page<Event>> events) {
+        return events.thenCompose(page -> {
+            List<CompletableFuture<EventCounters>> counters = page.getItems().stream()
+                    .map(event -> eventCounterRepository.findByEventIdAsync(event.getId()))
+                    .toList();
+            return CompletableFuture.allOf(counters.toArray(CompletableFuture[]::new)).thenApply(done -> {
+                for (int i = 0; i < counters.size(); i++) {
+                    EventCounters eventCounters = counters.get(i).join();
+                    if (eventCounters != null) {
+                        eventCounters.applyTo(page.getItems().get(i));
+                    }
+                }
+                return page;
+            });
+        });
     }
 
-    public List<Event> getAllEvents() throws ExecutionException, InterruptedException {
-        return eventRepository.findAll();
+    // One more than the page is copied out of the catalog, to tell whether there is a next
+    private Page<Event> catalogPage(int size, String pageToken) {
+        List<Event> items = eventCatalogService.eventsAfter(afterId(pageToken), size + 1);
+        String next = null;
+        if (items.size() > size) {
+            items.removeLast();
+            next = PageTokens.encode(items.getLast().getId());
+        }
+        return new Page<>(items, next);
+    }
+
+    private static String afterId(String pageToken) {
+        if (pageToken == null || pageToken.isEmpty()) {
+            return null;
+        }
+        Object[] cursor = PageTokens.decode(pageToken);
+        if (cursor.length != 1 || !(cursor[0] instanceof String id)) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+        return id;
     }
 
     public Event toggleBookingEnabled(String eventId) throws ExecutionException, InterruptedException {
@@ -70,6 +320,9 @@ public class EventService {
             throw new IllegalArgumentException("Event not found");
         }
         boolean current = Boolean.TRUE.equals(event.getBookingEnabled());
+        if (!current && event.getStatus() != null && event.getStatus() != Event.EventStatus.ACTIVE) {
+            throw new IllegalStateException("Only an active event can take bookings");
+        }
         event.setBookingEnabled(!current);
         event.setUpdatedAt(Instant.now());
         return eventRepository.save(event);
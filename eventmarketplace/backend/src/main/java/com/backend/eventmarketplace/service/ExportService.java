@@ -0,0 +1,197 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.ExportFilter;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Payment;
+import com.backend.eventmarketplace.repository.BookingRepository;
+import com.backend.eventmarketplace.repository.PaymentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Streams bookings and payments to an OutputStream as NDJSON or CSV. Rows are read a
+ * page at a time and written out before the next page is fetched, so memory stays flat
+ * however many rows match.
+ */
+@Service
+public class ExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format parse(String format) {
+            if (format == null || format.isEmpty()) {
+                return NDJSON;
+            }
+            try {
+                return valueOf(format.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + format);
+            }
+        }
+    }
+
+    private static final List<Column<Booking>> BOOKING_COLUMNS = List.of(
+            new Column<>("id", Booking::getId),
+            new Column<>("referenceNumber", Booking::getReferenceNumber),
+            new Column<>("userId", Booking::getUserId),
+            new Column<>("eventId", Booking::getEventId),
+            new Column<>("eventTitle", Booking::getEventTitle),
+            new Column<>("numberOfSeats", Booking::getNumberOfSeats),
+            new Column<>("totalPrice", Booking::getTotalPrice),
+            new Column<>("status", Booking::getStatus),
+            new Column<>("paymentStatus", Booking::getPaymentStatus),
+            new Column<>("bookingDate", Booking::getBookingDate),
+            new Column<>("eventDateTime", Booking::getEventDateTime));
+
+    private static final List<Column<Payment>> PAYMENT_COLUMNS = List.of(
+            new Column<>("id", Payment::getId),
+            new Column<>("bookingId", Payment::getBookingId),
+            new Column<>("userId", Payment::getUserId),
+            new Column<>("eventId", Payment::getEventId),
+            new Column<>("amount", Payment::getAmount),
+            new Column<>("status", Payment::getStatus),
+            new Column<>("method", Payment::getMethod),
+            new Column<>("transactionId", Payment::getTransactionId),
+            new Column<>("createdAt", Payment::getCreatedAt),
+            new Column<>("completedAt", Payment::getCompletedAt));
+
+    private record Column<T>(String name, Function<T, Object> value) {
+    }
+
+    @FunctionalInterface
+    private interface PageSource<T> {
+        void forEachPage(Consumer<List<T>> sink) throws ExecutionException, InterruptedException;
+    }
+
+    private final BookingRepository bookingRepository;
+    private final PaymentRepository paymentRepository;
+    private final JsonMapper jsonMapper;
+    private final int pageSize;
+
+    public ExportService(BookingRepository bookingRepository, PaymentRepository paymentRepository,
+                         JsonMapper jsonMapper,
+                         @Value("${eventmarketplace.export.page-size:500}") int pageSize) {
+        this.bookingRepository = bookingRepository;
+        this.paymentRepository = paymentRepository;
+        this.jsonMapper = jsonMapper;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Checks the filter before anything is written, so a bad request still gets a 400.
+     */
+    public ExportFilter bookingFilter(Instant from, Instant to, String eventId, String status) {
+        return filter(from, to, eventId, status == null ? null : enumName(Booking.BookingStatus.class, status));
+    }
+
+    public ExportFilter paymentFilter(Instant from, Instant to, String eventId, String status) {
+        return filter(from, to, eventId, status == null ? null : enumName(Payment.PaymentStatus.class, status));
+    }
+
+    public void exportBookings(ExportFilter filter, Format format, OutputStream out) throws IOException {
+        export(sink -> bookingRepository.forEachPage(filter, pageSize, sink), BOOKING_COLUMNS, format, out);
+    }
+
+    public void exportPayments(ExportFilter filter, Format format, OutputStream out) throws IOException {
+        export(sink -> paymentRepository.forEachPage(filter, pageSize, sink), PAYMENT_COLUMNS, format, out);
+    }
+
+    private <T> void export(PageSource<T> source, List<Column<T>> columns, Format format, OutputStream out)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write(String.join(",", columns.stream().map(Column::name).toList()));
+            writer.write('\n');
+        }
+
+        try {
+            source.forEachPage(page -> {
+                try {
+                    for (T row : page) {
+                        if (format == Format.CSV) {
+                            writeCsv(writer, columns, row);
+                        } else {
+                            writer.write(jsonMapper.writeValueAsString(row));
+                            writer.write('\n');
+                        }
+                    }
+                    // Hand each page to the client rather than buffering the whole export
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (ExecutionException e) {
+            throw new IOException("Export failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        }
+        writer.flush();
+    }
+
+    private static <T> void writeCsv(Writer writer, List<Column<T>> columns, T row) throws IOException {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = columns.get(i).value().apply(row);
+            if (value != null) {
+                writer.write(csv(value.toString()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static ExportFilter filter(Instant from, Instant to, String eventId, String status) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        return new ExportFilter(from, to, eventId, status);
+    }
+
+    private static <E extends Enum<E>> String enumName(Class<E> type, String value) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT)).name();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown status: " + value);
+        }
+    }
+}
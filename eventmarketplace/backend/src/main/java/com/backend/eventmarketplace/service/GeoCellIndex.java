@@ -0,0 +1,318 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.repository.PageTokens;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Points bucketed into geohash cells at every precision from 1 (45° wide) to
+ * {@link #MAX_PRECISION} (about 150 m). A query covers its area with the finest
+ * precision that needs at most {@link #MAX_CELLS} cells and only looks at the points
+ * in those cells, so its cost follows the cells it touches and what is in them, not
+ * the size of the index. Results come nearest first, then by id.
+ */
+public class GeoCellIndex<T> {
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+    static final int MAX_PRECISION = 7;
+    static final int MAX_CELLS = 64;
+
+    public record Hit<T>(String id, T item, double distanceKm) {
+    }
+
+    public record Hits<T>(List<Hit<T>> hits, String nextPageToken) {
+    }
+
+    private static final class Point<T> {
+        private final String id;
+        private final double latitude;
+        private final double longitude;
+        private final T item;
+        private final long[] cells = new long[MAX_PRECISION];
+
+        private Point(String id, double latitude, double longitude, T item) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.item = item;
+        }
+    }
+
+    /**
+     * A latitude band and a longitude range; west is greater than east when the range
+     * crosses the antimeridian.
+     */
+    private record Area(double south, double west, double north, double east) {
+        private boolean contains(double latitude, double longitude) {
+            if (latitude < south || latitude > north) {
+                return false;
+            }
+            return west <= east ? longitude >= west && longitude <= east : longitude >= west || longitude <= east;
+        }
+    }
+
+    private static final Comparator<Hit<?>> ORDER = Comparator.<Hit<?>>comparingDouble(Hit::distanceKm)
+            .thenComparing(Hit::id);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Point<T>> points = new HashMap<>();
+    private final Map<Long, List<Point<T>>> cells = new HashMap<>();
+
+    /**
+     * Adds the item at the given position, or moves it there.
+     */
+    public void put(String id, double latitude, double longitude, T item) {
+        checkCoordinates(latitude, longitude);
+        Point<T> point = new Point<>(id, latitude, longitude, item);
+        for (int precision = 1; precision <= MAX_PRECISION; precision++) {
+            point.cells[precision - 1] = cell(precision, column(precision, longitude), row(precision, latitude));
+        }
+        lock.writeLock().lock();
+        try {
+            Point<T> previous = points.put(id, point);
+            if (previous != null) {
+                unlink(previous);
+            }
+            for (long cell : point.cells) {
+                cells.computeIfAbsent(cell, key -> new ArrayList<>(4)).add(point);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Point<T> point = points.remove(id);
+            if (point != null) {
+                unlink(point);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return points.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One page of the items within radiusKm of the point that pass the filter.
+     *
+     * @throws IllegalArgumentException for invalid coordinates or page token
+     */
+    public Hits<T> near(double latitude, double longitude, double radiusKm, Predicate<T> filter, int pageSize,
+                        String pageToken) {
+        checkCoordinates(latitude, longitude);
+        if (!(radiusKm > 0)) {
+            throw new IllegalArgumentException("Radius must be positive");
+        }
+        double radians = radiusKm / EARTH_RADIUS_KM;
+        double latitudeSpan = Math.toDegrees(radians);
+        double south = latitude - latitudeSpan;
+        double north = latitude + latitudeSpan;
+        Area area;
+        double sine = Math.sin(radians) / Math.cos(Math.toRadians(latitude));
+        if (south <= -90 || north >= 90 || radians >= Math.PI / 2 || sine >= 1) {
+            // Reaches a pole or half way round: every longitude is in range
+            area = new Area(Math.max(south, -90), -180, Math.min(north, 90), 180);
+        } else {
+            double longitudeSpan = Math.toDegrees(Math.asin(sine));
+            area = new Area(south, wrap(longitude - longitudeSpan), north, wrap(longitude + longitudeSpan));
+        }
+        return search(area, latitude, longitude, radiusKm, filter, pageSize, pageToken);
+    }
+
+    /**
+     * One page of the items inside the box that pass the filter, nearest to the
+     * reference point first. A box with west greater than east crosses the antimeridian.
+     *
+     * @throws IllegalArgumentException for invalid coordinates or page token
+     */
+    public Hits<T> within(double south, double west, double north, double east, double latitude, double longitude,
+                          Predicate<T> filter, int pageSize, String pageToken) {
+        checkCoordinates(south, west);
+        checkCoordinates(north, east);
+        checkCoordinates(latitude, longitude);
+        if (south > north) {
+            throw new IllegalArgumentException("South must not be above north");
+        }
+        return search(new Area(south, west, north, east), latitude, longitude, Double.POSITIVE_INFINITY, filter,
+                pageSize, pageToken);
+    }
+
+    /**
+     * @throws IllegalArgumentException unless both are given, or neither, and in range
+     */
+    public static void checkCoordinates(Double latitude, Double longitude) {
+        if (latitude == null && longitude == null) {
+            return;
+        }
+        if (latitude == null || longitude == null) {
+            throw new IllegalArgumentException("Latitude and longitude must be given together");
+        }
+        if (!(latitude >= -90 && latitude <= 90)) {
+            throw new IllegalArgumentException("Latitude must be between -90 and 90");
+        }
+        if (!(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Longitude must be between -180 and 180");
+        }
+    }
+
+    /**
+     * Great-circle distance by the haversine formula.
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private Hits<T> search(Area area, double latitude, double longitude, double radiusKm, Predicate<T> filter,
+                           int pageSize, String pageToken) {
+        Hit<T> after = pageToken == null || pageToken.isEmpty() ? null : cursor(pageToken);
+        PriorityQueue<Hit<T>> page = new PriorityQueue<>(pageSize + 2, ORDER.reversed());
+
+        lock.readLock().lock();
+        try {
+            for (long cell : cover(area)) {
+                List<Point<T>> members = cells.get(cell);
+                if (members == null) {
+                    continue;
+                }
+                for (Point<T> point : members) {
+                    if (!area.contains(point.latitude, point.longitude)) {
+                        continue;
+                    }
+                    double distance = distanceKm(latitude, longitude, point.latitude, point.longitude);
+                    if (distance > radiusKm || (page.size() > pageSize && distance > page.peek().distanceKm())) {
+                        continue;
+                    }
+                    if (filter != null && !filter.test(point.item)) {
+                        continue;
+                    }
+                    Hit<T> hit = new Hit<>(point.id, point.item, distance);
+                    if (after != null && ORDER.compare(hit, after) <= 0) {
+                        continue;
+                    }
+                    // One more than a page, to know whether there is a next one
+                    if (page.size() <= pageSize) {
+                        page.add(hit);
+                    } else if (ORDER.compare(hit, page.peek()) < 0) {
+                        page.poll();
+                        page.add(hit);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Hit<T>> hits = new ArrayList<>(page);
+        hits.sort(ORDER);
+        String next = null;
+        if (hits.size() > pageSize) {
+            hits = hits.subList(0, pageSize);
+            Hit<T> last = hits.getLast();
+            next = PageTokens.encode(last.distanceKm(), last.id());
+        }
+        return new Hits<>(List.copyOf(hits), next);
+    }
+
+    /**
+     * The cells covering the area at the finest precision that needs no more than
+     * {@link #MAX_CELLS} of them. Precision 1 has 32 cells in all, so one always fits.
+     */
+    private static long[] cover(Area area) {
+        for (int precision = MAX_PRECISION; precision >= 1; precision--) {
+            int columns = 1 << columnBits(precision);
+            int west = column(precision, area.west());
+            int east = column(precision, area.east());
+            int south = row(precision, area.south());
+            int north = row(precision, area.north());
+            int width = area.west() <= area.east() ? east - west + 1 : columns - west + east + 1;
+            long count = (long) Math.min(width, columns) * (north - south + 1);
+            if (count > MAX_CELLS && precision > 1) {
+                continue;
+            }
+            long[] cover = new long[(int) count];
+            int i = 0;
+            for (int x = 0; x < Math.min(width, columns); x++) {
+                int column = (west + x) % columns;
+                for (int y = south; y <= north; y++) {
+                    cover[i++] = cell(precision, column, y);
+                }
+            }
+            return cover;
+        }
+        throw new IllegalStateException("unreachable");
+    }
+
+    private void unlink(Point<T> point) {
+        for (long cell : point.cells) {
+            List<Point<T>> members = cells.get(cell);
+            if (members == null) {
+                continue;
+            }
+            members.remove(point);
+            if (members.isEmpty()) {
+                cells.remove(cell);
+            }
+        }
+    }
+
+    // A geohash of n characters has 5n bits, alternating longitude and latitude
+    private static int columnBits(int precision) {
+        return (5 * precision + 1) / 2;
+    }
+
+    private static int rowBits(int precision) {
+        return 5 * precision / 2;
+    }
+
+    private static int column(int precision, double longitude) {
+        return slot(longitude + 180, 360, columnBits(precision));
+    }
+
+    private static int row(int precision, double latitude) {
+        return slot(latitude + 90, 180, rowBits(precision));
+    }
+
+    private static int slot(double offset, double range, int bits) {
+        int slots = 1 << bits;
+        return Math.min(slots - 1, Math.max(0, (int) (offset / range * slots)));
+    }
+
+    private static long cell(int precision, int column, int row) {
+        return (long) precision << 58 | (long) column << 29 | row;
+    }
+
+    private static double wrap(double longitude) {
+        if (longitude < -180) {
+            return longitude + 360;
+        }
+        if (longitude > 180) {
+            return longitude - 360;
+        }
+        return longitude;
+    }
+
+    private static <T> Hit<T> cursor(String pageToken) {
+        Object[] cursor = PageTokens.decode(pageToken);
+        if (cursor.length != 2 || !(cursor[0] instanceof Double distance) || !(cursor[1] instanceof String id)) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+        return new Hit<>(id, null, distance);
+    }
+}
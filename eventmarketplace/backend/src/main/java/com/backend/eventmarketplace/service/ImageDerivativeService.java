@@ -0,0 +1,244 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.ImageVariants;
+import com.backend.eventmarketplace.repository.EventRepository;
+import com.backend.eventmarketplace.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Makes thumbnail, card and full-size JPEG copies of uploaded images and records
+ * their URLs on the user or event. Work runs on a small fixed pool with a bounded
+ * queue; when the queue is full the uploading request does the work itself, which
+ * slows uploads down instead of piling up decoded images in memory.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    public enum Variant {
+        THUMBNAIL(160),
+        CARD(480),
+        FULL(1280);
+
+        private final int maxSize;
+
+        Variant(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int maxSize() {
+            return maxSize;
+        }
+    }
+
+    private final StorageService storageService;
+    private final UserRepository userRepository;
+    private final EventRepository eventRepository;
+    private final float jpegQuality;
+    private final ThreadPoolExecutor workers;
+
+    public ImageDerivativeService(StorageService storageService, UserRepository userRepository,
+                                  EventRepository eventRepository,
+                                  @Value("${eventmarketplace.images.workers:2}") int workers,
+                                  @Value("${eventmarketplace.images.queue-capacity:64}") int queueCapacity,
+                                  @Value("${eventmarketplace.images.jpeg-quality:0.82}") float jpegQuality) {
+        this.storageService = storageService;
+        this.userRepository = userRepository;
+        this.eventRepository = eventRepository;
+        this.jpegQuality = jpegQuality;
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "image-variants-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public CompletableFuture<ImageVariants> forProfilePicture(String userId, String objectName) {
+        return submit(objectName, variants -> userRepository.setProfilePictureVariants(userId, variants));
+    }
+
+    public CompletableFuture<ImageVariants> forEventImage(String eventId, String objectName) {
+        return submit(objectName, variants -> eventRepository.addImageVariants(eventId, variants));
+    }
+
+    /**
+     * Reads the original from storage and writes its variants next to it. Stored content
+     * that already has its variants, from an earlier upload of the same bytes, is not
+     * decoded again.
+     */
+    public ImageVariants derive(String objectName) throws IOException {
+        if (StorageService.isContent(objectName) && hasVariants(objectName)) {
+            return existingVariants(objectName);
+        }
+
+        BufferedImage source;
+        try (InputStream original = storageService.openFile(objectName)) {
+            source = decode(original, Variant.FULL.maxSize());
+        }
+
+        ImageVariants variants = new ImageVariants();
+        variants.setOriginal(storageService.publicUrl(objectName));
+        // Largest first, each one scaled from the last, so every step is a small reduction
+        BufferedImage previous = source;
+        for (Variant variant : new Variant[]{Variant.FULL, Variant.CARD, Variant.THUMBNAIL}) {
+            previous = fit(previous, variant.maxSize());
+            String url = storageService.uploadFile(new ByteArrayInputStream(encode(previous)), "image/jpeg",
+                    variantName(objectName, variant));
+            switch (variant) {
+                case THUMBNAIL -> variants.setThumbnail(url);
+                case CARD -> variants.setCard(url);
+                case FULL -> variants.setFull(url);
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * Drops one reference to an uploaded image: stored content goes, with its variants,
+     * when nothing else uses it; anything older belonged to one owner and goes at once.
+     */
+    public void release(String objectName) throws ExecutionException, InterruptedException {
+        if (!StorageService.isContent(objectName)) {
+            storageService.deleteFile(objectName);
+            deleteVariants(objectName);
+        } else if (storageService.releaseContent(objectName)) {
+            deleteVariants(objectName);
+        }
+    }
+
+    public void deleteVariants(String objectName) {
+        for (Variant variant : Variant.values()) {
+            storageService.deleteFile(variantName(objectName, variant));
+        }
+    }
+
+    public static String variantName(String objectName, Variant variant) {
+        int slash = objectName.lastIndexOf('/');
+        int dot = objectName.lastIndexOf('.');
+        String base = dot > slash ? objectName.substring(0, dot) : objectName;
+        return base + "@" + variant.name().toLowerCase(Locale.ROOT) + ".jpg";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private boolean hasVariants(String objectName) {
+        for (Variant variant : Variant.values()) {
+            if (!storageService.exists(variantName(objectName, variant))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ImageVariants existingVariants(String objectName) {
+        return new ImageVariants(storageService.publicUrl(objectName),
+                storageService.publicUrl(variantName(objectName, Variant.THUMBNAIL)),
+                storageService.publicUrl(variantName(objectName, Variant.CARD)),
+                storageService.publicUrl(variantName(objectName, Variant.FULL)));
+    }
+
+    private interface Recorder {
+        void record(ImageVariants variants) throws Exception;
+    }
+
+    private CompletableFuture<ImageVariants> submit(String objectName, Recorder recorder) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                ImageVariants variants = derive(objectName);
+                recorder.record(variants);
+                return variants;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, workers).whenComplete((variants, error) -> {
+            if (error != null) {
+                log.error("Image variants for {} failed", objectName, error);
+            }
+        });
+    }
+
+    /**
+     * Decodes the image, skipping pixels on read when it is far larger than needed so a
+     * huge photo is never held in memory at full resolution.
+     */
+    private static BufferedImage decode(InputStream original, int largest) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original)) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // Keep at least twice the largest variant for the final smoothing step
+                int step = Math.max(1, longest / (2 * largest));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage fit(BufferedImage source, int maxSize) {
+        double scale = Math.min(1.0, (double) maxSize / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        // JPEG has no alpha: transparent areas become white
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,135 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.Nearby;
+import com.backend.eventmarketplace.dto.Page;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.Supplier;
+import com.backend.eventmarketplace.repository.PageTokens;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.function.Predicate;
+
+/**
+ * "Near me" queries over {@link GeoCellIndex}es of the active events and the suppliers
+ * that have a position, kept current from the event and supplier catalog replicas.
+ * Events come back with their live counters.
+ */
+@Service
+public class NearbyService {
+
+    /**
+     * Narrows event results; null fields leave that side open.
+     */
+    public record EventFilter(Event.EventType eventType, Instant from, Instant to) {
+        private Predicate<Event> predicate() {
+            return event -> (eventType == null || event.getEventType() == eventType)
+                    && (from == null || (event.getEventDateTime() != null && !event.getEventDateTime().isBefore(from)))
+                    && (to == null || (event.getEventDateTime() != null && !event.getEventDateTime().isAfter(to)));
+        }
+    }
+
+    private final EventCatalogService eventCatalogService;
+    private final SupplierCatalogService supplierCatalogService;
+    private final GeoCellIndex<Event> events = new GeoCellIndex<>();
+    private final GeoCellIndex<Supplier> suppliers = new GeoCellIndex<>();
+
+    public NearbyService(EventCatalogService eventCatalogService, SupplierCatalogService supplierCatalogService) {
+        this.eventCatalogService = eventCatalogService;
+        this.supplierCatalogService = supplierCatalogService;
+    }
+
+    @PostConstruct
+    public void start() {
+        eventCatalogService.addChangeListener((id, event) -> {
+            if (event == null || !located(event.getLatitude(), event.getLongitude())
+                    || (event.getStatus() != null && event.getStatus() != Event.EventStatus.ACTIVE)) {
+                events.remove(id);
+            } else {
+                events.put(id, event.getLatitude(), event.getLongitude(), event);
+            }
+        });
+        supplierCatalogService.addChangeListener((id, supplier) -> {
+            if (supplier == null || !located(supplier.getLatitude(), supplier.getLongitude())) {
+                suppliers.remove(id);
+            } else {
+                suppliers.put(id, supplier.getLatitude(), supplier.getLongitude(), supplier);
+            }
+        });
+    }
+
+    /**
+     * Active events within radiusKm, nearest first.
+     *
+     * @throws IllegalStateException while the catalog has not loaded
+     * @throws IllegalArgumentException for invalid coordinates or page token
+     */
+    public Page<Nearby<Event>> eventsNear(double latitude, double longitude, double radiusKm, EventFilter filter,
+                                          Integer pageSize, String pageToken) {
+        requireEvents();
+        return events(events.near(latitude, longitude, radiusKm, filter.predicate(), PageTokens.pageSize(pageSize),
+                pageToken));
+    }
+
+    /**
+     * Active events inside the box, nearest to the reference point first, or to the
+     * middle of the box when none is given.
+     *
+     * @throws IllegalStateException while the catalog has not loaded
+     * @throws IllegalArgumentException for invalid coordinates or page token
+     */
+    public Page<Nearby<Event>> eventsWithin(double south, double west, double north, double east, Double latitude,
+                                            Double longitude, EventFilter filter, Integer pageSize, String pageToken) {
+        requireEvents();
+        GeoCellIndex.checkCoordinates(latitude, longitude);
+        double referenceLatitude = latitude != null ? latitude : (south + north) / 2;
+        double referenceLongitude = longitude != null ? longitude : middle(west, east);
+        return events(events.within(south, west, north, east, referenceLatitude, referenceLongitude,
+                filter.predicate(), PageTokens.pageSize(pageSize), pageToken));
+    }
+
+    /**
+     * Suppliers within radiusKm, nearest first.
+     *
+     * @throws IllegalStateException while the catalog has not loaded
+     * @throws IllegalArgumentException for invalid coordinates or page token
+     */
+    public Page<Nearby<Supplier>> suppliersNear(double latitude, double longitude, double radiusKm,
+                                                Integer pageSize, String pageToken) {
+        if (!supplierCatalogService.isReady()) {
+            throw new IllegalStateException("Location search is not available yet");
+        }
+        GeoCellIndex.Hits<Supplier> hits = suppliers.near(latitude, longitude, radiusKm, null,
+                PageTokens.pageSize(pageSize), pageToken);
+        return new Page<>(hits.hits().stream().map(hit -> new Nearby<>(hit.item(), hit.distanceKm())).toList(),
+                hits.nextPageToken());
+    }
+
+    private void requireEvents() {
+        if (!eventCatalogService.isReady()) {
+            throw new IllegalStateException("Location search is not available yet");
+        }
+    }
+
+    private Page<Nearby<Event>> events(GeoCellIndex.Hits<Event> hits) {
+        return new Page<>(hits.hits().stream()
+                .map(hit -> new Nearby<>(eventCatalogService.withCounters(hit.item()), hit.distanceKm()))
+                .toList(), hits.nextPageToken());
+    }
+
+    private static boolean located(Double latitude, Double longitude) {
+        try {
+            GeoCellIndex.checkCoordinates(latitude, longitude);
+            return latitude != null;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Halfway along a longitude range that may cross the antimeridian
+    private static double middle(double west, double east) {
+        double middle = west <= east ? (west + east) / 2 : (west + east + 360) / 2;
+        return middle > 180 ? middle - 360 : middle;
+    }
+}
@@ -1,11 +1,14 @@
 package com.backend.eventmarketplace.service;
 
+import com.backend.eventmarketplace.dto.Page;
 import com.backend.eventmarketplace.model.Payment;
 import com.backend.eventmarketplace.repository.PaymentRepository;
+import com.backend.eventmarketplace.repository.UnitOfWork;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 @Service
@@ -19,8 +22,13 @@ public class PaymentService {
 
     public Payment createPayment(String bookingId, String userId, String eventId,
                                  Double amount, Payment.PaymentMethod method) throws ExecutionException, InterruptedException {
+        return paymentRepository.save(buildPayment(null, bookingId, userId, eventId, amount, method));
+    }
+
+    public Payment buildPayment(String paymentId, String bookingId, String userId, String eventId,
+                                Double amount, Payment.PaymentMethod method) {
         Payment payment = new Payment();
-        payment.setId(null);
+        payment.setId(paymentId);
         payment.setBookingId(bookingId);
         payment.setUserId(userId);
         payment.setEventId(eventId);
@@ -30,16 +38,31 @@ public class PaymentService {
         payment.setTransactionId("MODULE1-" + bookingId);
         payment.setCreatedAt(Instant.now());
         payment.setCompletedAt(Instant.now());
+        return payment;
+    }
 
-        return paymentRepository.save(payment);
+    public void markRefunded(UnitOfWork work, String paymentId) {
+        paymentRepository.updateStatus(work, paymentId, Payment.PaymentStatus.REFUNDED);
     }
 
     public Payment getPaymentById(String paymentId) throws ExecutionException, InterruptedException {
-        return paymentRepository.findById(paymentId);
+        return getPaymentByIdAsync(paymentId).get();
+    }
+
+    public CompletableFuture<Payment> getPaymentByIdAsync(String paymentId) {
+        return paymentRepository.findByIdAsync(paymentId);
     }
 
     public List<Payment> getUserPayments(String userId) throws ExecutionException, InterruptedException {
-        return paymentRepository.findByUser(userId);
+        return getUserPaymentsAsync(userId).get();
+    }
+
+    public CompletableFuture<List<Payment>> getUserPaymentsAsync(String userId) {
+        return paymentRepository.findByUserAsync(userId);
+    }
+
+    public CompletableFuture<Page<Payment>> getUserPaymentsPageAsync(String userId, Integer pageSize, String pageToken) {
+        return paymentRepository.findByUserPageAsync(userId, pageSize, pageToken);
     }
 
     public Payment processPayment(String paymentId, Payment.PaymentMethod method) throws Exception {
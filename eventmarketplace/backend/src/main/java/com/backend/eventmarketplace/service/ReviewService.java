@@ -1,36 +1,109 @@
 package com.backend.eventmarketplace.service;
 
 
+import com.backend.eventmarketplace.dto.Page;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.RatingSummary;
 import com.backend.eventmarketplace.model.Review;
+import com.backend.eventmarketplace.model.Supplier;
+import com.backend.eventmarketplace.model.User;
+import com.backend.eventmarketplace.repository.EventRepository;
+import com.backend.eventmarketplace.repository.ReviewRepository;
+import com.backend.eventmarketplace.repository.SupplierRepository;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
+/**
+ * Reviews of events and suppliers. Each one keeps a {@link RatingSummary} that is
+ * updated with every review written or deleted, so ratings never scan the reviews.
+ */
 @Service
 public class ReviewService {
 
-    private UnsupportedOperationException notImplemented() {
-        return new UnsupportedOperationException("Reviews are a Module 2 feature.");
+    private final ReviewRepository reviewRepository;
+    private final EventRepository eventRepository;
+    private final SupplierRepository supplierRepository;
+    private final AuthService authService;
+
+    public ReviewService(ReviewRepository reviewRepository,
+                         EventRepository eventRepository,
+                         SupplierRepository supplierRepository,
+                         AuthService authService) {
+        this.reviewRepository = reviewRepository;
+        this.eventRepository = eventRepository;
+        this.supplierRepository = supplierRepository;
+        this.authService = authService;
     }
 
     public Review createReview(Review review) throws ExecutionException, InterruptedException {
-        throw notImplemented();
+        if (review.getRating() == null || review.getRating() < 1 || review.getRating() > RatingSummary.MAX_RATING) {
+            throw new IllegalArgumentException("Rating must be between 1 and " + RatingSummary.MAX_RATING);
+        }
+        if (review.getUserId() == null) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        if (review.getEventId() == null && review.getSupplierId() == null) {
+            throw new IllegalArgumentException("A review needs an eventId or a supplierId");
+        }
+        // The three lookups run side by side
+        CompletableFuture<User> user = authService.getUserByIdAsync(review.getUserId());
+        CompletableFuture<Event> event = review.getEventId() != null
+                ? eventRepository.findByIdAsync(review.getEventId()) : CompletableFuture.completedFuture(null);
+        CompletableFuture<Supplier> supplier = review.getSupplierId() != null
+                ? supplierRepository.findByIdAsync(review.getSupplierId()) : CompletableFuture.completedFuture(null);
+        if (user.get() == null) {
+            throw new IllegalArgumentException("User not found");
+        }
+        if (review.getEventId() != null && event.get() == null) {
+            throw new IllegalArgumentException("Event not found");
+        }
+        if (review.getSupplierId() != null && supplier.get() == null) {
+            throw new IllegalArgumentException("Supplier not found");
+        }
+
+        review.setId(null);
+        review.setUserName(user.get().getName());
+        review.setCreatedAt(Instant.now());
+        return reviewRepository.create(review);
+    }
+
+    public CompletableFuture<Review> getReviewAsync(String reviewId) {
+        return reviewRepository.findByIdAsync(reviewId);
+    }
+
+    public CompletableFuture<Page<Review>> getEventReviewsAsync(String eventId, Integer pageSize, String pageToken) {
+        return reviewRepository.findByEventIdPageAsync(eventId, pageSize, pageToken);
     }
 
-    public List<Review> getEventReviews(String eventId) throws ExecutionException, InterruptedException {
-        throw notImplemented();
+    public CompletableFuture<Page<Review>> getSupplierReviewsAsync(String supplierId, Integer pageSize,
+                                                                   String pageToken) {
+        return reviewRepository.findBySupplierIdPageAsync(supplierId, pageSize, pageToken);
     }
 
-    public List<Review> getSupplierReviews(String supplierId) throws ExecutionException, InterruptedException {
-        throw notImplemented();
+    /**
+     * Count, average and histogram of the reviews of a {@link ReviewRepository#EVENT} or
+     * {@link ReviewRepository#SUPPLIER}; all zero when it has none.
+     */
+    public CompletableFuture<RatingSummary> getRatingSummaryAsync(String entityType, String entityId) {
+        return reviewRepository.findSummaryAsync(entityType, entityId)
+                .thenApply(summary -> summary != null ? summary
+                        : RatingSummary.empty(ReviewRepository.summaryId(entityType, entityId), entityType, entityId));
     }
 
-    public Double getAverageRating(String entityId) throws ExecutionException, InterruptedException {
-        throw notImplemented();
+    /**
+     * The average rating, or null when there are no reviews yet.
+     */
+    public Double getAverageRating(String entityType, String entityId) throws ExecutionException, InterruptedException {
+        RatingSummary summary = reviewRepository.findSummaryAsync(entityType, entityId).get();
+        return summary != null ? summary.getAverage() : null;
     }
 
     public void deleteReview(String reviewId) throws ExecutionException, InterruptedException {
-        throw notImplemented();
+        if (reviewRepository.delete(reviewId) == null) {
+            throw new IllegalArgumentException("Review not found");
+        }
     }
 }
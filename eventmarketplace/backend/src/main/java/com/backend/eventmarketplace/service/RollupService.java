@@ -0,0 +1,82 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.RollupRebuildResult;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.Rollup;
+import com.backend.eventmarketplace.repository.BookingRepository;
+import com.backend.eventmarketplace.repository.EventRepository;
+import com.backend.eventmarketplace.repository.RollupRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Recomputes the dashboard rollups from the bookings collection, for repair after a
+ * bug or a manual data fix. Bookings are read a page at a time, so memory grows with
+ * the number of rollup buckets rather than the number of bookings. Bookings made
+ * while a rebuild runs may be missed, so run it in a quiet period.
+ */
+@Service
+public class RollupService {
+
+    private final BookingRepository bookingRepository;
+    private final EventRepository eventRepository;
+    private final RollupRepository rollupRepository;
+    private final int pageSize;
+
+    public RollupService(BookingRepository bookingRepository, EventRepository eventRepository,
+                         RollupRepository rollupRepository,
+                         @Value("${eventmarketplace.rollups.rebuild-page-size:500}") int pageSize) {
+        this.bookingRepository = bookingRepository;
+        this.eventRepository = eventRepository;
+        this.rollupRepository = rollupRepository;
+        this.pageSize = pageSize;
+    }
+
+    public RollupRebuildResult rebuild() throws ExecutionException, InterruptedException {
+        Map<String, Event.EventType> eventTypes = new HashMap<>();
+        for (Event event : eventRepository.findAll()) {
+            eventTypes.put(event.getId(), event.getEventType());
+        }
+
+        Map<String, Rollup> rollups = new HashMap<>();
+        int scanned = 0;
+        String after = null;
+        List<Booking> page;
+        do {
+            page = bookingRepository.findPage(after, pageSize);
+            for (Booking booking : page) {
+                add(rollups, booking, booking.getEventType() != null
+                        ? booking.getEventType()
+                        : eventTypes.get(booking.getEventId()));
+            }
+            scanned += page.size();
+            if (!page.isEmpty()) {
+                after = page.getLast().getId();
+            }
+        } while (page.size() == pageSize);
+
+        int written = rollupRepository.replaceAll(rollups.values());
+        return new RollupRebuildResult(scanned, written);
+    }
+
+    private void add(Map<String, Rollup> rollups, Booking booking, Event.EventType eventType) {
+        boolean canceled = booking.getStatus() == Booking.BookingStatus.CANCELED;
+        long seats = booking.getNumberOfSeats() != null ? booking.getNumberOfSeats() : 0;
+        double revenue = booking.getTotalPrice() != null ? booking.getTotalPrice() : 0.0;
+
+        for (Rollup dimension : RollupRepository.dimensions(booking, eventType)) {
+            Rollup rollup = rollups.computeIfAbsent(dimension.getKey(), key -> dimension);
+            if (canceled) {
+                rollup.add(0, 0, 0.0, 1);
+            } else {
+                rollup.add(1, seats, revenue, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.backend.eventmarketplace.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of reusable per-query buffers. Requests run on virtual threads, so a
+ * ThreadLocal would build a fresh buffer for nearly every query; the pool keeps at most
+ * one per core and only allocates when more queries than that run at once.
+ */
+final class ScratchPool<T> {
+
+    private final ArrayBlockingQueue<T> idle;
+    private final Supplier<T> factory;
+
+    ScratchPool(Supplier<T> factory) {
+        this(Runtime.getRuntime().availableProcessors(), factory);
+    }
+
+    ScratchPool(int capacity, Supplier<T> factory) {
+        this.idle = new ArrayBlockingQueue<>(capacity);
+        this.factory = factory;
+    }
+
+    T borrow() {
+        T scratch = idle.poll();
+        return scratch != null ? scratch : factory.get();
+    }
+
+    /**
+     * Hands a buffer back once it is clean again; it is dropped when the pool is full.
+     */
+    void release(T scratch) {
+        idle.offer(scratch);
+    }
+}
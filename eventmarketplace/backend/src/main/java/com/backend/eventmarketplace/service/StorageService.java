@@ -1,28 +1,194 @@
 package com.backend.eventmarketplace.service;
 
-import com.google.cloud.storage.Bucket;
+import com.backend.eventmarketplace.model.StoredContent;
+import com.backend.eventmarketplace.repository.StoredContentRepository;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 
-import com.google.cloud.storage.Acl;
-import com.google.cloud.storage.Blob;
-import com.google.firebase.cloud.StorageClient;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutionException;
 
+/**
+ * Public files in the app's Cloud Storage bucket. Uploads are streamed through a
+ * resumable upload one chunk at a time, so a file is never held in memory whole, and
+ * are made publicly readable when they are created rather than with a second call.
+ * <p>
+ * Uploaded images are stored by content: the object is named after the SHA-256 of its
+ * bytes, so the same picture uploaded twice is stored once, and a reference count in
+ * Firestore decides when it can go.
+ */
 @Service
 public class StorageService {
 
-    public String uploadFile(byte[] bytes, String contentType, String objectName) {
-        com.google.cloud.storage.Bucket bucket = StorageClient.getInstance().bucket("eventmareketplace.firebasestorage.app");
-        Blob blob = bucket.create(objectName, bytes, contentType);
-        blob.createAcl(Acl.of(Acl.User.ofAllUsers(), Acl.Role.READER));
-        return String.format("https://storage.googleapis.com/%s/%s", "eventmareketplace.firebasestorage.app", objectName);
+    // Resumable upload chunks must be a multiple of 256 KiB
+    private static final int CHUNK_GRANULARITY = 256 * 1024;
+    private static final String CONTENT_PREFIX = "content/";
+    // A content object never changes under its name
+    private static final String CONTENT_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private final Storage storage;
+    private final StoredContentRepository storedContentRepository;
+    private final String bucketName;
+    private final int chunkSize;
+
+    public StorageService(Storage storage, StoredContentRepository storedContentRepository,
+                          @Value("${eventmarketplace.storage.bucket:eventmareketplace.firebasestorage.app}") String bucketName,
+                          @Value("${eventmarketplace.storage.chunk-size-kb:1024}") int chunkSizeKb) {
+        this.storage = storage;
+        this.storedContentRepository = storedContentRepository;
+        this.bucketName = bucketName;
+        this.chunkSize = Math.max(CHUNK_GRANULARITY, chunkSizeKb * 1024 / CHUNK_GRANULARITY * CHUNK_GRANULARITY);
+    }
+
+    /**
+     * Streams the content to the object and returns its public URL. The caller closes
+     * the stream.
+     */
+    public String uploadFile(InputStream content, String contentType, String objectName) throws IOException {
+        return upload(content, BlobInfo.newBuilder(bucketName, objectName).setContentType(contentType).build());
+    }
+
+    /**
+     * Stores the content under its SHA-256 and takes a reference to it, returning the
+     * object name. The source is read once locally to hash it and uploaded unless an
+     * earlier upload of the same bytes has finished and its object is still there. The
+     * object exists when this returns.
+     */
+    public String storeContent(InputStreamSource source, String contentType)
+            throws IOException, ExecutionException, InterruptedException {
+        MessageDigest digest = sha256();
+        long size;
+        try (InputStream content = new DigestInputStream(source.getInputStream(), digest)) {
+            size = content.transferTo(OutputStream.nullOutputStream());
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        String objectName = CONTENT_PREFIX + hash;
+        StoredContent existing = storedContentRepository.acquire(hash, objectName, contentType, size);
+        if (existing != null && existing.getGeneration() != null && exists(objectName)) {
+            return objectName;
+        }
+
+        // New content, another upload of it still running (or failed), or a lost object.
+        // Always a fresh upload, so it gets a generation an earlier release cannot delete
+        try (InputStream content = source.getInputStream()) {
+            upload(content, BlobInfo.newBuilder(bucketName, objectName)
+                    .setContentType(contentType)
+                    .setCacheControl(CONTENT_CACHE_CONTROL)
+                    .build());
+        } catch (IOException | RuntimeException e) {
+            storedContentRepository.release(hash);
+            throw e;
+        }
+        Blob blob = storage.get(BlobId.of(bucketName, objectName));
+        if (blob != null && blob.getGeneration() != null) {
+            storedContentRepository.recordGeneration(hash, blob.getGeneration());
+        }
+        return objectName;
+    }
+
+    /**
+     * Takes another reference to stored content, e.g. an image URL reused on a second
+     * event. Returns false when the object is not stored content.
+     */
+    public boolean retainContent(String objectName) throws ExecutionException, InterruptedException {
+        String hash = contentHash(objectName);
+        return hash != null && storedContentRepository.retain(hash);
+    }
+
+    /**
+     * Drops a reference to stored content and deletes the object with the last one.
+     * Returns true when the object was deleted.
+     */
+    public boolean releaseContent(String objectName) throws ExecutionException, InterruptedException {
+        String hash = contentHash(objectName);
+        StoredContent last = hash != null ? storedContentRepository.release(hash) : null;
+        if (last == null) {
+            return false;
+        }
+        // Only the generation this entry owned: a concurrent re-upload of the same bytes survives
+        storage.delete(last.getGeneration() != null
+                ? BlobId.of(bucketName, objectName, last.getGeneration())
+                : BlobId.of(bucketName, objectName));
+        return true;
+    }
+
+    public static boolean isContent(String objectName) {
+        return objectName != null && objectName.startsWith(CONTENT_PREFIX);
+    }
+
+    public boolean exists(String objectName) {
+        return storage.get(BlobId.of(bucketName, objectName)) != null;
+    }
+
+    private String upload(InputStream content, BlobInfo info) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(content);
+        ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+        try (WriteChannel channel = storage.writer(info,
+                Storage.BlobWriteOption.predefinedAcl(Storage.PredefinedAcl.PUBLIC_READ))) {
+            channel.setChunkSize(chunkSize);
+            // Only whole chunks are handed over, so each one goes out as a single request
+            while (source.read(chunk) >= 0) {
+                if (!chunk.hasRemaining()) {
+                    write(channel, chunk);
+                }
+            }
+            write(channel, chunk);
+        }
+        return publicUrl(info.getName());
+    }
+
+    public InputStream openFile(String objectName) {
+        return Channels.newInputStream(storage.reader(BlobId.of(bucketName, objectName)));
     }
 
     public void deleteFile(String objectName) {
-        Bucket bucket = StorageClient.getInstance().bucket("eventmareketplace.firebasestorage.app");
+        storage.delete(BlobId.of(bucketName, objectName));
+    }
+
+    public String publicUrl(String objectName) {
+        return String.format("https://storage.googleapis.com/%s/%s", bucketName, objectName);
+    }
+
+    /**
+     * The object behind one of this bucket's public URLs, or null for any other URL.
+     */
+    public String objectName(String url) {
+        String prefix = publicUrl("");
+        return url != null && url.startsWith(prefix) ? url.substring(prefix.length()) : null;
+    }
+
+    private static String contentHash(String objectName) {
+        return isContent(objectName) ? objectName.substring(CONTENT_PREFIX.length()) : null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        Blob blob = bucket.get(objectName);
-        if (blob != null) {
-            blob.delete();
+    private static void write(WriteChannel channel, ByteBuffer chunk) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
         }
+        chunk.clear();
     }
 }
@@ -0,0 +1,161 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.Supplier;
+import com.google.cloud.firestore.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local replica of the suppliers collection, kept current by a Firestore snapshot
+ * listener, for the in-memory indexes that serve supplier lookups. Until the listener
+ * has delivered its first snapshot the catalog is not ready; a listener that fails is
+ * subscribed again with backoff.
+ */
+@Service
+public class SupplierCatalogService {
+
+    private static final String SUPPLIERS = "suppliers";
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private static final Logger log = LoggerFactory.getLogger(SupplierCatalogService.class);
+
+    /**
+     * Told about every change to the replicated suppliers, on the listener thread. The
+     * supplier is null when it was removed.
+     */
+    public interface ChangeListener {
+        void supplierChanged(String id, Supplier supplier);
+    }
+
+    private final Firestore firestore;
+    private final boolean enabled;
+
+    private final Map<String, Supplier> suppliers = new ConcurrentHashMap<>();
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private final Object changeLock = new Object();
+    private volatile ListenerRegistration registration;
+    private volatile boolean loaded;
+    private volatile boolean stopped;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final Duration resubscribeBackoff;
+
+    public SupplierCatalogService(Firestore firestore, boolean enabled) {
+        this(firestore, enabled, 1_000);
+    }
+
+    @Autowired
+    public SupplierCatalogService(Firestore firestore,
+                                  @Value("${eventmarketplace.catalog.enabled:true}") boolean enabled,
+                                  @Value("${eventmarketplace.catalog.resubscribe-backoff-ms:1000}") long resubscribeBackoffMillis) {
+        this.firestore = firestore;
+        this.enabled = enabled;
+        this.resubscribeBackoff = Duration.ofMillis(resubscribeBackoffMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        stopped = false;
+        listen();
+    }
+
+    private void listen() {
+        if (stopped) {
+            return;
+        }
+        registration = firestore.collection(SUPPLIERS).addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                loaded = false;
+                log.error("Suppliers listener failed", error);
+                resubscribe(failures.incrementAndGet());
+                return;
+            }
+            synchronized (changeLock) {
+                // The first snapshot after a resubscribe does not report what was removed meanwhile
+                if (!loaded) {
+                    Set<String> missing = new HashSet<>(suppliers.keySet());
+                    snapshot.getDocuments().forEach(doc -> missing.remove(doc.getId()));
+                    for (String id : missing) {
+                        suppliers.remove(id);
+                        for (ChangeListener listener : changeListeners) {
+                            listener.supplierChanged(id, null);
+                        }
+                    }
+                }
+                for (DocumentChange change : snapshot.getDocumentChanges()) {
+                    QueryDocumentSnapshot doc = change.getDocument();
+                    Supplier supplier = null;
+                    if (change.getType() == DocumentChange.Type.REMOVED) {
+                        suppliers.remove(doc.getId());
+                    } else {
+                        supplier = doc.toObject(Supplier.class);
+                        suppliers.put(doc.getId(), supplier);
+                    }
+                    for (ChangeListener listener : changeListeners) {
+                        listener.supplierChanged(doc.getId(), supplier);
+                    }
+                }
+            }
+            failures.set(0);
+            loaded = true;
+        });
+    }
+
+    /**
+     * Subscribes again after the failures-th consecutive error, waiting twice as long
+     * after each one up to a minute.
+     */
+    private void resubscribe(int failures) {
+        if (stopped) {
+            return;
+        }
+        long delay = Math.min(resubscribeBackoff.toMillis() << Math.min(failures - 1, 16), MAX_BACKOFF.toMillis());
+        CompletableFuture.runAsync(this::listen, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                .exceptionally(e -> {
+                    log.error("Could not resubscribe to the suppliers", e);
+                    resubscribe(failures + 1);
+                    return null;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    public boolean isReady() {
+        return loaded;
+    }
+
+    /**
+     * Registers a listener and replays the suppliers already replicated to it.
+     */
+    public void addChangeListener(ChangeListener listener) {
+        synchronized (changeLock) {
+            changeListeners.add(listener);
+            suppliers.forEach(listener::supplierChanged);
+        }
+    }
+}
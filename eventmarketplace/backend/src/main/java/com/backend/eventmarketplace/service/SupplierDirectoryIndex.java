@@ -0,0 +1,385 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.Supplier;
+import com.backend.eventmarketplace.repository.PageTokens;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Faceted supplier directory. Every supplier holds an ordinal, and there is a bitset of
+ * ordinals per service type, per city and per text term, so a query is a few bitset
+ * intersections rather than a pass over the suppliers. The counts per service type
+ * leave out the service type filter and the counts per city leave out the city filter,
+ * so each facet shows what picking another value would return. Without text they are
+ * kept up to date on every change; with text they are tallied over the text matches
+ * only. Results come by name.
+ */
+public class SupplierDirectoryIndex {
+
+    // Cities beyond these, the least represented, are left out of the counts
+    static final int MAX_CITY_FACETS = 20;
+    // Below this many matches per page slot, matches are sorted; above, the name order is walked
+    private static final int SORT_LIMIT = 32;
+    private static final Supplier.ServiceType[] SERVICE_TYPES = Supplier.ServiceType.values();
+    private static final int TYPES = SERVICE_TYPES.length;
+
+    /**
+     * Null fields leave that side open. Every term of the text must match the name,
+     * description or city.
+     */
+    public record Query(String text, Supplier.ServiceType serviceType, String city) {
+    }
+
+    public record Result(List<Supplier> suppliers, String nextPageToken, int total,
+                         Map<Supplier.ServiceType, Integer> serviceTypes, Map<String, Integer> cities) {
+    }
+
+    private record SortKey(String name, String id) implements Comparable<SortKey> {
+        @Override
+        public int compareTo(SortKey other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : id.compareTo(other.id);
+        }
+    }
+
+    private record Entry(int ordinal, Supplier supplier, SortKey key, City city, Set<String> terms) {
+    }
+
+    private static final class City {
+        private final int slot;
+        private final String name;
+        private final BitSet members = new BitSet();
+        private int size;
+        private final int[] byType = new int[TYPES];
+
+        private City(int slot, String name) {
+            this.slot = slot;
+            this.name = name;
+        }
+    }
+
+    // Sets pooled across queries, so a query allocates no bitsets
+    private static final class Scratch {
+        private final BitSet text = new BitSet();
+        private final BitSet matches = new BitSet();
+        private final BitSet facet = new BitSet();
+    }
+
+    private final ScratchPool<Scratch> scratchPool = new ScratchPool<>(Scratch::new);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final List<Entry> ordinals = new ArrayList<>();
+    // Ordinals of removed suppliers, handed out again so the bitsets stay dense
+    private final Deque<Integer> free = new ArrayDeque<>();
+    private final TreeMap<SortKey, Entry> byName = new TreeMap<>();
+    private final EnumMap<Supplier.ServiceType, BitSet> serviceTypes = new EnumMap<>(Supplier.ServiceType.class);
+    private final int[] typeTotals = new int[TYPES];
+    // A city keeps its slot, and the spelling it was first seen with, once it has one
+    private final Map<String, City> cities = new HashMap<>();
+    private final List<City> citySlots = new ArrayList<>();
+    private final Map<String, BitSet> terms = new HashMap<>();
+    // Service type and city slot per ordinal, -1 for none, for tallying facets
+    private int[] typeColumn = new int[0];
+    private int[] cityColumn = new int[0];
+
+    /**
+     * Adds the supplier or replaces the indexed copy.
+     */
+    public void put(Supplier supplier) {
+        String id = supplier.getId();
+        Set<String> supplierTerms = new HashSet<>();
+        supplierTerms.addAll(TextAnalyzer.terms(supplier.getName()));
+        supplierTerms.addAll(TextAnalyzer.terms(supplier.getDescription()));
+        supplierTerms.addAll(TextAnalyzer.terms(supplier.getCity()));
+        String cityKey = cityKey(supplier.getCity());
+        SortKey key = new SortKey(supplier.getName() == null ? "" : TextAnalyzer.fold(supplier.getName()), id);
+
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.get(id);
+            int ordinal;
+            if (previous != null) {
+                unlink(previous);
+                ordinal = previous.ordinal();
+            } else {
+                ordinal = free.isEmpty() ? ordinals.size() : free.pop();
+            }
+            City city = cityKey == null ? null : cities.computeIfAbsent(cityKey, k -> {
+                City added = new City(citySlots.size(), supplier.getCity().trim());
+                citySlots.add(added);
+                return added;
+            });
+            Entry entry = new Entry(ordinal, supplier, key, city, supplierTerms);
+            entries.put(id, entry);
+            if (ordinal == ordinals.size()) {
+                ordinals.add(entry);
+            } else {
+                ordinals.set(ordinal, entry);
+            }
+            if (ordinal >= typeColumn.length) {
+                typeColumn = Arrays.copyOf(typeColumn, Math.max(16, ordinal * 2));
+                cityColumn = Arrays.copyOf(cityColumn, typeColumn.length);
+            }
+            byName.put(key, entry);
+            Supplier.ServiceType type = supplier.getServiceType();
+            typeColumn[ordinal] = type != null ? type.ordinal() : -1;
+            cityColumn[ordinal] = city != null ? city.slot : -1;
+            if (type != null) {
+                serviceTypes.computeIfAbsent(type, t -> new BitSet()).set(ordinal);
+                typeTotals[type.ordinal()]++;
+            }
+            if (city != null) {
+                city.members.set(ordinal);
+                city.size++;
+                if (type != null) {
+                    city.byType[type.ordinal()]++;
+                }
+            }
+            for (String term : supplierTerms) {
+                terms.computeIfAbsent(term, t -> new BitSet()).set(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(id);
+            if (entry != null) {
+                unlink(entry);
+                ordinals.set(entry.ordinal(), null);
+                free.push(entry.ordinal());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One page of the suppliers matching the query, by name, with the facet counts.
+     * The suppliers are the indexed instances and must not be modified.
+     *
+     * @throws IllegalArgumentException if the page token was not issued by this index
+     */
+    public Result search(Query query, int pageSize, String pageToken) {
+        SortKey after = pageToken == null || pageToken.isEmpty() ? null : cursor(pageToken);
+        List<String> queryTerms = TextAnalyzer.terms(query.text()).stream().distinct().toList();
+        boolean textGiven = query.text() != null && !query.text().isBlank();
+        boolean cityGiven = query.city() != null && !query.city().isBlank();
+
+        Scratch scratch = scratchPool.borrow();
+
+        lock.readLock().lock();
+        try {
+            // A null set stands for every supplier, so unfiltered sides cost nothing
+            BitSet byText = null;
+            if (textGiven) {
+                byText = scratch.text;
+                byText.clear();
+                for (int i = 0; i < queryTerms.size(); i++) {
+                    BitSet postings = terms.get(queryTerms.get(i));
+                    if (postings == null) {
+                        byText.clear();
+                        break;
+                    }
+                    if (i == 0) {
+                        byText.or(postings);
+                    } else {
+                        byText.and(postings);
+                    }
+                }
+            }
+            BitSet byType = query.serviceType() == null ? null
+                    : serviceTypes.getOrDefault(query.serviceType(), new BitSet());
+            City city = cityGiven ? cities.get(cityKey(query.city())) : null;
+            BitSet byCity = !cityGiven ? null : city != null ? city.members : new BitSet();
+
+            BitSet matches = intersect(scratch.matches, byText, byType, byCity);
+            int total = matches == null ? entries.size() : matches.cardinality();
+            List<Entry> page = page(matches, total, after, pageSize);
+            String next = null;
+            if (page.size() > pageSize) {
+                page = page.subList(0, pageSize);
+                SortKey last = page.getLast().key();
+                next = PageTokens.encode(last.name(), last.id());
+            }
+            List<Supplier> suppliers = new ArrayList<>(page.size());
+            for (Entry entry : page) {
+                suppliers.add(entry.supplier());
+            }
+
+            int[] typeCounts;
+            int[] cityCounts = new int[citySlots.size()];
+            if (byText == null) {
+                typeCounts = !cityGiven ? typeTotals : city != null ? city.byType : new int[TYPES];
+                for (City each : citySlots) {
+                    cityCounts[each.slot] = query.serviceType() == null ? each.size
+                            : each.byType[query.serviceType().ordinal()];
+                }
+            } else {
+                typeCounts = tally(intersect(scratch.facet, byText, byCity), typeColumn, new int[TYPES]);
+                tally(intersect(scratch.facet, byText, byType), cityColumn, cityCounts);
+            }
+            return new Result(suppliers, next, total, typeFacets(typeCounts), cityFacets(cityCounts));
+        } finally {
+            lock.readLock().unlock();
+            // Every set is cleared before it is next used
+            scratchPool.release(scratch);
+        }
+    }
+
+    /**
+     * Lower-cased, accents folded and spaces collapsed, so "Rabât " and "rabat" are one
+     * city. Null for a blank city.
+     */
+    static String cityKey(String city) {
+        if (city == null) {
+            return null;
+        }
+        String key = TypeaheadIndex.normalize(city);
+        return key.isEmpty() ? null : key;
+    }
+
+    // Up to pageSize + 1 matches after the cursor, by name
+    private List<Entry> page(BitSet matches, int total, SortKey after, int pageSize) {
+        List<Entry> page = new ArrayList<>(pageSize + 1);
+        if (matches != null && total <= (long) pageSize * SORT_LIMIT) {
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                Entry entry = ordinals.get(ordinal);
+                if (after == null || entry.key().compareTo(after) > 0) {
+                    page.add(entry);
+                }
+            }
+            page.sort(Comparator.comparing(Entry::key));
+            return page.size() > pageSize + 1 ? new ArrayList<>(page.subList(0, pageSize + 1)) : page;
+        }
+        // Many matches: about one in SORT_LIMIT names along the way is one of them
+        Map<SortKey, Entry> rest = after == null ? byName : byName.tailMap(after, false);
+        for (Entry entry : rest.values()) {
+            if (matches == null || matches.get(entry.ordinal())) {
+                page.add(entry);
+                if (page.size() > pageSize) {
+                    break;
+                }
+            }
+        }
+        return page;
+    }
+
+    private static int[] tally(BitSet members, int[] column, int[] counts) {
+        for (int ordinal = members.nextSetBit(0); ordinal >= 0; ordinal = members.nextSetBit(ordinal + 1)) {
+            int value = column[ordinal];
+            if (value >= 0) {
+                counts[value]++;
+            }
+        }
+        return counts;
+    }
+
+    private static Map<Supplier.ServiceType, Integer> typeFacets(int[] counts) {
+        Map<Supplier.ServiceType, Integer> facets = new EnumMap<>(Supplier.ServiceType.class);
+        for (Supplier.ServiceType type : SERVICE_TYPES) {
+            if (counts[type.ordinal()] > 0) {
+                facets.put(type, counts[type.ordinal()]);
+            }
+        }
+        return facets;
+    }
+
+    // The most represented cities, by count and then name
+    private Map<String, Integer> cityFacets(int[] counts) {
+        City[] best = new City[MAX_CITY_FACETS];
+        int size = 0;
+        for (int slot = 0; slot < counts.length; slot++) {
+            if (counts[slot] == 0) {
+                continue;
+            }
+            City city = citySlots.get(slot);
+            if (size == best.length && !ranksBefore(city, best[size - 1], counts)) {
+                continue;
+            }
+            int i = Math.min(size, best.length - 1);
+            while (i > 0 && ranksBefore(city, best[i - 1], counts)) {
+                best[i] = best[i - 1];
+                i--;
+            }
+            best[i] = city;
+            size = Math.min(size + 1, best.length);
+        }
+        Map<String, Integer> facets = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            facets.put(best[i].name, counts[best[i].slot]);
+        }
+        return facets;
+    }
+
+    private static boolean ranksBefore(City city, City other, int[] counts) {
+        int byCount = Integer.compare(counts[other.slot], counts[city.slot]);
+        return byCount != 0 ? byCount < 0 : String.CASE_INSENSITIVE_ORDER.compare(city.name, other.name) < 0;
+    }
+
+    private void unlink(Entry entry) {
+        int ordinal = entry.ordinal();
+        byName.remove(entry.key());
+        Supplier.ServiceType type = entry.supplier().getServiceType();
+        if (type != null) {
+            serviceTypes.get(type).clear(ordinal);
+            typeTotals[type.ordinal()]--;
+        }
+        City city = entry.city();
+        if (city != null) {
+            city.members.clear(ordinal);
+            city.size--;
+            if (type != null) {
+                city.byType[type.ordinal()]--;
+            }
+        }
+        typeColumn[ordinal] = -1;
+        cityColumn[ordinal] = -1;
+        for (String term : entry.terms()) {
+            BitSet members = terms.get(term);
+            members.clear(ordinal);
+            if (members.isEmpty()) {
+                terms.remove(term);
+            }
+        }
+    }
+
+    // Into the given set, or null when every set is null, that is when nothing narrows the result
+    private static BitSet intersect(BitSet into, BitSet... sets) {
+        BitSet result = null;
+        for (BitSet set : sets) {
+            if (set == null) {
+                continue;
+            }
+            if (result == null) {
+                result = into;
+                result.clear();
+                result.or(set);
+            } else {
+                result.and(set);
+            }
+        }
+        return result;
+    }
+
+    private static SortKey cursor(String pageToken) {
+        Object[] cursor = PageTokens.decode(pageToken);
+        if (cursor.length != 2 || !(cursor[0] instanceof String name) || !(cursor[1] instanceof String id)) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+        return new SortKey(name, id);
+    }
+}
@@ -0,0 +1,46 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.SupplierDirectoryResults;
+import com.backend.eventmarketplace.repository.PageTokens;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+/**
+ * Filtered, faceted supplier listings from a {@link SupplierDirectoryIndex} that
+ * follows the supplier catalog replica, so registrations, updates and deletes show up
+ * without any Firestore reads at query time.
+ */
+@Service
+public class SupplierDirectoryService {
+
+    private final SupplierCatalogService supplierCatalogService;
+    private final SupplierDirectoryIndex index = new SupplierDirectoryIndex();
+
+    public SupplierDirectoryService(SupplierCatalogService supplierCatalogService) {
+        this.supplierCatalogService = supplierCatalogService;
+    }
+
+    @PostConstruct
+    public void start() {
+        supplierCatalogService.addChangeListener((id, supplier) -> {
+            if (supplier == null) {
+                index.remove(id);
+            } else {
+                index.put(supplier);
+            }
+        });
+    }
+
+    /**
+     * @throws IllegalStateException while the catalog has not loaded
+     * @throws IllegalArgumentException for an invalid page token
+     */
+    public SupplierDirectoryResults search(SupplierDirectoryIndex.Query query, Integer pageSize, String pageToken) {
+        if (!supplierCatalogService.isReady()) {
+            throw new IllegalStateException("Supplier directory is not available yet");
+        }
+        SupplierDirectoryIndex.Result result = index.search(query, PageTokens.pageSize(pageSize), pageToken);
+        return new SupplierDirectoryResults(result.suppliers(), result.nextPageToken(), result.total(),
+                result.serviceTypes(), result.cities());
+    }
+}
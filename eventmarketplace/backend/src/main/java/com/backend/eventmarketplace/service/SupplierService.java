@@ -1,10 +1,12 @@
 package com.backend.eventmarketplace.service;
 
+import com.backend.eventmarketplace.dto.Page;
 import com.backend.eventmarketplace.model.Supplier;
 import com.backend.eventmarketplace.model.User;
+import com.backend.eventmarketplace.repository.PageTokens;
 import com.backend.eventmarketplace.repository.SupplierRepository;
 import org.springframework.stereotype.Service;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 @Service
@@ -19,6 +21,7 @@ public class SupplierService {
     }
 
     public Supplier registerSupplier(Supplier supplier) throws ExecutionException, InterruptedException {
+       GeoCellIndex.checkCoordinates(supplier.getLatitude(), supplier.getLongitude());
        User user =  this.authService.getUserById(supplier.getUserId());
        supplier.setName(user.getName());
        supplier.setEmail(user.getEmail());
@@ -27,7 +30,11 @@ public class SupplierService {
     }
 
     public Supplier getSupplierByUserId(String userId) throws ExecutionException, InterruptedException {
-        return supplierRepository.findByUserId(userId);
+        return getSupplierByUserIdAsync(userId).get();
+    }
+
+    public CompletableFuture<Supplier> getSupplierByUserIdAsync(String userId) {
+        return supplierRepository.findByUserIdAsync(userId);
     }
 
     public Supplier updateSupplier(String supplierId, Supplier supplier) throws ExecutionException, InterruptedException {
@@ -36,6 +43,7 @@ public class SupplierService {
             throw new RuntimeException("Supplier not found");
         }
 
+        GeoCellIndex.checkCoordinates(supplier.getLatitude(), supplier.getLongitude());
         supplier.setId(supplierId);
         supplier.setCreatedAt(existing.getCreatedAt());
         return supplierRepository.save(supplier);
@@ -45,8 +53,20 @@ public class SupplierService {
         supplierRepository.delete(supplierId);
     }
 
-    public  List<Supplier> getAllSupplier() throws ExecutionException, InterruptedException {
-        return supplierRepository.findAll();
+    public  Page<Supplier> getAllSupplier() throws ExecutionException, InterruptedException {
+        return getAllSupplierAsync().get();
+    }
+
+    /**
+     * The suppliers for a request without paging parameters: the first
+     * {@link PageTokens#MAX_UNPAGED_ITEMS} in id order, with a token for the rest.
+     */
+    public CompletableFuture<Page<Supplier>> getAllSupplierAsync() {
+        return supplierRepository.findFirstAsync(PageTokens.MAX_UNPAGED_ITEMS);
+    }
+
+    public CompletableFuture<Page<Supplier>> getSuppliersPageAsync(Integer pageSize, String pageToken) {
+        return supplierRepository.findPageAsync(pageSize, pageToken);
     }
 
 }
\ No newline at end of file
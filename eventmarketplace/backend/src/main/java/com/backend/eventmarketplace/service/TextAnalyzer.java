@@ -0,0 +1,109 @@
+package com.backend.eventmarketplace.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Turns text into search terms: accents folded, lower-cased, split on anything that is
+ * not a letter or digit, common English words dropped and a light suffix stemmer
+ * applied, so "Concerts" and "concert" or "planned" and "planning" meet. The same
+ * analysis runs over documents and queries, so a stem only has to be consistent, not
+ * a real word.
+ */
+public final class TextAnalyzer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "into", "is", "it",
+            "of", "on", "or", "the", "to", "with");
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private TextAnalyzer() {
+    }
+
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean word = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                String token = folded.substring(start, i);
+                if (!STOP_WORDS.contains(token)) {
+                    terms.add(stem(token));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Lower-cased with accents removed.
+     */
+    public static String fold(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 128) {
+                return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                        .toLowerCase(Locale.ROOT);
+            }
+        }
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    static String stem(String word) {
+        if (word.length() <= 3 || Character.isDigit(word.charAt(word.length() - 1))) {
+            return word;
+        }
+        // Plurals first, so "weddings" and "wedding" go on to the same stem
+        String singular = singular(word);
+        int length = singular.length();
+        if (singular.endsWith("ing") && length > 5) {
+            return undouble(singular.substring(0, length - 3));
+        }
+        if (singular.endsWith("ed") && length > 4) {
+            return undouble(singular.substring(0, length - 2));
+        }
+        if (singular.endsWith("ly") && length > 4) {
+            return singular.substring(0, length - 2);
+        }
+        return singular;
+    }
+
+    private static String singular(String word) {
+        int length = word.length();
+        if (word.endsWith("ies") && length > 4) {
+            return word.substring(0, length - 3) + "y";
+        }
+        if (word.endsWith("sses") || word.endsWith("xes") || word.endsWith("ches") || word.endsWith("shes")) {
+            return word.substring(0, length - 2);
+        }
+        if (word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us") && !word.endsWith("is")) {
+            return word.substring(0, length - 1);
+        }
+        return word;
+    }
+
+    // "running" -> "runn" -> "run", but "ball" and "dress" keep their double letter
+    private static String undouble(String stem) {
+        int length = stem.length();
+        if (length > 2 && stem.charAt(length - 1) == stem.charAt(length - 2)
+                && "lsz".indexOf(stem.charAt(length - 1)) < 0 && !isVowel(stem.charAt(length - 1))) {
+            return stem.substring(0, length - 1);
+        }
+        return stem;
+    }
+
+    private static boolean isVowel(char c) {
+        return "aeiouy".indexOf(c) >= 0;
+    }
+}
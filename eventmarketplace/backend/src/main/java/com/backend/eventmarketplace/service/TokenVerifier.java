@@ -0,0 +1,92 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.AuthenticatedUser;
+import com.backend.eventmarketplace.model.User;
+import com.backend.eventmarketplace.repository.CacheStats;
+import com.backend.eventmarketplace.repository.EntityCache;
+import com.backend.eventmarketplace.repository.LruEntityCache;
+import com.backend.eventmarketplace.repository.UserRepository;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.FirebaseToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Verifies Firebase ID tokens and remembers the ones that passed until they expire, so
+ * a client sending the same token on every request pays for the signature check once.
+ * Google's signing keys are cached by FirebaseAuth itself for as long as Google allows.
+ * Tokens are kept under their SHA-256, never in the clear.
+ */
+@Service
+public class TokenVerifier {
+
+    // Firebase ID tokens are issued for an hour
+    private static final Duration MAX_TOKEN_LIFETIME = Duration.ofHours(1);
+
+    private record Verified(FirebaseToken token, Instant expiresAt) {
+    }
+
+    private final FirebaseAuth firebaseAuth;
+    private final UserRepository userRepository;
+    private final EntityCache<Verified> tokens;
+
+    public TokenVerifier(FirebaseAuth firebaseAuth, UserRepository userRepository,
+                         @Value("${eventmarketplace.auth.token-cache.max-size:10000}") int maxTokens) {
+        this.firebaseAuth = firebaseAuth;
+        this.userRepository = userRepository;
+        this.tokens = new LruEntityCache<>(maxTokens, MAX_TOKEN_LIFETIME);
+    }
+
+    /**
+     * The caller for this token, with their profile from the users near cache.
+     */
+    public AuthenticatedUser authenticate(String idToken)
+            throws FirebaseAuthException, ExecutionException, InterruptedException {
+        FirebaseToken token = verify(idToken);
+        User user = userRepository.findByIdAsync(token.getUid()).get();
+        return new AuthenticatedUser(token.getUid(), token.getEmail(), user,
+                Boolean.TRUE.equals(token.getClaims().get("admin")));
+    }
+
+    public FirebaseToken verify(String idToken) throws FirebaseAuthException {
+        String key = key(idToken);
+        Verified cached = tokens.get(key);
+        Instant now = Instant.now();
+        if (cached != null && cached.expiresAt().isAfter(now)) {
+            return cached.token();
+        }
+
+        FirebaseToken token = firebaseAuth.verifyIdToken(idToken);
+        Instant expiresAt = expiry(token);
+        if (expiresAt.isAfter(now)) {
+            tokens.put(key, new Verified(token, expiresAt));
+        }
+        return token;
+    }
+
+    public CacheStats stats() {
+        return tokens.stats();
+    }
+
+    private static Instant expiry(FirebaseToken token) {
+        return token.getClaims().get("exp") instanceof Number exp ? Instant.ofEpochSecond(exp.longValue()) : Instant.EPOCH;
+    }
+
+    private static String key(String idToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(idToken.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.backend.eventmarketplace.service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Radix trie of suggestion phrases for the search box. Every word position of a phrase
+ * is a key, so "jaz" finds "Harbour jazz nights" as well as "Jazz brunch". Each node
+ * keeps the best {@link #MAX_SUGGESTIONS} entries of its subtree, most popular first,
+ * so a lookup walks the prefix and returns that list: its cost depends on the length
+ * of the prefix, not on how many phrases match it. Changing an entry or its popularity
+ * refreshes those lists only on the paths to its own keys.
+ */
+public class TypeaheadIndex {
+
+    public static final int MAX_SUGGESTIONS = 10;
+    // Long titles only get keys for their first words
+    private static final int MAX_WORDS = 8;
+
+    public enum Kind {
+        EVENT,
+        CITY,
+        SUPPLIER
+    }
+
+    public record Suggestion(Kind kind, String id, String text, long popularity) {
+    }
+
+    private static final class Entry {
+        private final Kind kind;
+        private final String id;
+        private String text;
+        private long popularity;
+        private List<String> keys = List.of();
+
+        private Entry(Kind kind, String id) {
+            this.kind = kind;
+            this.id = id;
+        }
+    }
+
+    private static final class Node {
+        private String label;
+        private Node[] children = NO_NODES;
+        // Entries with a key ending here, and the best of the whole subtree
+        private Entry[] here = NO_ENTRIES;
+        private Entry[] top = NO_ENTRIES;
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    // Most popular first, then alphabetical
+    private static final Comparator<Entry> RANK = Comparator.<Entry>comparingLong(entry -> entry.popularity).reversed()
+            .thenComparing(entry -> entry.text, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(entry -> entry.kind)
+            .thenComparing(entry -> entry.id);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node("");
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Adds the phrase or updates its text and popularity. A blank phrase removes it.
+     */
+    public void put(Kind kind, String id, String text, long popularity) {
+        if (text == null || normalize(text).isEmpty()) {
+            remove(kind, id);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.computeIfAbsent(kind + ":" + id, key -> new Entry(kind, id));
+            if (text.equals(entry.text)) {
+                if (entry.popularity != popularity) {
+                    entry.popularity = popularity;
+                    entry.keys.forEach(this::refresh);
+                }
+                return;
+            }
+            for (String key : entry.keys) {
+                delete(key, entry);
+            }
+            entry.text = text;
+            entry.popularity = popularity;
+            entry.keys = keys(text);
+            for (String key : entry.keys) {
+                insert(key, entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Changes the popularity of a phrase that is already indexed.
+     */
+    public void setPopularity(Kind kind, String id, long popularity) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(kind + ":" + id);
+            if (entry != null && entry.popularity != popularity) {
+                entry.popularity = popularity;
+                entry.keys.forEach(this::refresh);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Kind kind, String id) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(kind + ":" + id);
+            if (entry != null) {
+                for (String key : entry.keys) {
+                    delete(key, entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The most popular phrases with a word starting with the prefix, or continuing
+     * from it when the prefix has several words.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                int slot = slot(node, key.charAt(i));
+                if (slot < 0) {
+                    return List.of();
+                }
+                Node child = node.children[slot];
+                int remaining = key.length() - i;
+                // The prefix may end part way along an edge
+                int compared = Math.min(remaining, child.label.length());
+                if (!key.regionMatches(i, child.label, 0, compared)) {
+                    return List.of();
+                }
+                node = child;
+                i += compared;
+            }
+            Entry[] top = node.top;
+            List<Suggestion> suggestions = new ArrayList<>(Math.min(limit, top.length));
+            for (int j = 0; j < top.length && j < limit; j++) {
+                suggestions.add(new Suggestion(top[j].kind, top[j].id, top[j].text, top[j].popularity));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Folded words joined by single spaces, as keys and prefixes are compared.
+     */
+    static String normalize(String text) {
+        return String.join(" ", words(text));
+    }
+
+    private static List<String> keys(String text) {
+        List<String> words = words(text);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < words.size() && i < MAX_WORDS; i++) {
+            keys.add(String.join(" ", words.subList(i, words.size())));
+        }
+        return List.copyOf(keys);
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String folded = TextAnalyzer.fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean word = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private void insert(String key, Entry entry) {
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int slot = slot(node, key.charAt(i));
+            if (slot < 0) {
+                Node leaf = new Node(key.substring(i));
+                node.children = insertAt(node.children, -slot - 1, leaf);
+                node = leaf;
+                path.add(node);
+                break;
+            }
+            Node child = node.children[slot];
+            int common = 0;
+            while (common < child.label.length() && i + common < key.length()
+                    && child.label.charAt(common) == key.charAt(i + common)) {
+                common++;
+            }
+            if (common < child.label.length()) {
+                // Split the edge where the key leaves it
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children = new Node[]{child};
+                node.children[slot] = middle;
+                child = middle;
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+        if (!Arrays.asList(node.here).contains(entry)) {
+            node.here = Arrays.copyOf(node.here, node.here.length + 1);
+            node.here[node.here.length - 1] = entry;
+        }
+        recompute(path);
+    }
+
+    private void delete(String key, Entry entry) {
+        List<Node> path = path(key);
+        if (path == null) {
+            return;
+        }
+        Node node = path.getLast();
+        node.here = Arrays.stream(node.here).filter(other -> other != entry).toArray(Entry[]::new);
+
+        // Drop nodes left empty and merge one that is left with a single child into it
+        for (int d = path.size() - 1; d > 0; d--) {
+            Node current = path.get(d);
+            Node parent = path.get(d - 1);
+            if (current.here.length == 0 && current.children.length == 0) {
+                parent.children = Arrays.stream(parent.children).filter(child -> child != current).toArray(Node[]::new);
+                path.remove(d);
+                continue;
+            }
+            if (current.here.length == 0 && current.children.length == 1) {
+                Node only = current.children[0];
+                current.label = current.label + only.label;
+                current.children = only.children;
+                current.here = only.here;
+                current.top = only.top;
+            }
+            break;
+        }
+        recompute(path);
+    }
+
+    private void refresh(String key) {
+        List<Node> path = path(key);
+        if (path != null) {
+            recompute(path);
+        }
+    }
+
+    // The nodes from the root to the one the key ends at, or null when it is not there
+    private List<Node> path(String key) {
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int slot = slot(node, key.charAt(i));
+            if (slot < 0 || !key.startsWith(node.children[slot].label, i)) {
+                return null;
+            }
+            node = node.children[slot];
+            path.add(node);
+            i += node.label.length();
+        }
+        return path;
+    }
+
+    // Bottom up, so each node merges the already refreshed lists of its children
+    private static void recompute(List<Node> path) {
+        for (int d = path.size() - 1; d >= 0; d--) {
+            Node node = path.get(d);
+            Entry[] best = new Entry[MAX_SUGGESTIONS];
+            int size = 0;
+            for (Entry entry : node.here) {
+                size = offer(best, size, entry);
+            }
+            for (Node child : node.children) {
+                for (Entry entry : child.top) {
+                    size = offer(best, size, entry);
+                }
+            }
+            node.top = Arrays.copyOf(best, size);
+        }
+    }
+
+    // Insertion into a short sorted array; the same entry can arrive through two keys
+    private static int offer(Entry[] best, int size, Entry entry) {
+        for (int i = 0; i < size; i++) {
+            if (best[i] == entry) {
+                return size;
+            }
+        }
+        if (size == best.length && RANK.compare(entry, best[size - 1]) >= 0) {
+            return size;
+        }
+        int i = Math.min(size, best.length - 1);
+        while (i > 0 && RANK.compare(entry, best[i - 1]) < 0) {
+            best[i] = best[i - 1];
+            i--;
+        }
+        best[i] = entry;
+        return Math.min(size + 1, best.length);
+    }
+
+    // Children are sorted by the first character of their label
+    private static int slot(Node node, char first) {
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char c = node.children[middle].label.charAt(0);
+            if (c < first) {
+                low = middle + 1;
+            } else if (c > first) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    private static Node[] insertAt(Node[] children, int index, Node child) {
+        Node[] next = new Node[children.length + 1];
+        System.arraycopy(children, 0, next, 0, index);
+        next[index] = child;
+        System.arraycopy(children, index, next, index + 1, children.length - index);
+        return next;
+    }
+}
@@ -0,0 +1,137 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.EventCounters;
+import com.backend.eventmarketplace.model.Supplier;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search-box suggestions from a {@link TypeaheadIndex} over active event titles,
+ * supplier names and the cities of both, kept current from the event and supplier
+ * catalog replicas. Events rank by their bookings and a city by the bookings of its
+ * events; suppliers have no bookings yet, so they rank by name after booked events.
+ */
+@Service
+public class TypeaheadService {
+
+    private record CityShare(String key, long popularity) {
+    }
+
+    private static final class City {
+        private final String name;
+        private int members;
+        private long popularity;
+
+        private City(String name) {
+            this.name = name;
+        }
+    }
+
+    private final EventCatalogService eventCatalogService;
+    private final SupplierCatalogService supplierCatalogService;
+    private final TypeaheadIndex index = new TypeaheadIndex();
+    // What each listed event and each supplier adds to its city
+    private final Map<String, CityShare> eventShares = new HashMap<>();
+    private final Map<String, CityShare> supplierShares = new HashMap<>();
+    private final Map<String, City> cities = new HashMap<>();
+
+    public TypeaheadService(EventCatalogService eventCatalogService, SupplierCatalogService supplierCatalogService) {
+        this.eventCatalogService = eventCatalogService;
+        this.supplierCatalogService = supplierCatalogService;
+    }
+
+    @PostConstruct
+    public void start() {
+        eventCatalogService.addChangeListener(new EventCatalogService.ChangeListener() {
+            @Override
+            public void eventChanged(String id, Event event) {
+                TypeaheadService.this.eventChanged(id, event);
+            }
+
+            @Override
+            public void countersChanged(String eventId, EventCounters counters) {
+                TypeaheadService.this.countersChanged(eventId, counters);
+            }
+        });
+        supplierCatalogService.addChangeListener(this::supplierChanged);
+    }
+
+    /**
+     * @throws IllegalStateException while the catalogs have not loaded
+     */
+    public List<TypeaheadIndex.Suggestion> suggest(String prefix, Integer limit) {
+        if (!eventCatalogService.isReady() || !supplierCatalogService.isReady()) {
+            throw new IllegalStateException("Suggestions are not available yet");
+        }
+        int size = limit == null || limit < 1 ? TypeaheadIndex.MAX_SUGGESTIONS
+                : Math.min(limit, TypeaheadIndex.MAX_SUGGESTIONS);
+        return index.suggest(prefix, size);
+    }
+
+    synchronized void eventChanged(String id, Event event) {
+        if (event == null || (event.getStatus() != null && event.getStatus() != Event.EventStatus.ACTIVE)) {
+            index.remove(TypeaheadIndex.Kind.EVENT, id);
+            share(eventShares, id, null, 0);
+            return;
+        }
+        EventCounters counters = eventCatalogService.counters(id);
+        long bookings = counters != null ? counters.getTotalBookings()
+                : event.getTotalBookings() != null ? event.getTotalBookings() : 0;
+        index.put(TypeaheadIndex.Kind.EVENT, id, event.getTitle(), bookings);
+        share(eventShares, id, event.getCity(), bookings);
+    }
+
+    synchronized void countersChanged(String eventId, EventCounters counters) {
+        CityShare current = eventShares.get(eventId);
+        index.setPopularity(TypeaheadIndex.Kind.EVENT, eventId, counters.getTotalBookings());
+        if (current != null) {
+            share(eventShares, eventId, cities.get(current.key()).name, counters.getTotalBookings());
+        }
+    }
+
+    synchronized void supplierChanged(String id, Supplier supplier) {
+        if (supplier == null) {
+            index.remove(TypeaheadIndex.Kind.SUPPLIER, id);
+            share(supplierShares, id, null, 0);
+            return;
+        }
+        index.put(TypeaheadIndex.Kind.SUPPLIER, id, supplier.getName(), 0);
+        share(supplierShares, id, supplier.getCity(), 0);
+    }
+
+    // Moves one member's share of popularity to its current city, if any
+    private void share(Map<String, CityShare> shares, String id, String cityName, long popularity) {
+        String key = cityName != null ? TypeaheadIndex.normalize(cityName) : "";
+        CityShare previous = shares.get(id);
+        if (previous != null && previous.key().equals(key)) {
+            shares.put(id, new CityShare(key, popularity));
+            adjustCity(key, null, 0, popularity - previous.popularity());
+            return;
+        }
+        shares.remove(id);
+        if (previous != null) {
+            adjustCity(previous.key(), null, -1, -previous.popularity());
+        }
+        if (!key.isEmpty()) {
+            shares.put(id, new CityShare(key, popularity));
+            adjustCity(key, cityName.trim(), 1, popularity);
+        }
+    }
+
+    private void adjustCity(String key, String name, int members, long popularity) {
+        City city = cities.computeIfAbsent(key, k -> new City(name));
+        city.members += members;
+        city.popularity += popularity;
+        if (city.members <= 0) {
+            cities.remove(key);
+            index.remove(TypeaheadIndex.Kind.CITY, key);
+        } else {
+            index.put(TypeaheadIndex.Kind.CITY, key, city.name, city.popularity);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.Page;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.repository.CacheStats;
+import com.backend.eventmarketplace.repository.EntityCache;
+import com.backend.eventmarketplace.repository.LruEntityCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Recent "my bookings" results per user: every view and page a user has loaded lately,
+ * dropped together when that user books or cancels. Other instances only see the
+ * change once the entry expires, so the time to live is kept short.
+ */
+@Component
+public class UserBookingsCache {
+
+    private static final int MAX_VIEWS_PER_USER = 32;
+
+    private final EntityCache<Map<String, Page<Booking>>> users;
+
+    public UserBookingsCache(@Value("${eventmarketplace.cache.user-bookings.max-users:10000}") int maxUsers,
+                             @Value("${eventmarketplace.cache.user-bookings.ttl-seconds:30}") long ttlSeconds) {
+        this.users = new LruEntityCache<>(maxUsers, Duration.ofSeconds(ttlSeconds));
+    }
+
+    public static UserBookingsCache none() {
+        return new UserBookingsCache(0, 0);
+    }
+
+    /**
+     * The cached page for this user and view, or the loader's result, which is cached
+     * unless the user's bookings changed while it was loading.
+     */
+    public CompletableFuture<Page<Booking>> get(String userId, String view, Supplier<CompletableFuture<Page<Booking>>> loader) {
+        if (!users.isEnabled()) {
+            return loader.get();
+        }
+        Map<String, Page<Booking>> views = users.get(userId);
+        if (views == null) {
+            views = new ConcurrentHashMap<>();
+            users.put(userId, views);
+        }
+        Page<Booking> cached = views.get(view);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        // An invalidation replaces the user's map, so a load that races it lands in the old one
+        Map<String, Page<Booking>> target = views;
+        return loader.get().thenApply(page -> {
+            if (target.size() >= MAX_VIEWS_PER_USER) {
+                target.clear();
+            }
+            target.put(view, page);
+            return page;
+        });
+    }
+
+    public void invalidate(String userId) {
+        users.invalidate(userId);
+    }
+
+    public CacheStats stats() {
+        return users.stats();
+    }
+}
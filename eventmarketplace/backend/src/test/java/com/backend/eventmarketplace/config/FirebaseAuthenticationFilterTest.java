@@ -0,0 +1,137 @@
+package com.backend.eventmarketplace.config;
+
+import com.backend.eventmarketplace.dto.AuthenticatedUser;
+import com.backend.eventmarketplace.model.User;
+import com.backend.eventmarketplace.repository.EntityCaches;
+import com.backend.eventmarketplace.repository.UserRepository;
+import com.backend.eventmarketplace.service.TokenVerifier;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import com.google.firebase.ErrorCode;
+import com.google.firebase.auth.AuthErrorCode;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.FirebaseToken;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class FirebaseAuthenticationFilterTest {
+
+    private final InMemoryFirestore store = new InMemoryFirestore();
+    private final FirebaseAuth firebaseAuth = mock(FirebaseAuth.class);
+    private final FirebaseAuthenticationFilter filter = new FirebaseAuthenticationFilter(
+            new TokenVerifier(firebaseAuth, new UserRepository(store.firestore(),
+                    new EntityCaches(List.of("users"), 100, 30, 0, new StandardEnvironment())), 100),
+            true, List.of("/api/bookings"));
+
+    @Test
+    void tokenAndUserAreLookedUpOncePerToken() throws Exception {
+        User ada = new User();
+        ada.setName("Ada");
+        store.put("users/u1", ada);
+        FirebaseToken good = token("u1", Instant.now().plusSeconds(3600));
+        when(firebaseAuth.verifyIdToken("good")).thenReturn(good);
+
+        int reads = store.roundTrips();
+        for (int i = 0; i < 50; i++) {
+            MockHttpServletRequest request = request("/api/bookings/user/u1", "Bearer good");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+
+            AuthenticatedUser principal = (AuthenticatedUser) request.getAttribute(AuthenticatedUser.ATTRIBUTE);
+            assertThat(principal.getUid()).isEqualTo("u1");
+            assertThat(principal.getUser().getName()).isEqualTo("Ada");
+        }
+        verify(firebaseAuth, times(1)).verifyIdToken("good");
+        assertThat(store.roundTrips() - reads).isEqualTo(1);
+    }
+
+    @Test
+    void expiredTokensAreCheckedAgainAndBadOnesRejected() throws Exception {
+        FirebaseToken stale = token("u1", Instant.now().minusSeconds(1));
+        when(firebaseAuth.verifyIdToken("stale")).thenReturn(stale);
+        when(firebaseAuth.verifyIdToken("forged")).thenThrow(
+                new FirebaseAuthException(ErrorCode.INVALID_ARGUMENT, "bad signature", null, null,
+                        AuthErrorCode.INVALID_ID_TOKEN));
+
+        filter.doFilter(request("/api/events", "Bearer stale"), new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(request("/api/events", "Bearer stale"), new MockHttpServletResponse(), new MockFilterChain());
+        verify(firebaseAuth, times(2)).verifyIdToken("stale");
+
+        MockHttpServletResponse forged = new MockHttpServletResponse();
+        filter.doFilter(request("/api/events", "Bearer forged"), forged, new MockFilterChain());
+        assertThat(forged.getStatus()).isEqualTo(401);
+        assertThat(forged.getContentAsString()).isEqualTo("Invalid token");
+
+        MockHttpServletResponse anonymous = new MockHttpServletResponse();
+        filter.doFilter(request("/api/events", null), anonymous, new MockFilterChain());
+        assertThat(anonymous.getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse missing = new MockHttpServletResponse();
+        filter.doFilter(request("/api/bookings", null), missing, new MockFilterChain());
+        assertThat(missing.getStatus()).isEqualTo(401);
+    }
+
+    @Test
+    void tokenlessRequestsToProtectedPathsOnlyPassWhenOptedIn() throws Exception {
+        TokenVerifier verifier = new TokenVerifier(firebaseAuth, new UserRepository(store.firestore(),
+                EntityCaches.none()), 100);
+
+        MockHttpServletResponse secured = new MockHttpServletResponse();
+        new FirebaseAuthenticationFilter(verifier, true, List.of("/api/bookings", "/api/payments"))
+                .doFilter(request("/api/payments/p1", null), secured, new MockFilterChain());
+        assertThat(secured.getStatus()).isEqualTo(401);
+        assertThat(secured.getContentAsString()).isEqualTo("Missing token");
+
+        MockHttpServletResponse legacy = new MockHttpServletResponse();
+        new FirebaseAuthenticationFilter(verifier, false, List.of("/api/bookings", "/api/payments"))
+                .doFilter(request("/api/payments/p1", null), legacy, new MockFilterChain());
+        assertThat(legacy.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void theAdminClaimComesFromTheTokenNotTheProfile() throws Exception {
+        User organizer = new User();
+        organizer.setRole(User.UserRole.ORGANIZER);
+        store.put("users/u1", organizer);
+        FirebaseToken plain = token("u1", Instant.now().plusSeconds(3600));
+        FirebaseToken admin = mock(FirebaseToken.class);
+        when(admin.getUid()).thenReturn("a1");
+        when(admin.getClaims()).thenReturn(Map.of("exp", Instant.now().plusSeconds(3600).getEpochSecond(),
+                "admin", true));
+        when(firebaseAuth.verifyIdToken("plain")).thenReturn(plain);
+        when(firebaseAuth.verifyIdToken("admin")).thenReturn(admin);
+
+        MockHttpServletRequest byOrganizer = request("/api/exports/bookings", "Bearer plain");
+        filter.doFilter(byOrganizer, new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(((AuthenticatedUser) byOrganizer.getAttribute(AuthenticatedUser.ATTRIBUTE)).isAdmin()).isFalse();
+
+        MockHttpServletRequest byAdmin = request("/api/exports/bookings", "Bearer admin");
+        filter.doFilter(byAdmin, new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(((AuthenticatedUser) byAdmin.getAttribute(AuthenticatedUser.ATTRIBUTE)).isAdmin()).isTrue();
+    }
+
+    private static MockHttpServletRequest request(String path, String authorization) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        return request;
+    }
+
+    private static FirebaseToken token(String uid, Instant expiresAt) {
+        FirebaseToken token = mock(FirebaseToken.class);
+        when(token.getUid()).thenReturn(uid);
+        when(token.getClaims()).thenReturn(Map.of("exp", expiresAt.getEpochSecond()));
+        return token;
+    }
+}
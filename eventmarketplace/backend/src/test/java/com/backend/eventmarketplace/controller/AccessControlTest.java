@@ -0,0 +1,75 @@
+package com.backend.eventmarketplace.controller;
+
+import com.backend.eventmarketplace.dto.AuthenticatedUser;
+import com.backend.eventmarketplace.dto.Page;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Payment;
+import com.backend.eventmarketplace.service.BookingService;
+import com.backend.eventmarketplace.service.ExportService;
+import com.backend.eventmarketplace.service.PaymentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class AccessControlTest {
+
+    private static final AuthenticatedUser OWNER = new AuthenticatedUser("u1", "u1@example.com", null);
+    private static final AuthenticatedUser STRANGER = new AuthenticatedUser("u2", "u2@example.com", null);
+    private static final AuthenticatedUser ADMIN = new AuthenticatedUser("a1", "a1@example.com", null, true);
+
+    private final BookingService bookingService = mock(BookingService.class);
+    private final PaymentService paymentService = mock(PaymentService.class);
+    private final ExportService exportService = mock(ExportService.class);
+    private final BookingController bookings = new BookingController(bookingService);
+    private final PaymentController payments = new PaymentController(paymentService);
+    private final ExportController exports = new ExportController(exportService);
+
+    @Test
+    void bookingsAndPaymentsAreOnlyReadByTheirOwnerOrAnAdmin() throws Exception {
+        Booking booking = new Booking();
+        booking.setUserId("u1");
+        when(bookingService.getBookingByIdAsync("b1")).thenReturn(CompletableFuture.completedFuture(booking));
+        Payment payment = new Payment();
+        payment.setUserId("u1");
+        when(paymentService.getPaymentByIdAsync("p1")).thenReturn(CompletableFuture.completedFuture(payment));
+
+        assertThat(status(bookings.getBooking("b1", null).get())).isEqualTo(401);
+        assertThat(status(bookings.getBooking("b1", STRANGER).get())).isEqualTo(403);
+        assertThat(status(bookings.getBooking("b1", OWNER).get())).isEqualTo(200);
+        assertThat(status(bookings.getBooking("b1", ADMIN).get())).isEqualTo(200);
+
+        assertThat(status(payments.getPayment("p1", null).get())).isEqualTo(401);
+        assertThat(status(payments.getPayment("p1", STRANGER).get())).isEqualTo(403);
+        assertThat(status(payments.getPayment("p1", OWNER).get())).isEqualTo(200);
+        assertThat(status(payments.getPayment("p1", ADMIN).get())).isEqualTo(200);
+
+        // Acting for a user takes that user's token; no token is no longer anyone
+        assertThat(status(bookings.getUserBookings("u1", null, null, null).get())).isEqualTo(403);
+        assertThat(status(bookings.cancelBooking("b1", "u1", null))).isEqualTo(403);
+    }
+
+    @Test
+    void everyonesBookingsAndExportsAreForAdminsOnly() throws Exception {
+        when(bookingService.getAllBookingsAsync())
+                .thenReturn(CompletableFuture.completedFuture(new Page<>(List.of(new Booking()), null)));
+
+        assertThat(status(bookings.getAllBookings(null, null, null).get())).isEqualTo(401);
+        assertThat(status(bookings.getAllBookings(null, null, OWNER).get())).isEqualTo(403);
+        assertThat(status(bookings.getAllBookings(null, null, ADMIN).get())).isEqualTo(200);
+
+        assertThat(status(exports.exportBookings(null, null, null, null, null, null))).isEqualTo(401);
+        assertThat(status(exports.exportBookings(null, null, null, null, null, OWNER))).isEqualTo(403);
+        assertThat(status(exports.exportPayments(null, null, null, null, null, OWNER))).isEqualTo(403);
+        assertThat(status(exports.exportPayments(null, null, null, null, null, ADMIN))).isEqualTo(200);
+        verify(exportService, never()).bookingFilter(any(), any(), any(), any());
+    }
+
+    private static int status(ResponseEntity<?> response) {
+        return response.getStatusCode().value();
+    }
+}
@@ -0,0 +1,115 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.dto.BookingResponse;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.Payment;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import com.google.cloud.firestore.DocumentReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Round trips and simulated latency of the booking write path. Every RPC against the
+ * stand-in sleeps for {@link #RTT_MILLIS}, so elapsed time is roughly RPCs x RTT.
+ */
+@Tag("benchmark")
+class BookingWritePathBenchmarkTest {
+
+    private static final long RTT_MILLIS = 5;
+    private static final int ITERATIONS = 20;
+
+    private InMemoryFirestore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryFirestore();
+        Event event = new Event();
+        event.setId("e1");
+        event.setTicketPrice(10.0);
+        event.setCapacity(1000);
+        event.setAvailableSeats(1000);
+        event.setBookingEnabled(true);
+        store.put("events/e1", event);
+        store.latency(RTT_MILLIS);
+    }
+
+    @Test
+    void writePathRoundTripsPerBooking() throws Exception {
+        BookingRepository bookings = new BookingRepository(store.firestore());
+        PaymentRepository payments = new PaymentRepository(store.firestore());
+        EventRepository events = new EventRepository(store.firestore(), EntityCaches.none());
+        UnitOfWorkFactory unitOfWork = new UnitOfWorkFactory(store.firestore(), EntityCaches.none());
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
+        taskExecutor.setVirtualThreads(true);
+        SeatReservationRepository reservations = new SeatReservationRepository(store.firestore(),
+                new EventCounterRepository(store.firestore(), 4),
+                new RollupRepository(store.firestore(), 4), new OutboxRepository(store.firestore(), taskExecutor),
+                taskExecutor);
+
+        Result readAfterWrite = measure(() -> {
+            // Four saves, each followed by a re-read, as save() used to do
+            for (String collection : new String[]{"bookings", "payments", "bookings", "events"}) {
+                DocumentReference ref = store.firestore().collection(collection).document();
+                ref.set(new Booking()).get();
+                ref.get().get();
+            }
+        });
+        Result singleWrites = measure(() -> {
+            Booking booking = bookings.save(new Booking());
+            payments.save(new Payment());
+            bookings.save(booking);
+            events.save(store.get("events/e1", Event.class));
+        });
+        Result batched = measure(() -> {
+            UnitOfWork work = unitOfWork.begin();
+            bookings.save(work, new Booking());
+            payments.save(work, new Payment());
+            events.save(work, store.get("events/e1", Event.class));
+            work.commit();
+        });
+        Result transactional = measure(() -> reservations.reserve("e1", 1, (event, bookingId, paymentId) -> {
+            Booking booking = new Booking();
+            booking.setTotalPrice(event.getTicketPrice());
+            return new BookingResponse(booking, new Payment(), "Booking successful");
+        }));
+
+        System.out.printf("%-22s %8s %12s%n", "write path", "RPCs", "ms/booking");
+        print("read-after-write", readAfterWrite);
+        print("single-write saves", singleWrites);
+        print("unit of work", batched);
+        print("reservation txn", transactional);
+
+        assertThat(readAfterWrite.roundTrips()).isEqualTo(8);
+        assertThat(singleWrites.roundTrips()).isEqualTo(4);
+        assertThat(batched.roundTrips()).isEqualTo(1);
+        // event read, one counter shard read, commit
+        assertThat(transactional.roundTrips()).isEqualTo(3);
+    }
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    private record Result(double roundTrips, double millis) {
+    }
+
+    private Result measure(Body body) throws Exception {
+        body.run();
+        int before = store.roundTrips();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            body.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result((store.roundTrips() - before) / (double) ITERATIONS, elapsed / 1e6 / ITERATIONS);
+    }
+
+    private void print(String name, Result result) {
+        System.out.printf("%-22s %8.1f %12.1f%n", name, result.roundTrips(), result.millis());
+    }
+}
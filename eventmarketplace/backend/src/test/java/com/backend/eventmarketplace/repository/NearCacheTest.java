@@ -0,0 +1,138 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import com.google.cloud.firestore.FirestoreException;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NearCacheTest {
+
+    @Test
+    void lruEvictsLeastRecentlyUsedAndExpiredEntries() {
+        AtomicLong now = new AtomicLong();
+        LruEntityCache<String> cache = new LruEntityCache<>(2, Duration.ofSeconds(10), now::get);
+
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");
+        cache.put("c", "C");
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo("A");
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertThat(cache.get("c")).isNull();
+        assertThat(cache.stats()).satisfies(stats -> {
+            assertThat(stats.getHits()).isEqualTo(2);
+            assertThat(stats.getMisses()).isEqualTo(2);
+            assertThat(stats.getEvictions()).isEqualTo(2);
+            assertThat(stats.getSize()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void aLoadThatRacedAWriteIsNeitherCachedNorShared() {
+        LruEntityCache<String> cache = new LruEntityCache<>(10, Duration.ofSeconds(10));
+        SingleFlight<String> reads = new SingleFlight<>(Duration.ofSeconds(10));
+        CompletableFuture<String> inFlight = new CompletableFuture<>();
+
+        long version = cache.version("e1");
+        CompletableFuture<String> first = reads.load("events/e1", () -> inFlight);
+        // The write lands while the read is still on its way back
+        cache.invalidate("e1");
+        reads.forget("events/e1");
+        inFlight.complete("before the write");
+        cache.put("e1", first.join(), version);
+
+        assertThat(cache.get("e1")).isNull();
+        assertThat(reads.load("events/e1", () -> CompletableFuture.completedFuture("after the write")).join())
+                .isEqualTo("after the write");
+        assertThat(reads.loads()).isEqualTo(2);
+
+        cache.put("e1", "after the write", cache.version("e1"));
+        assertThat(cache.get("e1")).isEqualTo("after the write");
+    }
+
+    @Test
+    void readsThroughAndInvalidatesOnLocalAndRemoteWrites() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        EntityCaches caches = new EntityCaches(List.of("events"), 100, 60, 0, new StandardEnvironment());
+        EventRepository events = new EventRepository(store.firestore(), caches);
+        CacheInvalidationListener listener = new CacheInvalidationListener(store.firestore(), caches, true);
+        listener.start();
+        store.put("events/e1", event("Jazz night"));
+
+        int before = store.roundTrips();
+        Event first = events.findById("e1");
+        first.setTitle("mutated by caller");
+        assertThat(events.findById("e1").getTitle()).isEqualTo("Jazz night");
+        assertThat(store.roundTrips() - before).isEqualTo(1);
+
+        // local write through the repository
+        Event update = events.findById("e1");
+        update.setTitle("Late jazz");
+        events.save(update);
+        assertThat(events.findById("e1").getTitle()).isEqualTo("Late jazz");
+
+        // another node (or the console) writes the document
+        store.put("events/e1", event("Sold out"));
+        assertThat(events.findById("e1").getTitle()).isEqualTo("Sold out");
+
+        // local unit of work
+        UnitOfWork work = new UnitOfWorkFactory(store.firestore(), caches).begin();
+        work.delete("events", "e1");
+        work.commit();
+        assertThat(events.findById("e1")).isNull();
+
+        listener.stop();
+        CacheStats stats = caches.stats().get("events");
+        assertThat(stats.getHits()).isEqualTo(2);
+        assertThat(stats.getInvalidations()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void aCollectionIsNotCachedWhileItsListenerIsDownAndIsAgainOnceItIsBack() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        EntityCaches caches = new EntityCaches(List.of("events"), 100, 60, 0, new StandardEnvironment());
+        EventRepository events = new EventRepository(store.firestore(), caches);
+        CacheInvalidationListener listener = new CacheInvalidationListener(store.firestore(), caches, true, 500);
+        listener.start();
+        store.put("events/e1", event("Jazz night"));
+        events.findById("e1");
+
+        store.failListeners(FirestoreException.forServerRejection(Status.UNAVAILABLE, "stream closed"));
+        int before = store.roundTrips();
+        assertThat(events.findById("e1").getTitle()).isEqualTo("Jazz night");
+        store.put("events/e1", event("Sold out"));
+        assertThat(events.findById("e1").getTitle()).isEqualTo("Sold out");
+        assertThat(store.roundTrips() - before).isEqualTo(2);
+
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        boolean cached = false;
+        while (!cached && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            events.findById("e1");
+            int reads = store.roundTrips();
+            events.findById("e1");
+            cached = store.roundTrips() == reads;
+        }
+        assertThat(cached).isTrue();
+        store.put("events/e1", event("Cancelled"));
+        assertThat(events.findById("e1").getTitle()).isEqualTo("Cancelled");
+        listener.stop();
+    }
+
+    private Event event(String title) {
+        Event event = new Event();
+        event.setTitle(title);
+        return event;
+    }
+}
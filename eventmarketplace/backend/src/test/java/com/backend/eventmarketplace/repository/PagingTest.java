@@ -0,0 +1,84 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.dto.Page;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PagingTest {
+
+    private final InMemoryFirestore store = new InMemoryFirestore();
+    private final BookingRepository bookings = new BookingRepository(store.firestore());
+
+    @Test
+    void userBookingsPageNewestFirstAtAFlatCostPerPage() throws Exception {
+        // Pairs of bookings share a date, so the id has to break ties in the cursor
+        for (int i = 0; i < 45; i++) {
+            booking(String.format("b%02d", i), "u1", Instant.ofEpochSecond(i / 2));
+            booking(String.format("x%02d", i), "u2", Instant.ofEpochSecond(i));
+        }
+
+        List<Booking> seen = new ArrayList<>();
+        List<Integer> reads = new ArrayList<>();
+        String token = null;
+        do {
+            int before = store.documentsRead();
+            Page<Booking> page = bookings.findByUserIdPageAsync("u1", 20, token).get();
+            reads.add(store.documentsRead() - before);
+            seen.addAll(page.getItems());
+            token = page.getNextPageToken();
+        } while (token != null);
+
+        assertThat(seen).hasSize(45).extracting(Booking::getUserId).containsOnly("u1");
+        assertThat(seen).extracting(Booking::getId).doesNotHaveDuplicates();
+        assertThat(seen).isSortedAccordingTo((a, b) -> b.getBookingDate().compareTo(a.getBookingDate()));
+        // a page plus the one document that tells whether another follows
+        assertThat(reads).containsExactly(21, 21, 5);
+    }
+
+    @Test
+    void pageSizeIsCappedAndBadTokensAreRejected() throws Exception {
+        for (int i = 0; i < PageTokens.MAX_PAGE_SIZE + 5; i++) {
+            booking(String.format("b%03d", i), "u1", Instant.ofEpochSecond(i));
+        }
+
+        Page<Booking> page = bookings.findPageAsync(10_000, null).get();
+        assertThat(page.getItems()).hasSize(PageTokens.MAX_PAGE_SIZE);
+        assertThat(bookings.findPageAsync(null, page.getNextPageToken()).get().getItems())
+                .extracting(Booking::getId)
+                .containsExactly("b100", "b101", "b102", "b103", "b104");
+
+        assertThatThrownBy(() -> bookings.findPageAsync(10, "not a token").get())
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseMessage("Invalid page token");
+    }
+
+    @Test
+    void unpagedListsStopAtTheCapWithATokenForTheRest() throws Exception {
+        for (int i = 0; i < PageTokens.MAX_UNPAGED_ITEMS + 5; i++) {
+            booking(String.format("b%04d", i), "u1", Instant.ofEpochSecond(i));
+        }
+
+        Page<Booking> first = bookings.findFirstAsync(PageTokens.MAX_UNPAGED_ITEMS).get();
+        assertThat(first.getItems()).hasSize(PageTokens.MAX_UNPAGED_ITEMS);
+        // The paged endpoint carries on from the token
+        assertThat(bookings.findPageAsync(null, first.getNextPageToken()).get().getItems())
+                .extracting(Booking::getId)
+                .containsExactly("b1000", "b1001", "b1002", "b1003", "b1004");
+    }
+
+    private void booking(String id, String userId, Instant bookingDate) {
+        Booking booking = new Booking();
+        booking.setUserId(userId);
+        booking.setBookingDate(bookingDate);
+        store.put("bookings/" + id, booking);
+    }
+}
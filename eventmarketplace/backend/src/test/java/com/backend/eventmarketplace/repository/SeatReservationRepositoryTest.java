@@ -0,0 +1,162 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.dto.BookingResponse;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.EventCounters;
+import com.backend.eventmarketplace.model.Payment;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SeatReservationRepositoryTest {
+
+    private static final int CAPACITY = 50;
+
+    private InMemoryFirestore store;
+    private EventCounterRepository counters;
+    private SeatReservationRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryFirestore();
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
+        taskExecutor.setVirtualThreads(true);
+        counters = new EventCounterRepository(store.firestore(), 4);
+        repository = new SeatReservationRepository(store.firestore(), counters,
+                new RollupRepository(store.firestore(), 4), new OutboxRepository(store.firestore(), taskExecutor),
+                taskExecutor);
+
+        Event event = new Event();
+        event.setId("e1");
+        event.setTitle("Flash sale");
+        event.setTicketPrice(10.0);
+        event.setCapacity(CAPACITY);
+        event.setAvailableSeats(CAPACITY);
+        event.setTotalBookings(0);
+        event.setTotalRevenue(0.0);
+        event.setBookingEnabled(true);
+        store.put("events/e1", event);
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        int requests = 400;
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        AtomicInteger aborted = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    repository.reserve("e1", 1, this::draft);
+                    succeeded.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    if ("Not enough seats available".equals(e.getMessage())) {
+                        soldOut.incrementAndGet();
+                    } else {
+                        aborted.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        EventCounters totals = counters.findByEventId("e1");
+        List<Booking> bookings = store.list("bookings", Booking.class);
+        List<Payment> payments = store.list("payments", Payment.class);
+
+        assertThat(succeeded.get() + soldOut.get() + aborted.get()).isEqualTo(requests);
+        assertThat(totals.getAvailableSeats()).isZero();
+        assertThat(bookings).hasSize(CAPACITY).hasSize(succeeded.get());
+        assertThat(payments).hasSize(CAPACITY);
+        assertThat(totals.getTotalBookings()).isEqualTo(CAPACITY);
+        assertThat(totals.getTotalRevenue()).isEqualTo(CAPACITY * 10.0);
+        assertThat(store.list("events/e1/counter_shards", Object.class)).hasSize(4);
+    }
+
+    @Test
+    void drawsSeatsAcrossShardsAndRejectsOverflow() throws Exception {
+        // 49 seats cannot come from a single 13-seat shard
+        repository.reserve("e1", CAPACITY - 1, this::draft);
+
+        assertThatThrownBy(() -> repository.reserve("e1", 2, this::draft))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Not enough seats available");
+        assertThat(counters.findByEventId("e1").getAvailableSeats()).isEqualTo(1);
+        assertThat(store.list("bookings", Booking.class)).hasSize(1);
+    }
+
+    @Test
+    void shardsThatExistAreNeverReseededAndUnseededReleasesGoToTheEvent() throws Exception {
+        UnitOfWorkFactory units = new UnitOfWorkFactory(store.firestore(), EntityCaches.none());
+        // Before any shard exists the event document holds the counts, so the release goes there
+        units.inTransaction((transaction, work) -> {
+            counters.release(transaction, work, "e1", 5, 50.0);
+            return null;
+        });
+        assertThat(store.list("events/e1/counter_shards", Object.class)).isEmpty();
+        Event event = store.get("events/e1", Event.class);
+        assertThat(event.getAvailableSeats()).isEqualTo(CAPACITY + 5);
+        assertThat(event.getTotalBookings()).isEqualTo(-5);
+
+        // Only one shard exists, holding the event's counts; the others must start empty
+        store.put("events/e1/counter_shards/0", Map.of("eventId", "e1", "availableSeats", 20L,
+                "totalBookings", 30L, "totalRevenue", 300.0));
+        for (int i = 0; i < 12; i++) {
+            repository.reserve("e1", 1, this::draft);
+        }
+        EventCounters totals = counters.findByEventId("e1");
+        assertThat(totals.getAvailableSeats()).isEqualTo(8);
+        assertThat(totals.getTotalBookings()).isEqualTo(42);
+        assertThat(totals.getTotalRevenue()).isEqualTo(420.0);
+        assertThat(store.list("events/e1/counter_shards", Object.class)).hasSize(4);
+
+        units.inTransaction((transaction, work) -> {
+            counters.release(transaction, work, "e1", 2, 20.0);
+            return null;
+        });
+        assertThat(counters.findByEventId("e1").getAvailableSeats()).isEqualTo(10);
+        assertThat(store.get("events/e1", Event.class).getAvailableSeats()).isEqualTo(CAPACITY + 5);
+
+        UnitOfWork work = units.begin();
+        counters.delete(work, event);
+        work.commit();
+        assertThat(store.list("events/e1/counter_shards", Object.class)).isEmpty();
+        assertThat(counters.findAll()).isEmpty();
+    }
+
+    private BookingResponse draft(Event event, String bookingId, String paymentId) {
+        Booking booking = new Booking();
+        booking.setId(bookingId);
+        booking.setEventId(event.getId());
+        booking.setNumberOfSeats(1);
+        booking.setTotalPrice(event.getTicketPrice());
+        booking.setPaymentId(paymentId);
+
+        Payment payment = new Payment();
+        payment.setId(paymentId);
+        payment.setBookingId(bookingId);
+        payment.setAmount(event.getTicketPrice());
+        return new BookingResponse(booking, payment, "Booking successful");
+    }
+}
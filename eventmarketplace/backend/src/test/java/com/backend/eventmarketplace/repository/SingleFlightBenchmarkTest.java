@@ -0,0 +1,77 @@
+package com.backend.eventmarketplace.repository;
+
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Firestore RPCs for N concurrent readers of one hot event, with and without
+ * single-flight coalescing. Every RPC against the stand-in takes {@link #RTT_MILLIS}.
+ */
+@Tag("benchmark")
+class SingleFlightBenchmarkTest {
+
+    private static final long RTT_MILLIS = 20;
+
+    @Test
+    void backendReadsStayFlatAsReadersGrow() throws Exception {
+        System.out.printf("%-8s %12s %12s%n", "readers", "direct RPCs", "coalesced");
+
+        for (int readers : new int[]{10, 100, 1000, 10_000}) {
+            InMemoryFirestore store = new InMemoryFirestore();
+            Event event = new Event();
+            event.setTitle("On sale now");
+            store.put("events/e1", event);
+            store.latency(RTT_MILLIS);
+
+            int direct = measure(store, readers, () ->
+                    store.firestore().collection("events").document("e1").get().get());
+
+            // near cache off, so every read reaches the single-flight layer
+            EventRepository events = new EventRepository(store.firestore(),
+                    new EntityCaches(List.of(), 0, 0, 100, new StandardEnvironment()));
+            int coalesced = measure(store, readers, () ->
+                    assertThat(events.findById("e1").getTitle()).isEqualTo("On sale now"));
+
+            System.out.printf("%-8d %12d %12d%n", readers, direct, coalesced);
+            assertThat(direct).isEqualTo(readers);
+            assertThat(coalesced).isLessThanOrEqualTo(5);
+        }
+    }
+
+    private interface Read {
+        void run() throws Exception;
+    }
+
+    private int measure(InMemoryFirestore store, int readers, Read read) throws Exception {
+        int before = store.roundTrips();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> reads = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < readers; i++) {
+                reads.add(executor.submit(() -> {
+                    start.await();
+                    read.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            // Fails the benchmark when a read failed or its assertion did not hold
+            for (Future<Void> future : reads) {
+                future.get();
+            }
+        }
+        return store.roundTrips() - before;
+    }
+}
@@ -0,0 +1,153 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.BookingResponse;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.Payment;
+import com.backend.eventmarketplace.repository.BookingRepository;
+import com.backend.eventmarketplace.repository.EventCounterRepository;
+import com.backend.eventmarketplace.repository.OutboxRepository;
+import com.backend.eventmarketplace.repository.RollupRepository;
+import com.backend.eventmarketplace.repository.SeatReservationRepository;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookingReferencesTest {
+
+    private static final String SYMBOLS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+
+    @Test
+    void concurrentReferencesAreUniqueAndOrderedPerThread() throws Exception {
+        BookingReferences references = new BookingReferences(7);
+        int threads = 8;
+        int perThread = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<String> issued = new ArrayList<>(perThread);
+                for (int i = 0; i < perThread; i++) {
+                    issued.add(references.next());
+                }
+                return issued;
+            }));
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        Set<String> all = new HashSet<>();
+        for (Future<List<String>> future : futures) {
+            List<String> issued = future.get(60, TimeUnit.SECONDS);
+            assertThat(issued).isSorted();
+            all.addAll(issued);
+        }
+        long elapsed = System.nanoTime() - began;
+        executor.shutdown();
+        System.out.printf("%d references on %d threads: %.0f ns each%n", all.size(), threads,
+                (double) elapsed / all.size());
+
+        assertThat(all).hasSize(threads * perThread);
+        assertThat(all).allSatisfy(reference -> {
+            assertThat(reference).hasSize(17).startsWith(BookingReferences.PREFIX);
+            assertThat(BookingReferences.canonical(reference)).isEqualTo(reference);
+        });
+    }
+
+    @Test
+    void aStoppedOrBackwardClockStillIssuesIncreasingReferences() {
+        AtomicLong now = new AtomicLong(BookingReferences.EPOCH_MILLIS + 1_000_000);
+        BookingReferences one = new BookingReferences(1, now::get);
+        BookingReferences two = new BookingReferences(2, now::get);
+
+        // More than a millisecond's worth of sequence numbers borrows the next millisecond
+        List<String> issued = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            issued.add(one.next());
+        }
+        now.addAndGet(-60_000);
+        issued.add(one.next());
+        assertThat(issued).isSorted().doesNotHaveDuplicates();
+
+        Set<String> other = new HashSet<>();
+        for (int i = 0; i < 5_000; i++) {
+            other.add(two.next());
+        }
+        assertThat(other).doesNotContainAnyElementsOf(issued);
+        assertThatThrownBy(() -> new BookingReferences(BookingReferences.MAX_NODE_ID + 1, now::get))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void theCheckSymbolCatchesEveryTypoAndSwapOfOneReference() {
+        String reference = new BookingReferences(3).next();
+        String body = reference.substring(BookingReferences.PREFIX.length());
+
+        assertThat(BookingReferences.canonical(body.toLowerCase(Locale.ROOT))).isEqualTo(reference);
+        assertThat(BookingReferences.canonical(" bk-" + body.substring(0, 7) + "-" + body.substring(7)))
+                .isEqualTo(reference);
+        assertThat(BookingReferences.canonical(body.replace('0', 'O').replace('1', 'I'))).isEqualTo(reference);
+
+        for (int i = 0; i < body.length() - 1; i++) {
+            for (char symbol : SYMBOLS.toCharArray()) {
+                if (symbol != body.charAt(i)) {
+                    String typo = body.substring(0, i) + symbol + body.substring(i + 1);
+                    assertThatThrownBy(() -> BookingReferences.canonical(typo)).as(typo)
+                            .isInstanceOf(IllegalArgumentException.class);
+                }
+            }
+            if (body.charAt(i) != body.charAt(i + 1) && i + 1 < body.length() - 1) {
+                String swap = body.substring(0, i) + body.charAt(i + 1) + body.charAt(i) + body.substring(i + 2);
+                assertThatThrownBy(() -> BookingReferences.canonical(swap)).as(swap)
+                        .isInstanceOf(IllegalArgumentException.class);
+            }
+        }
+        assertThatThrownBy(() -> BookingReferences.canonical("BK-2026-1A2B3C4D"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BookingReferences.canonical(null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void bookingsAreFoundByReferenceThroughTheIndex() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
+        SeatReservationRepository reservations = new SeatReservationRepository(store.firestore(),
+                new EventCounterRepository(store.firestore(), 4), new RollupRepository(store.firestore(), 4),
+                new OutboxRepository(store.firestore(), taskExecutor), taskExecutor);
+        BookingRepository bookings = new BookingRepository(store.firestore());
+        BookingReferences references = new BookingReferences(0);
+        Event event = new Event();
+        event.setTicketPrice(10.0);
+        event.setCapacity(10);
+        event.setAvailableSeats(10);
+        event.setBookingEnabled(true);
+        store.put("events/e1", event);
+
+        BookingResponse response = reservations.reserve("e1", 1, (e, bookingId, paymentId) -> {
+            Booking booking = new Booking();
+            booking.setId(bookingId);
+            booking.setReferenceNumber(references.next());
+            booking.setEventId(e.getId());
+            booking.setTotalPrice(e.getTicketPrice());
+            Payment payment = new Payment();
+            payment.setId(paymentId);
+            return new BookingResponse(booking, payment, "Booking successful");
+        });
+        String reference = response.getBooking().getReferenceNumber();
+
+        int reads = store.documentsRead();
+        Booking found = bookings.findByReferenceAsync(BookingReferences.canonical(reference.toLowerCase(Locale.ROOT)))
+                .get();
+        assertThat(found.getId()).isEqualTo(response.getBooking().getId());
+        assertThat(store.documentsRead() - reads).isEqualTo(2);
+        assertThat(bookings.findByReferenceAsync(references.next()).get()).isNull();
+    }
+}
@@ -0,0 +1,131 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.DashboardStats;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.repository.BookingRepository;
+import com.backend.eventmarketplace.repository.EntityCaches;
+import com.backend.eventmarketplace.repository.EventCounterRepository;
+import com.backend.eventmarketplace.repository.EventRepository;
+import com.backend.eventmarketplace.repository.RollupRepository;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * How the organisation dashboard scales with the number of events and bookings.
+ * The stand-in completes every future on the calling thread, so the thread's
+ * allocation counter covers the whole request.
+ */
+@Tag("benchmark")
+class DashboardBenchmarkTest {
+
+    private static final int BOOKINGS_PER_EVENT = 10;
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    @Test
+    void recentBookingsCostStaysFlatAsBookingsGrow() throws Exception {
+        System.out.printf("%-8s %-10s %-9s %6s %10s %10s %12s%n",
+                "events", "bookings", "path", "RPCs", "docs read", "ms", "KB alloc");
+
+        for (int events : new int[]{10, 50, 250}) {
+            InMemoryFirestore store = seed(events);
+            BookingRepository bookings = new BookingRepository(store.firestore());
+            DashboardService dashboard = dashboard(store, new EventCatalogService(store.firestore(), JSON, false));
+            EventCatalogService catalog = new EventCatalogService(store.firestore(), JSON, true);
+            catalog.start();
+            DashboardService replicated = dashboard(store, catalog);
+
+            Sample fanOut = sample(store, () -> CompletableFuture.allOf(
+                    store.list("events", Event.class).stream()
+                            .map(event -> bookings.findByEventIdAsync(event.getId()))
+                            .toArray(CompletableFuture[]::new)).get());
+            Sample bounded = sample(store, dashboard::getOrganizationDashboard);
+            Sample cached = sample(store, replicated::getOrganizationDashboard);
+            catalog.stop();
+            print(events, "fan-out", fanOut);
+            print(events, "bounded", bounded);
+            print(events, "catalog", cached);
+
+            // events, counter shards, one limited bookings query, rollup totals, hourly and daily buckets
+            assertThat(bounded.roundTrips()).isEqualTo(6);
+            // only the ten newest bookings are read, however many exist
+            assertThat(bounded.documentsRead()).isEqualTo(events + 10);
+            assertThat(fanOut.documentsRead()).isEqualTo(events * BOOKINGS_PER_EVENT);
+            // with the event catalog replicated, nothing depends on the number of events
+            assertThat(cached.roundTrips()).isEqualTo(4);
+            assertThat(cached.documentsRead()).isEqualTo(10);
+        }
+
+        InMemoryFirestore store = seed(50);
+        DashboardStats stats = dashboard(store, new EventCatalogService(store.firestore(), JSON, false))
+                .getOrganizationDashboard();
+        assertThat(stats.getRecentBookings()).hasSize(10);
+        assertThat(stats.getRecentBookings().getFirst().getBookingDate())
+                .isEqualTo(Instant.ofEpochSecond(50L * BOOKINGS_PER_EVENT - 1));
+        assertThat(stats.getRecentBookings()).isSortedAccordingTo(
+                (a, b) -> b.getBookingDate().compareTo(a.getBookingDate()));
+    }
+
+    private DashboardService dashboard(InMemoryFirestore store, EventCatalogService catalog) {
+        return new DashboardService(new BookingRepository(store.firestore()),
+                new EventRepository(store.firestore(), EntityCaches.none()),
+                new EventCounterRepository(store.firestore(), 4),
+                new RollupRepository(store.firestore(), 4), catalog);
+    }
+
+    private InMemoryFirestore seed(int events) {
+        InMemoryFirestore store = new InMemoryFirestore();
+        long clock = 0;
+        for (int e = 0; e < events; e++) {
+            Event event = new Event();
+            event.setId("e" + e);
+            event.setTitle("Event " + e);
+            event.setCapacity(100);
+            event.setTotalBookings(BOOKINGS_PER_EVENT);
+            event.setTotalRevenue(BOOKINGS_PER_EVENT * 10.0);
+            store.put("events/e" + e, event);
+        }
+        // Interleave events so the newest bookings are spread across them
+        for (int b = 0; b < BOOKINGS_PER_EVENT; b++) {
+            for (int e = 0; e < events; e++) {
+                Booking booking = new Booking();
+                booking.setEventId("e" + e);
+                booking.setBookingDate(Instant.ofEpochSecond(clock++));
+                store.put("bookings/b" + e + "_" + b, booking);
+            }
+        }
+        return store;
+    }
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    private record Sample(int roundTrips, int documentsRead, double millis, long allocatedBytes) {
+    }
+
+    private Sample sample(InMemoryFirestore store, Body body) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        body.run();
+        int roundTrips = store.roundTrips();
+        int documentsRead = store.documentsRead();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        body.run();
+        return new Sample(store.roundTrips() - roundTrips, store.documentsRead() - documentsRead,
+                (System.nanoTime() - start) / 1e6, threads.getCurrentThreadAllocatedBytes() - allocated);
+    }
+
+    private void print(int events, String path, Sample sample) {
+        System.out.printf("%-8d %-10d %-9s %6d %10d %10.1f %12d%n", events, events * BOOKINGS_PER_EVENT, path,
+                sample.roundTrips(), sample.documentsRead(), sample.millis(), sample.allocatedBytes() / 1024);
+    }
+}
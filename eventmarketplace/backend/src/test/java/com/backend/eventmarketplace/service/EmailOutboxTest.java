@@ -0,0 +1,139 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.BookingResponse;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.OutboxMessage;
+import com.backend.eventmarketplace.model.Payment;
+import com.backend.eventmarketplace.repository.*;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import com.backend.eventmarketplace.support.LocalSmtpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailOutboxTest {
+
+    private final InMemoryFirestore store = new InMemoryFirestore();
+    private final OutboxRepository outbox = new OutboxRepository(store.firestore(), new SimpleAsyncTaskExecutor());
+    private final UnitOfWorkFactory unitOfWorkFactory = new UnitOfWorkFactory(store.firestore(), EntityCaches.none());
+    private final EmailService emails = new EmailService(outbox);
+    private final LocalSmtpServer smtp = new LocalSmtpServer();
+
+    EmailOutboxTest() throws Exception {
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        smtp.close();
+    }
+
+    @Test
+    void confirmationIsQueuedOnlyWhenTheBookingCommits() throws Exception {
+        Event event = new Event();
+        event.setTicketPrice(10.0);
+        event.setCapacity(2);
+        event.setAvailableSeats(2);
+        event.setBookingEnabled(true);
+        store.put("events/e1", event);
+        SeatReservationRepository reservations = new SeatReservationRepository(store.firestore(),
+                new EventCounterRepository(store.firestore(), 4),
+                new RollupRepository(store.firestore(), 4), outbox, new SimpleAsyncTaskExecutor());
+        Function<Booking, OutboxMessage> confirmation = booking ->
+                emails.confirmationEmail("ada@example.com", "Ada", booking.getReferenceNumber());
+
+        reservations.reserve("e1", 2, (e, bookingId, paymentId) -> booking(bookingId), confirmation);
+        assertThatThrownBy(() -> reservations.reserve("e1", 1, (e, bookingId, paymentId) -> booking(bookingId),
+                confirmation)).hasMessage("Not enough seats available");
+
+        assertThat(store.list("email_outbox", OutboxMessage.class)).singleElement()
+                .satisfies(message -> {
+                    assertThat(message.getStatus()).isEqualTo(OutboxMessage.OutboxStatus.PENDING);
+                    assertThat(message.getBody()).contains("BK-1");
+                });
+    }
+
+    @Test
+    void backlogDrainsInBatchesOfOneConnectionEach() throws Exception {
+        queue(12, i -> "guest" + i + "@example.com");
+
+        dispatcher(5, 3).poll();
+
+        assertThat(smtp.received()).hasSize(12);
+        assertThat(smtp.received().getFirst().data()).contains("Subject: Welcome to Event Marketplace");
+        assertThat(smtp.connections()).isEqualTo(3);
+        assertThat(statuses()).containsOnlyKeys(OutboxMessage.OutboxStatus.SENT);
+    }
+
+    @Test
+    void failedMessagesAreRetriedThenDeadLettered() throws Exception {
+        queue(1, i -> "ok@example.com");
+        queue(1, i -> "flaky@example.com");
+        queue(1, i -> "bounce@example.com");
+        smtp.reject("flaky@example.com");
+        smtp.reject("bounce@example.com");
+        EmailOutboxDispatcher dispatcher = dispatcher(10, 3);
+
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(3);
+        assertThat(message("flaky@example.com").getAttempts()).isEqualTo(1);
+        assertThat(message("flaky@example.com").getLastError()).contains("550");
+
+        smtp.accept("flaky@example.com");
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(2);
+        assertThat(dispatcher.dispatchBatch()).isEqualTo(1);
+        assertThat(dispatcher.dispatchBatch()).isZero();
+
+        assertThat(message("ok@example.com").getStatus()).isEqualTo(OutboxMessage.OutboxStatus.SENT);
+        assertThat(message("flaky@example.com").getStatus()).isEqualTo(OutboxMessage.OutboxStatus.SENT);
+        assertThat(message("flaky@example.com").getAttempts()).isEqualTo(2);
+        assertThat(message("bounce@example.com").getStatus()).isEqualTo(OutboxMessage.OutboxStatus.DEAD);
+        assertThat(message("bounce@example.com").getAttempts()).isEqualTo(3);
+        assertThat(smtp.received()).extracting(received -> received.recipients().getFirst())
+                .containsExactly("ok@example.com", "flaky@example.com");
+    }
+
+    private EmailOutboxDispatcher dispatcher(int batchSize, int maxAttempts) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtp.port());
+        // No backoff, so retries are due straight away
+        return new EmailOutboxDispatcher(outbox, unitOfWorkFactory, mailSender, "noreply@eventmarketplace.test",
+                true, batchSize, maxAttempts, 0, 60, 0);
+    }
+
+    private void queue(int count, java.util.function.IntFunction<String> address) throws Exception {
+        UnitOfWork work = unitOfWorkFactory.begin();
+        for (int i = 0; i < count; i++) {
+            emails.queueWelcomeEmail(work, address.apply(i), "Guest " + i);
+        }
+        work.commit();
+    }
+
+    private Map<OutboxMessage.OutboxStatus, Long> statuses() {
+        return store.list("email_outbox", OutboxMessage.class).stream()
+                .collect(Collectors.groupingBy(OutboxMessage::getStatus, Collectors.counting()));
+    }
+
+    private OutboxMessage message(String to) {
+        return store.list("email_outbox", OutboxMessage.class).stream()
+                .filter(message -> message.getTo().equals(to))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static BookingResponse booking(String bookingId) {
+        Booking booking = new Booking();
+        booking.setId(bookingId);
+        booking.setReferenceNumber("BK-1");
+        booking.setTotalPrice(10.0);
+        return new BookingResponse(booking, new Payment(), "Booking successful");
+    }
+}
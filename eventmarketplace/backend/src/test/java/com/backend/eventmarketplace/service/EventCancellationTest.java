@@ -0,0 +1,215 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.BookingResponse;
+import com.backend.eventmarketplace.model.*;
+import com.backend.eventmarketplace.repository.*;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventCancellationTest {
+
+    private static final int CAPACITY = 1_000;
+    private static final int BOOKINGS = 600;
+    private static final int USERS = 60;
+    private static final int PAGE_SIZE = 64;
+
+    private final InMemoryFirestore store = new InMemoryFirestore();
+    private final SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
+    private final EventCounterRepository counters = new EventCounterRepository(store.firestore(), 4);
+    private final RollupRepository rollups = new RollupRepository(store.firestore(), 4);
+    private final OutboxRepository outbox = new OutboxRepository(store.firestore(), taskExecutor);
+    private final EventCancellationRepository jobs = new EventCancellationRepository(store.firestore(), taskExecutor);
+    private Event event;
+
+    @BeforeEach
+    void bookEvent() throws Exception {
+        event = new Event();
+        event.setId("e1");
+        event.setTitle("Harbour concert");
+        event.setEventType(Event.EventType.PUBLIC_EVENT);
+        event.setTicketPrice(10.0);
+        event.setCapacity(CAPACITY);
+        event.setAvailableSeats(CAPACITY);
+        event.setBookingEnabled(true);
+        store.put("events/e1", event);
+
+        SeatReservationRepository reservations = new SeatReservationRepository(store.firestore(), counters, rollups,
+                outbox, taskExecutor);
+        AtomicInteger next = new AtomicInteger();
+        for (int i = 0; i < BOOKINGS; i++) {
+            reservations.reserve("e1", 1, (e, bookingId, paymentId) -> draft(e, bookingId, paymentId,
+                    "u" + next.getAndIncrement() % USERS));
+        }
+        // Already cancelled by the attendee, so left alone
+        Booking canceled = new Booking();
+        canceled.setEventId("e1");
+        canceled.setUserId("u0");
+        canceled.setUserEmail("u0@example.com");
+        canceled.setStatus(Booking.BookingStatus.CANCELED);
+        store.put("bookings/zz-canceled", canceled);
+    }
+
+    @Test
+    void cancelsEveryBookingInBoundedBatches() throws Exception {
+        EventCancellation job = service(bookingRepository()).run(
+                jobs.start(EventCancellation.start(event, EventCancellation.Reason.CANCELED, Instant.now()),
+                        Duration.ofMinutes(2)));
+
+        assertThat(job.getStatus()).isEqualTo(EventCancellation.Status.COMPLETED);
+        assertThat(job.getBookingsCanceled()).isEqualTo(BOOKINGS);
+        assertThat(job.getSeatsReleased()).isEqualTo(BOOKINGS);
+        assertThat(job.getNotificationsQueued()).isEqualTo(USERS);
+        assertAllCanceledOnce();
+    }
+
+    @Test
+    void resumesFromTheLastCheckpointAfterAFailure() throws Exception {
+        // Fails on the third page, after two batches have committed
+        AtomicInteger pages = new AtomicInteger();
+        BookingRepository failing = new BookingRepository(store.firestore()) {
+            @Override
+            public List<Booking> findActiveByEventId(String eventId, String afterUserId, String afterId, int limit)
+                    throws ExecutionException, InterruptedException {
+                if (pages.incrementAndGet() == 3) {
+                    throw new IllegalStateException("Deadline exceeded");
+                }
+                return super.findActiveByEventId(eventId, afterUserId, afterId, limit);
+            }
+        };
+        EventCancellation started = jobs.start(
+                EventCancellation.start(event, EventCancellation.Reason.CANCELED, Instant.now()), Duration.ZERO);
+        assertThatThrownBy(() -> service(failing).run(started)).hasMessage("Deadline exceeded");
+
+        EventCancellation checkpoint = store.get("event_cancellations/e1", EventCancellation.class);
+        assertThat(checkpoint.getStatus()).isEqualTo(EventCancellation.Status.RUNNING);
+        assertThat(checkpoint.getBookingsCanceled()).isEqualTo(2 * PAGE_SIZE);
+        // Users sort as u0, u1, u10..u19, u2: the second batch ended part way through u2
+        assertThat(checkpoint.getCursorUserId()).isEqualTo("u2");
+
+        service(bookingRepository()).resumeStale();
+
+        assertThat(store.get("event_cancellations/e1", EventCancellation.class).getStatus())
+                .isEqualTo(EventCancellation.Status.COMPLETED);
+        assertAllCanceledOnce();
+    }
+
+    @Test
+    void aRunThatLostItsLeaseStopsWithoutRepeatingWork() throws Exception {
+        EventCancellation first = jobs.start(
+                EventCancellation.start(event, EventCancellation.Reason.CANCELED, Instant.now()), Duration.ZERO);
+        // The first run's lease has run out, so another worker claims the job
+        EventCancellation second = jobs.claim("e1", Instant.now(), Duration.ofMinutes(2));
+        assertThat(second).isNotNull();
+
+        assertThatThrownBy(() -> service(bookingRepository()).run(first)).hasMessageContaining("Lost the lease");
+        assertThat(store.list("bookings", Booking.class))
+                .filteredOn(booking -> booking.getStatus() == Booking.BookingStatus.CANCELED).hasSize(1);
+
+        service(bookingRepository()).run(second);
+        assertAllCanceledOnce();
+    }
+
+    @Test
+    void bookingsCanceledWhileABatchIsInFlightAreNotCountedAgain() throws Exception {
+        AtomicInteger pages = new AtomicInteger();
+        BookingRepository racing = new BookingRepository(store.firestore()) {
+            @Override
+            public List<Booking> findActiveByEventId(String eventId, String afterUserId, String afterId, int limit)
+                    throws ExecutionException, InterruptedException {
+                List<Booking> page = super.findActiveByEventId(eventId, afterUserId, afterId, limit);
+                // The attendee cancels one booking between the page read and its batch
+                if (pages.incrementAndGet() == 1) {
+                    Booking booking = store.get("bookings/" + page.getFirst().getId(), Booking.class);
+                    booking.setStatus(Booking.BookingStatus.CANCELED);
+                    store.put("bookings/" + booking.getId(), booking);
+                }
+                return page;
+            }
+        };
+
+        EventCancellation job = service(racing).run(
+                jobs.start(EventCancellation.start(event, EventCancellation.Reason.CANCELED, Instant.now()),
+                        Duration.ofMinutes(2)));
+
+        assertThat(job.getBookingsCanceled()).isEqualTo(BOOKINGS - 1);
+        assertThat(job.getSeatsReleased()).isEqualTo(BOOKINGS - 1);
+        assertThat(counters.findByEventId("e1").getAvailableSeats()).isEqualTo(CAPACITY - 1);
+    }
+
+    @Test
+    void aCanceledEventTakesNoBookingsEvenWithBookingEnabled() {
+        event.setStatus(Event.EventStatus.CANCELED);
+        event.setBookingEnabled(true);
+        store.put("events/e1", event);
+        SeatReservationRepository reservations = new SeatReservationRepository(store.firestore(), counters, rollups,
+                outbox, taskExecutor);
+
+        assertThatThrownBy(() -> reservations.reserve("e1", 1, (e, bookingId, paymentId) ->
+                draft(e, bookingId, paymentId, "late"))).hasMessage("Event not available for booking");
+        assertThat(store.list("bookings", Booking.class)).hasSize(BOOKINGS + 1);
+    }
+
+    private void assertAllCanceledOnce() throws Exception {
+        assertThat(store.list("bookings", Booking.class)).hasSize(BOOKINGS + 1)
+                .allMatch(booking -> booking.getStatus() == Booking.BookingStatus.CANCELED);
+        assertThat(store.list("payments", Payment.class)).hasSize(BOOKINGS)
+                .allMatch(payment -> payment.getStatus() == Payment.PaymentStatus.REFUNDED);
+
+        EventCounters totals = counters.findByEventId("e1");
+        assertThat(totals.getAvailableSeats()).isEqualTo(CAPACITY);
+        assertThat(totals.getTotalBookings()).isZero();
+        assertThat(totals.getTotalRevenue()).isZero();
+
+        Rollup global = rollups.findByKeysAsync(List.of(RollupRepository.GLOBAL)).get().get(RollupRepository.GLOBAL);
+        assertThat(global.getBookings()).isZero();
+        assertThat(global.getCancellations()).isEqualTo(BOOKINGS);
+
+        // One email per attendee, however their bookings fell across batches
+        assertThat(store.list("email_outbox", OutboxMessage.class)).hasSize(USERS)
+                .extracting(OutboxMessage::getTo).doesNotHaveDuplicates();
+    }
+
+    private EventCancellationService service(BookingRepository bookingRepository) {
+        return new EventCancellationService(bookingRepository, new PaymentService(new PaymentRepository(store.firestore())),
+                counters, rollups, new EmailService(outbox), jobs,
+                new UnitOfWorkFactory(store.firestore(), EntityCaches.none()), UserBookingsCache.none(), taskExecutor,
+                PAGE_SIZE, 0, 0);
+    }
+
+    private BookingRepository bookingRepository() {
+        return new BookingRepository(store.firestore());
+    }
+
+    private static BookingResponse draft(Event event, String bookingId, String paymentId, String userId) {
+        Booking booking = new Booking();
+        booking.setId(bookingId);
+        booking.setEventId(event.getId());
+        booking.setUserId(userId);
+        booking.setUserName(userId);
+        booking.setUserEmail(userId + "@example.com");
+        booking.setEventType(event.getEventType());
+        booking.setNumberOfSeats(1);
+        booking.setTotalPrice(event.getTicketPrice());
+        booking.setStatus(Booking.BookingStatus.CONFIRMED);
+        booking.setBookingDate(Instant.now());
+        booking.setPaymentId(paymentId);
+
+        Payment payment = new Payment();
+        payment.setId(paymentId);
+        payment.setBookingId(bookingId);
+        payment.setAmount(event.getTicketPrice());
+        payment.setStatus(Payment.PaymentStatus.COMPLETED);
+        return new BookingResponse(booking, payment, "Booking successful");
+    }
+}
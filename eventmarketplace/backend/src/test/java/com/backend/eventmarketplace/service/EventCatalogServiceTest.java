@@ -0,0 +1,174 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.controller.EventController;
+import com.backend.eventmarketplace.dto.Page;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.repository.EntityCaches;
+import com.backend.eventmarketplace.repository.EventCounterRepository;
+import com.backend.eventmarketplace.repository.EventRepository;
+import com.backend.eventmarketplace.repository.PageTokens;
+import com.backend.eventmarketplace.repository.UnitOfWorkFactory;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import com.google.cloud.firestore.FirestoreException;
+import io.grpc.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventCatalogServiceTest {
+
+    private final InMemoryFirestore store = new InMemoryFirestore();
+    private final EventCatalogService catalog = new EventCatalogService(store.firestore(), JsonMapper.builder().build(), true, 10);
+
+    @BeforeEach
+    void setUp() {
+        store.put("events/e1", event("e1", "Jazz night"));
+        store.put("events/e1/counter_shards/0", Map.of("eventId", "e1", "availableSeats", 30L,
+                "totalBookings", 15L, "totalRevenue", 150.0));
+        store.put("events/e1/counter_shards/1", Map.of("eventId", "e1", "availableSeats", 40L,
+                "totalBookings", 15L, "totalRevenue", 150.0));
+        catalog.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalog.stop();
+    }
+
+    @Test
+    void listingFollowsTheCollectionWithoutReads() throws Exception {
+        int reads = store.roundTrips();
+        EventCatalogService.Listing first = catalog.listing().orElseThrow();
+
+        assertThat(catalog.events()).singleElement().satisfies(event -> {
+            assertThat(event.getAvailableSeats()).isEqualTo(70);
+            assertThat(event.getTotalBookings()).isEqualTo(30);
+        });
+        assertThat(new String(new GZIPInputStream(new ByteArrayInputStream(first.gzip())).readAllBytes()))
+                .isEqualTo(new String(first.json()))
+                .contains("Jazz night");
+        assertThat(catalog.listing().orElseThrow()).isSameAs(first);
+
+        store.put("events/e2", event("e2", "Open air"));
+        EventCatalogService.Listing second = catalog.listing().orElseThrow();
+        assertThat(second.etag()).isNotEqualTo(first.etag());
+        assertThat(new String(second.json())).contains("Open air");
+
+        store.firestore().collection("events").document("e1").delete().get();
+        assertThat(catalog.events()).extracting(Event::getId).containsExactly("e2");
+        // only the delete above went to the store
+        assertThat(store.roundTrips() - reads).isEqualTo(1);
+    }
+
+    @Test
+    void resubscribesAfterAListenerFails() throws Exception {
+        assertThat(catalog.isReady()).isTrue();
+
+        store.failListeners(FirestoreException.forServerRejection(Status.UNAVAILABLE, "stream closed"));
+        assertThat(catalog.isReady()).isFalse();
+        // Changed while nobody was listening, so only the resubscribe can tell
+        store.put("events/e2", event("e2", "Open air"));
+        store.firestore().collection("events").document("e1").delete().get();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!catalog.isReady() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(catalog.isReady()).isTrue();
+        assertThat(catalog.events()).extracting(Event::getId).containsExactly("e2");
+        assertThat(new String(catalog.listing().orElseThrow().json())).contains("Open air").doesNotContain("Jazz night");
+    }
+
+    @Test
+    void concurrentCallersNeverSeeAMissingListing() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<EventCatalogService.Listing>> listings = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                listings.add(executor.submit(() -> catalog.listing().orElseThrow()));
+            }
+            for (Future<EventCatalogService.Listing> listing : listings) {
+                assertThat(listing.get()).isNotNull();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void pagesComeFromTheSortedCatalogAndTheListingIsCapped() throws Exception {
+        Map<String, Event> more = new HashMap<>();
+        for (int i = 0; i < PageTokens.MAX_UNPAGED_ITEMS + 5; i++) {
+            more.put(String.format("events/x%04d", i), event(String.format("x%04d", i), "Event " + i));
+        }
+        store.putAll(more);
+        EventService events = new EventService(new EventRepository(store.firestore(), EntityCaches.none()),
+                new EventCounterRepository(store.firestore(), 4),
+                new UnitOfWorkFactory(store.firestore(), EntityCaches.none()), catalog, null, null, null);
+
+        int reads = store.roundTrips();
+        Page<Event> first = events.getEventsPageAsync(2, null).get();
+        assertThat(first.getItems()).extracting(Event::getId).containsExactly("e1", "x0000");
+        assertThat(first.getItems().getFirst().getAvailableSeats()).isEqualTo(70);
+        Page<Event> second = events.getEventsPageAsync(2, first.getNextPageToken()).get();
+        assertThat(second.getItems()).extracting(Event::getId).containsExactly("x0001", "x0002");
+        assertThat(store.roundTrips()).isEqualTo(reads);
+
+        Page<Event> unpaged = events.getAllEventsAsync().get();
+        assertThat(unpaged.getItems()).hasSize(PageTokens.MAX_UNPAGED_ITEMS);
+        EventCatalogService.Listing listing = catalog.listing().orElseThrow();
+        assertThat(listing.nextPageToken()).isEqualTo(unpaged.getNextPageToken()).isNotNull();
+        assertThat(events.getEventsPageAsync(100, listing.nextPageToken()).get().getItems())
+                .extracting(Event::getId)
+                .containsExactly("x0999", "x1000", "x1001", "x1002", "x1003", "x1004");
+    }
+
+    @Test
+    void controllerAnswersNotModifiedForCurrentETag() throws Exception {
+        EventController controller = new EventController(new EventService(
+                new EventRepository(store.firestore(), EntityCaches.none()),
+                new EventCounterRepository(store.firestore(), 4),
+                new UnitOfWorkFactory(store.firestore(), EntityCaches.none()), catalog, null, null, null), catalog, null, null);
+        String etag = catalog.listing().orElseThrow().etag();
+
+        ResponseEntity<?> gzip = controller.getAllEvents(null, "gzip, deflate", null, null).get();
+        assertThat(gzip.getHeaders().getFirst("Content-Encoding")).isEqualTo("gzip");
+        String gzipEtag = gzip.getHeaders().getETag();
+        assertThat(gzipEtag).isNotEqualTo(etag).startsWith("\"").endsWith("-gz\"");
+        ResponseEntity<?> plain = controller.getAllEvents(null, null, null, null).get();
+        assertThat(plain.getHeaders().getETag()).isEqualTo(etag);
+
+        ResponseEntity<?> notModified = controller.getAllEvents(gzipEtag, "gzip", null, null).get();
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getBody()).isNull();
+        assertThat(controller.getAllEvents(etag, null, null, null).get().getStatusCode())
+                .isEqualTo(HttpStatus.NOT_MODIFIED);
+        // A tag for the other encoding does not validate this one
+        assertThat(controller.getAllEvents(etag, "gzip", null, null).get().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(controller.getAllEvents(gzipEtag, null, null, null).get().getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private Event event(String id, String title) {
+        Event event = new Event();
+        event.setId(id);
+        event.setTitle(title);
+        event.setCapacity(100);
+        return event;
+    }
+}
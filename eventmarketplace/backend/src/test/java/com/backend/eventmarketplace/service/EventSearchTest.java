@@ -0,0 +1,178 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.EventSearchResults;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventSearchTest {
+
+    private static final Instant JUNE = Instant.parse("2026-06-01T20:00:00Z");
+
+    @Test
+    void ranksStemmedMatchesAndFollowsTheCatalog() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        store.put("events/e1", event("e1", "Harbour jazz concerts", "Late sets by the water", "Casablanca", 10.0, 0));
+        store.put("events/e2", event("e2", "Food market", "Street food and a small jazz concert", "Rabat", 0.0, 1));
+        store.put("events/e3", event("e3", "Wedding planning workshop", "Planners share what they learned", "Rabat", 25.0, 2));
+        store.put("events/e1/counter_shards/0", Map.of("eventId", "e1", "availableSeats", 12L,
+                "totalBookings", 8L, "totalRevenue", 80.0));
+        EventCatalogService catalog = new EventCatalogService(store.firestore(), JsonMapper.builder().build(), true);
+        EventSearchService search = new EventSearchService(catalog);
+        catalog.start();
+        search.start();
+
+        // The title match outranks the same words in a description
+        EventSearchResults concerts = search.search(query("Concert JAZZ"), 10, null);
+        assertThat(concerts.getItems()).extracting(Event::getId).containsExactly("e1", "e2");
+        assertThat(concerts.getTotal()).isEqualTo(2);
+        assertThat(concerts.getItems().getFirst().getTotalBookings()).isEqualTo(8);
+        assertThat(ids(search.search(query("weddings planned"), 10, null))).containsExactly("e3");
+        assertThat(ids(search.search(query("the and of"), 10, null))).isEmpty();
+
+        EventSearchIndex.Query free = new EventSearchIndex.Query("jazz", null, null, null, null, 0.0, null, null);
+        assertThat(ids(search.search(free, 10, null))).containsExactly("e2");
+        EventSearchIndex.Query rabatLater = new EventSearchIndex.Query(null, Event.EventType.PUBLIC_EVENT,
+                Event.EventStatus.ACTIVE, true, null, null, JUNE.plusSeconds(1), null);
+        assertThat(ids(search.search(rabatLater, 10, null))).containsExactly("e2", "e3");
+
+        // Walks every page without repeats
+        EventSearchResults first = search.search(query(null), 2, null);
+        assertThat(ids(first)).containsExactly("e1", "e2");
+        EventSearchResults second = search.search(query(null), 2, first.getNextPageToken());
+        assertThat(ids(second)).containsExactly("e3");
+        assertThat(second.getNextPageToken()).isNull();
+        assertThatThrownBy(() -> search.search(query(null), 2, "bad")).isInstanceOf(IllegalArgumentException.class);
+
+        store.put("events/e2", event("e2", "Food market", "Street food stalls", "Rabat", 0.0, 1));
+        store.firestore().collection("events").document("e1").delete().get();
+        assertThat(ids(search.search(query("jazz"), 10, null))).isEmpty();
+        assertThat(ids(search.search(query("stall"), 10, null))).containsExactly("e2");
+        catalog.stop();
+    }
+
+    @Test
+    void concurrentSearchesOnVirtualThreadsShareScratchSafely() throws Exception {
+        Random random = new Random(3);
+        String[] words = {"jazz", "food", "market", "concert", "wedding", "garden", "night", "dance"};
+        EventSearchIndex index = new EventSearchIndex();
+        for (int i = 0; i < 2_000; i++) {
+            index.put(event("e" + i, words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                    words[random.nextInt(words.length)], "Rabat", 10.0, i % 30));
+        }
+        EventSearchIndex.Query query = query("jazz night");
+        EventSearchIndex.Hits expected = index.search(query, 20, null);
+
+        List<Future<EventSearchIndex.Hits>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 1_000; i++) {
+                // Other queries in between leave nothing behind in the pooled scores
+                EventSearchIndex.Query each = i % 2 == 0 ? query : query(words[i % words.length]);
+                results.add(executor.submit(() -> index.search(each, 20, null)));
+            }
+        }
+        for (int i = 0; i < results.size(); i += 2) {
+            EventSearchIndex.Hits hits = results.get(i).get();
+            assertThat(hits.total()).isEqualTo(expected.total());
+            assertThat(hits.events()).extracting(Event::getId)
+                    .containsExactlyElementsOf(expected.events().stream().map(Event::getId).toList());
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void hundredThousandEventsAnswerUnderFiveMilliseconds() {
+        Random random = new Random(7);
+        String[] words = new String[5_000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "w" + Integer.toString(i, 36) + "x";
+        }
+        EventSearchIndex index = new EventSearchIndex();
+        for (int i = 0; i < 100_000; i++) {
+            index.put(event("e" + i, text(random, words, 4), text(random, words, 40), "city" + random.nextInt(200),
+                    (double) random.nextInt(100), random.nextInt(365)));
+        }
+        // Every event updated once more, leaving a dead version of each behind
+        for (int i = 0; i < 100_000; i += 2) {
+            index.put(event("e" + i, text(random, words, 4), text(random, words, 40), "city" + random.nextInt(200),
+                    (double) random.nextInt(100), random.nextInt(365)));
+        }
+        assertThat(index.size()).isEqualTo(100_000);
+
+        int queries = 5_000;
+        long[] nanos = new long[queries];
+        // The first round warms up the JIT; the second is the one measured
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < queries; i++) {
+                // The commonest words still match tens of thousands of events
+                EventSearchIndex.Query query = new EventSearchIndex.Query(
+                        words[zipf(random, words.length)] + " " + words[zipf(random, words.length)],
+                        i % 3 == 0 ? Event.EventType.PUBLIC_EVENT : null, null, null, null, i % 2 == 0 ? 50.0 : null,
+                        null, null);
+                long start = System.nanoTime();
+                index.search(query, 20, null);
+                nanos[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(nanos);
+        double p50 = nanos[queries / 2] / 1e6;
+        double p99 = nanos[queries * 99 / 100] / 1e6;
+        System.out.printf("search over 100k events: p50 %.3f ms, p99 %.3f ms%n", p50, p99);
+        assertThat(p99).isLessThan(5.0);
+    }
+
+    // Word ranks drawn Zipf-like, leaving out the twenty commonest as a stop-word list would
+    private static int zipf(Random random, int n) {
+        while (true) {
+            int rank = (int) Math.floor(Math.pow(n, random.nextDouble())) - 1;
+            if (rank >= 20) {
+                return Math.min(rank, n - 1);
+            }
+        }
+    }
+
+    private static String text(Random random, String[] words, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(words[zipf(random, words.length)]).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static EventSearchIndex.Query query(String text) {
+        return new EventSearchIndex.Query(text, null, null, null, null, null, null, null);
+    }
+
+    private static List<String> ids(EventSearchResults results) {
+        return results.getItems().stream().map(Event::getId).toList();
+    }
+
+    private static Event event(String id, String title, String description, String city, Double price, int days) {
+        Event event = new Event();
+        event.setId(id);
+        event.setTitle(title);
+        event.setDescription(description);
+        event.setCity(city);
+        event.setTicketPrice(price);
+        event.setEventDateTime(JUNE.plusSeconds(days * 86_400L));
+        event.setEventType(Event.EventType.PUBLIC_EVENT);
+        event.setStatus(Event.EventStatus.ACTIVE);
+        event.setBookingEnabled(true);
+        return event;
+    }
+}
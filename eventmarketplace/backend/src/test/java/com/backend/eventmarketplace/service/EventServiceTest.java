@@ -0,0 +1,57 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.repository.EntityCaches;
+import com.backend.eventmarketplace.repository.EventCounterRepository;
+import com.backend.eventmarketplace.repository.EventRepository;
+import com.backend.eventmarketplace.repository.UnitOfWorkFactory;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventServiceTest {
+
+    private final InMemoryFirestore store = new InMemoryFirestore();
+    private final EventCounterRepository counters = new EventCounterRepository(store.firestore(), 4);
+    private final EventService events = new EventService(new EventRepository(store.firestore(), EntityCaches.none()),
+            counters, new UnitOfWorkFactory(store.firestore(), EntityCaches.none()), null, null, null, null);
+
+    @Test
+    void aCapacityChangeMovesTheShardsAndTheClientsSeatCountIsIgnored() throws Exception {
+        Event created = events.createEvent(event(10, null));
+
+        Event update = event(14, null);
+        update.setAvailableSeats(999);
+        events.updateEvent(created.getId(), update);
+
+        assertThat(counters.findByEventId(created.getId()).getAvailableSeats()).isEqualTo(14);
+        assertThat(store.get("events/" + created.getId(), Event.class).getAvailableSeats()).isEqualTo(10);
+        assertThat(store.get("events/" + created.getId(), Event.class).getCapacity()).isEqualTo(14);
+    }
+
+    @Test
+    void anEventWithoutShardsKeepsItsOwnSeatCount() throws Exception {
+        Event legacy = event(10, 4);
+        store.put("events/e1", legacy);
+
+        events.updateEvent("e1", event(8, 999));
+        assertThat(store.get("events/e1", Event.class).getAvailableSeats()).isEqualTo(2);
+
+        assertThatThrownBy(() -> events.updateEvent("e1", event(5, null)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(store.get("events/e1", Event.class).getCapacity()).isEqualTo(8);
+    }
+
+    private Event event(int capacity, Integer availableSeats) {
+        Event event = new Event();
+        event.setTitle("Jazz night");
+        event.setTicketPrice(10.0);
+        event.setCapacity(capacity);
+        event.setAvailableSeats(availableSeats);
+        event.setBookingEnabled(true);
+        event.setStatus(Event.EventStatus.ACTIVE);
+        return event;
+    }
+}
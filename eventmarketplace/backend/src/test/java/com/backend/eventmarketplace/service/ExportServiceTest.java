@@ -0,0 +1,186 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.ExportFilter;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Payment;
+import com.backend.eventmarketplace.repository.BookingRepository;
+import com.backend.eventmarketplace.repository.PaymentRepository;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExportServiceTest {
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+    private static final int ROWS = 1_000_000;
+    private static final int PAGE_SIZE = 500;
+
+    @Test
+    void filtersAreAppliedAcrossPages() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        for (int i = 0; i < 20; i++) {
+            Booking booking = new Booking();
+            booking.setEventId(i % 2 == 0 ? "e1" : "e2");
+            booking.setEventTitle("Gala, \"late\" edition");
+            booking.setStatus(i % 5 == 0 ? Booking.BookingStatus.CANCELED : Booking.BookingStatus.CONFIRMED);
+            booking.setBookingDate(Instant.ofEpochSecond(1_000 + i));
+            store.put(String.format("bookings/b%02d", i), booking);
+        }
+        ExportService exports = new ExportService(new BookingRepository(store.firestore()),
+                new PaymentRepository(store.firestore()), JSON, 3);
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        exports.exportBookings(exports.bookingFilter(Instant.ofEpochSecond(1_004), Instant.ofEpochSecond(1_016),
+                "e1", "confirmed"), ExportService.Format.CSV, csv);
+        List<String> lines = csv.toString().lines().toList();
+        assertThat(lines.getFirst()).startsWith("id,referenceNumber,userId,eventId,eventTitle,");
+        // e1 is the even rows; 1004..1015 minus the cancelled 1010
+        assertThat(lines.subList(1, lines.size())).extracting(line -> line.substring(0, 3))
+                .containsExactly("b04", "b06", "b08", "b12", "b14");
+        assertThat(lines.get(1)).contains(",\"Gala, \"\"late\"\" edition\",");
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        exports.exportBookings(exports.bookingFilter(null, null, null, null), ExportService.Format.NDJSON, ndjson);
+        assertThat(ndjson.toString().lines()).hasSize(20).allMatch(line -> line.startsWith("{\"id\":\"b"));
+
+        assertThatThrownBy(() -> exports.bookingFilter(null, null, null, "LOST"))
+                .hasMessage("Unknown status: LOST");
+    }
+
+    @Test
+    void repositoriesPageThroughTiedTimestampsWithoutGapsOrRepeats() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        List<String> expectedBookings = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Booking booking = new Booking();
+            booking.setEventId("e1");
+            booking.setStatus(Booking.BookingStatus.CONFIRMED);
+            // Four bookings share each second, so ties fall across page boundaries
+            booking.setBookingDate(Instant.ofEpochSecond(1_000 + i % 3));
+            store.put(String.format("bookings/b%02d", i), booking);
+        }
+        for (int second = 0; second < 3; second++) {
+            for (int i = second; i < 12; i += 3) {
+                expectedBookings.add(String.format("b%02d", i));
+            }
+        }
+        // Left out, as it has no bookingDate to order by
+        store.put("bookings/undated", new Booking());
+
+        List<String> expectedPayments = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            Payment payment = new Payment();
+            payment.setEventId(i % 3 == 2 ? "e2" : "e1");
+            payment.setStatus(i == 4 ? Payment.PaymentStatus.REFUNDED : Payment.PaymentStatus.COMPLETED);
+            payment.setCreatedAt(Instant.ofEpochSecond(2_000 + i / 2));
+            store.put("payments/p" + i, payment);
+            if (i % 3 != 2 && i != 4) {
+                expectedPayments.add("p" + i);
+            }
+        }
+
+        BookingRepository bookings = new BookingRepository(store.firestore());
+        PaymentRepository payments = new PaymentRepository(store.firestore());
+        ExportService exports = new ExportService(bookings, payments, JSON, 2);
+        ExportFilter completedInE1 = exports.paymentFilter(null, null, "e1", "completed");
+        for (int pageSize : new int[]{1, 4, 5, 12, 13}) {
+            List<List<Booking>> bookingPages = new ArrayList<>();
+            bookings.forEachPage(new ExportFilter(), pageSize, bookingPages::add);
+            assertPaged(bookingPages, pageSize);
+            assertThat(bookingPages.stream().flatMap(List::stream)).extracting(Booking::getId)
+                    .as("page size %d", pageSize).containsExactlyElementsOf(expectedBookings);
+
+            List<List<Payment>> paymentPages = new ArrayList<>();
+            payments.forEachPage(completedInE1, pageSize, paymentPages::add);
+            assertPaged(paymentPages, pageSize);
+            assertThat(paymentPages.stream().flatMap(List::stream)).extracting(Payment::getId)
+                    .as("page size %d", pageSize).containsExactlyElementsOf(expectedPayments);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void heapStaysFlatWhileExportingAMillionBookings() throws Exception {
+        // Bookings are generated a page at a time, so only what the export holds on to stays live
+        BookingRepository synthetic = new BookingRepository(null) {
+            @Override
+            public void forEachPage(ExportFilter filter, int pageSize, Consumer<List<Booking>> sink) {
+                for (int start = 0; start < ROWS; start += pageSize) {
+                    List<Booking> page = new ArrayList<>(pageSize);
+                    for (int i = start; i < Math.min(start + pageSize, ROWS); i++) {
+                        page.add(booking(i));
+                    }
+                    sink.accept(page);
+                }
+            }
+        };
+        ExportService exports = new ExportService(synthetic, new PaymentRepository(null), JSON, PAGE_SIZE);
+
+        long baseline = usedHeap();
+        long[] peak = {0};
+        long[] bytes = {0};
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) {
+                count(1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                count(len);
+            }
+
+            private void count(int len) {
+                // sample the live heap roughly every hundred thousand rows
+                if ((bytes[0] + len) / 30_000_000 != bytes[0] / 30_000_000) {
+                    peak[0] = Math.max(peak[0], usedHeap() - baseline);
+                }
+                bytes[0] += len;
+            }
+        };
+
+        exports.exportBookings(new ExportFilter(), ExportService.Format.NDJSON, sink);
+
+        System.out.printf("exported %d rows, %d MB written, peak live heap growth %d KB%n",
+                ROWS, bytes[0] / (1024 * 1024), peak[0] / 1024);
+        assertThat(bytes[0]).isGreaterThan(ROWS * 100L);
+        assertThat(peak[0]).isLessThan(32L * 1024 * 1024);
+    }
+
+    // Every page but the last is full, and no page is empty
+    private static void assertPaged(List<? extends List<?>> pages, int pageSize) {
+        assertThat(pages).allSatisfy(page -> assertThat(page).isNotEmpty().hasSizeLessThanOrEqualTo(pageSize));
+        assertThat(pages.subList(0, Math.max(pages.size() - 1, 0))).allSatisfy(page -> assertThat(page).hasSize(pageSize));
+    }
+
+    private static Booking booking(int i) {
+        Booking booking = new Booking();
+        booking.setId("b" + i);
+        booking.setReferenceNumber("BK" + i);
+        booking.setUserId("u" + (i % 1000));
+        booking.setEventId("e" + (i % 100));
+        booking.setEventTitle("Event " + (i % 100));
+        booking.setNumberOfSeats(1 + i % 4);
+        booking.setTotalPrice(25.0 * (1 + i % 4));
+        booking.setStatus(Booking.BookingStatus.CONFIRMED);
+        booking.setBookingDate(Instant.ofEpochSecond(1_700_000_000L + i));
+        return booking;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,89 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.ImageVariants;
+import com.backend.eventmarketplace.model.User;
+import com.backend.eventmarketplace.repository.EntityCaches;
+import com.backend.eventmarketplace.repository.EventRepository;
+import com.backend.eventmarketplace.repository.StoredContentRepository;
+import com.backend.eventmarketplace.repository.UserRepository;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import com.backend.eventmarketplace.support.InMemoryStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageDerivativeServiceTest {
+
+    private static final String BUCKET = "test-bucket";
+    private static final String ORIGINAL = "profile_pictures/u1_1_me.png";
+
+    private final InMemoryFirestore store = new InMemoryFirestore();
+    private final InMemoryStorage storage = new InMemoryStorage(true);
+    private final StorageService storageService = new StorageService(storage.storage(),
+            new StoredContentRepository(store.firestore(), new SimpleAsyncTaskExecutor()), BUCKET, 256);
+    private final ImageDerivativeService images = new ImageDerivativeService(storageService,
+            new UserRepository(store.firestore(), EntityCaches.none()),
+            new EventRepository(store.firestore(), EntityCaches.none()), 1, 1, 0.8f);
+
+    @AfterEach
+    void stopWorkers() {
+        images.shutdown();
+    }
+
+    @Test
+    void variantsAreScaledToFitAndRecordedOnTheUser() throws Exception {
+        String url = storageService.uploadFile(new ByteArrayInputStream(png(4000, 3000)), "image/png", ORIGINAL);
+        User user = new User();
+        user.setProfilePictureUrl(url);
+        store.put("users/u1", user);
+
+        ImageVariants variants = images.forProfilePicture("u1", ORIGINAL).get();
+
+        assertThat(store.get("users/u1", User.class).getProfilePictureVariants()).isEqualTo(variants);
+        assertThat(variants.getOriginal()).isEqualTo(url);
+        assertThat(variants.getThumbnail()).endsWith("/profile_pictures/u1_1_me@thumbnail.jpg");
+        assertThat(dimensions("profile_pictures/u1_1_me@thumbnail.jpg")).isEqualTo(new Dimension(160, 120));
+        assertThat(dimensions("profile_pictures/u1_1_me@card.jpg")).isEqualTo(new Dimension(480, 360));
+        assertThat(dimensions("profile_pictures/u1_1_me@full.jpg")).isEqualTo(new Dimension(1280, 960));
+        assertThat(storage.get(BUCKET, "profile_pictures/u1_1_me@full.jpg").contentType()).isEqualTo("image/jpeg");
+    }
+
+    @Test
+    void variantsOfAReplacedPictureAreNotRecorded() throws Exception {
+        storageService.uploadFile(new ByteArrayInputStream(png(100, 50)), "image/png", ORIGINAL);
+        User user = new User();
+        user.setProfilePictureUrl(storageService.publicUrl("profile_pictures/u1_2_new.png"));
+        store.put("users/u1", user);
+
+        ImageVariants variants = images.forProfilePicture("u1", ORIGINAL).get();
+
+        // Small images are not scaled up
+        assertThat(dimensions("profile_pictures/u1_1_me@full.jpg")).isEqualTo(new Dimension(100, 50));
+        assertThat(variants.getThumbnail()).isNotNull();
+        assertThat(store.get("users/u1", User.class).getProfilePictureVariants()).isNull();
+    }
+
+    private Dimension dimensions(String objectName) throws Exception {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(storage.get(BUCKET, objectName).content()));
+        return new Dimension(image.getWidth(), image.getHeight());
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return bytes.toByteArray();
+    }
+}
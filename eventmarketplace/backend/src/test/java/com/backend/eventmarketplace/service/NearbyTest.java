@@ -0,0 +1,228 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.Nearby;
+import com.backend.eventmarketplace.dto.Page;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.Supplier;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NearbyTest {
+
+    private static final Instant JUNE = Instant.parse("2026-06-01T20:00:00Z");
+    private static final Instant JULY = Instant.parse("2026-07-01T20:00:00Z");
+
+    @Test
+    void findsEventsAndSuppliersNearestFirstAndFollowsWrites() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        store.put("events/casa", event(33.5731, -7.5898, Event.EventType.PUBLIC_EVENT, JUNE, Event.EventStatus.ACTIVE));
+        store.put("events/mohammedia", event(33.6866, -7.3830, Event.EventType.HOST_PACKAGE, JULY, Event.EventStatus.ACTIVE));
+        store.put("events/rabat", event(34.0209, -6.8416, Event.EventType.PUBLIC_EVENT, JUNE, Event.EventStatus.ACTIVE));
+        store.put("events/cancelled", event(33.5800, -7.6000, Event.EventType.PUBLIC_EVENT, JUNE, Event.EventStatus.CANCELED));
+        store.put("events/nowhere", event(null, null, Event.EventType.PUBLIC_EVENT, JUNE, Event.EventStatus.ACTIVE));
+        store.put("events/casa/counter_shards/0", Map.of("eventId", "casa", "availableSeats", 7L,
+                "totalBookings", 3L, "totalRevenue", 0.0));
+        store.put("suppliers/s1", supplier(33.59, -7.61));
+        store.put("suppliers/s2", supplier(null, null));
+        EventCatalogService events = new EventCatalogService(store.firestore(), JsonMapper.builder().build(), true);
+        SupplierCatalogService suppliers = new SupplierCatalogService(store.firestore(), true);
+        NearbyService nearby = new NearbyService(events, suppliers);
+        NearbyService.EventFilter any = new NearbyService.EventFilter(null, null, null);
+
+        assertThatThrownBy(() -> nearby.eventsNear(33.5731, -7.5898, 30, any, null, null))
+                .isInstanceOf(IllegalStateException.class);
+        events.start();
+        suppliers.start();
+        nearby.start();
+
+        Page<Nearby<Event>> near = nearby.eventsNear(33.5731, -7.5898, 30, any, null, null);
+        assertThat(ids(near)).containsExactly("casa", "mohammedia");
+        assertThat(near.getItems().getFirst().getDistanceKm()).isZero();
+        assertThat(near.getItems().get(1).getDistanceKm()).isBetween(22.0, 23.0);
+        assertThat(near.getItems().getFirst().getItem().getAvailableSeats()).isEqualTo(7);
+        assertThat(ids(nearby.eventsNear(33.5731, -7.5898, 100, any, null, null)))
+                .containsExactly("casa", "mohammedia", "rabat");
+        assertThat(ids(nearby.eventsNear(33.5731, -7.5898, 100,
+                new NearbyService.EventFilter(Event.EventType.PUBLIC_EVENT, null, JUNE), null, null)))
+                .containsExactly("casa", "rabat");
+        assertThat(ids(nearby.eventsNear(33.5731, -7.5898, 100,
+                new NearbyService.EventFilter(null, JUNE.plusSeconds(1), null), null, null)))
+                .containsExactly("mohammedia");
+
+        Page<Nearby<Event>> first = nearby.eventsNear(33.5731, -7.5898, 100, any, 2, null);
+        assertThat(ids(first)).containsExactly("casa", "mohammedia");
+        Page<Nearby<Event>> second = nearby.eventsNear(33.5731, -7.5898, 100, any, 2, first.getNextPageToken());
+        assertThat(ids(second)).containsExactly("rabat");
+        assertThat(second.getNextPageToken()).isNull();
+
+        // A box around Rabat, nearest to its middle, or to a given point
+        assertThat(ids(nearby.eventsWithin(33.5, -7.7, 34.1, -6.8, null, null, any, null, null)))
+                .containsExactly("mohammedia", "casa", "rabat");
+        assertThat(ids(nearby.eventsWithin(33.5, -7.7, 34.1, -6.8, 34.0209, -6.8416, any, null, null)))
+                .containsExactly("rabat", "mohammedia", "casa");
+        assertThat(nearby.suppliersNear(33.5731, -7.5898, 5, null, null).getItems())
+                .extracting(hit -> hit.getItem().getId()).containsExactly("s1");
+
+        // Moving, cancelling and removing events shows up in the index
+        store.put("events/rabat", event(33.5740, -7.5900, Event.EventType.PUBLIC_EVENT, JUNE, Event.EventStatus.ACTIVE));
+        store.put("events/mohammedia", event(33.6866, -7.3830, Event.EventType.HOST_PACKAGE, JULY, Event.EventStatus.CANCELED));
+        store.firestore().collection("events").document("casa").delete().get();
+        assertThat(ids(nearby.eventsNear(33.5731, -7.5898, 100, any, null, null))).containsExactly("rabat");
+        events.stop();
+        suppliers.stop();
+    }
+
+    @Test
+    void matchesAScanOfEveryPointAnywhereOnTheGlobe() {
+        Random random = new Random(5);
+        GeoCellIndex<Integer> index = new GeoCellIndex<>();
+        double[][] points = new double[20_000][];
+        for (int i = 0; i < points.length; i++) {
+            // Some points crowd the antimeridian and the poles
+            double latitude = i % 10 == 0 ? 89 + random.nextDouble() : random.nextDouble() * 180 - 90;
+            double longitude = i % 10 == 1 ? 179.5 + random.nextDouble() / 2 : random.nextDouble() * 360 - 180;
+            points[i] = new double[]{latitude, longitude};
+            index.put("p" + i, latitude, longitude, i);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = q % 4 == 0 ? -179.9 : random.nextDouble() * 360 - 180;
+            double radius = Math.pow(10, random.nextDouble() * 3.7);
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < points.length; i++) {
+                if (i % 3 != 0 && GeoCellIndex.distanceKm(latitude, longitude, points[i][0], points[i][1]) <= radius) {
+                    expected.add("p" + i);
+                }
+            }
+            sortByDistance(expected, points, latitude, longitude);
+            assertThat(all(token -> index.near(latitude, longitude, radius, i -> i % 3 != 0, 100, token)))
+                    .as("radius %.1f km around %.3f,%.3f", radius, latitude, longitude)
+                    .isEqualTo(expected);
+        }
+
+        for (int q = 0; q < 100; q++) {
+            double south = random.nextDouble() * 170 - 90;
+            double north = Math.min(90, south + random.nextDouble() * 20);
+            double west = random.nextDouble() * 360 - 180;
+            double width = random.nextDouble() * 30;
+            double east = west + width > 180 ? west + width - 360 : west + width;
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < points.length; i++) {
+                double lat = points[i][0];
+                double lng = points[i][1];
+                boolean inside = lat >= south && lat <= north
+                        && (west <= east ? lng >= west && lng <= east : lng >= west || lng <= east);
+                if (inside) {
+                    expected.add("p" + i);
+                }
+            }
+            sortByDistance(expected, points, south, west);
+            assertThat(all(token -> index.within(south, west, north, east, south, west, null, 100, token)))
+                    .isEqualTo(expected);
+        }
+
+        index.remove("p1");
+        assertThat(index.size()).isEqualTo(points.length - 1);
+        assertThat(index.near(points[1][0], points[1][1], 0.001, null, 10, null).hits())
+                .extracting(GeoCellIndex.Hit::id).doesNotContain("p1");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void twentyKilometreQueriesStayUnderAMillisecondAcrossAHundredThousandEvents() {
+        Random random = new Random(11);
+        double[][] cities = new double[50][];
+        for (int i = 0; i < cities.length; i++) {
+            cities[i] = new double[]{random.nextDouble() * 120 - 60, random.nextDouble() * 360 - 180};
+        }
+        GeoCellIndex<Event> index = new GeoCellIndex<>();
+        for (int i = 0; i < 100_000; i++) {
+            // Most events are in or around a city, a few out in the country
+            double[] city = cities[random.nextInt(cities.length)];
+            double spread = i % 20 == 0 ? 5 : 0.3;
+            Event event = event(city[0] + random.nextGaussian() * spread, city[1] + random.nextGaussian() * spread,
+                    i % 2 == 0 ? Event.EventType.PUBLIC_EVENT : Event.EventType.HOST_PACKAGE,
+                    JUNE.plusSeconds(random.nextInt(365) * 86_400L), Event.EventStatus.ACTIVE);
+            event.setLatitude(Math.max(-90, Math.min(90, event.getLatitude())));
+            event.setLongitude(Math.max(-180, Math.min(180, event.getLongitude())));
+            index.put("e" + i, event.getLatitude(), event.getLongitude(), event);
+        }
+        NearbyService.EventFilter summer = new NearbyService.EventFilter(Event.EventType.PUBLIC_EVENT, JUNE, JULY);
+
+        int queries = 20_000;
+        long[] nanos = new long[queries];
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < queries; i++) {
+                double[] city = cities[i % cities.length];
+                double latitude = city[0] + random.nextGaussian() * 0.2;
+                double longitude = city[1] + random.nextGaussian() * 0.2;
+                long start = System.nanoTime();
+                GeoCellIndex.Hits<Event> hits = index.near(latitude, longitude, 20,
+                        event -> event.getEventType() == summer.eventType()
+                                && !event.getEventDateTime().isBefore(summer.from())
+                                && !event.getEventDateTime().isAfter(summer.to()), 20, null);
+                nanos[i] = System.nanoTime() - start;
+                assertThat(hits.hits().size()).isLessThanOrEqualTo(20);
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("20 km queries over %d events: p50 %.1f us, p99 %.1f us%n", index.size(),
+                nanos[queries / 2] / 1e3, nanos[queries * 99 / 100] / 1e3);
+        assertThat(nanos[queries * 99 / 100]).isLessThan(1_000_000L);
+    }
+
+    private interface PageSource {
+        GeoCellIndex.Hits<Integer> page(String token);
+    }
+
+    private static List<String> all(PageSource source) {
+        List<String> ids = new ArrayList<>();
+        String token = null;
+        do {
+            GeoCellIndex.Hits<Integer> page = source.page(token);
+            page.hits().forEach(hit -> ids.add(hit.id()));
+            token = page.nextPageToken();
+        } while (token != null);
+        return ids;
+    }
+
+    private static void sortByDistance(List<String> ids, double[][] points, double latitude, double longitude) {
+        ids.sort(Comparator.<String>comparingDouble(id -> {
+            double[] point = points[Integer.parseInt(id.substring(1))];
+            return GeoCellIndex.distanceKm(latitude, longitude, point[0], point[1]);
+        }).thenComparing(id -> id));
+    }
+
+    private static List<String> ids(Page<Nearby<Event>> page) {
+        return page.getItems().stream().map(hit -> hit.getItem().getId()).toList();
+    }
+
+    private static Event event(Double latitude, Double longitude, Event.EventType type, Instant date,
+                               Event.EventStatus status) {
+        Event event = new Event();
+        event.setTitle("Event");
+        event.setLatitude(latitude);
+        event.setLongitude(longitude);
+        event.setEventType(type);
+        event.setEventDateTime(date);
+        event.setStatus(status);
+        return event;
+    }
+
+    private static Supplier supplier(Double latitude, Double longitude) {
+        Supplier supplier = new Supplier();
+        supplier.setName("Supplier");
+        supplier.setLatitude(latitude);
+        supplier.setLongitude(longitude);
+        return supplier;
+    }
+}
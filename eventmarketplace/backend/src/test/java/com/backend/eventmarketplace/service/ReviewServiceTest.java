@@ -0,0 +1,151 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.Page;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.RatingSummary;
+import com.backend.eventmarketplace.model.Review;
+import com.backend.eventmarketplace.model.Supplier;
+import com.backend.eventmarketplace.model.User;
+import com.backend.eventmarketplace.repository.EntityCaches;
+import com.backend.eventmarketplace.repository.EventRepository;
+import com.backend.eventmarketplace.repository.ReviewRepository;
+import com.backend.eventmarketplace.repository.SupplierRepository;
+import com.backend.eventmarketplace.repository.UserRepository;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReviewServiceTest {
+
+    private final InMemoryFirestore store = new InMemoryFirestore();
+    private final ReviewService reviews = new ReviewService(new ReviewRepository(store.firestore(), new SimpleAsyncTaskExecutor()),
+            new EventRepository(store.firestore(), EntityCaches.none()),
+            new SupplierRepository(store.firestore(), EntityCaches.none()),
+            new AuthService(null, new UserRepository(store.firestore(), EntityCaches.none()), null, null, null, null));
+
+    @Test
+    void summariesFollowEveryReviewWrittenAndDeleted() throws Exception {
+        store.put("users/u1", user("Amina"));
+        store.put("users/u2", user("Youssef"));
+        store.put("events/e1", new Event());
+        store.put("suppliers/s1", new Supplier());
+
+        Review first = reviews.createReview(review("u1", "e1", "s1", 5));
+        reviews.createReview(review("u2", "e1", null, 2));
+        reviews.createReview(review("u2", null, "s1", 4));
+
+        RatingSummary event = reviews.getRatingSummaryAsync(ReviewRepository.EVENT, "e1").get();
+        assertThat(event.getCount()).isEqualTo(2);
+        assertThat(event.getSum()).isEqualTo(7);
+        assertThat(event.getAverage()).isEqualTo(3.5);
+        assertThat(event.getHistogram()).containsExactly(0L, 1L, 0L, 0L, 1L);
+        assertThat(event.getEntityType()).isEqualTo(ReviewRepository.EVENT);
+        assertThat(reviews.getRatingSummaryAsync(ReviewRepository.SUPPLIER, "s1").get().getHistogram()).containsExactly(0L, 0L, 0L, 1L, 1L);
+        assertThat(reviews.getReviewAsync(first.getId()).get().getUserName()).isEqualTo("Amina");
+
+        // The average is one document read, however many reviews there are
+        int reads = store.documentsRead();
+        assertThat(reviews.getAverageRating(ReviewRepository.SUPPLIER, "s1")).isEqualTo(4.5);
+        assertThat(store.documentsRead() - reads).isEqualTo(1);
+
+        reviews.deleteReview(first.getId());
+        assertThat(reviews.getAverageRating(ReviewRepository.EVENT, "e1")).isEqualTo(2.0);
+        assertThat(reviews.getRatingSummaryAsync(ReviewRepository.SUPPLIER, "s1").get().getHistogram()).containsExactly(0L, 0L, 0L, 1L, 0L);
+        assertThatThrownBy(() -> reviews.deleteReview(first.getId()))
+                .isInstanceOf(IllegalArgumentException.class).hasMessage("Review not found");
+
+        // The last review takes its summary with it
+        Review last = reviews.getSupplierReviewsAsync("s1", null, null).get().getItems().getFirst();
+        reviews.deleteReview(last.getId());
+        assertThat(store.get("rating_summaries/supplier_s1", RatingSummary.class)).isNull();
+        assertThat(reviews.getAverageRating(ReviewRepository.SUPPLIER, "s1")).isNull();
+        assertThat(reviews.getRatingSummaryAsync(ReviewRepository.SUPPLIER, "s1").get().getCount()).isZero();
+    }
+
+    @Test
+    void anEventAndASupplierWithTheSameIdKeepSeparateSummaries() throws Exception {
+        store.put("users/u1", user("Amina"));
+        store.put("events/x1", new Event());
+        store.put("suppliers/x1", new Supplier());
+
+        reviews.createReview(review("u1", "x1", "x1", 5));
+        reviews.createReview(review("u1", "x1", null, 1));
+
+        assertThat(reviews.getRatingSummaryAsync(ReviewRepository.EVENT, "x1").get()).satisfies(event -> {
+            assertThat(event.getCount()).isEqualTo(2);
+            assertThat(event.getEntityId()).isEqualTo("x1");
+            assertThat(event.getEntityType()).isEqualTo(ReviewRepository.EVENT);
+        });
+        assertThat(reviews.getRatingSummaryAsync(ReviewRepository.SUPPLIER, "x1").get().getCount()).isEqualTo(1);
+        assertThat(reviews.getAverageRating(ReviewRepository.SUPPLIER, "x1")).isEqualTo(5.0);
+        assertThat(store.list("rating_summaries", RatingSummary.class)).extracting(RatingSummary::getId)
+                .containsExactlyInAnyOrder("event_x1", "supplier_x1");
+    }
+
+    @Test
+    void rejectsBadRatingsAndUnknownTargets() {
+        store.put("users/u1", user("Amina"));
+        store.put("events/e1", new Event());
+
+        assertThatThrownBy(() -> reviews.createReview(review("u1", "e1", null, 6)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> reviews.createReview(review("u1", "e1", null, 0)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> reviews.createReview(review("u1", null, null, 3)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> reviews.createReview(review("u1", "missing", null, 3)))
+                .hasMessage("Event not found");
+        assertThatThrownBy(() -> reviews.createReview(review("nobody", "e1", null, 3)))
+                .hasMessage("User not found");
+        assertThat(store.list("reviews", Review.class)).isEmpty();
+        assertThat(store.list("rating_summaries", RatingSummary.class)).isEmpty();
+    }
+
+    @Test
+    void listsAnEventsReviewsNewestFirstInPages() throws Exception {
+        store.put("users/u1", user("Amina"));
+        store.put("events/e1", new Event());
+        store.put("events/e2", new Event());
+        for (int i = 0; i < 7; i++) {
+            reviews.createReview(review("u1", "e1", null, i % 5 + 1));
+        }
+        reviews.createReview(review("u1", "e2", null, 1));
+
+        List<Review> all = new ArrayList<>();
+        String token = null;
+        do {
+            Page<Review> page = reviews.getEventReviewsAsync("e1", 3, token).get();
+            assertThat(page.getItems().size()).isLessThanOrEqualTo(3);
+            all.addAll(page.getItems());
+            token = page.getNextPageToken();
+        } while (token != null);
+
+        assertThat(all).hasSize(7).allMatch(review -> review.getEventId().equals("e1"));
+        assertThat(all).isSortedAccordingTo(Comparator.comparing(Review::getCreatedAt)
+                .thenComparing(Review::getId).reversed());
+        assertThat(reviews.getRatingSummaryAsync(ReviewRepository.EVENT, "e1").get().getCount()).isEqualTo(7);
+    }
+
+    private static Review review(String userId, String eventId, String supplierId, int rating) {
+        Review review = new Review();
+        review.setUserId(userId);
+        review.setEventId(eventId);
+        review.setSupplierId(supplierId);
+        review.setRating(rating);
+        review.setComment("Comment");
+        return review;
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        return user;
+    }
+}
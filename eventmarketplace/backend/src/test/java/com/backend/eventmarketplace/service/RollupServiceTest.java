@@ -0,0 +1,102 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.BookingResponse;
+import com.backend.eventmarketplace.dto.RollupRebuildResult;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.Payment;
+import com.backend.eventmarketplace.model.Rollup;
+import com.backend.eventmarketplace.repository.*;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollupServiceTest {
+
+    private static final Instant MORNING = Instant.parse("2026-10-17T09:15:00Z");
+    private static final Instant EVENING = Instant.parse("2026-10-17T18:40:00Z");
+
+    private final InMemoryFirestore store = new InMemoryFirestore();
+    private final RollupRepository rollups = new RollupRepository(store.firestore(), 4);
+    private final BookingRepository bookings = new BookingRepository(store.firestore());
+    private final SeatReservationRepository reservations = new SeatReservationRepository(store.firestore(),
+            new EventCounterRepository(store.firestore(), 4), rollups,
+            new OutboxRepository(store.firestore(), new SimpleAsyncTaskExecutor()), new SimpleAsyncTaskExecutor());
+
+    @Test
+    void incrementalRollupsMatchARebuildFromBookings() throws Exception {
+        event("e1", Event.EventType.PUBLIC_EVENT);
+        event("e2", Event.EventType.HOST_PACKAGE);
+
+        reserve("e1", 2, MORNING);
+        reserve("e1", 1, EVENING);
+        Booking canceled = reserve("e2", 3, EVENING).getBooking();
+        reserve("e2", 1, MORNING);
+
+        canceled.setStatus(Booking.BookingStatus.CANCELED);
+        UnitOfWork work = new UnitOfWorkFactory(store.firestore(), EntityCaches.none()).begin();
+        bookings.save(work, canceled);
+        rollups.recordCancellation(work, canceled, Event.EventType.HOST_PACKAGE);
+        work.commit();
+
+        Map<String, Rollup> incremental = snapshot();
+        Rollup global = incremental.get(RollupRepository.GLOBAL);
+        assertThat(global.getBookings()).isEqualTo(3);
+        assertThat(global.getSeats()).isEqualTo(4);
+        assertThat(global.getRevenue()).isEqualTo(40.0);
+        assertThat(global.getCancellations()).isEqualTo(1);
+        assertThat(incremental.get("hour_2026101718").getSeats()).isEqualTo(1);
+        assertThat(incremental.get("day_20261017").getBookings()).isEqualTo(3);
+
+        EventRepository events = new EventRepository(store.firestore(), EntityCaches.none());
+        RollupRebuildResult result = new RollupService(bookings, events, rollups, 3).rebuild();
+
+        assertThat(result.getBookingsScanned()).isEqualTo(4);
+        assertThat(snapshot()).isEqualTo(incremental);
+        assertThat(store.list("rollups", Rollup.class)).hasSize(result.getRollupsWritten());
+    }
+
+    private Map<String, Rollup> snapshot() throws Exception {
+        List<String> keys = new ArrayList<>(List.of(RollupRepository.GLOBAL,
+                RollupRepository.typeKey(Event.EventType.PUBLIC_EVENT),
+                RollupRepository.typeKey(Event.EventType.HOST_PACKAGE),
+                "hour_2026101709", "hour_2026101718", "day_20261017"));
+        Map<String, Rollup> result = rollups.findByKeysAsync(keys).get();
+        assertThat(rollups.findBucketsAsync(RollupRepository.HOUR, MORNING, EVENING.plusSeconds(3600)).get())
+                .hasSize(10)
+                .filteredOn(rollup -> rollup.getBookings() > 0)
+                .containsExactly(result.get("hour_2026101709"), result.get("hour_2026101718"));
+        return result;
+    }
+
+    private void event(String id, Event.EventType type) {
+        Event event = new Event();
+        event.setId(id);
+        event.setEventType(type);
+        event.setTicketPrice(10.0);
+        event.setCapacity(100);
+        event.setAvailableSeats(100);
+        event.setBookingEnabled(true);
+        store.put("events/" + id, event);
+    }
+
+    private BookingResponse reserve(String eventId, int seats, Instant at) throws Exception {
+        return reservations.reserve(eventId, seats, (event, bookingId, paymentId) -> {
+            Booking booking = new Booking();
+            booking.setId(bookingId);
+            booking.setEventId(event.getId());
+            booking.setNumberOfSeats(seats);
+            booking.setTotalPrice(event.getTicketPrice() * seats);
+            booking.setStatus(Booking.BookingStatus.CONFIRMED);
+            booking.setBookingDate(at);
+            return new BookingResponse(booking, new Payment(), "Booking successful");
+        });
+    }
+}
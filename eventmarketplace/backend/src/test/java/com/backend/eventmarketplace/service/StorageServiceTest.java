@@ -0,0 +1,160 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.StoredContent;
+import com.backend.eventmarketplace.repository.StoredContentRepository;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import com.backend.eventmarketplace.support.InMemoryStorage;
+import com.google.cloud.storage.Storage;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StorageServiceTest {
+
+    private static final String BUCKET = "test-bucket";
+    private static final long SIZE = 100L * 1024 * 1024;
+    private static final int CHUNK = 1024 * 1024;
+
+    @Test
+    void uploadsArePublicFromCreationAndDeletable() throws Exception {
+        InMemoryStorage standIn = new InMemoryStorage(true);
+        StorageService storage = new StorageService(standIn.storage(), null, BUCKET, 256);
+
+        String url = storage.uploadFile(new ByteArrayInputStream("hello".getBytes()), "text/plain", "notes/a.txt");
+
+        assertThat(url).isEqualTo("https://storage.googleapis.com/test-bucket/notes/a.txt");
+        assertThat(storage.objectName(url)).isEqualTo("notes/a.txt");
+        assertThat(storage.objectName("https://example.com/notes/a.txt")).isNull();
+        InMemoryStorage.StoredObject object = standIn.get(BUCKET, "notes/a.txt");
+        assertThat(object.content()).asString().isEqualTo("hello");
+        assertThat(object.contentType()).isEqualTo("text/plain");
+        assertThat(object.options()).containsExactly(Storage.BlobWriteOption.predefinedAcl(Storage.PredefinedAcl.PUBLIC_READ));
+
+        storage.deleteFile("notes/a.txt");
+        assertThat(standIn.names()).isEmpty();
+    }
+
+    @Test
+    void sameContentIsStoredOnceAndDeletedWithTheLastReference() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        InMemoryStorage standIn = new InMemoryStorage(true);
+        StorageService storage = new StorageService(standIn.storage(), new StoredContentRepository(store.firestore(), new SimpleAsyncTaskExecutor()),
+                BUCKET, 256);
+        byte[] photo = "the same photo".getBytes();
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(photo));
+
+        String first = storage.storeContent(new ByteArrayResource(photo), "image/jpeg");
+        long generation = standIn.get(BUCKET, first).generation();
+        String second = storage.storeContent(new ByteArrayResource(photo), "image/jpeg");
+        String other = storage.storeContent(new ByteArrayResource("another photo".getBytes()), "image/jpeg");
+
+        assertThat(first).isEqualTo("content/" + hash).isEqualTo(second).isNotEqualTo(other);
+        // Not uploaded a second time
+        assertThat(standIn.get(BUCKET, first).generation()).isEqualTo(generation);
+        assertThat(standIn.get(BUCKET, first).cacheControl()).contains("immutable");
+        StoredContent entry = store.get("stored_content/" + hash, StoredContent.class);
+        assertThat(entry.getReferences()).isEqualTo(2);
+        assertThat(entry.getGeneration()).isEqualTo(generation);
+        assertThat(storage.retainContent(first)).isTrue();
+        assertThat(storage.retainContent("profile_pictures/u1.png")).isFalse();
+
+        assertThat(storage.releaseContent(first)).isFalse();
+        assertThat(storage.releaseContent(first)).isFalse();
+        assertThat(standIn.names()).contains(BUCKET + "/" + first);
+        assertThat(storage.releaseContent(first)).isTrue();
+        assertThat(standIn.names()).containsExactly(BUCKET + "/" + other);
+        assertThat(store.get("stored_content/" + hash, StoredContent.class)).isNull();
+        assertThat(storage.releaseContent(first)).isFalse();
+    }
+
+    @Test
+    void unfinishedOrLostUploadsAreNotReusedBlindly() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        InMemoryStorage standIn = new InMemoryStorage(true);
+        StorageService storage = new StorageService(standIn.storage(), new StoredContentRepository(store.firestore(), new SimpleAsyncTaskExecutor()),
+                BUCKET, 256);
+        byte[] photo = "a photo".getBytes();
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(photo));
+        // Another upload of the same bytes took the entry and has not finished, or failed
+        store.put("stored_content/" + hash, new StoredContent(null, "content/" + hash, "image/jpeg",
+                (long) photo.length, 1L, null, null));
+
+        String name = storage.storeContent(new ByteArrayResource(photo), "image/jpeg");
+
+        assertThat(storage.exists(name)).isTrue();
+        StoredContent entry = store.get("stored_content/" + hash, StoredContent.class);
+        assertThat(entry.getReferences()).isEqualTo(2);
+        assertThat(entry.getGeneration()).isEqualTo(standIn.get(BUCKET, name).generation());
+
+        // A finished entry whose object has gone missing is uploaded again
+        storage.deleteFile(name);
+        storage.storeContent(new ByteArrayResource(photo), "image/jpeg");
+        assertThat(standIn.get(BUCKET, name).content()).isEqualTo(photo);
+        assertThat(store.get("stored_content/" + hash, StoredContent.class).getGeneration())
+                .isEqualTo(standIn.get(BUCKET, name).generation());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void heapStaysFlatWhileStreamingAHundredMegabytes() throws Exception {
+        InMemoryStorage standIn = new InMemoryStorage(false);
+        StorageService storage = new StorageService(standIn.storage(), null, BUCKET, CHUNK / 1024);
+        MessageDigest expected = MessageDigest.getInstance("SHA-256");
+        // Generated as it is read, with odd-sized reads like a multipart stream
+        InputStream upload = new InputStream() {
+            private long position;
+
+            @Override
+            public int read() {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (position == SIZE) {
+                    return -1;
+                }
+                int n = (int) Math.min(Math.min(len, 8191), SIZE - position);
+                for (int i = 0; i < n; i++) {
+                    b[off + i] = (byte) ((position + i) * 31);
+                }
+                expected.update(b, off, n);
+                position += n;
+                return n;
+            }
+        };
+
+        long baseline = usedHeap();
+        long[] peak = {0};
+        standIn.onWrite(written -> {
+            if (written % (10L * CHUNK) == 0) {
+                peak[0] = Math.max(peak[0], usedHeap() - baseline);
+            }
+        });
+        storage.uploadFile(upload, "video/mp4", "big.mp4");
+
+        InMemoryStorage.StoredObject object = standIn.get(BUCKET, "big.mp4");
+        System.out.printf("uploaded %d MB in %d writes, peak live heap growth %d KB%n",
+                object.size() / (1024 * 1024), object.writes().size(), peak[0] / 1024);
+        assertThat(object.size()).isEqualTo(SIZE);
+        assertThat(object.sha256()).isEqualTo(expected.digest());
+        // 100 MB is a whole number of chunks, so every write is a full one
+        assertThat(object.writes()).hasSize((int) (SIZE / CHUNK)).containsOnly(CHUNK);
+        assertThat(peak[0]).isLessThan(8L * 1024 * 1024);
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,158 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.SupplierDirectoryResults;
+import com.backend.eventmarketplace.model.Supplier;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import com.google.cloud.firestore.FirestoreException;
+import io.grpc.Status;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class SupplierDirectoryTest {
+
+    @Test
+    void filtersByTypeCityAndTextWithFacetCountsAndFollowsWrites() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        store.put("suppliers/s1", supplier("Atlas Catering", "Couscous for weddings", Supplier.ServiceType.CATERING, "Rabat"));
+        store.put("suppliers/s2", supplier("Bloom Decor", "Flowers for weddings", Supplier.ServiceType.DECORATION, "Rabât"));
+        store.put("suppliers/s3", supplier("Casa Caterers", "Buffets and pastries", Supplier.ServiceType.CATERING, "Casablanca"));
+        store.put("suppliers/s4", supplier("DJ Nour", "Music for parties", Supplier.ServiceType.ENTERTAINMENT, "Casablanca"));
+        SupplierCatalogService catalog = new SupplierCatalogService(store.firestore(), true);
+        SupplierDirectoryService directory = new SupplierDirectoryService(catalog);
+        catalog.start();
+        directory.start();
+
+        SupplierDirectoryResults catering = directory.search(query(null, Supplier.ServiceType.CATERING, null), null, null);
+        assertThat(names(catering)).containsExactly("Atlas Catering", "Casa Caterers");
+        assertThat(catering.getTotal()).isEqualTo(2);
+        // Each facet leaves its own filter out
+        assertThat(catering.getServiceTypes()).containsOnly(entry(Supplier.ServiceType.CATERING, 2),
+                entry(Supplier.ServiceType.DECORATION, 1), entry(Supplier.ServiceType.ENTERTAINMENT, 1));
+        assertThat(catering.getCities()).containsExactly(entry("Casablanca", 1), entry("Rabat", 1));
+
+        SupplierDirectoryResults rabat = directory.search(query(null, null, " rabat"), null, null);
+        assertThat(names(rabat)).containsExactly("Atlas Catering", "Bloom Decor");
+        assertThat(rabat.getCities()).containsExactly(entry("Casablanca", 2), entry("Rabat", 2));
+        assertThat(names(directory.search(query("wedding", null, null), null, null)))
+                .containsExactly("Atlas Catering", "Bloom Decor");
+        assertThat(names(directory.search(query("weddings flowers", null, "RABAT"), null, null)))
+                .containsExactly("Bloom Decor");
+        assertThat(names(directory.search(query("wedding", Supplier.ServiceType.ENTERTAINMENT, null), null, null)))
+                .isEmpty();
+        assertThat(directory.search(query("the", null, null), null, null).getTotal()).isZero();
+        assertThat(directory.search(query("nothing", null, null), null, null).getTotal()).isZero();
+
+        SupplierDirectoryResults first = directory.search(query("", null, null), 3, null);
+        assertThat(names(first)).containsExactly("Atlas Catering", "Bloom Decor", "Casa Caterers");
+        SupplierDirectoryResults second = directory.search(query("", null, null), 3, first.getNextPageToken());
+        assertThat(names(second)).containsExactly("DJ Nour");
+        assertThat(second.getNextPageToken()).isNull();
+
+        // Registration, update and delete reach the index
+        store.put("suppliers/s5", supplier("Zen Venue", "Garden for weddings", Supplier.ServiceType.VENUE, "Rabat"));
+        store.put("suppliers/s1", supplier("Atlas Catering", "Couscous", Supplier.ServiceType.CATERING, "Fes"));
+        store.firestore().collection("suppliers").document("s2").delete().get();
+        SupplierDirectoryResults weddings = directory.search(query("wedding", null, null), null, null);
+        assertThat(names(weddings)).containsExactly("Zen Venue");
+        assertThat(directory.search(query(null, null, null), null, null).getCities())
+                .containsExactly(entry("Casablanca", 2), entry("Fes", 1), entry("Rabat", 1));
+        catalog.stop();
+    }
+
+    @Test
+    void directoryCatchesUpAfterTheListenerFails() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        store.put("suppliers/s1", supplier("Atlas Catering", "Couscous", Supplier.ServiceType.CATERING, "Rabat"));
+        SupplierCatalogService catalog = new SupplierCatalogService(store.firestore(), true, 10);
+        SupplierDirectoryService directory = new SupplierDirectoryService(catalog);
+        catalog.start();
+        directory.start();
+
+        store.failListeners(FirestoreException.forServerRejection(Status.UNAVAILABLE, "stream closed"));
+        assertThat(catalog.isReady()).isFalse();
+        store.put("suppliers/s2", supplier("Bloom Decor", "Flowers", Supplier.ServiceType.DECORATION, "Rabat"));
+        store.firestore().collection("suppliers").document("s1").delete().get();
+
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!catalog.isReady() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(catalog.isReady()).isTrue();
+        assertThat(names(directory.search(query(null, null, null), null, null))).containsExactly("Bloom Decor");
+        catalog.stop();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void filteredPagesStayFastAcrossAHundredThousandSuppliers() {
+        Random random = new Random(17);
+        String[] words = {"wedding", "party", "garden", "music", "flowers", "buffet", "sound", "light", "tent",
+                "photo", "video", "cake", "dance", "classic", "modern", "royal", "beach", "desert"};
+        String[] cities = new String[300];
+        for (int i = 0; i < cities.length; i++) {
+            cities[i] = "City " + i;
+        }
+        Supplier.ServiceType[] types = Supplier.ServiceType.values();
+        SupplierDirectoryIndex index = new SupplierDirectoryIndex();
+        for (int i = 0; i < 100_000; i++) {
+            Supplier supplier = supplier("Supplier " + i, words[random.nextInt(words.length)] + " "
+                            + words[random.nextInt(words.length)], types[random.nextInt(types.length)],
+                    cities[(int) Math.min(cities.length - 1, Math.abs(random.nextGaussian()) * 60)]);
+            supplier.setId("s" + i);
+            index.put(supplier);
+        }
+
+        SupplierDirectoryIndex.Query[] queries = {
+                query(null, null, null),
+                query(null, Supplier.ServiceType.CATERING, null),
+                query(null, null, "City 3"),
+                query("wedding", null, null),
+                query("wedding music", Supplier.ServiceType.ENTERTAINMENT, "City 1"),
+                query(null, Supplier.ServiceType.VENUE, "City 40"),
+        };
+        int lookups = 5_000;
+        long[] nanos = new long[lookups];
+        // Only the last round counts; the first ones run while the JIT is still busy
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < lookups; i++) {
+                long start = System.nanoTime();
+                SupplierDirectoryIndex.Result result = index.search(queries[i % queries.length], 20, null);
+                nanos[i] = System.nanoTime() - start;
+                assertThat(result.suppliers().size()).isLessThanOrEqualTo(20);
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("directory over %d suppliers: p50 %.1f us, p99 %.1f us%n", index.size(),
+                nanos[lookups / 2] / 1e3, nanos[lookups * 99 / 100] / 1e3);
+        assertThat(nanos[lookups / 2]).isLessThan(250_000L);
+        assertThat(nanos[lookups * 99 / 100]).isLessThan(5_000_000L);
+
+        SupplierDirectoryIndex.Result catering = index.search(queries[1], 20, null);
+        assertThat(catering.serviceTypes().values().stream().mapToInt(Integer::intValue).sum()).isEqualTo(100_000);
+        assertThat(catering.cities()).hasSize(SupplierDirectoryIndex.MAX_CITY_FACETS);
+        assertThat(catering.suppliers()).extracting(Supplier::getName).isSorted()
+                .allMatch(name -> name.startsWith("Supplier "));
+    }
+
+    private static SupplierDirectoryIndex.Query query(String text, Supplier.ServiceType type, String city) {
+        return new SupplierDirectoryIndex.Query(text, type, city);
+    }
+
+    private static List<String> names(SupplierDirectoryResults results) {
+        return results.getItems().stream().map(Supplier::getName).toList();
+    }
+
+    private static Supplier supplier(String name, String description, Supplier.ServiceType type, String city) {
+        Supplier supplier = new Supplier();
+        supplier.setName(name);
+        supplier.setDescription(description);
+        supplier.setServiceType(type);
+        supplier.setCity(city);
+        return supplier;
+    }
+}
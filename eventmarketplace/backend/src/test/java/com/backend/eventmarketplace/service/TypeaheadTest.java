@@ -0,0 +1,129 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.Supplier;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class TypeaheadTest {
+
+    @Test
+    void suggestsByPopularityAndFollowsWrites() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        store.put("events/e1", event("Harbour jazz nights", "Casablanca", Event.EventStatus.ACTIVE));
+        store.put("events/e2", event("Jazz brunch", "Rabat", Event.EventStatus.ACTIVE));
+        store.put("events/e3", event("Jazz for the cancelled", "Rabat", Event.EventStatus.CANCELED));
+        store.put("events/e1/counter_shards/0", shard("e1", 40));
+        store.put("events/e2/counter_shards/0", shard("e2", 5));
+        store.put("suppliers/s1", supplier("Jazzy Sounds", "Casablanca"));
+        store.put("suppliers/s2", supplier("Rabat Rentals", "Rabât"));
+        EventCatalogService events = new EventCatalogService(store.firestore(), JsonMapper.builder().build(), true);
+        SupplierCatalogService suppliers = new SupplierCatalogService(store.firestore(), true);
+        TypeaheadService typeahead = new TypeaheadService(events, suppliers);
+        events.start();
+        suppliers.start();
+        typeahead.start();
+
+        assertThat(texts(typeahead.suggest("JAZ", null)))
+                .containsExactly("Harbour jazz nights", "Jazz brunch", "Jazzy Sounds");
+        assertThat(texts(typeahead.suggest("harbour j", null))).containsExactly("Harbour jazz nights");
+        // A city ranks by the bookings of its events and keeps its first spelling
+        assertThat(typeahead.suggest("ra", null)).extracting(TypeaheadIndex.Suggestion::text,
+                TypeaheadIndex.Suggestion::popularity).containsExactly(
+                tuple("Rabat", 5L),
+                tuple("Rabat Rentals", 0L));
+        assertThat(typeahead.suggest("jaz", 1)).hasSize(1);
+        assertThat(typeahead.suggest("  ", null)).isEmpty();
+
+        // Bookings reorder suggestions as they come in
+        store.put("events/e2/counter_shards/1", shard("e2", 50));
+        assertThat(texts(typeahead.suggest("jaz", 2))).containsExactly("Jazz brunch", "Harbour jazz nights");
+
+        store.put("events/e2", event("Swing brunch", "Rabat", Event.EventStatus.ACTIVE));
+        store.firestore().collection("suppliers").document("s1").delete().get();
+        assertThat(texts(typeahead.suggest("jaz", null))).containsExactly("Harbour jazz nights");
+        assertThat(texts(typeahead.suggest("sw", null))).containsExactly("Swing brunch");
+        store.firestore().collection("events").document("e1").delete().get();
+        assertThat(typeahead.suggest("casa", null)).isEmpty();
+        events.stop();
+        suppliers.stop();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void topTenStaysUnderAMillisecondAcrossAHundredThousandPhrases() {
+        Random random = new Random(3);
+        TypeaheadIndex index = new TypeaheadIndex();
+        String[] syllables = {"ka", "sa", "bla", "ra", "ba", "ta", "ma", "ri", "no", "jaz", "fes", "ti", "val", "con"};
+        for (int i = 0; i < 100_000; i++) {
+            index.put(TypeaheadIndex.Kind.EVENT, "e" + i, word(random, syllables) + " " + word(random, syllables)
+                    + " " + word(random, syllables), random.nextInt(1_000));
+        }
+        // Popularity changes keep arriving while suggestions are served
+        for (int i = 0; i < 20_000; i++) {
+            index.setPopularity(TypeaheadIndex.Kind.EVENT, "e" + random.nextInt(100_000), random.nextInt(1_000));
+        }
+
+        String[] prefixes = {"k", "ka", "jaz", "fes", "ti", "bla r", "con", "valn", "r", "m"};
+        int lookups = 200_000;
+        long[] nanos = new long[lookups];
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < lookups; i++) {
+                long start = System.nanoTime();
+                List<TypeaheadIndex.Suggestion> suggestions = index.suggest(prefixes[i % prefixes.length], 10);
+                nanos[i] = System.nanoTime() - start;
+                assertThat(suggestions.size()).isLessThanOrEqualTo(10);
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("typeahead over %d phrases: p50 %.1f us, p99 %.1f us%n", index.size(),
+                nanos[lookups / 2] / 1e3, nanos[lookups * 99 / 100] / 1e3);
+        assertThat(nanos[lookups * 99 / 100]).isLessThan(1_000_000L);
+
+        List<TypeaheadIndex.Suggestion> jaz = index.suggest("jaz", 10);
+        assertThat(jaz).hasSize(10).isSortedAccordingTo(
+                (a, b) -> Long.compare(b.popularity(), a.popularity()));
+        assertThat(jaz.getFirst().popularity()).isEqualTo(999);
+    }
+
+    private static String word(Random random, String[] syllables) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 1 + random.nextInt(3); i > 0; i--) {
+            word.append(syllables[random.nextInt(syllables.length)]);
+        }
+        return word.toString();
+    }
+
+    private static List<String> texts(List<TypeaheadIndex.Suggestion> suggestions) {
+        return suggestions.stream().map(TypeaheadIndex.Suggestion::text).toList();
+    }
+
+    private static Event event(String title, String city, Event.EventStatus status) {
+        Event event = new Event();
+        event.setTitle(title);
+        event.setCity(city);
+        event.setStatus(status);
+        return event;
+    }
+
+    private static Map<String, Object> shard(String eventId, long bookings) {
+        return Map.of("eventId", eventId, "availableSeats", 0L, "totalBookings", bookings, "totalRevenue", 0.0);
+    }
+
+    private static Supplier supplier(String name, String city) {
+        Supplier supplier = new Supplier();
+        supplier.setName(name);
+        supplier.setCity(city);
+        return supplier;
+    }
+}
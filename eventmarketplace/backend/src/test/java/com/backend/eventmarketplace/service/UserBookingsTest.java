@@ -0,0 +1,150 @@
+package com.backend.eventmarketplace.service;
+
+import com.backend.eventmarketplace.dto.Page;
+import com.backend.eventmarketplace.model.Booking;
+import com.backend.eventmarketplace.model.Event;
+import com.backend.eventmarketplace.model.EventCounters;
+import com.backend.eventmarketplace.model.Rollup;
+import com.backend.eventmarketplace.repository.*;
+import com.backend.eventmarketplace.support.InMemoryFirestore;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserBookingsTest {
+
+    private static final Instant NOW = Instant.now();
+
+    private final InMemoryFirestore store = new InMemoryFirestore();
+    private final EventCounterRepository counters = new EventCounterRepository(store.firestore(), 4);
+    private final BookingService bookings = bookingService(new UserBookingsCache(100, 60));
+
+    @Test
+    void upcomingAndPastAreFilteredByTheQuery() throws Exception {
+        // A long history: most of it past, some of it canceled
+        for (int i = 0; i < 200; i++) {
+            booking("h" + i, "u1", NOW.minus(Duration.ofDays(200 - i)),
+                    i % 10 == 0 ? Booking.BookingStatus.CANCELED : Booking.BookingStatus.CONFIRMED);
+        }
+        booking("soon", "u1", NOW.plus(Duration.ofDays(1)), Booking.BookingStatus.CONFIRMED);
+        booking("later", "u1", NOW.plus(Duration.ofDays(30)), Booking.BookingStatus.PENDING);
+        booking("dropped", "u1", NOW.plus(Duration.ofDays(2)), Booking.BookingStatus.CANCELED);
+        booking("other", "u2", NOW.plus(Duration.ofDays(3)), Booking.BookingStatus.CONFIRMED);
+
+        int before = store.documentsRead();
+        assertThat(bookings.getUserUpcomingBookings("u1")).extracting(Booking::getId).containsExactly("soon", "later");
+        // only the two matches are read, not the user's whole history
+        assertThat(store.documentsRead() - before).isEqualTo(2);
+
+        List<Booking> past = new ArrayList<>();
+        String token = null;
+        do {
+            before = store.documentsRead();
+            Page<Booking> page = bookings.getUserPastBookingsPageAsync("u1", 50, token).get();
+            assertThat(store.documentsRead() - before).isLessThanOrEqualTo(51);
+            past.addAll(page.getItems());
+            token = page.getNextPageToken();
+        } while (token != null);
+        assertThat(past).hasSize(180)
+                .allMatch(booking -> booking.getStatus() != Booking.BookingStatus.CANCELED)
+                .isSortedAccordingTo((a, b) -> b.getEventDateTime().compareTo(a.getEventDateTime()));
+    }
+
+    @Test
+    void cachedPagesAreDroppedWhenTheUserCancels() throws Exception {
+        booking("b1", "u1", NOW.plus(Duration.ofDays(1)), Booking.BookingStatus.CONFIRMED);
+        booking("b2", "u1", NOW.plus(Duration.ofDays(2)), Booking.BookingStatus.CONFIRMED);
+
+        assertThat(bookings.getUserUpcomingBookings("u1")).hasSize(2);
+        int before = store.roundTrips();
+        assertThat(bookings.getUserUpcomingBookings("u1")).hasSize(2);
+        assertThat(store.roundTrips()).isEqualTo(before);
+
+        bookings.cancelBooking("b1", "u1");
+        assertThat(bookings.getUserUpcomingBookings("u1")).extracting(Booking::getId).containsExactly("b2");
+    }
+
+    @Test
+    void concurrentCancelsOfOneBookingCountOnce() throws Exception {
+        booking("b1", "u1", NOW.plus(Duration.ofDays(1)), Booking.BookingStatus.CONFIRMED);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger canceled = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    bookings.cancelBooking("b1", "u1");
+                    canceled.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    // Already canceled, or lost the race until the retries ran out
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(canceled.get()).isEqualTo(1);
+        Rollup global = new RollupRepository(store.firestore(), 4).findByKeysAsync(List.of(RollupRepository.GLOBAL))
+                .get().get(RollupRepository.GLOBAL);
+        assertThat(global.getCancellations()).isEqualTo(1);
+    }
+
+    @Test
+    void aCanceledBookingGivesItsSeatsBackToTheEvent() throws Exception {
+        Event event = new Event();
+        event.setId("e1");
+        event.setCapacity(10);
+        event.setAvailableSeats(8);
+        event.setTotalBookings(2);
+        event.setTotalRevenue(20.0);
+        store.put("events/e1", event);
+        UnitOfWork work = new UnitOfWorkFactory(store.firestore(), EntityCaches.none()).begin();
+        counters.initialize(work, event);
+        work.commit();
+        booking("b1", "u1", NOW.plus(Duration.ofDays(1)), Booking.BookingStatus.CONFIRMED);
+
+        bookings.cancelBooking("b1", "u1");
+
+        EventCounters totals = counters.findByEventId("e1");
+        assertThat(totals.getAvailableSeats()).isEqualTo(9);
+        assertThat(totals.getTotalBookings()).isEqualTo(1);
+        assertThat(totals.getTotalRevenue()).isEqualTo(10.0);
+    }
+
+    private BookingService bookingService(UserBookingsCache cache) {
+        RollupRepository rollups = new RollupRepository(store.firestore(), 4);
+        return new BookingService(new BookingRepository(store.firestore()),
+                new EventRepository(store.firestore(), EntityCaches.none()),
+                new SeatReservationRepository(store.firestore(), counters, rollups,
+                        new OutboxRepository(store.firestore(), new SimpleAsyncTaskExecutor()),
+                        new SimpleAsyncTaskExecutor()),
+                rollups, counters, new PaymentService(new PaymentRepository(store.firestore())), null, null,
+                new UnitOfWorkFactory(store.firestore(), EntityCaches.none()), cache, new BookingReferences(0));
+    }
+
+    private void booking(String id, String userId, Instant eventDateTime, Booking.BookingStatus status) {
+        Booking booking = new Booking();
+        booking.setUserId(userId);
+        booking.setEventId("e1");
+        booking.setStatus(status);
+        booking.setEventDateTime(eventDateTime);
+        booking.setBookingDate(eventDateTime.minus(Duration.ofDays(7)));
+        booking.setTotalPrice(10.0);
+        booking.setNumberOfSeats(1);
+        store.put("bookings/" + id, booking);
+    }
+}
@@ -0,0 +1,680 @@
+package com.backend.eventmarketplace.support;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import com.google.cloud.firestore.EventListener;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Minimal Firestore stand-in for tests. Documents live in a map keyed by path and
+ * transactions use optimistic concurrency: reads record a version, and the commit
+ * aborts and retries the function if any read document changed in the meantime.
+ */
+public class InMemoryFirestore {
+
+    private record Doc(Object data, long version) {
+    }
+
+    private static final String ID = "__name__";
+
+    /**
+     * A snapshot listener and the documents it was last told about.
+     */
+    private record Listener(Spec spec, EventListener<QuerySnapshot> callback, Map<String, Doc> delivered,
+                            java.util.concurrent.atomic.AtomicBoolean started) {
+    }
+
+    /**
+     * A query: which paths it scans, field filters, sort order, startAfter cursor and
+     * limit. The field name {@link #ID} stands for the document id.
+     */
+    private record Spec(java.util.function.Predicate<String> scope, List<Map.Entry<String, java.util.function.Predicate<Object>>> filters,
+                        List<Map.Entry<String, Query.Direction>> orders, List<Object> after, int limit) {
+
+        Spec where(String field, java.util.function.Predicate<Object> test) {
+            List<Map.Entry<String, java.util.function.Predicate<Object>>> next = new ArrayList<>(filters);
+            next.add(Map.entry(field, test));
+            return new Spec(scope, next, orders, after, limit);
+        }
+
+        Spec orderBy(String field, Query.Direction direction) {
+            List<Map.Entry<String, Query.Direction>> next = new ArrayList<>(orders);
+            next.add(Map.entry(field, direction));
+            return new Spec(scope, filters, next, after, limit);
+        }
+
+        Spec limit(int limit) {
+            return new Spec(scope, filters, orders, after, limit);
+        }
+
+        Spec startAfter(List<Object> cursor) {
+            return new Spec(scope, filters, orders, cursor, limit);
+        }
+    }
+
+    private final Map<String, Doc> docs = new ConcurrentHashMap<>();
+    private final Map<String, DocumentReference> refs = new ConcurrentHashMap<>();
+    private final Map<String, CollectionReference> collections = new ConcurrentHashMap<>();
+    private final Object commitLock = new Object();
+    private final AtomicInteger commits = new AtomicInteger();
+    private final AtomicInteger aborts = new AtomicInteger();
+    private final AtomicInteger roundTrips = new AtomicInteger();
+    private final AtomicInteger documentsRead = new AtomicInteger();
+    private final List<Listener> listeners = new java.util.concurrent.CopyOnWriteArrayList<>();
+    private volatile long latencyMillis;
+    private final Firestore firestore = mock(Firestore.class);
+
+    public InMemoryFirestore() {
+        when(firestore.collection(anyString())).thenAnswer(inv -> collection(inv.getArgument(0)));
+        when(firestore.collectionGroup(anyString())).thenAnswer(inv -> collectionGroup(inv.getArgument(0)));
+        when(firestore.runTransaction(any(), any(TransactionOptions.class))).thenAnswer(inv ->
+                runTransaction(inv.getArgument(0), ((TransactionOptions) inv.getArgument(1)).getNumberOfAttempts()));
+        when(firestore.runTransaction(any())).thenAnswer(inv -> runTransaction(inv.getArgument(0), 5));
+        when(firestore.batch()).thenAnswer(inv -> batch());
+    }
+
+    public Firestore firestore() {
+        return firestore;
+    }
+
+    public void put(String path, Object data) {
+        docs.put(path, new Doc(data, 1));
+        notifyListeners();
+    }
+
+    /**
+     * Like {@link #put} for each entry, with one snapshot to listeners for the lot.
+     */
+    public void putAll(Map<String, ?> documents) {
+        documents.forEach((path, data) -> docs.put(path, new Doc(data, 1)));
+        notifyListeners();
+    }
+
+    public <T> T get(String path, Class<T> clazz) {
+        Doc doc = docs.get(path);
+        return doc == null ? null : toObject(doc.data(), clazz);
+    }
+
+    public <T> List<T> list(String collection, Class<T> clazz) {
+        List<T> result = new ArrayList<>();
+        docs.forEach((path, doc) -> {
+            if (path.startsWith(collection + "/") && path.indexOf('/', collection.length() + 1) < 0) {
+                result.add(toObject(doc.data(), clazz));
+            }
+        });
+        return result;
+    }
+
+    public int commits() {
+        return commits.get();
+    }
+
+    public int aborts() {
+        return aborts.get();
+    }
+
+    /**
+     * Number of simulated Firestore RPCs: document reads and writes, queries,
+     * transaction reads and commits, and batch commits.
+     */
+    public int roundTrips() {
+        return roundTrips.get();
+    }
+
+    /**
+     * Number of documents returned by queries and lookups, which is what Firestore bills.
+     */
+    public int documentsRead() {
+        return documentsRead.get();
+    }
+
+    /**
+     * Ends every snapshot listener with {@code error}, as Firestore does when a listen
+     * stream fails for good.
+     */
+    public void failListeners(FirestoreException error) {
+        for (Listener listener : listeners) {
+            listeners.remove(listener);
+            listener.callback().onEvent(null, error);
+        }
+    }
+
+    public void latency(long millis) {
+        this.latencyMillis = millis;
+    }
+
+    private void roundTrip() {
+        roundTrips.incrementAndGet();
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private WriteResult writeResult() {
+        WriteResult result = mock(WriteResult.class);
+        when(result.getUpdateTime()).thenReturn(com.google.cloud.Timestamp.now());
+        return result;
+    }
+
+    private WriteBatch batch() {
+        WriteBatch batch = mock(WriteBatch.class);
+        List<Runnable> writes = new ArrayList<>();
+        org.mockito.stubbing.Answer<WriteBatch> set = inv -> {
+            String path = ((DocumentReference) inv.getArgument(0)).getPath();
+            Object data = inv.getArgument(1);
+            writes.add(() -> write(path, data));
+            return batch;
+        };
+        when(batch.set(any(DocumentReference.class), any(Object.class))).thenAnswer(set);
+        when(batch.set(any(DocumentReference.class), anyMap())).thenAnswer(set);
+        when(batch.set(any(DocumentReference.class), anyMap(), any(SetOptions.class))).thenAnswer(inv -> {
+            String path = ((DocumentReference) inv.getArgument(0)).getPath();
+            Map<String, Object> fields = inv.getArgument(1);
+            writes.add(() -> merge(path, fields));
+            return batch;
+        });
+        when(batch.update(any(DocumentReference.class), anyMap())).thenAnswer(inv -> {
+            String path = ((DocumentReference) inv.getArgument(0)).getPath();
+            Map<String, Object> fields = inv.getArgument(1);
+            writes.add(() -> update(path, fields));
+            return batch;
+        });
+        when(batch.delete(any(DocumentReference.class))).thenAnswer(inv -> {
+            String path = ((DocumentReference) inv.getArgument(0)).getPath();
+            writes.add(() -> remove(path));
+            return batch;
+        });
+        when(batch.commit()).thenAnswer(inv -> {
+            roundTrip();
+            List<WriteResult> results = new ArrayList<>();
+            synchronized (commitLock) {
+                writes.forEach(write -> {
+                    write.run();
+                    results.add(writeResult());
+                });
+            }
+            return ApiFutures.immediateFuture(results);
+        });
+        return batch;
+    }
+
+    private CollectionReference collection(String path) {
+        return collections.computeIfAbsent(path, p -> {
+            CollectionReference collection = mock(CollectionReference.class);
+            when(collection.document()).thenAnswer(inv -> ref(p + "/" + UUID.randomUUID().toString().replace("-", "")));
+            when(collection.document(anyString())).thenAnswer(inv -> ref(p + "/" + inv.getArgument(0)));
+            stubQuery(collection, new Spec(child -> child.startsWith(p + "/") && child.indexOf('/', p.length() + 1) < 0,
+                    List.of(), List.of(), List.of(), Integer.MAX_VALUE));
+            return collection;
+        });
+    }
+
+    private CollectionGroup collectionGroup(String name) {
+        CollectionGroup group = mock(CollectionGroup.class);
+        stubQuery(group, new Spec(path -> {
+            String[] segments = path.split("/");
+            return segments.length >= 2 && segments[segments.length - 2].equals(name);
+        }, List.of(), List.of(), List.of(), Integer.MAX_VALUE));
+        return group;
+    }
+
+    private Query query(Spec spec) {
+        Query query = mock(Query.class);
+        stubQuery(query, spec);
+        return query;
+    }
+
+    private void stubQuery(Query query, Spec spec) {
+        when(query.whereEqualTo(anyString(), any())).thenAnswer(inv ->
+                query(spec.where(inv.getArgument(0), value -> Objects.equals(comparable(value), comparable(inv.getArgument(1))))));
+        when(query.whereEqualTo(any(FieldPath.class), any())).thenAnswer(inv ->
+                query(spec.where(ID, value -> Objects.equals(value, inv.getArgument(1)))));
+        when(query.whereIn(anyString(), anyList())).thenAnswer(inv ->
+                query(spec.where(inv.getArgument(0), value -> ((List<?>) inv.getArgument(1)).stream()
+                        .anyMatch(candidate -> Objects.equals(comparable(value), comparable(candidate))))));
+        when(query.whereIn(any(FieldPath.class), anyList())).thenAnswer(inv ->
+                query(spec.where(ID, value -> ((List<?>) inv.getArgument(1)).contains(value))));
+        when(query.whereGreaterThan(any(FieldPath.class), any())).thenAnswer(inv ->
+                query(spec.where(ID, value -> value != null && compare(value, inv.getArgument(1)) > 0)));
+        when(query.whereGreaterThanOrEqualTo(any(FieldPath.class), any())).thenAnswer(inv ->
+                query(spec.where(ID, value -> value != null && compare(value, inv.getArgument(1)) >= 0)));
+        when(query.whereLessThan(any(FieldPath.class), any())).thenAnswer(inv ->
+                query(spec.where(ID, value -> value != null && compare(value, inv.getArgument(1)) < 0)));
+        when(query.whereGreaterThan(anyString(), any())).thenAnswer(inv ->
+                query(spec.where(inv.getArgument(0), value -> value != null && compare(value, inv.getArgument(1)) > 0)));
+        when(query.whereGreaterThanOrEqualTo(anyString(), any())).thenAnswer(inv ->
+                query(spec.where(inv.getArgument(0), value -> value != null && compare(value, inv.getArgument(1)) >= 0)));
+        when(query.whereLessThan(anyString(), any())).thenAnswer(inv ->
+                query(spec.where(inv.getArgument(0), value -> value != null && compare(value, inv.getArgument(1)) < 0)));
+        when(query.whereLessThanOrEqualTo(anyString(), any())).thenAnswer(inv ->
+                query(spec.where(inv.getArgument(0), value -> value != null && compare(value, inv.getArgument(1)) <= 0)));
+        when(query.orderBy(anyString())).thenAnswer(inv ->
+                query(spec.orderBy(inv.getArgument(0), Query.Direction.ASCENDING)));
+        when(query.orderBy(any(FieldPath.class))).thenAnswer(inv ->
+                query(spec.orderBy(ID, Query.Direction.ASCENDING)));
+        when(query.orderBy(anyString(), any(Query.Direction.class))).thenAnswer(inv ->
+                query(spec.orderBy(inv.getArgument(0), inv.getArgument(1))));
+        when(query.orderBy(any(FieldPath.class), any(Query.Direction.class))).thenAnswer(inv ->
+                query(spec.orderBy(ID, inv.getArgument(1))));
+        when(query.startAfter(any(Object[].class))).thenAnswer(inv ->
+                query(spec.startAfter(List.of(inv.getArguments()))));
+        when(query.limit(anyInt())).thenAnswer(inv -> query(spec.limit(inv.getArgument(0))));
+        when(query.get()).thenAnswer(inv -> roundTripThen(() -> run(spec)));
+        when(query.addSnapshotListener(any())).thenAnswer(inv -> listen(spec, inv.getArgument(0)));
+    }
+
+    private ListenerRegistration listen(Spec spec, EventListener<QuerySnapshot> callback) {
+        Listener listener = new Listener(spec, callback, new HashMap<>(), new java.util.concurrent.atomic.AtomicBoolean());
+        listeners.add(listener);
+        deliver(listener);
+        ListenerRegistration registration = mock(ListenerRegistration.class);
+        doAnswer(inv -> listeners.remove(listener)).when(registration).remove();
+        return registration;
+    }
+
+    private void notifyListeners() {
+        listeners.forEach(this::deliver);
+    }
+
+    /**
+     * Sends the listener the current result with the changes since its last snapshot;
+     * the first snapshot always goes out, later ones only when something changed.
+     */
+    private void deliver(Listener listener) {
+        synchronized (listener) {
+            Map<String, Doc> current = new LinkedHashMap<>();
+            select(listener.spec()).forEach(entry -> current.put(entry.getKey(), entry.getValue()));
+
+            List<DocumentChange> changes = new ArrayList<>();
+            current.forEach((path, doc) -> {
+                Doc previous = listener.delivered().get(path);
+                if (previous == null) {
+                    changes.add(change(DocumentChange.Type.ADDED, path, doc));
+                } else if (previous.version() != doc.version() || previous.data() != doc.data()) {
+                    changes.add(change(DocumentChange.Type.MODIFIED, path, doc));
+                }
+            });
+            listener.delivered().forEach((path, doc) -> {
+                if (!current.containsKey(path)) {
+                    changes.add(change(DocumentChange.Type.REMOVED, path, doc));
+                }
+            });
+
+            if (changes.isEmpty() && listener.started().getAndSet(true)) {
+                return;
+            }
+            listener.started().set(true);
+            listener.delivered().clear();
+            listener.delivered().putAll(current);
+            listener.callback().onEvent(querySnapshot(new ArrayList<>(current.entrySet()), changes), null);
+        }
+    }
+
+    private DocumentChange change(DocumentChange.Type type, String path, Doc doc) {
+        DocumentChange change = mock(DocumentChange.class);
+        when(change.getType()).thenReturn(type);
+        QueryDocumentSnapshot document = snapshot(QueryDocumentSnapshot.class, path, doc);
+        when(change.getDocument()).thenReturn(document);
+        return change;
+    }
+
+    private QuerySnapshot run(Spec spec) {
+        List<Map.Entry<String, Doc>> selected = select(spec);
+        documentsRead.addAndGet(selected.size());
+        return querySnapshot(selected, List.of());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Map.Entry<String, Doc>> select(Spec spec) {
+        List<Map.Entry<String, Doc>> matches = new ArrayList<>();
+        new TreeMap<>(docs).forEach((path, doc) -> {
+            if (spec.scope().test(path) && spec.filters().stream()
+                    .allMatch(filter -> filter.getValue().test(value(path, doc, filter.getKey())))) {
+                matches.add(Map.entry(path, doc));
+            }
+        });
+
+        Comparator<Map.Entry<String, Doc>> order = (a, b) -> 0;
+        for (Map.Entry<String, Query.Direction> by : spec.orders()) {
+            // Like Firestore, documents missing an ordered field are left out
+            matches.removeIf(entry -> value(entry.getKey(), entry.getValue(), by.getKey()) == null);
+            Comparator<Map.Entry<String, Doc>> field = Comparator.comparing(
+                    entry -> (Comparable) value(entry.getKey(), entry.getValue(), by.getKey()));
+            order = order.thenComparing(by.getValue() == Query.Direction.DESCENDING ? field.reversed() : field);
+        }
+        matches.sort(order);
+        if (!spec.after().isEmpty()) {
+            matches.removeIf(entry -> !pastCursor(spec, entry));
+        }
+        return matches.subList(0, Math.min(spec.limit(), matches.size()));
+    }
+
+    private QuerySnapshot querySnapshot(List<Map.Entry<String, Doc>> entries, List<DocumentChange> changes) {
+        List<QueryDocumentSnapshot> documents = new ArrayList<>();
+        for (Map.Entry<String, Doc> entry : entries) {
+            documents.add(snapshot(QueryDocumentSnapshot.class, entry.getKey(), entry.getValue()));
+        }
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(documents);
+        when(snapshot.getDocumentChanges()).thenReturn(changes);
+        when(snapshot.isEmpty()).thenReturn(documents.isEmpty());
+        when(snapshot.size()).thenReturn(documents.size());
+        return snapshot;
+    }
+
+    private DocumentReference ref(String path) {
+        return refs.computeIfAbsent(path, p -> {
+            DocumentReference ref = mock(DocumentReference.class);
+            when(ref.getPath()).thenReturn(p);
+            when(ref.getId()).thenReturn(p.substring(p.lastIndexOf('/') + 1));
+            when(ref.get()).thenAnswer(inv -> roundTripThen(() -> {
+                documentsRead.incrementAndGet();
+                return snapshot(p, docs.get(p));
+            }));
+            when(ref.set(any(Object.class))).thenAnswer(inv -> roundTripThen(() -> {
+                write(p, inv.getArgument(0));
+                return writeResult();
+            }));
+            when(ref.create(any(Object.class))).thenAnswer(inv -> roundTripThen(() -> {
+                if (docs.containsKey(p)) {
+                    throw new IllegalStateException("Document already exists: " + p);
+                }
+                write(p, inv.getArgument(0));
+                return writeResult();
+            }));
+            when(ref.delete()).thenAnswer(inv -> roundTripThen(() -> {
+                remove(p);
+                return writeResult();
+            }));
+            when(ref.collection(anyString())).thenAnswer(inv -> collection(p + "/" + inv.getArgument(0)));
+            return ref;
+        });
+    }
+
+    private <R> ApiFuture<R> roundTripThen(java.util.function.Supplier<R> action) {
+        roundTrip();
+        return ApiFutures.immediateFuture(action.get());
+    }
+
+    private DocumentSnapshot snapshot(String path, Doc doc) {
+        return snapshot(DocumentSnapshot.class, path, doc);
+    }
+
+    private <S extends DocumentSnapshot> S snapshot(Class<S> type, String path, Doc doc) {
+        S snapshot = mock(type);
+        when(snapshot.getId()).thenReturn(path.substring(path.lastIndexOf('/') + 1));
+        when(snapshot.getReference()).thenAnswer(inv -> ref(path));
+        when(snapshot.exists()).thenReturn(doc != null);
+        when(snapshot.toObject(any())).thenAnswer(inv ->
+                doc == null ? null : withId(toObject(doc.data(), (Class<?>) inv.getArgument(0)), path));
+        when(snapshot.get(anyString())).thenAnswer(inv -> doc == null ? null : field(doc.data(), inv.getArgument(0)));
+        when(snapshot.getString(anyString())).thenAnswer(inv -> (String) (doc == null ? null : field(doc.data(), inv.getArgument(0))));
+        when(snapshot.getLong(anyString())).thenAnswer(inv -> {
+            Object value = doc == null ? null : field(doc.data(), inv.getArgument(0));
+            return value == null ? null : ((Number) value).longValue();
+        });
+        when(snapshot.getDouble(anyString())).thenAnswer(inv -> {
+            Object value = doc == null ? null : field(doc.data(), inv.getArgument(0));
+            return value == null ? null : ((Number) value).doubleValue();
+        });
+        return snapshot;
+    }
+
+    private <T> ApiFuture<T> runTransaction(Transaction.Function<T> function, int attempts) {
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            Map<String, Long> reads = new HashMap<>();
+            List<Runnable> writes = new ArrayList<>();
+            List<String> creates = new ArrayList<>();
+            Transaction transaction = transaction(reads, writes, creates);
+
+            T result;
+            try {
+                result = function.updateCallback(transaction);
+            } catch (Exception e) {
+                return ApiFutures.immediateFailedFuture(e);
+            }
+
+            roundTrip();
+            synchronized (commitLock) {
+                boolean conflict = reads.entrySet().stream().anyMatch(read -> {
+                    Doc current = docs.get(read.getKey());
+                    return (current == null ? 0 : current.version()) != read.getValue();
+                }) || creates.stream().anyMatch(docs::containsKey);
+                if (!conflict) {
+                    writes.forEach(Runnable::run);
+                    commits.incrementAndGet();
+                    return ApiFutures.immediateFuture(result);
+                }
+            }
+            aborts.incrementAndGet();
+            Thread.yield();
+        }
+        return ApiFutures.immediateFailedFuture(
+                new IllegalStateException("Transaction aborted after " + attempts + " attempts"));
+    }
+
+    private Transaction transaction(Map<String, Long> reads, List<Runnable> writes, List<String> creates) {
+        Transaction transaction = mock(Transaction.class);
+        when(transaction.get(any(DocumentReference.class))).thenAnswer(inv -> {
+            String path = ((DocumentReference) inv.getArgument(0)).getPath();
+            roundTrip();
+            Doc doc = docs.get(path);
+            reads.putIfAbsent(path, doc == null ? 0 : doc.version());
+            return ApiFutures.immediateFuture(snapshot(path, doc));
+        });
+        when(transaction.getAll(any(DocumentReference[].class))).thenAnswer(inv -> {
+            roundTrip();
+            List<DocumentSnapshot> snapshots = new ArrayList<>();
+            for (Object arg : inv.getArguments()) {
+                String path = ((DocumentReference) arg).getPath();
+                Doc doc = docs.get(path);
+                documentsRead.incrementAndGet();
+                reads.putIfAbsent(path, doc == null ? 0 : doc.version());
+                snapshots.add(snapshot(path, doc));
+            }
+            return ApiFutures.immediateFuture(snapshots);
+        });
+        org.mockito.stubbing.Answer<Transaction> create = inv -> {
+            String path = ((DocumentReference) inv.getArgument(0)).getPath();
+            Object data = inv.getArgument(1);
+            creates.add(path);
+            writes.add(() -> write(path, data));
+            return transaction;
+        };
+        org.mockito.stubbing.Answer<Transaction> set = inv -> {
+            String path = ((DocumentReference) inv.getArgument(0)).getPath();
+            Object data = inv.getArgument(1);
+            writes.add(() -> write(path, data));
+            return transaction;
+        };
+        when(transaction.create(any(DocumentReference.class), any(Object.class))).thenAnswer(create);
+        when(transaction.create(any(DocumentReference.class), anyMap())).thenAnswer(create);
+        when(transaction.set(any(DocumentReference.class), any(Object.class))).thenAnswer(set);
+        when(transaction.set(any(DocumentReference.class), anyMap())).thenAnswer(set);
+        when(transaction.set(any(DocumentReference.class), anyMap(), any(SetOptions.class))).thenAnswer(inv -> {
+            String path = ((DocumentReference) inv.getArgument(0)).getPath();
+            Map<String, Object> fields = inv.getArgument(1);
+            writes.add(() -> merge(path, fields));
+            return transaction;
+        });
+        when(transaction.update(any(DocumentReference.class), anyMap())).thenAnswer(inv -> {
+            String path = ((DocumentReference) inv.getArgument(0)).getPath();
+            Map<String, Object> fields = inv.getArgument(1);
+            writes.add(() -> update(path, fields));
+            return transaction;
+        });
+        when(transaction.update(any(DocumentReference.class), anyString(), any())).thenAnswer(inv -> {
+            String path = ((DocumentReference) inv.getArgument(0)).getPath();
+            Map<String, Object> fields = Map.of(inv.getArgument(1), inv.getArgument(2));
+            writes.add(() -> update(path, fields));
+            return transaction;
+        });
+        when(transaction.delete(any(DocumentReference.class))).thenAnswer(inv -> {
+            String path = ((DocumentReference) inv.getArgument(0)).getPath();
+            writes.add(() -> remove(path));
+            return transaction;
+        });
+        return transaction;
+    }
+
+    private void write(String path, Object data) {
+        Doc current = docs.get(path);
+        docs.put(path, new Doc(data instanceof Map<?, ?> map ? new HashMap<>(map) : copy(data),
+                current == null ? 1 : current.version() + 1));
+        notifyListeners();
+    }
+
+    private void remove(String path) {
+        if (docs.remove(path) != null) {
+            notifyListeners();
+        }
+    }
+
+    /**
+     * set(..., SetOptions.merge()): an update that creates the document if needed.
+     */
+    private void merge(String path, Map<String, Object> fields) {
+        if (!docs.containsKey(path)) {
+            docs.put(path, new Doc(new HashMap<>(), 0));
+        }
+        update(path, fields);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void update(String path, Map<String, Object> fields) {
+        Doc current = docs.get(path);
+        if (current == null) {
+            throw new IllegalStateException("No document to update: " + path);
+        }
+        Object data;
+        if (current.data() instanceof Map<?, ?> map) {
+            Map<String, Object> updated = new HashMap<>((Map<String, Object>) map);
+            fields.forEach((name, value) -> updated.put(name, resolve(updated.get(name), value)));
+            data = updated;
+        } else {
+            data = copy(current.data());
+            BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(data);
+            fields.forEach((name, value) -> {
+                Object resolved = resolve(wrapper.getPropertyValue(name), value);
+                // Firestore hands Timestamps back to beans as their Instant fields
+                wrapper.setPropertyValue(name, resolved instanceof com.google.cloud.Timestamp
+                        ? comparable(resolved) : resolved);
+            });
+        }
+        docs.put(path, new Doc(data, current.version() + 1));
+        notifyListeners();
+    }
+
+    /**
+     * Applies {@code FieldValue.increment} sentinels; any other value replaces the field.
+     */
+    private Object resolve(Object current, Object value) {
+        if (!(value instanceof FieldValue) || !value.getClass().getSimpleName().equals("NumericIncrementFieldValue")) {
+            return value;
+        }
+        try {
+            java.lang.reflect.Field operandField = value.getClass().getDeclaredField("operand");
+            operandField.setAccessible(true);
+            Number operand = (Number) operandField.get(value);
+            Number base = current == null ? 0L : (Number) current;
+            if (operand instanceof Double || base instanceof Double) {
+                return base.doubleValue() + operand.doubleValue();
+            }
+            return base.longValue() + operand.longValue();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Object value(String path, Doc doc, String name) {
+        return ID.equals(name) ? path.substring(path.lastIndexOf('/') + 1) : field(doc.data(), name);
+    }
+
+    /**
+     * Whether a document sorts strictly after the query's startAfter cursor.
+     */
+    private boolean pastCursor(Spec spec, Map.Entry<String, Doc> entry) {
+        for (int i = 0; i < spec.after().size(); i++) {
+            Map.Entry<String, Query.Direction> by = spec.orders().get(i);
+            int result = compare(value(entry.getKey(), entry.getValue(), by.getKey()), spec.after().get(i));
+            if (result != 0) {
+                return by.getValue() == Query.Direction.DESCENDING ? result < 0 : result > 0;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object value, Object bound) {
+        return ((Comparable) comparable(value)).compareTo(comparable(bound));
+    }
+
+    // Beans hold Instants and enums where Firestore would hold Timestamps and strings
+    private static Object comparable(Object value) {
+        if (value instanceof com.google.cloud.Timestamp timestamp) {
+            return java.time.Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos());
+        }
+        if (value instanceof Enum<?> constant) {
+            return constant.name();
+        }
+        return value;
+    }
+
+    private Object field(Object data, String name) {
+        if (data instanceof Map<?, ?> map) {
+            return map.get(name);
+        }
+        return PropertyAccessorFactory.forBeanPropertyAccess(data).getPropertyValue(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T toObject(Object data, Class<T> clazz) {
+        if (clazz.isInstance(data)) {
+            return (T) copy(data);
+        }
+        T target = BeanUtils.instantiateClass(clazz);
+        BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(target);
+        ((Map<String, Object>) data).forEach((name, value) -> {
+            if (wrapper.isWritableProperty(name)) {
+                wrapper.setPropertyValue(name, value);
+            }
+        });
+        return target;
+    }
+
+    /**
+     * Fills the @DocumentId field, as Firestore does when mapping a snapshot.
+     */
+    private <T> T withId(T entity, String path) {
+        for (Class<?> type = entity.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (java.lang.reflect.Field field : type.getDeclaredFields()) {
+                if (field.isAnnotationPresent(com.google.cloud.firestore.annotation.DocumentId.class)) {
+                    PropertyAccessorFactory.forDirectFieldAccess(entity)
+                            .setPropertyValue(field.getName(), path.substring(path.lastIndexOf('/') + 1));
+                    return entity;
+                }
+            }
+        }
+        return entity;
+    }
+
+    private Object copy(Object source) {
+        Object target = BeanUtils.instantiateClass(source.getClass());
+        BeanUtils.copyProperties(source, target);
+        return target;
+    }
+}
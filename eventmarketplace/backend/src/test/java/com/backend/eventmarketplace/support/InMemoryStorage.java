@@ -0,0 +1,212 @@
+package com.backend.eventmarketplace.support;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.RestorableState;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A Mockito-backed {@link Storage} that keeps objects in memory. Only what the app
+ * uses is stubbed: resumable writers, readers, metadata lookups and deletes, which honour
+ * the generation in a {@link BlobId}. Objects can be kept whole or, for
+ * large uploads, only as their size and SHA-256 so the stand-in itself stays small.
+ */
+public class InMemoryStorage {
+
+    public record StoredObject(String contentType, String cacheControl, List<Storage.BlobWriteOption> options,
+                               long size, byte[] sha256, byte[] content, List<Integer> writes, long generation) {
+    }
+
+    private final Storage storage = mock(Storage.class);
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final boolean keepContent;
+    private final AtomicLong generations = new AtomicLong();
+    private LongConsumer progress = written -> {
+    };
+
+    public InMemoryStorage(boolean keepContent) {
+        this.keepContent = keepContent;
+        when(storage.writer(any(BlobInfo.class), any(Storage.BlobWriteOption[].class))).thenAnswer(inv -> {
+            BlobInfo info = inv.getArgument(0);
+            List<Storage.BlobWriteOption> options = new ArrayList<>();
+            for (int i = 1; i < inv.getArguments().length; i++) {
+                Object argument = inv.getArgument(i);
+                if (argument instanceof Storage.BlobWriteOption[] many) {
+                    options.addAll(Arrays.asList(many));
+                } else if (argument instanceof Storage.BlobWriteOption one) {
+                    options.add(one);
+                }
+            }
+            return new Writer(info, options);
+        });
+        when(storage.reader(any(BlobId.class), any(Storage.BlobSourceOption[].class))).thenAnswer(inv -> {
+            BlobId id = inv.getArgument(0);
+            StoredObject object = objects.get(id.getBucket() + "/" + id.getName());
+            if (object == null || object.content() == null) {
+                throw new StorageException(404, "No such object: " + id.getName());
+            }
+            return new Reader(object.content());
+        });
+        when(storage.get(any(BlobId.class))).thenAnswer(inv -> {
+            BlobId id = inv.getArgument(0);
+            StoredObject object = objects.get(id.getBucket() + "/" + id.getName());
+            if (object == null) {
+                return null;
+            }
+            Blob blob = mock(Blob.class);
+            when(blob.getName()).thenReturn(id.getName());
+            when(blob.getGeneration()).thenReturn(object.generation());
+            when(blob.getSize()).thenReturn(object.size());
+            return blob;
+        });
+        when(storage.delete(any(BlobId.class))).thenAnswer(inv -> {
+            BlobId id = inv.getArgument(0);
+            String key = id.getBucket() + "/" + id.getName();
+            StoredObject object = objects.get(key);
+            if (object == null || (id.getGeneration() != null && id.getGeneration() != object.generation())) {
+                return false;
+            }
+            return objects.remove(key, object);
+        });
+    }
+
+    public Storage storage() {
+        return storage;
+    }
+
+    public StoredObject get(String bucket, String name) {
+        return objects.get(bucket + "/" + name);
+    }
+
+    public Set<String> names() {
+        return Set.copyOf(objects.keySet());
+    }
+
+    /**
+     * Called with the running byte count after every write, e.g. to sample the heap.
+     */
+    public void onWrite(LongConsumer progress) {
+        this.progress = progress;
+    }
+
+    private static final class Reader implements ReadChannel {
+
+        private final ByteBuffer content;
+        private boolean open = true;
+
+        private Reader(byte[] content) {
+            this.content = ByteBuffer.wrap(content);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!content.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(dst.remaining(), content.remaining());
+            dst.put(content.slice(content.position(), n));
+            content.position(content.position() + n);
+            return n;
+        }
+
+        @Override
+        public void seek(long position) {
+            content.position((int) position);
+        }
+
+        @Override
+        public void setChunkSize(int chunkSize) {
+        }
+
+        @Override
+        public RestorableState<ReadChannel> capture() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    private final class Writer implements WriteChannel {
+
+        private final BlobInfo info;
+        private final List<Storage.BlobWriteOption> options;
+        private final MessageDigest digest;
+        private final List<Integer> writes = new ArrayList<>();
+        private final java.io.ByteArrayOutputStream content = new java.io.ByteArrayOutputStream();
+        private long size;
+        private boolean open = true;
+
+        private Writer(BlobInfo info, List<Storage.BlobWriteOption> options) throws NoSuchAlgorithmException {
+            this.info = info;
+            this.options = options;
+            this.digest = MessageDigest.getInstance("SHA-256");
+        }
+
+        @Override
+        public void setChunkSize(int chunkSize) {
+        }
+
+        @Override
+        public RestorableState<WriteChannel> capture() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            byte[] bytes = new byte[Math.min(length, 64 * 1024)];
+            while (src.hasRemaining()) {
+                int n = Math.min(bytes.length, src.remaining());
+                src.get(bytes, 0, n);
+                digest.update(bytes, 0, n);
+                if (keepContent) {
+                    content.write(bytes, 0, n);
+                }
+            }
+            size += length;
+            writes.add(length);
+            progress.accept(size);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                objects.put(info.getBucket() + "/" + info.getName(), new StoredObject(info.getContentType(),
+                        info.getCacheControl(), List.copyOf(options), size, digest.digest(),
+                        keepContent ? content.toByteArray() : null, List.copyOf(writes),
+                        generations.incrementAndGet()));
+            }
+        }
+    }
+}
@@ -1,14 +1,28 @@
+import { auth } from "./firebaseService";
+
 const API_BASE_URL = "http://localhost:8080/api";
 
+// Booking endpoints need the caller's Firebase ID token; getIdToken refreshes it when it expires
+async function authHeaders(headers = {}) {
+  const token = auth.currentUser
+    ? await auth.currentUser.getIdToken()
+    : localStorage.getItem("firebaseToken");
+  return token ? { ...headers, Authorization: `Bearer ${token}` } : headers;
+}
+
 export const bookingService = {
   async getAllBookings() {
-    const response = await fetch(`${API_BASE_URL}/bookings`);
+    const response = await fetch(`${API_BASE_URL}/bookings`, {
+      headers: await authHeaders(),
+    });
     if (!response.ok) throw new Error("Failed to fetch bookings");
     return response.json();
   },
 
   async getBookingById(bookingId) {
-    const response = await fetch(`${API_BASE_URL}/bookings/${bookingId}`);
+    const response = await fetch(`${API_BASE_URL}/bookings/${bookingId}`, {
+      headers: await authHeaders(),
+    });
     if (!response.ok) throw new Error("Failed to fetch booking");
     return response.json();
   },
@@ -18,7 +32,7 @@ export const bookingService = {
       `${API_BASE_URL}/bookings?userId=${encodeURIComponent(userId)}`,
       {
         method: "POST",
-        headers: { "Content-Type": "application/json" },
+        headers: await authHeaders({ "Content-Type": "application/json" }),
         body: JSON.stringify(bookingData),
       }
     );
@@ -29,7 +43,8 @@ export const bookingService = {
 
   async getUpcomingBookings(userId) {
     const response = await fetch(
-      `${API_BASE_URL}/bookings/user/${userId}/upcoming`
+      `${API_BASE_URL}/bookings/user/${userId}/upcoming`,
+      { headers: await authHeaders() }
     );
     if (!response.ok) throw new Error("Failed to fetch booking");
     return response.json();
@@ -37,7 +52,8 @@ export const bookingService = {
   
   async getPastBookings(userId) {
     const response = await fetch(
-      `${API_BASE_URL}/bookings/user/${userId}/past`
+      `${API_BASE_URL}/bookings/user/${userId}/past`,
+      { headers: await authHeaders() }
     );
     if (!response.ok) throw new Error("Failed to fetch booking");
     return response.json();